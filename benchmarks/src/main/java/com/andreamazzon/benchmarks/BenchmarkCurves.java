@@ -0,0 +1,71 @@
+package com.andreamazzon.benchmarks;
+
+/**
+ * This class gives the curves and the market quotes used by the benchmarks: a
+ * zero coupon bond curve with an upward sloping zero rate on a tenure
+ * structure with constant time step, and the coupon bonds and the par swap
+ * rates which give back this curve when bootstrapped.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public final class BenchmarkCurves {
+
+	public static final double YEAR_FRACTION = 0.5;
+
+	private BenchmarkCurves() {
+	}
+
+	/**
+	 * It returns the bonds P(T_1;0),...,P(T_n;0), with T_i = i * YEAR_FRACTION.
+	 *
+	 * @param curveLength, the number n of bonds
+	 * @return the bonds
+	 */
+	public static double[] getBonds(int curveLength) {
+		final double[] bonds = new double[curveLength];
+		for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+			final double maturity = YEAR_FRACTION * (bondIndex + 1);
+			final double zeroRate = 0.005 + 0.01 * (1 - Math.exp(-maturity / 10));
+			bonds[bondIndex] = Math.exp(-zeroRate * maturity);
+		}
+		return bonds;
+	}
+
+	/**
+	 * It returns the values of the coupon bonds paying the given coupon at
+	 * T_1,...,T_k and one at T_k, for k = 1,...,n, as given to
+	 * handout2.Bootstrap.
+	 *
+	 * @param bonds,  the bonds P(T_1;0),...,P(T_n;0)
+	 * @param coupon, the coupon
+	 * @return the values of the coupon bonds
+	 */
+	public static double[] getCouponBondValues(double[] bonds, double coupon) {
+		final double[] couponBondValues = new double[bonds.length];
+		double sumOfCoupons = 0.0;
+		for (int bondIndex = 0; bondIndex < bonds.length; bondIndex++) {
+			sumOfCoupons += coupon * YEAR_FRACTION * bonds[bondIndex];
+			couponBondValues[bondIndex] = sumOfCoupons + bonds[bondIndex];
+		}
+		return couponBondValues;
+	}
+
+	/**
+	 * It returns the par swap rates S_k = (P(T_1;0)-P(T_k;0))/(\sum_{j=2}^k
+	 * YEAR_FRACTION P(T_j;0)), for k = 2,...,n, as given to
+	 * handout3.BootstrapFromParSwapRate: the element k-2 of the array is S_k.
+	 *
+	 * @param bonds, the bonds P(T_1;0),...,P(T_n;0)
+	 * @return the par swap rates
+	 */
+	public static double[] getParSwapRates(double[] bonds) {
+		final double[] parSwapRates = new double[bonds.length - 2];
+		double annuity = YEAR_FRACTION * bonds[1];
+		for (int bondIndex = 2; bondIndex < bonds.length; bondIndex++) {
+			annuity += YEAR_FRACTION * bonds[bondIndex];
+			parSwapRates[bondIndex - 2] = (bonds[0] - bonds[bondIndex]) / annuity;
+		}
+		return parSwapRates;
+	}
+}
@@ -0,0 +1,46 @@
+package com.andreamazzon.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of the benchmark jar. Without arguments, it runs all the
+ * benchmarks of this package with the gc profiler, which reports the bytes
+ * allocated by every operation, and writes the results in jmh-result.json, so
+ * that the results of two releases can be compared. With arguments, it behaves
+ * as the usual JMH command line, with the gc profiler and the JSON results
+ * added unless other profilers or another format are given.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			final List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+			if (!arguments.contains("-prof")) {
+				arguments.addAll(Arrays.asList("-prof", "gc"));
+			}
+			if (!arguments.contains("-rf")) {
+				arguments.addAll(Arrays.asList("-rf", "json"));
+			}
+			org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+			return;
+		}
+		final Options options = new OptionsBuilder()
+				.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,60 @@
+package com.andreamazzon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.andreamazzon.handout2.BondsAndLibors;
+
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Benchmarks of the conversions of handout2.BondsAndLibors between bonds and
+ * Libors.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BondsAndLiborsBenchmark {
+
+	@Param({ "10", "50", "100", "500" })
+	private int curveLength;
+
+	private BondsAndLibors converter;
+	private double[] bonds;
+	private double[] libors;
+
+	@Setup
+	public void setUp() {
+		converter = new BondsAndLibors(new TimeDiscretizationFromArray(BenchmarkCurves.YEAR_FRACTION,
+				curveLength - 1, BenchmarkCurves.YEAR_FRACTION));
+		bonds = BenchmarkCurves.getBonds(curveLength);
+		libors = converter.fromBondToLibors(bonds);
+	}
+
+	@Benchmark
+	public double[] fromBondToLibors() {
+		return converter.fromBondToLibors(bonds);
+	}
+
+	@Benchmark
+	public double[] fromLiborsToBonds() {
+		return converter.fromLiborsToBonds(libors);
+	}
+}
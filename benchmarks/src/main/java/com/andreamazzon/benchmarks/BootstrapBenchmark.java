@@ -0,0 +1,55 @@
+package com.andreamazzon.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.andreamazzon.handout2.Bootstrap;
+
+/**
+ * Benchmark of the bootstrap of a whole curve from coupon bonds by
+ * handout2.Bootstrap.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BootstrapBenchmark {
+
+	private static final double COUPON = 0.01;
+
+	@Param({ "10", "50", "100", "500" })
+	private int curveLength;
+
+	private double[] couponBondValues;
+
+	@Setup
+	public void setUp() {
+		couponBondValues = BenchmarkCurves.getCouponBondValues(BenchmarkCurves.getBonds(curveLength), COUPON);
+	}
+
+	@Benchmark
+	public List<Double> bootstrapFromCouponBonds() {
+		final Bootstrap bootstrap = new Bootstrap(BenchmarkCurves.YEAR_FRACTION, COUPON, couponBondValues[0]);
+		for (int bondIndex = 1; bondIndex < curveLength; bondIndex++) {
+			bootstrap.nextBondFromCouponBond(couponBondValues[bondIndex], COUPON);
+		}
+		return bootstrap.getBonds();
+	}
+}
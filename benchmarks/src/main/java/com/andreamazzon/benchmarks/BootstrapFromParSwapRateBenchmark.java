@@ -0,0 +1,69 @@
+package com.andreamazzon.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.andreamazzon.handout3.BootstrapFromParSwapRate;
+
+/**
+ * Benchmarks of the bootstrap of a whole curve from par swap rates by
+ * handout3.BootstrapFromParSwapRate: once with one par swap rate for every
+ * date, i.e., with the closed formula, and once with one par swap rate every
+ * two dates, i.e., with the bisection search for every new pair of bonds.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BootstrapFromParSwapRateBenchmark {
+
+	@Param({ "10", "50", "100", "500" })
+	private int curveLength;
+
+	private double[] bonds;
+	private double[] parSwapRates;
+
+	@Setup
+	public void setUp() {
+		bonds = BenchmarkCurves.getBonds(curveLength);
+		parSwapRates = BenchmarkCurves.getParSwapRates(bonds);
+	}
+
+	@Benchmark
+	public List<Double> bootstrapEveryDate() {
+		final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(bonds[0], bonds[1],
+				BenchmarkCurves.YEAR_FRACTION);
+		for (final double parSwapRate : parSwapRates) {
+			bootstrap.nextBondFromParSwapRate(parSwapRate);
+		}
+		return bootstrap.getBonds();
+	}
+
+	@Benchmark
+	public List<Double> bootstrapEveryTwoDatesWithBisection() {
+		final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(bonds[0], bonds[1],
+				BenchmarkCurves.YEAR_FRACTION);
+		// the par swap rate S_k is the element k-2: we give S_3, S_5, ...
+		for (int rateIndex = 1; rateIndex < parSwapRates.length; rateIndex += 2) {
+			bootstrap.nextTwoBondsFromParSwapRate(parSwapRates[rateIndex]);
+		}
+		return bootstrap.getBonds();
+	}
+}
@@ -0,0 +1,107 @@
+package com.andreamazzon.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.andreamazzon.handout2.BondsAndLibors;
+import com.andreamazzon.handout3.SwapWithoutFinmath;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Benchmarks of handout3.SwapWithoutFinmath: construction from a bond curve
+ * and from a Libor curve, par swap rate, value for one swap rate or for one
+ * swap rate every period, and the batch valuation of many sub-swaps.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwapWithoutFinmathBenchmark {
+
+	private static final int NUMBER_OF_SUB_SWAPS = 1000;
+
+	@Param({ "10", "50", "100", "500" })
+	private int curveLength;
+
+	private TimeDiscretization swapDates;
+	private double[] bonds;
+	private double[] libors;
+	private double[] swapRates;
+	private SwapWithoutFinmath swap;
+
+	private int[] startIndices;
+	private int[] endIndices;
+	private double[] subSwapRates;
+	private double[] subSwapValues;
+
+	@Setup
+	public void setUp() {
+		swapDates = new TimeDiscretizationFromArray(BenchmarkCurves.YEAR_FRACTION, curveLength - 1,
+				BenchmarkCurves.YEAR_FRACTION);
+		bonds = BenchmarkCurves.getBonds(curveLength);
+		libors = new BondsAndLibors(swapDates).fromBondToLibors(bonds);
+		swap = new SwapWithoutFinmath(swapDates, bonds, true);
+		swapRates = new double[curveLength - 1];
+		Arrays.fill(swapRates, swap.getParSwapRate());
+
+		startIndices = new int[NUMBER_OF_SUB_SWAPS];
+		endIndices = new int[NUMBER_OF_SUB_SWAPS];
+		subSwapRates = new double[NUMBER_OF_SUB_SWAPS];
+		subSwapValues = new double[NUMBER_OF_SUB_SWAPS];
+		for (int swapIndex = 0; swapIndex < NUMBER_OF_SUB_SWAPS; swapIndex++) {
+			startIndices[swapIndex] = swapIndex % (curveLength - 1);
+			endIndices[swapIndex] = curveLength - 1 - swapIndex % (curveLength - 1 - startIndices[swapIndex]);
+			subSwapRates[swapIndex] = 0.01;
+		}
+	}
+
+	@Benchmark
+	public SwapWithoutFinmath constructFromBonds() {
+		return new SwapWithoutFinmath(swapDates, bonds, true);
+	}
+
+	@Benchmark
+	public SwapWithoutFinmath constructFromLibors() {
+		return new SwapWithoutFinmath(swapDates, libors, false);
+	}
+
+	@Benchmark
+	public double parSwapRate() {
+		return swap.getParSwapRate();
+	}
+
+	@Benchmark
+	public double swapValueForOneSwapRate() {
+		return swap.getSwapValue(0.01);
+	}
+
+	@Benchmark
+	public double swapValueForSwapRates() {
+		return swap.getSwapValue(swapRates);
+	}
+
+	@Benchmark
+	public double[] subSwapValues() {
+		swap.getSwapValues(startIndices, endIndices, subSwapRates, subSwapValues);
+		return subSwapValues;
+	}
+}
@@ -0,0 +1,443 @@
+package com.andreamazzon.handout12;
+
+import java.util.Arrays;
+
+/**
+ * This class performs the factor reduction of FactorReductionExponentialDecay
+ * on the empirical correlation of the daily moves of a curve, instead of on a
+ * parametric correlation matrix. The moves are given one by one, for example
+ * every day when a new curve is bootstrapped, and folded into the running mean
+ * and co-moments of the history by the Welford algorithm, with cost O(n^2) for
+ * every move, n being the number of points of the curve.
+ * The k most relevant factors are then refreshed by subspace iteration,
+ * started from the factors computed at the previous refresh: since one more
+ * day changes the correlation matrix only a little, few iterations (each one
+ * of cost O(n^2 k)) are enough, and we do not have to compute all the
+ * eigenvectors, with cost O(n^3), every day.
+ * The factor matrix is returned in the same form as the one given by
+ * FactorReductionExponentialDecay, i.e., as the matrix F^r at page 465 of the
+ * script.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class IncrementalCurvePCA {
+
+	private final int dimension;
+	private final int numberOfFactors;
+
+	private long numberOfObservations = 0;
+	private final double[] mean;
+	/*
+	 * The sums \sum_l (x^l_i-mean_i)(x^l_j-mean_j) over the observations x^l: only
+	 * the entries with j <= i are updated.
+	 */
+	private final double[][] coMoments;
+
+	/*
+	 * The eigenvectors found at the last refresh (as columns), from which the next
+	 * refresh starts, and the corresponding eigenvalues in decreasing order
+	 */
+	private final double[][] eigenvectors;
+	private final double[] eigenvalues;
+	private boolean areFactorsInitialized = false;
+
+	/**
+	 * It constructs an object to compute the factor reduction of the empirical
+	 * correlation of the moves of a curve.
+	 *
+	 * @param dimension, the number of points of the curve, i.e., the length of the vectors of the moves
+	 * @param numberOfFactors, the number of the most relevant factors we want to keep
+	 */
+	public IncrementalCurvePCA(int dimension, int numberOfFactors) {
+		if (numberOfFactors < 1 || numberOfFactors > dimension) {
+			throw new IllegalArgumentException("The number of factors must be between 1 and the dimension");
+		}
+		this.dimension = dimension;
+		this.numberOfFactors = numberOfFactors;
+		mean = new double[dimension];
+		coMoments = new double[dimension][dimension];
+		eigenvectors = new double[dimension][numberOfFactors];
+		eigenvalues = new double[numberOfFactors];
+	}
+
+	/**
+	 * It adds the move of the curve of one day to the history. The cost is
+	 * O(n^2), where n is the dimension.
+	 *
+	 * @param curveChange, the move of the curve, for example the differences of the Libors or of the
+	 * 			logarithms of the bonds between two consecutive days
+	 */
+	public void update(double[] curveChange) {
+		if (curveChange.length != dimension) {
+			throw new IllegalArgumentException("The move must have length " + dimension);
+		}
+		numberOfObservations++;
+		/*
+		 * Welford update: with delta = x-mean_{old} and mean_{new} = mean_{old}+delta/m,
+		 * we have M_{new}(i,j) = M_{old}(i,j)+delta_i(x_j-mean_{new,j}).
+		 */
+		final double[] delta = new double[dimension];
+		for(int component=0; component<dimension; component++) {
+			delta[component] = curveChange[component]-mean[component];
+			mean[component] += delta[component]/numberOfObservations;
+		}
+		for(int row=0; row<dimension; row++) {
+			final double[] coMomentsRow = coMoments[row];
+			final double deltaRow = delta[row];
+			for(int col=0; col<=row; col++) {
+				coMomentsRow[col] += deltaRow*(curveChange[col]-mean[col]);
+			}
+		}
+	}
+
+	/**
+	 * It adds the moves of many days to the history, in the given order.
+	 *
+	 * @param curveChanges, the moves: curveChanges[l] is the move of the l-th day
+	 */
+	public void update(double[][] curveChanges) {
+		for (final double[] curveChange : curveChanges) {
+			update(curveChange);
+		}
+	}
+
+	/**
+	 * @return the number of moves added up to now
+	 */
+	public long getNumberOfObservations() {
+		return numberOfObservations;
+	}
+
+	/**
+	 * @return the empirical mean of the moves added up to now
+	 */
+	public double[] getMean() {
+		return mean.clone();
+	}
+
+	/**
+	 * It returns the empirical (unbiased) covariance matrix of the moves added up
+	 * to now.
+	 *
+	 * @return the covariance matrix
+	 */
+	public double[][] getCovarianceMatrix() {
+		if (numberOfObservations < 2) {
+			throw new IllegalStateException("At least two moves are needed to compute the covariance");
+		}
+		final double[][] covarianceMatrix = new double[dimension][dimension];
+		for(int row=0; row<dimension; row++) {
+			for(int col=0; col<=row; col++) {
+				covarianceMatrix[row][col] = coMoments[row][col]/(numberOfObservations-1);
+				covarianceMatrix[col][row] = covarianceMatrix[row][col];
+			}
+		}
+		return covarianceMatrix;
+	}
+
+	/**
+	 * It returns the empirical correlation matrix of the moves added up to now.
+	 * Components which never moved are taken uncorrelated with the others.
+	 *
+	 * @return the correlation matrix
+	 */
+	public double[][] getCorrelationMatrix() {
+		final double[][] correlationMatrix = getCovarianceMatrix();
+		final double[] standardDeviations = new double[dimension];
+		for(int component=0; component<dimension; component++) {
+			standardDeviations[component] = Math.sqrt(correlationMatrix[component][component]);
+		}
+		for(int row=0; row<dimension; row++) {
+			for(int col=0; col<dimension; col++) {
+				final double product = standardDeviations[row]*standardDeviations[col];
+				correlationMatrix[row][col] = product > 0 ? correlationMatrix[row][col]/product : 0.0;
+			}
+			correlationMatrix[row][row] = 1.0;
+		}
+		return correlationMatrix;
+	}
+
+	/**
+	 * It refreshes the most relevant factors of the correlation matrix of the
+	 * moves added up to now, by subspace iteration started from the factors of
+	 * the last refresh (or from the first unit vectors at the first refresh).
+	 * The iterations stop when the relative change of all the eigenvalues is
+	 * smaller than the tolerance, or when the maximum number of iterations is
+	 * reached.
+	 *
+	 * @param maximumNumberOfIterations, the maximum number of iterations
+	 * @param tolerance, the tolerance on the relative change of the eigenvalues
+	 * @return the number of iterations performed
+	 */
+	public int refreshFactors(int maximumNumberOfIterations, double tolerance) {
+		final double[][] correlationMatrix = getCorrelationMatrix();
+
+		if (!areFactorsInitialized) {
+			/*
+			 * Besides the unit vectors, we add a small perturbation which is not orthogonal
+			 * to any eigenvector
+			 */
+			for(int row=0; row<dimension; row++) {
+				for(int factor=0; factor<numberOfFactors; factor++) {
+					eigenvectors[row][factor] = (row == factor ? 1.0 : 0.0) + 1E-3/(1+row+factor);
+				}
+			}
+			orthonormalizeColumns(eigenvectors);
+			areFactorsInitialized = true;
+		}
+
+		int iteration = 0;
+		while (iteration < maximumNumberOfIterations) {
+			iteration++;
+			/*
+			 * One step: Z = C Q, then Q = orthonormalization of the columns of Z.
+			 * After it, Rayleigh-Ritz: we diagonalize the k x k matrix Q^T C Q = W L W^T and
+			 * rotate the basis to Q W, whose columns are the approximated eigenvectors.
+			 */
+			final double[][] product = multiply(correlationMatrix, eigenvectors);
+			for(int row=0; row<dimension; row++) {
+				System.arraycopy(product[row], 0, eigenvectors[row], 0, numberOfFactors);
+			}
+			orthonormalizeColumns(eigenvectors);
+
+			final double[][] projectedMatrix = multiplyTransposed(eigenvectors, multiply(correlationMatrix, eigenvectors));
+			final double[] newEigenvalues = new double[numberOfFactors];
+			final double[][] rotation = symmetricEigenDecomposition(projectedMatrix, newEigenvalues);
+			final double[][] rotatedEigenvectors = multiply(eigenvectors, rotation);
+
+			double maximumRelativeChange = 0.0;
+			for(int factor=0; factor<numberOfFactors; factor++) {
+				maximumRelativeChange = Math.max(maximumRelativeChange,
+						Math.abs(newEigenvalues[factor]-eigenvalues[factor])/Math.max(Math.abs(newEigenvalues[factor]), 1E-15));
+				eigenvalues[factor] = newEigenvalues[factor];
+			}
+			for(int row=0; row<dimension; row++) {
+				System.arraycopy(rotatedEigenvectors[row], 0, eigenvectors[row], 0, numberOfFactors);
+			}
+			if (maximumRelativeChange < tolerance) {
+				break;
+			}
+		}
+		return iteration;
+	}
+
+	/**
+	 * @return the eigenvalues of the correlation matrix corresponding to the factors, in decreasing
+	 * 			order, as found by the last refresh
+	 */
+	public double[] getEigenvalues() {
+		return eigenvalues.clone();
+	}
+
+	/**
+	 * @return the fraction of the total variance of the normalized moves explained by the factors
+	 * 			found by the last refresh
+	 */
+	public double getExplainedVariance() {
+		double explainedVariance = 0.0;
+		for (final double eigenvalue : eigenvalues) {
+			explainedVariance += eigenvalue;
+		}
+		// the trace of a correlation matrix is its dimension
+		return explainedVariance/dimension;
+	}
+
+	/**
+	 * Returns the factor matrix resulting from factor reduction of the empirical
+	 * correlation matrix, with the factors found by the last refresh. As for the
+	 * matrix returned by LinearAlgebra.factorReduction, the rows are normalized in
+	 * order to get a reduced correlation matrix with ones on the diagonal, and the
+	 * columns are orthogonal and sorted by decreasing norm.
+	 *
+	 * @return the factor matrix, with dimension rows and numberOfFactors columns
+	 */
+	public double[][] getFactorMatrix() {
+		if (!areFactorsInitialized) {
+			throw new IllegalStateException("The factors have not been computed yet: call refreshFactors");
+		}
+		// first the factors sqrt(lambda_k) v_k, then the normalization of the rows
+		final double[][] factorMatrix = new double[dimension][numberOfFactors];
+		for(int row=0; row<dimension; row++) {
+			double sumSquared = 0.0;
+			for(int factor=0; factor<numberOfFactors; factor++) {
+				factorMatrix[row][factor] = eigenvectors[row][factor]*Math.sqrt(Math.max(eigenvalues[factor], 0.0));
+				sumSquared += factorMatrix[row][factor]*factorMatrix[row][factor];
+			}
+			if (sumSquared > 0) {
+				final double norm = Math.sqrt(sumSquared);
+				for(int factor=0; factor<numberOfFactors; factor++) {
+					factorMatrix[row][factor] /= norm;
+				}
+			}
+		}
+		/*
+		 * The normalization destroys the orthogonality of the columns. Since F F^T does not
+		 * change if F is replaced by F W with W orthogonal, we take W from the eigenvectors of
+		 * the k x k matrix F^T F: the columns of F W are then orthogonal, and they are
+		 * the factors of the reduced correlation matrix F F^T.
+		 */
+		final double[][] rotation = symmetricEigenDecomposition(multiplyTransposed(factorMatrix, factorMatrix),
+				new double[numberOfFactors]);
+		return multiply(factorMatrix, rotation);
+	}
+
+	/**
+	 * Constructs and returns the reduced correlation matrix from the factor matrix
+	 * returned by getFactorMatrix. That is, it returns the matrix whose entry (i,j) is given by
+	 * \sum_{k=1}^numberOfFactors F^r(i,k)F^r(j,k)
+	 *
+	 * @return the reduced correlation matrix
+	 */
+	public double[][] getReducedCorrelationMatrix() {
+		final double[][] factorMatrix = getFactorMatrix();
+		final double[][] reducedCorrelationMatrix = new double[dimension][dimension];
+		for(int component1=0; component1<dimension; component1++) {
+			for(int component2=0; component2<=component1; component2++) {
+				double correlation = 0.0;
+				for(int factor=0; factor<numberOfFactors; factor++) {
+					correlation += factorMatrix[component1][factor] * factorMatrix[component2][factor];
+				}
+				reducedCorrelationMatrix[component1][component2] = correlation;
+				reducedCorrelationMatrix[component2][component1] = correlation;
+			}
+		}
+		return reducedCorrelationMatrix;
+	}
+
+	/*
+	 * Modified Gram-Schmidt on the columns of the matrix, in place. A column which
+	 * becomes zero (this can only happen if the matrix has rank < number of columns)
+	 * is replaced by a unit vector orthogonal to the previous columns.
+	 */
+	private static void orthonormalizeColumns(double[][] matrix) {
+		final int numberOfRows = matrix.length;
+		final int numberOfColumns = matrix[0].length;
+		for(int col=0; col<numberOfColumns; col++) {
+			for(int attempt=0; attempt<=numberOfRows; attempt++) {
+				for(int previousCol=0; previousCol<col; previousCol++) {
+					double scalarProduct = 0.0;
+					for(int row=0; row<numberOfRows; row++) {
+						scalarProduct += matrix[row][col]*matrix[row][previousCol];
+					}
+					for(int row=0; row<numberOfRows; row++) {
+						matrix[row][col] -= scalarProduct*matrix[row][previousCol];
+					}
+				}
+				double norm = 0.0;
+				for(int row=0; row<numberOfRows; row++) {
+					norm += matrix[row][col]*matrix[row][col];
+				}
+				norm = Math.sqrt(norm);
+				if (norm > 1E-12) {
+					for(int row=0; row<numberOfRows; row++) {
+						matrix[row][col] /= norm;
+					}
+					break;
+				}
+				// we try again from another unit vector
+				for(int row=0; row<numberOfRows; row++) {
+					matrix[row][col] = row == attempt ? 1.0 : 0.0;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Cyclic Jacobi method for a small symmetric matrix: it returns the matrix whose
+	 * columns are the eigenvectors and writes the eigenvalues, sorted in decreasing order.
+	 */
+	private static double[][] symmetricEigenDecomposition(double[][] symmetricMatrix, double[] eigenvaluesToFill) {
+		final int size = symmetricMatrix.length;
+		final double[][] matrix = new double[size][];
+		final double[][] vectors = new double[size][size];
+		for(int row=0; row<size; row++) {
+			matrix[row] = symmetricMatrix[row].clone();
+			vectors[row][row] = 1.0;
+		}
+		for(int sweep=0; sweep<100; sweep++) {
+			double offDiagonal = 0.0;
+			for(int row=0; row<size; row++) {
+				for(int col=row+1; col<size; col++) {
+					offDiagonal += matrix[row][col]*matrix[row][col];
+				}
+			}
+			if (offDiagonal < 1E-30) {
+				break;
+			}
+			for(int p=0; p<size; p++) {
+				for(int q=p+1; q<size; q++) {
+					if (matrix[p][q] == 0.0) {
+						continue;
+					}
+					// rotation which sets the entry (p,q) to zero
+					final double theta = (matrix[q][q]-matrix[p][p])/(2*matrix[p][q]);
+					final double t = Math.signum(theta == 0.0 ? 1.0 : theta)/(Math.abs(theta)+Math.sqrt(theta*theta+1));
+					final double c = 1/Math.sqrt(t*t+1);
+					final double s = t*c;
+					for(int k=0; k<size; k++) {
+						final double kp = matrix[k][p];
+						final double kq = matrix[k][q];
+						matrix[k][p] = c*kp-s*kq;
+						matrix[k][q] = s*kp+c*kq;
+					}
+					for(int k=0; k<size; k++) {
+						final double pk = matrix[p][k];
+						final double qk = matrix[q][k];
+						matrix[p][k] = c*pk-s*qk;
+						matrix[q][k] = s*pk+c*qk;
+					}
+					for(int k=0; k<size; k++) {
+						final double kp = vectors[k][p];
+						final double kq = vectors[k][q];
+						vectors[k][p] = c*kp-s*kq;
+						vectors[k][q] = s*kp+c*kq;
+					}
+				}
+			}
+		}
+		// sort by decreasing eigenvalue
+		final Integer[] order = new Integer[size];
+		for(int index=0; index<size; index++) {
+			order[index] = index;
+		}
+		Arrays.sort(order, (first, second) -> Double.compare(matrix[second][second], matrix[first][first]));
+		final double[][] sortedVectors = new double[size][size];
+		for(int index=0; index<size; index++) {
+			eigenvaluesToFill[index] = matrix[order[index]][order[index]];
+			for(int row=0; row<size; row++) {
+				sortedVectors[row][index] = vectors[row][order[index]];
+			}
+		}
+		return sortedVectors;
+	}
+
+	// A B
+	private static double[][] multiply(double[][] first, double[][] second) {
+		final int numberOfColumns = second[0].length;
+		final double[][] product = new double[first.length][numberOfColumns];
+		for(int row=0; row<first.length; row++) {
+			for(int k=0; k<second.length; k++) {
+				final double entry = first[row][k];
+				for(int col=0; col<numberOfColumns; col++) {
+					product[row][col] += entry*second[k][col];
+				}
+			}
+		}
+		return product;
+	}
+
+	// A^T B
+	private static double[][] multiplyTransposed(double[][] first, double[][] second) {
+		final double[][] product = new double[first[0].length][second[0].length];
+		for(int k=0; k<first.length; k++) {
+			for(int row=0; row<product.length; row++) {
+				final double entry = first[k][row];
+				for(int col=0; col<product[0].length; col++) {
+					product[row][col] += entry*second[k][col];
+				}
+			}
+		}
+		return product;
+	}
+}
@@ -1,5 +1,7 @@
 package com.andreamazzon.handout2;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +31,8 @@ public class Bootstrap {
 	 * Here we use it because we don't know how many bonds we want to get
 	 */
 	private final List<Double> computedBonds = new ArrayList<Double>();
+	// the coupons given so far: we need them to walk the bootstrap backwards
+	private final List<Double> givenCoupons = new ArrayList<Double>();
 	/*
 	 * We use it in order to host the sum of the elements
 	 * C_i(T_{i+1}-T_i)P(T_{i+1};0) from 1 to m-1. This will be used to get the
@@ -50,6 +54,7 @@ public class Bootstrap {
 
 		Double valueFirstBond = valueFirstCouponBond / (1 + yearFraction * valueFirstCoupon);
 		computedBonds.add(valueFirstBond);// we append the first element to our list
+		givenCoupons.add(valueFirstCoupon);
 		// the sum is initialized. Note: the first bond is not included!
 		sumOfProductTimeStepBondsAndCoupons = valueFirstBond * valueFirstCoupon * yearFraction;
 		this.yearFraction = yearFraction;
@@ -67,6 +72,41 @@ public class Bootstrap {
 				/ (1 + yearFraction * valueNewCoupon);
 		sumOfProductTimeStepBondsAndCoupons += valueNewBond * valueNewCoupon * yearFraction;// note: the sum is updated!
 		computedBonds.add(valueNewBond);
+		givenCoupons.add(valueNewCoupon);
+	}
+
+	/**
+	 * It computes and returns the sensitivities of a quantity with respect to the
+	 * values of the coupon bonds the curve has been bootstrapped from, given its
+	 * sensitivities with respect to the bootstrapped bonds. The bootstrap recursion
+	 * is walked backwards once (adjoint differentiation), so that the cost is
+	 * proportional to the number of bonds.
+	 *
+	 * @param bondSensitivities, the derivatives of the quantity with respect to
+	 *                           the bonds returned by getBonds(), in the same
+	 *                           order
+	 * @return the derivatives of the quantity with respect to the values of the
+	 *         coupon bonds, in the order they have been given
+	 */
+	public double[] getCouponBondSensitivities(double[] bondSensitivities) {
+		final int curveLength = computedBonds.size();
+		if (bondSensitivities.length != curveLength) {
+			throw new IllegalArgumentException("One sensitivity for every bootstrapped bond is needed");
+		}
+		final double[] couponBondSensitivities = new double[curveLength];
+		/*
+		 * P(T_k;0) = (CB_k - sum_k)/(1+Delta C_k), where sum_k is the sum of
+		 * C_j*Delta*P(T_j;0) for j < k. Going backwards, we keep the adjoint of these
+		 * sums, which every bond receives multiplied by its coupon times Delta
+		 */
+		double sumAdjoint = 0.0;
+		for (int bondIndex = curveLength - 1; bondIndex >= 0; bondIndex--) {
+			final double coupon = givenCoupons.get(bondIndex);
+			final double bondAdjoint = bondSensitivities[bondIndex] + sumAdjoint * coupon * yearFraction;
+			couponBondSensitivities[bondIndex] = bondAdjoint / (1 + yearFraction * coupon);
+			sumAdjoint -= couponBondSensitivities[bondIndex];
+		}
+		return couponBondSensitivities;
 	}
 
 	/**
@@ -79,6 +119,19 @@ public class Bootstrap {
 		return computedBonds;
 	}
 
+	/**
+	 * It writes the bonds which have been bootstrapped up to now in a binary
+	 * snapshot file, together with their tenure structure and the corresponding
+	 * Libors, so that other processes can map the curve without bootstrapping it
+	 * again: see CurveSnapshot.
+	 *
+	 * @param path, the path of the file
+	 * @throws IOException
+	 */
+	public void writeSnapshot(Path path) throws IOException {
+		CurveSnapshot.write(path, yearFraction, computedBonds);
+	}
+
 	public static void main(String[] args) throws CalculationException {
 		final DecimalFormat FORMATTERREAL4 = new DecimalFormat("0.0000");
 
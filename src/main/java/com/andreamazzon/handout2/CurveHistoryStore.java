@@ -0,0 +1,288 @@
+package com.andreamazzon.handout2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class reads the history of a curve written by CurveHistoryWriter. The
+ * file is mapped in memory and only its index is read when it is opened: the
+ * curve of one date, or the values of one tenor over a range of dates, are got
+ * by decoding only the columns of the blocks which contain them. An object of
+ * this class can be used by many threads at the same time.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CurveHistoryStore {
+
+	private final ByteBuffer file;
+	private final int numberOfTenors;
+	private final double[] times;
+
+	// for every block: first and last date, number of dates, and the positions and lengths of the columns
+	private final int[] firstDates;
+	private final int[] lastDates;
+	private final int[] datesInBlocks;
+	// the column 0 is the one of the dates, the column k+1 the one of the tenor k
+	private final long[][] columnPositions;
+	private final int[][] columnLengths;
+	private final int numberOfDates;
+
+	/*
+	 * One Inflater for every thread reading the store, reset after every column:
+	 * an Inflater cannot be shared by threads, and building a new one for every
+	 * column would allocate its native buffers every time.
+	 */
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+	private CurveHistoryStore(ByteBuffer file) {
+		this.file = file.order(ByteOrder.LITTLE_ENDIAN);
+		if (file.capacity() < 16 + CurveHistoryWriter.FOOTER_SIZE || file.getInt(0) != CurveHistoryWriter.MAGIC_NUMBER
+				|| file.getInt(file.capacity() - Integer.BYTES) != CurveHistoryWriter.MAGIC_NUMBER) {
+			throw new IllegalArgumentException("This is not a curve history file");
+		}
+		if (file.getInt(4) != CurveHistoryWriter.FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported version of the curve history: " + file.getInt(4));
+		}
+		numberOfTenors = file.getInt(8);
+		times = new double[numberOfTenors];
+		for (int timeIndex = 0; timeIndex < numberOfTenors; timeIndex++) {
+			times[timeIndex] = file.getDouble(16 + timeIndex * Double.BYTES);
+		}
+
+		final int footerPosition = file.capacity() - CurveHistoryWriter.FOOTER_SIZE;
+		int entryPosition = (int) file.getLong(footerPosition);
+		final int numberOfBlocks = file.getInt(footerPosition + Long.BYTES);
+		firstDates = new int[numberOfBlocks];
+		lastDates = new int[numberOfBlocks];
+		datesInBlocks = new int[numberOfBlocks];
+		columnPositions = new long[numberOfBlocks][numberOfTenors + 1];
+		columnLengths = new int[numberOfBlocks][numberOfTenors + 1];
+		int dates = 0;
+		for (int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+			firstDates[blockIndex] = file.getInt(entryPosition);
+			lastDates[blockIndex] = file.getInt(entryPosition + 4);
+			datesInBlocks[blockIndex] = file.getInt(entryPosition + 8);
+			entryPosition += 3 * Integer.BYTES;
+			for (int columnIndex = 0; columnIndex <= numberOfTenors; columnIndex++) {
+				columnPositions[blockIndex][columnIndex] = file.getLong(entryPosition);
+				columnLengths[blockIndex][columnIndex] = file.getInt(entryPosition + Long.BYTES);
+				entryPosition += CurveHistoryWriter.COLUMN_ENTRY_SIZE;
+			}
+			dates += datesInBlocks[blockIndex];
+		}
+		numberOfDates = dates;
+	}
+
+	/**
+	 * It opens a file written by CurveHistoryWriter, by mapping it in memory.
+	 *
+	 * @param path, the path of the file
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static CurveHistoryStore open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new CurveHistoryStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @return the number of dates in the history
+	 */
+	public int getNumberOfDates() {
+		return numberOfDates;
+	}
+
+	/**
+	 * @return the number n of bonds of every curve
+	 */
+	public int getNumberOfTenors() {
+		return numberOfTenors;
+	}
+
+	/**
+	 * @return the dates T_1,...,T_n of the bonds
+	 */
+	public TimeDiscretization getTenureStructure() {
+		return new TimeDiscretizationFromArray(times.clone());
+	}
+
+	/**
+	 * It returns all the dates of the history. Only the columns of the dates are
+	 * decoded.
+	 *
+	 * @return the dates, in increasing order
+	 */
+	public int[] getDates() {
+		final int[] dates = new int[numberOfDates];
+		int position = 0;
+		for (int blockIndex = 0; blockIndex < firstDates.length; blockIndex++) {
+			final long[] blockDates = decodeColumn(blockIndex, 0, Integer.BYTES);
+			for (int dateIndex = 0; dateIndex < blockDates.length; dateIndex++) {
+				dates[position++] = (int) blockDates[dateIndex];
+			}
+		}
+		return dates;
+	}
+
+	/**
+	 * It writes the curve of a given date in an array. Only the block containing
+	 * the date is decoded.
+	 *
+	 * @param date,  the date
+	 * @param bonds, the array where the bonds P(T_1;0),...,P(T_n;0) are written
+	 * @return true if the date is in the history, false otherwise (and then the
+	 *         array is not modified)
+	 */
+	public boolean getCurve(int date, double[] bonds) {
+		final int blockIndex = getBlockIndex(date);
+		if (blockIndex < 0) {
+			return false;
+		}
+		final int dateIndex = getIndexInBlock(blockIndex, date);
+		if (dateIndex < 0) {
+			return false;
+		}
+		for (int tenorIndex = 0; tenorIndex < numberOfTenors; tenorIndex++) {
+			final long[] bits = decodeColumn(blockIndex, tenorIndex + 1, Long.BYTES);
+			bonds[tenorIndex] = Double.longBitsToDouble(bits[dateIndex]);
+		}
+		return true;
+	}
+
+	/**
+	 * It returns the values of the bond with a given tenor at all the dates of a
+	 * range. Only the column of this tenor in the blocks overlapping the range is
+	 * decoded.
+	 *
+	 * @param tenorIndex, the index i of the bond P(T_{i+1};0)
+	 * @param firstDate,  the first date of the range (included)
+	 * @param lastDate,   the last date of the range (included)
+	 * @return the values at the dates of the history in the range, in increasing
+	 *         order of dates
+	 */
+	public double[] getTenorSeries(int tenorIndex, int firstDate, int lastDate) {
+		double[] series = new double[0];
+		int length = 0;
+		for (int blockIndex = firstBlockEndingFrom(firstDate); blockIndex < firstDates.length
+				&& firstDates[blockIndex] <= lastDate; blockIndex++) {
+			final long[] dates = decodeColumn(blockIndex, 0, Integer.BYTES);
+			final long[] bits = decodeColumn(blockIndex, tenorIndex + 1, Long.BYTES);
+			if (series.length < length + bits.length) {
+				series = Arrays.copyOf(series, Math.max(2 * series.length, length + bits.length));
+			}
+			for (int dateIndex = 0; dateIndex < bits.length; dateIndex++) {
+				if (dates[dateIndex] >= firstDate && dates[dateIndex] <= lastDate) {
+					series[length++] = Double.longBitsToDouble(bits[dateIndex]);
+				}
+			}
+		}
+		return Arrays.copyOf(series, length);
+	}
+
+	/**
+	 * It returns the dates of the history in a range, in the same order as the
+	 * values returned by getTenorSeries.
+	 *
+	 * @param firstDate, the first date of the range (included)
+	 * @param lastDate,  the last date of the range (included)
+	 * @return the dates
+	 */
+	public int[] getDates(int firstDate, int lastDate) {
+		int[] datesInRange = new int[0];
+		int length = 0;
+		for (int blockIndex = firstBlockEndingFrom(firstDate); blockIndex < firstDates.length
+				&& firstDates[blockIndex] <= lastDate; blockIndex++) {
+			final long[] dates = decodeColumn(blockIndex, 0, Integer.BYTES);
+			if (datesInRange.length < length + dates.length) {
+				datesInRange = Arrays.copyOf(datesInRange, Math.max(2 * datesInRange.length, length + dates.length));
+			}
+			for (final long date : dates) {
+				if (date >= firstDate && date <= lastDate) {
+					datesInRange[length++] = (int) date;
+				}
+			}
+		}
+		return Arrays.copyOf(datesInRange, length);
+	}
+
+	// the first block whose last date is not before the given date
+	private int firstBlockEndingFrom(int date) {
+		int low = 0;
+		int high = lastDates.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (lastDates[middle] < date) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// the block containing the date, or -1
+	private int getBlockIndex(int date) {
+		final int blockIndex = firstBlockEndingFrom(date);
+		return blockIndex < firstDates.length && firstDates[blockIndex] <= date ? blockIndex : -1;
+	}
+
+	private int getIndexInBlock(int blockIndex, int date) {
+		final long[] dates = decodeColumn(blockIndex, 0, Integer.BYTES);
+		for (int dateIndex = 0; dateIndex < dates.length; dateIndex++) {
+			if (dates[dateIndex] == date) {
+				return dateIndex;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * It inflates a column and undoes the exclusive or with the previous values.
+	 */
+	private long[] decodeColumn(int blockIndex, int columnIndex, int bytesPerValue) {
+		final int numberOfValues = datesInBlocks[blockIndex];
+		final byte[] compressed = new byte[columnLengths[blockIndex][columnIndex]];
+		// a duplicate, since the position of the shared buffer must not be changed by many threads
+		final ByteBuffer column = file.duplicate();
+		column.position((int) columnPositions[blockIndex][columnIndex]);
+		column.get(compressed);
+
+		final byte[] bytePlanes = new byte[numberOfValues * bytesPerValue];
+		final Inflater inflater = inflaters.get();
+		try {
+			inflater.setInput(compressed);
+			int length = 0;
+			while (length < bytePlanes.length && !inflater.finished()) {
+				length += inflater.inflate(bytePlanes, length, bytePlanes.length - length);
+			}
+		} catch (final DataFormatException e) {
+			throw new IllegalStateException("The curve history file is corrupted", e);
+		} finally {
+			inflater.reset();
+		}
+
+		final long[] values = new long[numberOfValues];
+		long previousValue = 0;
+		for (int valueIndex = 0; valueIndex < numberOfValues; valueIndex++) {
+			long difference = 0;
+			for (int byteIndex = 0; byteIndex < bytesPerValue; byteIndex++) {
+				difference = (difference << 8) | (bytePlanes[byteIndex * numberOfValues + valueIndex] & 0xFFL);
+			}
+			previousValue ^= difference;
+			values[valueIndex] = previousValue;
+		}
+		return values;
+	}
+}
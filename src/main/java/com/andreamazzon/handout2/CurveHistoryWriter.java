@@ -0,0 +1,255 @@
+package com.andreamazzon.handout2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class writes the history of a curve, i.e., the bonds P(T_1;0),...,
+ * P(T_n;0) bootstrapped at many dates, in the compact columnar file read by
+ * CurveHistoryStore. The curves are given one date at a time, in increasing
+ * order of dates, and are stored in blocks of a given number of dates. Inside
+ * a block, every tenor is a separate column: since the bonds move only by a
+ * few basis points from one date to the next, the bits of every value are
+ * replaced by their exclusive or with the bits of the value of the date before,
+ * which has most of its bytes equal to zero. These differences are stored byte
+ * by byte (first the first bytes of all the dates, then the second bytes and so
+ * on) and compressed by a Deflater. Every column of every block can then be
+ * decoded alone, without decoding the rest of the file.
+ *
+ * The file is made by a header (a magic number, the version of the format, the
+ * number n of tenors, the number of dates per block and the n dates of the
+ * tenure structure), the blocks, the index of the blocks (for every block the
+ * first and last date, the number of dates and the position and length of the
+ * column of the dates and of the n columns of the bonds) and a footer with the
+ * position of the index. All the numbers are little endian. The file is
+ * written under a temporary name, and only renamed by commit, once all the
+ * curves have been appended. If the writer is closed without commit, for
+ * example because append has thrown an exception in a try-with-resources
+ * block, the temporary file is deleted: a partial history is never published
+ * as a valid file.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CurveHistoryWriter implements Closeable {
+
+	static final int MAGIC_NUMBER = 0x43485331;// "CHS1"
+	static final int FORMAT_VERSION = 1;
+	static final int FOOTER_SIZE = 16;
+	// first date, last date, number of dates, then position (long) and length (int) of every column
+	static final int COLUMN_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+	private final Path path;
+	private final Path temporaryPath;
+	private final FileChannel channel;
+	private final int numberOfTenors;
+	private final int datesPerBlock;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+	// the block being filled
+	private final int[] blockDates;
+	private final double[][] blockColumns;
+	private int datesInBlock = 0;
+	private int lastDate = Integer.MIN_VALUE;
+
+	private final ArrayList<ByteBuffer> indexEntries = new ArrayList<ByteBuffer>();
+	private long position;
+	private boolean isCommitted = false;
+	private boolean isClosed = false;
+
+	/**
+	 * It opens a new history file.
+	 *
+	 * @param path,            the path of the file
+	 * @param tenureStructure, the dates T_1,...,T_n of the bonds
+	 * @param datesPerBlock,   the number of dates stored in one block: bigger
+	 *                         blocks compress better, smaller blocks are faster
+	 *                         to read when only a few dates are needed
+	 * @throws IOException
+	 */
+	public CurveHistoryWriter(Path path, TimeDiscretization tenureStructure, int datesPerBlock) throws IOException {
+		if (datesPerBlock < 1) {
+			throw new IllegalArgumentException("A block must contain at least one date");
+		}
+		this.path = path;
+		this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		this.numberOfTenors = tenureStructure.getNumberOfTimes();
+		this.datesPerBlock = datesPerBlock;
+		blockDates = new int[datesPerBlock];
+		blockColumns = new double[numberOfTenors][datesPerBlock];
+
+		channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		final ByteBuffer header = ByteBuffer.allocate(4 * Integer.BYTES + numberOfTenors * Double.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION).putInt(numberOfTenors).putInt(datesPerBlock);
+		for (int timeIndex = 0; timeIndex < numberOfTenors; timeIndex++) {
+			header.putDouble(tenureStructure.getTime(timeIndex));
+		}
+		header.flip();
+		write(header);
+	}
+
+	/**
+	 * It adds the curve of a date to the history.
+	 *
+	 * @param date,  the date, for example 20211018: it must be bigger than the
+	 *               dates given before
+	 * @param bonds, the bonds P(T_1;0),...,P(T_n;0) at this date
+	 * @throws IOException
+	 */
+	public void append(int date, double[] bonds) throws IOException {
+		checkOpen();
+		if (date <= lastDate) {
+			throw new IllegalArgumentException("The dates must be increasing: " + date + " after " + lastDate);
+		}
+		if (bonds.length != numberOfTenors) {
+			throw new IllegalArgumentException("The curve must have " + numberOfTenors + " bonds");
+		}
+		blockDates[datesInBlock] = date;
+		for (int tenorIndex = 0; tenorIndex < numberOfTenors; tenorIndex++) {
+			blockColumns[tenorIndex][datesInBlock] = bonds[tenorIndex];
+		}
+		datesInBlock++;
+		lastDate = date;
+		if (datesInBlock == datesPerBlock) {
+			writeBlock();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		final ByteBuffer indexEntry = ByteBuffer.allocate(3 * Integer.BYTES + (numberOfTenors + 1) * COLUMN_ENTRY_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		indexEntry.putInt(blockDates[0]).putInt(blockDates[datesInBlock - 1]).putInt(datesInBlock);
+
+		// the dates: the exclusive or with the date before as for the bonds, on 4 bytes
+		final long[] dateBits = new long[datesInBlock];
+		for (int dateIndex = 0; dateIndex < datesInBlock; dateIndex++) {
+			dateBits[dateIndex] = blockDates[dateIndex];
+		}
+		writeColumn(dateBits, Integer.BYTES, indexEntry);
+
+		final long[] bits = new long[datesInBlock];
+		for (int tenorIndex = 0; tenorIndex < numberOfTenors; tenorIndex++) {
+			for (int dateIndex = 0; dateIndex < datesInBlock; dateIndex++) {
+				bits[dateIndex] = Double.doubleToRawLongBits(blockColumns[tenorIndex][dateIndex]);
+			}
+			writeColumn(bits, Long.BYTES, indexEntry);
+		}
+		indexEntry.flip();
+		indexEntries.add(indexEntry);
+		datesInBlock = 0;
+	}
+
+	/*
+	 * It encodes a column, writes it and adds its position and length to the
+	 * entry of the index.
+	 */
+	private void writeColumn(long[] values, int bytesPerValue, ByteBuffer indexEntry) throws IOException {
+		final int numberOfValues = values.length;
+		final byte[] bytePlanes = new byte[numberOfValues * bytesPerValue];
+		long previousValue = 0;
+		for (int valueIndex = 0; valueIndex < numberOfValues; valueIndex++) {
+			final long difference = values[valueIndex] ^ previousValue;
+			previousValue = values[valueIndex];
+			// the most significant byte first: for close doubles, the first planes are all zeros
+			for (int byteIndex = 0; byteIndex < bytesPerValue; byteIndex++) {
+				bytePlanes[byteIndex * numberOfValues + valueIndex] = (byte) (difference >>> (8
+						* (bytesPerValue - 1 - byteIndex)));
+			}
+		}
+		deflater.reset();
+		deflater.setInput(bytePlanes);
+		deflater.finish();
+		byte[] compressed = new byte[bytePlanes.length + 64];
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) {
+				compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		indexEntry.putLong(position).putInt(compressedLength);
+		write(ByteBuffer.wrap(compressed, 0, compressedLength));
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer);
+		}
+	}
+
+	private void checkOpen() {
+		if (isClosed) {
+			throw new IllegalStateException("The curve history writer is closed");
+		}
+	}
+
+	/**
+	 * It writes the last block, the index and the footer, and renames the
+	 * temporary file with the name given in the constructor. Nothing can be
+	 * appended afterwards.
+	 *
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+		checkOpen();
+		if (datesInBlock > 0) {
+			writeBlock();
+		}
+		final long indexPosition = position;
+		for (final ByteBuffer indexEntry : indexEntries) {
+			write(indexEntry);
+		}
+		final ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		footer.putLong(indexPosition).putInt(indexEntries.size()).putInt(MAGIC_NUMBER);
+		footer.flip();
+		write(footer);
+		channel.force(true);
+		release();
+		Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		isCommitted = true;
+	}
+
+	/**
+	 * It releases the file and the Deflater. If commit has not been called, or
+	 * has failed, the temporary file is deleted and the file with the name given
+	 * in the constructor is left as it was. Calling this method more than once
+	 * has no effect.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			release();
+		} finally {
+			if (!isCommitted) {
+				Files.deleteIfExists(temporaryPath);
+			}
+		}
+	}
+
+	private void release() throws IOException {
+		if (!isClosed) {
+			isClosed = true;
+			try {
+				channel.close();
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+}
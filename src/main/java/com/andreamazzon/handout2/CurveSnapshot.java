@@ -0,0 +1,232 @@
+package com.andreamazzon.handout2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class represents a bootstrapped curve stored in a compact binary file,
+ * which is written once after the curve is built and then mapped in memory by
+ * all the processes which need the curve, without parsing it or building it
+ * again. The file has a header of 24 bytes (a magic number, the version of the
+ * format, the length n of the curve and the time when the curve has been
+ * built, in milliseconds since the epoch) followed by three blocks of n
+ * doubles: the tenure structure T_1,...,T_n, the zero coupon bonds
+ * P(T_1;0),...,P(T_n;0) and the Libors L(0,T_1;0),...,L(T_{n-1},T_n;0). All the
+ * numbers are little endian. An object of this class is read-only: the values
+ * are read directly from the mapped file, and the methods returning arrays
+ * return copies.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CurveSnapshot {
+
+	private static final int MAGIC_NUMBER = 0x43525631;// "CRV1"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+
+	private final int curveLength;
+	private final long buildTimestamp;
+	// views on the mapped file: no value is copied when the snapshot is opened
+	private final DoubleBuffer times;
+	private final DoubleBuffer bonds;
+	private final DoubleBuffer libors;
+
+	private CurveSnapshot(ByteBuffer buffer) {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC_NUMBER) {
+			throw new IllegalArgumentException("This is not a curve snapshot");
+		}
+		if (buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported version of the curve snapshot: " + buffer.getInt(4));
+		}
+		curveLength = buffer.getInt(8);
+		buildTimestamp = buffer.getLong(16);
+		if (buffer.capacity() != HEADER_SIZE + 3L * Double.BYTES * curveLength) {
+			throw new IllegalArgumentException("The size of the curve snapshot does not match its header");
+		}
+		times = slice(buffer, 0);
+		bonds = slice(buffer, 1);
+		libors = slice(buffer, 2);
+	}
+
+	private DoubleBuffer slice(ByteBuffer buffer, int blockIndex) {
+		final ByteBuffer block = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		block.position(HEADER_SIZE + blockIndex * Double.BYTES * curveLength);
+		block.limit(HEADER_SIZE + (blockIndex + 1) * Double.BYTES * curveLength);
+		return block.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+	}
+
+	/**
+	 * It writes a snapshot of a curve in a file. The Libors are computed from the
+	 * bonds by BondsAndLibors. The file is first written under a temporary name
+	 * and then renamed, so that the processes reading it never see a file which
+	 * is only partially written.
+	 *
+	 * @param path,            the path of the file
+	 * @param tenureStructure, the dates T_1,...,T_n
+	 * @param bonds,           the bonds P(T_1;0),...,P(T_n;0)
+	 * @param buildTimestamp,  the time when the curve has been built, in
+	 *                         milliseconds since the epoch
+	 * @throws IOException
+	 */
+	public static void write(Path path, TimeDiscretization tenureStructure, double[] bonds, long buildTimestamp)
+			throws IOException {
+		final int curveLength = bonds.length;
+		final double[] libors = new BondsAndLibors(tenureStructure).fromBondToLibors(bonds);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 3 * Double.BYTES * curveLength)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION).putInt(curveLength).putInt(0/* padding */)
+				.putLong(buildTimestamp);
+		for (int timeIndex = 0; timeIndex < curveLength; timeIndex++) {
+			buffer.putDouble(tenureStructure.getTime(timeIndex));
+		}
+		for (final double bond : bonds) {
+			buffer.putDouble(bond);
+		}
+		for (final double libor : libors) {
+			buffer.putDouble(libor);
+		}
+		buffer.flip();
+
+		final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * It writes a snapshot of a curve in a file, with the present time as build
+	 * time.
+	 *
+	 * @param path,            the path of the file
+	 * @param tenureStructure, the dates T_1,...,T_n
+	 * @param bonds,           the bonds P(T_1;0),...,P(T_n;0)
+	 * @throws IOException
+	 */
+	public static void write(Path path, TimeDiscretization tenureStructure, double[] bonds) throws IOException {
+		write(path, tenureStructure, bonds, System.currentTimeMillis());
+	}
+
+	/**
+	 * It writes a snapshot of a curve with constant time step in a file, with the
+	 * present time as build time. This is the curve given by the bootstrap
+	 * classes, which give the bonds as a list.
+	 *
+	 * @param path,         the path of the file
+	 * @param yearFraction, the constant time step: the dates are T_i = i *
+	 *                      yearFraction, i = 1,...,n
+	 * @param bonds,        the bonds P(T_1;0),...,P(T_n;0)
+	 * @throws IOException
+	 */
+	public static void write(Path path, double yearFraction, List<Double> bonds) throws IOException {
+		final double[] bondsAsArray = new double[bonds.size()];
+		for (int bondIndex = 0; bondIndex < bondsAsArray.length; bondIndex++) {
+			bondsAsArray[bondIndex] = bonds.get(bondIndex);
+		}
+		write(path, new TimeDiscretizationFromArray(yearFraction, bondsAsArray.length - 1, yearFraction),
+				bondsAsArray);
+	}
+
+	/**
+	 * It maps a snapshot file in memory, read-only, and returns the curve it
+	 * contains. The file is not read: the values are got from the mapped memory
+	 * when they are needed.
+	 *
+	 * @param path, the path of the file
+	 * @return the curve stored in the file
+	 * @throws IOException
+	 */
+	public static CurveSnapshot map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new CurveSnapshot(buffer);
+		}
+	}
+
+	public int getCurveLength() {
+		return curveLength;
+	}
+
+	public long getBuildTimestamp() {
+		return buildTimestamp;
+	}
+
+	/**
+	 * @param timeIndex, the index i
+	 * @return T_{i+1}
+	 */
+	public double getTime(int timeIndex) {
+		return times.get(timeIndex);
+	}
+
+	/**
+	 * @param bondIndex, the index i
+	 * @return P(T_{i+1};0)
+	 */
+	public double getBond(int bondIndex) {
+		return bonds.get(bondIndex);
+	}
+
+	/**
+	 * @param liborIndex, the index i
+	 * @return L(T_i,T_{i+1};0), with T_0 = 0
+	 */
+	public double getLibor(int liborIndex) {
+		return libors.get(liborIndex);
+	}
+
+	/**
+	 * It returns the tenure structure of the curve, as a TimeDiscretization object
+	 *
+	 * @return the tenure structure
+	 */
+	public TimeDiscretization getTenureStructure() {
+		return new TimeDiscretizationFromArray(copy(times));
+	}
+
+	/**
+	 * It returns a copy of the zero coupon bond curve
+	 *
+	 * @return the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public double[] getBonds() {
+		return copy(bonds);
+	}
+
+	/**
+	 * It returns a copy of the Libor curve
+	 *
+	 * @return the Libors L(0,T_1;0),...,L(T_{n-1},T_n;0)
+	 */
+	public double[] getLibors() {
+		return copy(libors);
+	}
+
+	private double[] copy(DoubleBuffer values) {
+		final double[] copiedValues = new double[curveLength];
+		// absolute gets: the position of the shared view is not changed
+		for (int valueIndex = 0; valueIndex < curveLength; valueIndex++) {
+			copiedValues[valueIndex] = values.get(valueIndex);
+		}
+		return copiedValues;
+	}
+}
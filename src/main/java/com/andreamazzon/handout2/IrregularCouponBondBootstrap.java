@@ -0,0 +1,285 @@
+package com.andreamazzon.handout2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class bootstraps a zero coupon bond curve from a universe of coupon
+ * bonds whose cash flows are paid at any dates, as government bonds with
+ * different and overlapping coupon schedules. Differently from Bootstrap, the
+ * bonds do not need to share the same tenure structure, and they can be given
+ * in any order.
+ * The bonds are sorted by maturity, and every maturity becomes a date of the
+ * curve: between two of these dates, the discount factors are got by
+ * log-linear interpolation, as in LogLinearDiscountCurve. The bond with the
+ * k-th maturity T_k is then valued with the discount factors up to T_{k-1},
+ * which are already known, and with the discount factors between T_{k-1} and
+ * T_k, which depend on the unknown P(T_k;0) through the interpolation: this
+ * unknown is found by Newton's method, so that the value of the bond matches
+ * its price. All the cash flow dates of the universe are merged in one sorted
+ * array, so that the discount factor at a date shared by many bonds is
+ * computed once: bootstrapping the whole universe costs O(total number of cash
+ * flows), apart from the sorting, which is done only once when the bonds are
+ * given.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class IrregularCouponBondBootstrap {
+
+	private static final int MAXIMUM_NUMBER_OF_NEWTON_ITERATIONS = 100;
+	private static final double NEWTON_TOLERANCE = 1E-15;
+
+	// the bonds, in the order they have been given
+	private final ArrayList<double[]> paymentTimesOfBonds = new ArrayList<double[]>();
+	private final ArrayList<double[]> amountsOfBonds = new ArrayList<double[]>();
+	private final ArrayList<Double> prices = new ArrayList<Double>();
+
+	/*
+	 * Computed when the universe is bootstrapped for the first time after a bond
+	 * has been added: the bonds sorted by maturity, the maturities, the sorted
+	 * different cash flow dates and, for every cash flow of every sorted bond, the
+	 * index of its date
+	 */
+	private boolean isUniversePrepared = false;
+	private int[] sortedBondIndices;
+	private double[] maturities;
+	private double[] cashFlowDates;
+	private int[][] dateIndicesOfBonds;
+	/*
+	 * For every date, the index of the bond whose maturity is the first one not
+	 * smaller than the date: the discount factor at the date is interpolated
+	 * between the maturity of this bond and the previous one
+	 */
+	private int[] pillarIndicesOfDates;
+
+	/**
+	 * It adds a bond to the universe.
+	 *
+	 * @param price,        the (dirty) price of the bond, positive
+	 * @param paymentTimes, the times of all the cash flows of the bond, positive
+	 *                      and increasing: the last one is the maturity
+	 * @param amounts,      the cash flows (coupons, and coupon plus notional at
+	 *                      maturity), all positive
+	 * @return the index of the bond, to be given to setPrice
+	 */
+	public int addBond(double price, double[] paymentTimes, double[] amounts) {
+		if (paymentTimes.length == 0 || paymentTimes.length != amounts.length) {
+			throw new IllegalArgumentException("One amount for every payment time is needed");
+		}
+		for (int flowIndex = 0; flowIndex < paymentTimes.length; flowIndex++) {
+			if (!(paymentTimes[flowIndex] > (flowIndex == 0 ? 0.0 : paymentTimes[flowIndex - 1]))) {
+				throw new IllegalArgumentException("The payment times must be positive and increasing");
+			}
+			if (!(amounts[flowIndex] > 0)) {
+				throw new IllegalArgumentException("The cash flows must be positive");
+			}
+		}
+		checkPrice(price);
+		paymentTimesOfBonds.add(paymentTimes.clone());
+		amountsOfBonds.add(amounts.clone());
+		prices.add(price);
+		isUniversePrepared = false;
+		return prices.size() - 1;
+	}
+
+	/**
+	 * It changes the price of a bond, for example when a new quote arrives: the
+	 * cash flows stay the same, so that the next bootstrap does not need to sort
+	 * the universe again.
+	 *
+	 * @param bondIndex, the index returned by addBond
+	 * @param price,     the new price, positive
+	 */
+	public void setPrice(int bondIndex, double price) {
+		checkPrice(price);
+		prices.set(bondIndex, price);
+	}
+
+	/*
+	 * A price which is not positive, or which is not a finite number, would give
+	 * the logarithm of a non positive number in the Newton's method, and then a NaN
+	 * discount factor in the curve.
+	 */
+	private static void checkPrice(double price) {
+		if (!(price > 0) || Double.isInfinite(price)) {
+			throw new IllegalArgumentException("The price " + price + " of the bond must be positive and finite");
+		}
+	}
+
+	/*
+	 * It sorts the bonds by maturity and merges their cash flow dates.
+	 */
+	private void prepareUniverse() {
+		final int numberOfBonds = prices.size();
+		final Integer[] order = new Integer[numberOfBonds];
+		int totalNumberOfCashFlows = 0;
+		for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+			order[bondIndex] = bondIndex;
+			totalNumberOfCashFlows += paymentTimesOfBonds.get(bondIndex).length;
+		}
+		Arrays.sort(order, (first, second) -> Double.compare(getMaturityOfBond(first), getMaturityOfBond(second)));
+
+		sortedBondIndices = new int[numberOfBonds];
+		maturities = new double[numberOfBonds];
+		for (int position = 0; position < numberOfBonds; position++) {
+			sortedBondIndices[position] = order[position];
+			maturities[position] = getMaturityOfBond(order[position]);
+			if (position > 0 && maturities[position] == maturities[position - 1]) {
+				throw new IllegalArgumentException("Two bonds have the same maturity " + maturities[position]);
+			}
+		}
+
+		// all the cash flow dates, sorted and without repetitions
+		final double[] allDates = new double[totalNumberOfCashFlows];
+		int position = 0;
+		for (final double[] paymentTimes : paymentTimesOfBonds) {
+			System.arraycopy(paymentTimes, 0, allDates, position, paymentTimes.length);
+			position += paymentTimes.length;
+		}
+		Arrays.sort(allDates);
+		int numberOfDates = 0;
+		for (int dateIndex = 0; dateIndex < allDates.length; dateIndex++) {
+			if (dateIndex == 0 || allDates[dateIndex] != allDates[numberOfDates - 1]) {
+				allDates[numberOfDates++] = allDates[dateIndex];
+			}
+		}
+		cashFlowDates = Arrays.copyOf(allDates, numberOfDates);
+
+		dateIndicesOfBonds = new int[numberOfBonds][];
+		for (int sortedIndex = 0; sortedIndex < numberOfBonds; sortedIndex++) {
+			final double[] paymentTimes = paymentTimesOfBonds.get(sortedBondIndices[sortedIndex]);
+			dateIndicesOfBonds[sortedIndex] = new int[paymentTimes.length];
+			for (int flowIndex = 0; flowIndex < paymentTimes.length; flowIndex++) {
+				dateIndicesOfBonds[sortedIndex][flowIndex] = Arrays.binarySearch(cashFlowDates, paymentTimes[flowIndex]);
+			}
+		}
+
+		pillarIndicesOfDates = new int[numberOfDates];
+		int pillarIndex = 0;
+		for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+			while (maturities[pillarIndex] < cashFlowDates[dateIndex]) {
+				pillarIndex++;
+			}
+			pillarIndicesOfDates[dateIndex] = pillarIndex;
+		}
+		isUniversePrepared = true;
+	}
+
+	private double getMaturityOfBond(int bondIndex) {
+		final double[] paymentTimes = paymentTimesOfBonds.get(bondIndex);
+		return paymentTimes[paymentTimes.length - 1];
+	}
+
+	/**
+	 * It bootstraps the curve from the present prices of the universe.
+	 *
+	 * @return the curve, whose dates are the maturities of the bonds
+	 */
+	public LogLinearDiscountCurve bootstrap() {
+		if (prices.isEmpty()) {
+			throw new IllegalStateException("No bond has been given");
+		}
+		if (!isUniversePrepared) {
+			prepareUniverse();
+		}
+		final int numberOfBonds = maturities.length;
+		final double[] logDiscountFactorsAtMaturities = new double[numberOfBonds];
+		final double[] discountFactorsAtDates = new double[cashFlowDates.length];
+
+		// the dates whose discount factors are final, i.e., the dates not after the last solved maturity
+		int numberOfKnownDates = 0;
+		double previousMaturity = 0.0;
+		double previousLogDiscountFactor = 0.0;// log P(0;0)
+
+		for (int sortedIndex = 0; sortedIndex < numberOfBonds; sortedIndex++) {
+			final int bondIndex = sortedBondIndices[sortedIndex];
+			final double[] amounts = amountsOfBonds.get(bondIndex);
+			final int[] dateIndices = dateIndicesOfBonds[sortedIndex];
+			final double maturity = maturities[sortedIndex];
+			final double timeStep = maturity - previousMaturity;
+
+			/*
+			 * The cash flows paid until the previous maturity have known value. The ones
+			 * paid after it have value c_j exp((1-w_j)log P(T_{k-1};0)+w_j y), where y is the
+			 * unknown log P(T_k;0) and w_j = (t_j-T_{k-1})/(T_k-T_{k-1}).
+			 */
+			double knownValue = 0.0;
+			int firstUnknownFlow = 0;
+			while (firstUnknownFlow < amounts.length && dateIndices[firstUnknownFlow] < numberOfKnownDates) {
+				knownValue += amounts[firstUnknownFlow] * discountFactorsAtDates[dateIndices[firstUnknownFlow]];
+				firstUnknownFlow++;
+			}
+			final double valueToMatch = prices.get(bondIndex) - knownValue;
+			if (!(valueToMatch > 0)) {
+				throw new IllegalArgumentException("The price of the bond with maturity " + maturity
+						+ " is not bigger than the value of its cash flows before " + previousMaturity);
+			}
+
+			/*
+			 * Newton's method on y for f(y) = \sum_j c_j exp((1-w_j)a+w_j y) - valueToMatch,
+			 * which is increasing and convex: after at most one step the iterations are on
+			 * the right of the root, and from there they decrease to it. We start from the
+			 * bigger between the value for which the forward rate between T_{k-1} and T_k
+			 * is zero and the one for which all the unknown discount factors are equal.
+			 */
+			double logDiscountFactor = Math.max(previousLogDiscountFactor,
+					Math.log(valueToMatch / sumOfAmounts(amounts, firstUnknownFlow)));
+			boolean hasConverged = false;
+			for (int iteration = 0; iteration < MAXIMUM_NUMBER_OF_NEWTON_ITERATIONS; iteration++) {
+				double value = 0.0;
+				double derivative = 0.0;
+				for (int flowIndex = firstUnknownFlow; flowIndex < amounts.length; flowIndex++) {
+					final double weight = (cashFlowDates[dateIndices[flowIndex]] - previousMaturity) / timeStep;
+					final double flowValue = amounts[flowIndex]
+							* Math.exp((1 - weight) * previousLogDiscountFactor + weight * logDiscountFactor);
+					value += flowValue;
+					derivative += weight * flowValue;
+				}
+				final double step = (value - valueToMatch) / derivative;
+				logDiscountFactor -= step;
+				if (Math.abs(step) < NEWTON_TOLERANCE) {
+					hasConverged = true;
+					break;
+				}
+			}
+			if (!hasConverged) {
+				throw new IllegalStateException("The Newton's method for the bond with maturity " + maturity
+						+ " has not converged after " + MAXIMUM_NUMBER_OF_NEWTON_ITERATIONS + " iterations");
+			}
+			logDiscountFactorsAtMaturities[sortedIndex] = logDiscountFactor;
+
+			// now all the dates until this maturity have their final discount factor
+			while (numberOfKnownDates < cashFlowDates.length
+					&& pillarIndicesOfDates[numberOfKnownDates] == sortedIndex) {
+				final double weight = (cashFlowDates[numberOfKnownDates] - previousMaturity) / timeStep;
+				discountFactorsAtDates[numberOfKnownDates] = Math
+						.exp((1 - weight) * previousLogDiscountFactor + weight * logDiscountFactor);
+				numberOfKnownDates++;
+			}
+			previousMaturity = maturity;
+			previousLogDiscountFactor = logDiscountFactor;
+		}
+
+		final double[] discountFactorsAtMaturities = new double[numberOfBonds];
+		for (int sortedIndex = 0; sortedIndex < numberOfBonds; sortedIndex++) {
+			discountFactorsAtMaturities[sortedIndex] = Math.exp(logDiscountFactorsAtMaturities[sortedIndex]);
+		}
+		return new LogLinearDiscountCurve(maturities.clone(), discountFactorsAtMaturities);
+	}
+
+	private static double sumOfAmounts(double[] amounts, int firstFlow) {
+		double sum = 0.0;
+		for (int flowIndex = firstFlow; flowIndex < amounts.length; flowIndex++) {
+			sum += amounts[flowIndex];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the number of bonds in the universe
+	 */
+	public int getNumberOfBonds() {
+		return prices.size();
+	}
+}
@@ -0,0 +1,213 @@
+package com.andreamazzon.handout2;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class represents a discount curve given by zero coupon bonds
+ * P(T_1;0),...,P(T_n;0) at the dates of a tenure structure, which gives the
+ * discount factor P(t;0) at any time t by log-linear interpolation: between
+ * two dates T_i and T_{i+1}, the logarithm of P(t;0) is linear in t, i.e., the
+ * instantaneous forward rate is constant. Before T_1 we interpolate with
+ * P(0;0)=1, after T_n we extend the last forward rate.
+ * The curve is built to value many cash flows at many dates: the intercept
+ * and the slope of log P(t;0) in every interval are computed once in the
+ * constructor, so that every discount factor costs only one exponential, and
+ * the interval of a time is found in constant time by dividing the time
+ * horizon in buckets of equal length and storing, for every bucket, the
+ * first interval intersecting it. For tenure structures with nearly constant
+ * time steps, one bucket intersects at most a few intervals.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class LogLinearDiscountCurve {
+
+	// number of buckets for every interval of the tenure structure
+	private static final int BUCKETS_PER_INTERVAL = 4;
+
+	// the dates 0=T_0,T_1,...,T_n: T_0 is added if T_1 > 0
+	private final double[] nodeTimes;
+	private final double[] nodeBonds;
+	private final int numberOfIntervals;
+
+	// log P(t;0) = intercepts[i] + slopes[i] * t for T_i <= t <= T_{i+1}
+	private final double[] intercepts;
+	private final double[] slopes;
+
+	private final double inverseBucketLength;
+	private final int[] firstIntervalOfBucket;
+
+	/**
+	 * It constructs the curve from the bonds at the dates of a tenure structure.
+	 *
+	 * @param tenureStructure, the dates T_1,...,T_n, increasing and non negative
+	 * @param bonds,           the bonds P(T_1;0),...,P(T_n;0), all positive
+	 */
+	public LogLinearDiscountCurve(TimeDiscretization tenureStructure, double[] bonds) {
+		this(tenureStructure.getAsDoubleArray(), bonds);
+	}
+
+	/**
+	 * It constructs the curve from the bonds of a curve snapshot.
+	 *
+	 * @param snapshot, the snapshot
+	 */
+	public LogLinearDiscountCurve(CurveSnapshot snapshot) {
+		this(snapshot.getTenureStructure().getAsDoubleArray(), snapshot.getBonds());
+	}
+
+	/**
+	 * It constructs the curve from the bonds at the given dates.
+	 *
+	 * @param times, the dates T_1,...,T_n, increasing and non negative
+	 * @param bonds, the bonds P(T_1;0),...,P(T_n;0), all positive
+	 */
+	public LogLinearDiscountCurve(double[] times, double[] bonds) {
+		if (times.length == 0 || times.length > bonds.length) {
+			throw new IllegalArgumentException("One bond for every date is needed");
+		}
+		if (times[0] < 0) {
+			throw new IllegalArgumentException("The dates must be non negative");
+		}
+		final int offset = times[0] > 0 ? 1 : 0;
+		final int numberOfNodes = times.length + offset;
+		nodeTimes = new double[numberOfNodes];
+		nodeBonds = new double[numberOfNodes];
+		nodeTimes[0] = 0.0;
+		nodeBonds[0] = 1.0;
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			if (!(bonds[timeIndex] > 0)) {
+				throw new IllegalArgumentException("The bonds must be positive");
+			}
+			nodeTimes[timeIndex + offset] = times[timeIndex];
+			nodeBonds[timeIndex + offset] = bonds[timeIndex];
+		}
+		// with only one node at time zero the curve is flat at one
+		numberOfIntervals = Math.max(numberOfNodes - 1, 1);
+
+		intercepts = new double[numberOfIntervals];
+		slopes = new double[numberOfIntervals];
+		for (int intervalIndex = 0; intervalIndex < numberOfNodes - 1; intervalIndex++) {
+			final double timeStep = nodeTimes[intervalIndex + 1] - nodeTimes[intervalIndex];
+			if (!(timeStep > 0)) {
+				throw new IllegalArgumentException("The dates must be strictly increasing");
+			}
+			final double leftLogBond = Math.log(nodeBonds[intervalIndex]);
+			final double rightLogBond = Math.log(nodeBonds[intervalIndex + 1]);
+			slopes[intervalIndex] = (rightLogBond - leftLogBond) / timeStep;
+			intercepts[intervalIndex] = leftLogBond - slopes[intervalIndex] * nodeTimes[intervalIndex];
+		}
+
+		/*
+		 * Bucket b is [T_0 + b * h, T_0 + (b+1) * h), with h = (T_n - T_0) / number of
+		 * buckets: we store the interval containing its left end.
+		 */
+		final int numberOfBuckets = BUCKETS_PER_INTERVAL * numberOfIntervals;
+		final double horizon = nodeTimes[numberOfNodes - 1] - nodeTimes[0];
+		inverseBucketLength = horizon > 0 ? numberOfBuckets / horizon : 0.0;
+		firstIntervalOfBucket = new int[numberOfBuckets];
+		int intervalIndex = 0;
+		for (int bucketIndex = 0; bucketIndex < numberOfBuckets; bucketIndex++) {
+			final double bucketStart = nodeTimes[0] + bucketIndex * horizon / numberOfBuckets;
+			while (intervalIndex < numberOfIntervals - 1 && bucketStart >= nodeTimes[intervalIndex + 1]) {
+				intervalIndex++;
+			}
+			firstIntervalOfBucket[bucketIndex] = intervalIndex;
+		}
+	}
+
+	/*
+	 * It returns the index i of the interval [T_i,T_{i+1}) containing the time,
+	 * with the first and the last interval extended to -infinity and +infinity.
+	 */
+	private int getIntervalIndex(double time) {
+		final int bucketIndex = (int) ((time - nodeTimes[0]) * inverseBucketLength);
+		if (bucketIndex <= 0) {
+			// also times before T_0 (the cast rounds towards zero)
+			return advance(0, time);
+		}
+		if (bucketIndex >= firstIntervalOfBucket.length) {
+			return numberOfIntervals - 1;
+		}
+		return advance(firstIntervalOfBucket[bucketIndex], time);
+	}
+
+	private int advance(int intervalIndex, double time) {
+		// the step back can only be needed because of rounding at the end of a bucket
+		while (intervalIndex > 0 && time < nodeTimes[intervalIndex]) {
+			intervalIndex--;
+		}
+		while (intervalIndex < numberOfIntervals - 1 && time >= nodeTimes[intervalIndex + 1]) {
+			intervalIndex++;
+		}
+		return intervalIndex;
+	}
+
+	/**
+	 * It returns the discount factor at a given time.
+	 *
+	 * @param time, the time
+	 * @return P(time;0)
+	 */
+	public double getDiscountFactor(double time) {
+		final int intervalIndex = getIntervalIndex(time);
+		return Math.exp(intercepts[intervalIndex] + slopes[intervalIndex] * time);
+	}
+
+	/**
+	 * It computes the discount factors at many times. The computation is split in
+	 * two loops: the first one finds the intervals and computes the logarithms of
+	 * the discount factors, the second one only computes exponentials, so that
+	 * both are simple loops over arrays.
+	 *
+	 * @param times,           the times
+	 * @param discountFactors, the array where the discount factors P(times[k];0)
+	 *                         are written. It can be the same array as times
+	 */
+	public void discountFactors(double[] times, double[] discountFactors) {
+		if (discountFactors.length < times.length) {
+			throw new IllegalArgumentException("The output array is too short");
+		}
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			final double time = times[timeIndex];
+			final int intervalIndex = getIntervalIndex(time);
+			discountFactors[timeIndex] = intercepts[intervalIndex] + slopes[intervalIndex] * time;
+		}
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			discountFactors[timeIndex] = Math.exp(discountFactors[timeIndex]);
+		}
+	}
+
+	/**
+	 * It returns the index i of the interval [T_i,T_{i+1}] of the dates of the
+	 * curve used to interpolate at a given time, where T_0 = 0 is the first date
+	 * returned by getNodeTimes.
+	 *
+	 * @param time, the time
+	 * @return the index of the interval
+	 */
+	public int getInterpolationInterval(double time) {
+		return getIntervalIndex(time);
+	}
+
+	/**
+	 * @return a copy of the dates of the curve, including 0
+	 */
+	public double[] getNodeTimes() {
+		return nodeTimes.clone();
+	}
+
+	/**
+	 * @return a copy of the discount factors at the dates returned by getNodeTimes
+	 */
+	public double[] getNodeDiscountFactors() {
+		return nodeBonds.clone();
+	}
+
+	/**
+	 * @return the number of dates of the curve, including 0
+	 */
+	public int getNumberOfNodes() {
+		return nodeTimes.length;
+	}
+}
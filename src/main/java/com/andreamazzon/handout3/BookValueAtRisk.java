@@ -0,0 +1,72 @@
+package com.andreamazzon.handout3;
+
+import java.util.Arrays;
+
+/**
+ * This class receives the profits and losses of a book of swaps from
+ * HistoricalScenarioRevaluation and computes empirical quantiles of the profit
+ * and loss of the whole book, i.e., the historical Value at Risk. Only one
+ * number per scenario is stored: the profits and losses of the single swaps
+ * are not kept.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class BookValueAtRisk implements ScenarioPnLConsumer {
+
+	/*
+	 * Every scenario writes in its own element, so that different threads never
+	 * write in the same place
+	 */
+	private final double[] bookPnLs;
+
+	/**
+	 * It builds an object to compute the quantiles of the profit and loss of a
+	 * book over a given number of scenarios.
+	 *
+	 * @param numberOfScenarios, the number of scenarios
+	 */
+	public BookValueAtRisk(int numberOfScenarios) {
+		this.bookPnLs = new double[numberOfScenarios];
+	}
+
+	@Override
+	public void accept(int scenarioIndex, double[] swapPnLs, double bookPnL) {
+		bookPnLs[scenarioIndex] = bookPnL;
+	}
+
+	/**
+	 * It returns the empirical quantile of the profit and loss of the book at a
+	 * given level. It must be called after all the scenarios have been revalued.
+	 *
+	 * @param level, the level of the quantile, in (0,1)
+	 * @return the quantile
+	 */
+	public double getQuantile(double level) {
+		final double[] sortedPnLs = bookPnLs.clone();
+		Arrays.sort(sortedPnLs);
+		final int quantileIndex = (int) Math.ceil(level * sortedPnLs.length) - 1;
+		return sortedPnLs[Math.max(0, Math.min(quantileIndex, sortedPnLs.length - 1))];
+	}
+
+	/**
+	 * It returns the Value at Risk of the book at a given confidence level, i.e.,
+	 * the opposite of the quantile of the profit and loss at level 1 - confidence.
+	 *
+	 * @param confidenceLevel, for example 0.99
+	 * @return the Value at Risk, as a positive number when there is a loss
+	 */
+	public double getValueAtRisk(double confidenceLevel) {
+		return -getQuantile(1 - confidenceLevel);
+	}
+
+	/**
+	 * It returns the profit and loss of the book for a given scenario
+	 *
+	 * @param scenarioIndex, the index of the scenario
+	 * @return the profit and loss of the book
+	 */
+	public double getBookPnL(int scenarioIndex) {
+		return bookPnLs[scenarioIndex];
+	}
+}
@@ -1,7 +1,11 @@
 package com.andreamazzon.handout3;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 
+import com.andreamazzon.handout2.CurveSnapshot;
+
 import net.finmath.rootfinder.BisectionSearch;
 
 /**
@@ -21,6 +25,13 @@ import net.finmath.rootfinder.BisectionSearch;
 public class BootstrapFromParSwapRate {
 
 	private final ArrayList<Double> computedBonds = new ArrayList<Double>();
+	/*
+	 * The par swap rates given so far, and for each of them if it has been used to
+	 * compute one bond or two bonds: we need them to walk the bootstrap backwards
+	 * in getQuoteSensitivities
+	 */
+	private final ArrayList<Double> givenSwapRates = new ArrayList<Double>();
+	private final ArrayList<Boolean> isTwoBondsStep = new ArrayList<Boolean>();
 	/*
 	 * we use it in order to compute the bootstrapped bonds. We want it to be
 	 * updated every time we get a new bond (or two new bonds)
@@ -54,6 +65,8 @@ public class BootstrapFromParSwapRate {
 		sumOfBonds += newBond;// note: the sum is updated!
 		computedBonds.add(newBond);
 		computedBondsSize++;
+		givenSwapRates.add(parSwapRate);
+		isTwoBondsStep.add(false);
 	}
 
 	/**
@@ -111,6 +124,8 @@ public class BootstrapFromParSwapRate {
 		computedBonds.add(interpolatedBond);
 		computedBonds.add(computedBond);
 		computedBondsSize += 2;
+		givenSwapRates.add(swapRate);
+		isTwoBondsStep.add(true);
 	}
 
 	/*
@@ -142,6 +157,100 @@ public class BootstrapFromParSwapRate {
 				- swapRate;
 	}
 
+	/**
+	 * It computes and returns the sensitivities of a quantity with respect to the
+	 * quotes the curve has been bootstrapped from, given its sensitivities with
+	 * respect to the bootstrapped bonds. The bootstrap recursion is walked
+	 * backwards once (adjoint differentiation), so that the cost is proportional to
+	 * the number of bonds, and not to the number of bonds times the number of
+	 * quotes as when bumping every quote. For the bonds computed by
+	 * nextTwoBondsFromParSwapRate, the derivatives of the bond found by the root
+	 * finder are got by the implicit function theorem.
+	 *
+	 * @param bondSensitivities, the derivatives of the quantity with respect to
+	 *                           the bonds returned by getBonds(), in the same
+	 *                           order
+	 * @return the derivatives with respect to the first bond, to the second bond
+	 *         and to the par swap rates, in the order they have been given
+	 */
+	public double[] getQuoteSensitivities(double[] bondSensitivities) {
+		if (bondSensitivities.length != computedBondsSize) {
+			throw new IllegalArgumentException("One sensitivity for every bootstrapped bond is needed");
+		}
+		final int numberOfSwapRates = givenSwapRates.size();
+
+		// sumsOfBonds[k] = P(T_2;0)+...+P(T_k;0), i.e., the value of sumOfBonds before computing P(T_{k+1};0)
+		final double[] sumsOfBonds = new double[computedBondsSize];
+		for (int bondIndex = 2; bondIndex < computedBondsSize; bondIndex++) {
+			sumsOfBonds[bondIndex] = sumsOfBonds[bondIndex - 1] + computedBonds.get(bondIndex - 1);
+		}
+		// the index of the (last) bond computed from every par swap rate
+		final int[] lastBondIndices = new int[numberOfSwapRates];
+		int bondIndex = 1;
+		for (int swapRateIndex = 0; swapRateIndex < numberOfSwapRates; swapRateIndex++) {
+			bondIndex += isTwoBondsStep.get(swapRateIndex) ? 2 : 1;
+			lastBondIndices[swapRateIndex] = bondIndex;
+		}
+
+		final double[] bondAdjoints = bondSensitivities.clone();
+		final double[] quoteSensitivities = new double[numberOfSwapRates + 2];
+		/*
+		 * Every bond from the second on enters the sums used to compute all the bonds
+		 * that follow: instead of distributing the adjoint of every sum to all its
+		 * terms, we keep the sum of these adjoints while going backwards
+		 */
+		double sumOfBondsAdjoint = 0.0;
+		double firstBondAdjoint = 0.0;
+
+		for (int swapRateIndex = numberOfSwapRates - 1; swapRateIndex >= 0; swapRateIndex--) {
+			final double swapRate = givenSwapRates.get(swapRateIndex);
+			final int newBondIndex = lastBondIndices[swapRateIndex];
+			final double newBond = computedBonds.get(newBondIndex);
+
+			if (!isTwoBondsStep.get(swapRateIndex)) {
+				// P(T_k) = (P(T_1) - Delta*S*sum)/(1 + Delta*S)
+				final double sum = sumsOfBonds[newBondIndex];
+				final double denominator = 1 + swapRate * yearFraction;
+				final double newBondAdjoint = bondAdjoints[newBondIndex] + sumOfBondsAdjoint;
+				quoteSensitivities[swapRateIndex + 2] = -newBondAdjoint * yearFraction * (sum + newBond)
+						/ denominator;
+				firstBondAdjoint += newBondAdjoint / denominator;
+				sumOfBondsAdjoint -= newBondAdjoint * yearFraction * swapRate / denominator;
+			} else {
+				/*
+				 * Here P(T_k) = x solves g(x) = P(T_1) - x - Delta*S*(sum + sqrt(P(T_{k-2})x) +
+				 * x) = 0, and P(T_{k-1}) = sqrt(P(T_{k-2})x) by interpolation. For every
+				 * argument y of g we have dx/dy = -(dg/dy)/(dg/dx)
+				 */
+				final double sum = sumsOfBonds[newBondIndex - 1];
+				final double lastBond = computedBonds.get(newBondIndex - 2);
+				final double interpolatedBond = computedBonds.get(newBondIndex - 1);
+
+				final double interpolatedBondAdjoint = bondAdjoints[newBondIndex - 1] + sumOfBondsAdjoint;
+				final double newBondAdjoint = bondAdjoints[newBondIndex] + sumOfBondsAdjoint
+						+ interpolatedBondAdjoint * 0.5 * interpolatedBond / newBond;
+				bondAdjoints[newBondIndex - 2] += interpolatedBondAdjoint * 0.5 * interpolatedBond / lastBond;
+
+				final double derivativeWithRespectToNewBond = -1
+						- swapRate * yearFraction * (1 + 0.5 * interpolatedBond / newBond);
+				final double derivativeWithRespectToSwapRate = -yearFraction * (sum + interpolatedBond + newBond);
+				final double derivativeWithRespectToSum = -swapRate * yearFraction;
+				final double derivativeWithRespectToLastBond = -swapRate * yearFraction * 0.5 * interpolatedBond
+						/ lastBond;
+
+				final double scaledAdjoint = -newBondAdjoint / derivativeWithRespectToNewBond;
+				quoteSensitivities[swapRateIndex + 2] = scaledAdjoint * derivativeWithRespectToSwapRate;
+				sumOfBondsAdjoint += scaledAdjoint * derivativeWithRespectToSum;
+				bondAdjoints[newBondIndex - 2] += scaledAdjoint * derivativeWithRespectToLastBond;
+				firstBondAdjoint += scaledAdjoint;// dg/dP(T_1) = 1
+			}
+		}
+		// P(T_1) does not enter the sums, P(T_2) does
+		quoteSensitivities[0] = bondAdjoints[0] + firstBondAdjoint;
+		quoteSensitivities[1] = bondAdjoints[1] + sumOfBondsAdjoint;
+		return quoteSensitivities;
+	}
+
 	/**
 	 * It returns the values of the bonds which have been bootstrapped up to now
 	 *
@@ -150,4 +259,17 @@ public class BootstrapFromParSwapRate {
 	public ArrayList<Double> getBonds() {
 		return computedBonds;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * It writes the bonds which have been bootstrapped up to now in a binary
+	 * snapshot file, together with their tenure structure and the corresponding
+	 * Libors, so that other processes can map the curve without bootstrapping it
+	 * again: see CurveSnapshot.
+	 *
+	 * @param path, the path of the file
+	 * @throws IOException
+	 */
+	public void writeSnapshot(Path path) throws IOException {
+		CurveSnapshot.write(path, yearFraction, computedBonds);
+	}
+}
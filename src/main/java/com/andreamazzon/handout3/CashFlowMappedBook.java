@@ -0,0 +1,214 @@
+package com.andreamazzon.handout3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.andreamazzon.handout2.LogLinearDiscountCurve;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class represents a book of trades whose cash flows are mapped once on
+ * the dates of a discount curve, so that the whole book is revalued on a new
+ * curve by one scalar product of length n, instead of walking the cash flows
+ * of every trade again.
+ * A cash flow c paid at time t, with T_i <= t <= T_{i+1} and
+ * log P(t;0) = (1-w) log P(T_i;0) + w log P(T_{i+1};0), is replaced by the
+ * amounts c(1-w)P(t;0)/P(T_i;0) paid at T_i and c w P(t;0)/P(T_{i+1};0) paid
+ * at T_{i+1}, computed with the curve given in the constructor. The mapped
+ * cash flows have the same value and the same sensitivities with respect to
+ * P(T_i;0) and P(T_{i+1};0) as the original one under log-linear
+ * interpolation: the value of the book on a new curve is then exact for cash
+ * flows paid at the dates of the curve (as all the cash flows of the swaps of
+ * SwapWithoutFinmath), and has an error of second order in the move of the
+ * curve for the others. The mapped amounts of all the trades are summed in one
+ * bucket vector, which is updated when a trade is added or removed.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CashFlowMappedBook {
+
+	private final LogLinearDiscountCurve mappingCurve;
+	private final double[] nodeTimes;
+	private final double[] nodeDiscountFactors;
+
+	// the sum of the amounts mapped on the dates of the curve by all the trades
+	private final double[] bucketAmounts;
+
+	/*
+	 * The amounts mapped by every trade, stored to remove the trade from the
+	 * bucket vector: every cash flow is mapped on two dates, whose indices are
+	 * stored together with the amounts, so that the memory needed by a trade does
+	 * not depend on the length of the curve
+	 */
+	private final Map<Integer, MappedTrade> mappedTrades = new HashMap<Integer, MappedTrade>();
+
+	private static class MappedTrade {
+		private final int[] nodeIndices;
+		private final double[] amounts;
+
+		MappedTrade(int numberOfCashFlows) {
+			nodeIndices = new int[2 * numberOfCashFlows];
+			amounts = new double[2 * numberOfCashFlows];
+		}
+	}
+
+	/**
+	 * It builds an empty book whose cash flows will be mapped on the dates of the
+	 * given curve (including time zero).
+	 *
+	 * @param mappingCurve, the curve used to compute the amounts mapped on its dates
+	 */
+	public CashFlowMappedBook(LogLinearDiscountCurve mappingCurve) {
+		if (mappingCurve.getNumberOfNodes() < 2) {
+			throw new IllegalArgumentException("The curve must have at least one date after time zero");
+		}
+		this.mappingCurve = mappingCurve;
+		this.nodeTimes = mappingCurve.getNodeTimes();
+		this.nodeDiscountFactors = mappingCurve.getNodeDiscountFactors();
+		this.bucketAmounts = new double[nodeTimes.length];
+	}
+
+	/**
+	 * It adds a trade given by its cash flows to the book.
+	 *
+	 * @param tradeId,      the identifier of the trade, which must not be already
+	 *                      in the book
+	 * @param paymentTimes, the times when the cash flows are paid
+	 * @param amounts,      the cash flows: positive if received, negative if paid
+	 */
+	public void addCashFlows(int tradeId, double[] paymentTimes, double[] amounts) {
+		if (paymentTimes.length != amounts.length) {
+			throw new IllegalArgumentException("One amount for every payment time is needed");
+		}
+		if (mappedTrades.containsKey(tradeId)) {
+			throw new IllegalArgumentException("Trade " + tradeId + " is already in the book");
+		}
+		final MappedTrade mappedTrade = new MappedTrade(paymentTimes.length);
+		for (int flowIndex = 0; flowIndex < paymentTimes.length; flowIndex++) {
+			mapCashFlow(paymentTimes[flowIndex], amounts[flowIndex], mappedTrade, 2 * flowIndex);
+		}
+		for (int index = 0; index < mappedTrade.nodeIndices.length; index++) {
+			bucketAmounts[mappedTrade.nodeIndices[index]] += mappedTrade.amounts[index];
+		}
+		mappedTrades.put(tradeId, mappedTrade);
+	}
+
+	/**
+	 * It adds to the book a swap written on a tenure structure, with the same
+	 * conventions as SwapBookAdjointRisk: the swap with indices (s, e) receives
+	 * N at T_{s+1}, pays N at T_{e+1} (this is the floating leg) and pays
+	 * N K (T_{i+2}-T_{i+1}) at T_{i+2} for i = s,...,e-1.
+	 *
+	 * @param tradeId,    the identifier of the trade, which must not be already in
+	 *                    the book
+	 * @param swapDates,  the tenure structure T_1,...,T_n
+	 * @param startIndex, the index s of the start date T_{s+1}
+	 * @param endIndex,   the index e of the end date T_{e+1}
+	 * @param fixedRate,  the fixed rate K
+	 * @param notional,   the notional N: negative if we receive the fixed legs
+	 */
+	public void addSwap(int tradeId, TimeDiscretization swapDates, int startIndex, int endIndex, double fixedRate,
+			double notional) {
+		if (startIndex < 0 || startIndex >= endIndex || endIndex >= swapDates.getNumberOfTimes()) {
+			throw new IllegalArgumentException("The swap is not defined on the tenure structure");
+		}
+		final int numberOfFixedFlows = endIndex - startIndex;
+		final double[] paymentTimes = new double[numberOfFixedFlows + 2];
+		final double[] amounts = new double[numberOfFixedFlows + 2];
+		paymentTimes[0] = swapDates.getTime(startIndex);
+		amounts[0] = notional;
+		paymentTimes[1] = swapDates.getTime(endIndex);
+		amounts[1] = -notional;
+		for (int periodIndex = startIndex; periodIndex < endIndex; periodIndex++) {
+			paymentTimes[periodIndex - startIndex + 2] = swapDates.getTime(periodIndex + 1);
+			amounts[periodIndex - startIndex + 2] = -notional * fixedRate * swapDates.getTimeStep(periodIndex);
+		}
+		addCashFlows(tradeId, paymentTimes, amounts);
+	}
+
+	/**
+	 * It removes a trade from the book.
+	 *
+	 * @param tradeId, the identifier of the trade
+	 * @return true if the trade was in the book
+	 */
+	public boolean removeTrade(int tradeId) {
+		final MappedTrade mappedTrade = mappedTrades.remove(tradeId);
+		if (mappedTrade == null) {
+			return false;
+		}
+		for (int index = 0; index < mappedTrade.nodeIndices.length; index++) {
+			bucketAmounts[mappedTrade.nodeIndices[index]] -= mappedTrade.amounts[index];
+		}
+		return true;
+	}
+
+	/*
+	 * It writes in the mapped trade, at the given position and at the next one,
+	 * the amounts which replace the cash flow at the two dates of the interval
+	 * used to interpolate at the payment time.
+	 */
+	private void mapCashFlow(double paymentTime, double amount, MappedTrade mappedTrade, int position) {
+		final int intervalIndex = mappingCurve.getInterpolationInterval(paymentTime);
+		final double discountFactor = mappingCurve.getDiscountFactor(paymentTime);
+		// the weight of T_{i+1} in the interpolation of log P(t;0): also outside [0,T_n]
+		final double weight = (paymentTime - nodeTimes[intervalIndex])
+				/ (nodeTimes[intervalIndex + 1] - nodeTimes[intervalIndex]);
+		final double value = amount * discountFactor;
+		mappedTrade.nodeIndices[position] = intervalIndex;
+		mappedTrade.amounts[position] = (1 - weight) * value / nodeDiscountFactors[intervalIndex];
+		mappedTrade.nodeIndices[position + 1] = intervalIndex + 1;
+		mappedTrade.amounts[position + 1] = weight * value / nodeDiscountFactors[intervalIndex + 1];
+	}
+
+	/**
+	 * It returns the value of the book on a curve with the same dates as the
+	 * mapping curve, as the scalar product of the bucket vector with the discount
+	 * factors.
+	 *
+	 * @param discountFactors, the discount factors at the dates of the mapping
+	 *                         curve, starting from the one at time zero
+	 * @return the value of the book
+	 */
+	public double getBookValue(double[] discountFactors) {
+		if (discountFactors.length != bucketAmounts.length) {
+			throw new IllegalArgumentException("The curve must have " + bucketAmounts.length + " dates");
+		}
+		double bookValue = 0.0;
+		for (int nodeIndex = 0; nodeIndex < bucketAmounts.length; nodeIndex++) {
+			bookValue += bucketAmounts[nodeIndex] * discountFactors[nodeIndex];
+		}
+		return bookValue;
+	}
+
+	/**
+	 * It returns the value of the book on a curve with the same dates as the
+	 * mapping curve.
+	 *
+	 * @param curve, the curve
+	 * @return the value of the book
+	 */
+	public double getBookValue(LogLinearDiscountCurve curve) {
+		return getBookValue(curve.getNodeDiscountFactors());
+	}
+
+	/**
+	 * It returns the amounts mapped by all the trades on the dates of the mapping
+	 * curve, which are also the sensitivities of the value of the book with
+	 * respect to the discount factors at these dates.
+	 *
+	 * @return a copy of the bucket vector
+	 */
+	public double[] getBucketAmounts() {
+		return bucketAmounts.clone();
+	}
+
+	/**
+	 * @return the number of trades in the book
+	 */
+	public int getNumberOfTrades() {
+		return mappedTrades.size();
+	}
+}
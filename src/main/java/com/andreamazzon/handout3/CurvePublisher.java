@@ -0,0 +1,113 @@
+package com.andreamazzon.handout3;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
+
+import com.andreamazzon.handout2.Bootstrap;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class publishes the curves rebuilt by a feed thread to the threads which
+ * price on them. Every rebuild produces a new immutable object of type
+ * VersionedCurve, with a version number bigger than the one of the previous
+ * curve, which replaces the previous curve atomically. The pricing threads
+ * never lock: they get the curve published at the moment of the call, which
+ * stays consistent while they use it even if a new curve is published in the
+ * meantime, and they can tag every value they compute with its version.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CurvePublisher {
+
+	// null until the first curve is published
+	private final AtomicReference<VersionedCurve> currentCurve = new AtomicReference<VersionedCurve>();
+
+	/**
+	 * It publishes a new curve, whose version is the one of the present curve plus
+	 * one. The bonds are copied, so that the caller can go on modifying its array.
+	 *
+	 * @param tenureStructure, the dates T_1,...,T_n
+	 * @param zeroBondCurve,   the bonds P(T_1;0),...,P(T_n;0)
+	 * @return the published curve
+	 */
+	public VersionedCurve publish(TimeDiscretization tenureStructure, double[] zeroBondCurve) {
+		final long buildTimestamp = System.currentTimeMillis();
+		/*
+		 * If another thread publishes between the moment when we read the present
+		 * curve and the moment when we replace it, compareAndSet fails and we try again
+		 * with the new version number
+		 */
+		while (true) {
+			final VersionedCurve presentCurve = currentCurve.get();
+			final long newVersion = presentCurve == null ? 1 : presentCurve.getVersion() + 1;
+			final VersionedCurve newCurve = new VersionedCurve(newVersion, tenureStructure, zeroBondCurve,
+					buildTimestamp);
+			if (currentCurve.compareAndSet(presentCurve, newCurve)) {
+				return newCurve;
+			}
+		}
+	}
+
+	/**
+	 * It publishes the curve bootstrapped up to now by an object of type
+	 * BootstrapFromParSwapRate. The bonds are copied, so that the bootstrap can
+	 * go on.
+	 *
+	 * @param bootstrap,    the bootstrap
+	 * @param yearFraction, the constant time step of the tenure structure
+	 * @return the published curve
+	 */
+	public VersionedCurve publish(BootstrapFromParSwapRate bootstrap, double yearFraction) {
+		return publish(bootstrap.getBonds(), yearFraction);
+	}
+
+	/**
+	 * It publishes the curve bootstrapped up to now by an object of type
+	 * Bootstrap. The bonds are copied, so that the bootstrap can go on.
+	 *
+	 * @param bootstrap,    the bootstrap
+	 * @param yearFraction, the constant time step of the tenure structure
+	 * @return the published curve
+	 */
+	public VersionedCurve publish(Bootstrap bootstrap, double yearFraction) {
+		return publish(bootstrap.getBonds(), yearFraction);
+	}
+
+	private VersionedCurve publish(List<Double> bonds, double yearFraction) {
+		final double[] zeroBondCurve = new double[bonds.size()];
+		for (int bondIndex = 0; bondIndex < zeroBondCurve.length; bondIndex++) {
+			zeroBondCurve[bondIndex] = bonds.get(bondIndex);
+		}
+		return publish(new TimeDiscretizationFromArray(yearFraction, zeroBondCurve.length - 1, yearFraction),
+				zeroBondCurve);
+	}
+
+	/**
+	 * It returns the curve published last, without locking.
+	 *
+	 * @return the present curve, or null if no curve has been published yet
+	 */
+	public VersionedCurve getCurve() {
+		return currentCurve.get();
+	}
+
+	/**
+	 * It computes a value on the curve published last, and returns it together
+	 * with the version of the curve: all the computation uses the same curve, even
+	 * if a new curve is published in the meantime.
+	 *
+	 * @param valuation, the function computing the value from the curve
+	 * @return the value, tagged with the version of the curve
+	 */
+	public VersionedValue value(ToDoubleFunction<VersionedCurve> valuation) {
+		final VersionedCurve curve = currentCurve.get();
+		if (curve == null) {
+			throw new IllegalStateException("No curve has been published yet");
+		}
+		return new VersionedValue(valuation.applyAsDouble(curve), curve.getVersion());
+	}
+}
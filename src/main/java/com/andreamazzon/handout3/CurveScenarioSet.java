@@ -0,0 +1,85 @@
+package com.andreamazzon.handout3;
+
+/**
+ * This class represents a set of scenarios for a curve on a given tenure
+ * structure, for example the curves got by applying historical shocks to the
+ * curve of today. The curves are stored as a structure of arrays: all the
+ * values are in one single array of doubles, the curve of every scenario
+ * occupying a contiguous block of it. The curves can be zero coupon bond
+ * curves or Libor curves.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CurveScenarioSet {
+
+	// values[scenarioIndex * curveLength + bondIndex]
+	private final double[] values;
+	private final int numberOfScenarios;
+	private final int curveLength;
+	private final boolean isBondCurve;
+
+	/**
+	 * It builds a set of scenarios from the values of all the curves, stored one
+	 * after the other in a single array.
+	 *
+	 * @param values,      the values of the curves: the element of index
+	 *                     scenarioIndex * curveLength + i is the i-th value of the
+	 *                     curve of the given scenario
+	 * @param curveLength, the length of every curve
+	 * @param isBondCurve, true if the curves are zero coupon bond curves, false if
+	 *                     they are Libor curves
+	 */
+	public CurveScenarioSet(double[] values, int curveLength, boolean isBondCurve) {
+		if (curveLength <= 0 || values.length % curveLength != 0) {
+			throw new IllegalArgumentException("The number of values must be a multiple of the curve length");
+		}
+		this.values = values;
+		this.curveLength = curveLength;
+		this.numberOfScenarios = values.length / curveLength;
+		this.isBondCurve = isBondCurve;
+	}
+
+	/**
+	 * It builds a set of scenarios by applying additive shocks to a base curve:
+	 * the curve of every scenario is the base curve plus the shocks of that
+	 * scenario.
+	 *
+	 * @param baseCurve,   the base curve
+	 * @param shocks,      the shocks, stored one scenario after the other in a
+	 *                     single array
+	 * @param isBondCurve, true if the curves are zero coupon bond curves, false if
+	 *                     they are Libor curves
+	 * @return the set of scenarios
+	 */
+	public static CurveScenarioSet fromShocks(double[] baseCurve, double[] shocks, boolean isBondCurve) {
+		final int curveLength = baseCurve.length;
+		final double[] values = new double[shocks.length];
+		for (int valueIndex = 0; valueIndex < shocks.length; valueIndex++) {
+			values[valueIndex] = baseCurve[valueIndex % curveLength] + shocks[valueIndex];
+		}
+		return new CurveScenarioSet(values, curveLength, isBondCurve);
+	}
+
+	/**
+	 * It copies the curve of a given scenario in the given array
+	 *
+	 * @param scenarioIndex, the index of the scenario
+	 * @param curve,         the array where the curve is copied
+	 */
+	public void getCurve(int scenarioIndex, double[] curve) {
+		System.arraycopy(values, scenarioIndex * curveLength, curve, 0, curveLength);
+	}
+
+	public int getNumberOfScenarios() {
+		return numberOfScenarios;
+	}
+
+	public int getCurveLength() {
+		return curveLength;
+	}
+
+	public boolean isBondCurve() {
+		return isBondCurve;
+	}
+}
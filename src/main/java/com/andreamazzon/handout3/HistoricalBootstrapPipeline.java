@@ -0,0 +1,406 @@
+package com.andreamazzon.handout3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class bootstraps the zero coupon bond curves of many dates from a large
+ * file of quotes, as needed to back-fill the history of the curve. Every line
+ * of the input file gives the quotes of one date, separated by commas: the
+ * date as an integer (for example 20211018), the first two bonds and then the
+ * par swap rates. The first numberOfSemiAnnualSwapRates swap rates are given to
+ * BootstrapFromParSwapRate.nextBondFromParSwapRate, the others to
+ * nextTwoBondsFromParSwapRate, as in BootstrapFromParSwapRateTest.
+ *
+ * The input file is mapped in memory chunk by chunk and parsed byte by byte,
+ * without creating any String. The dates of every chunk are split in batches
+ * which are bootstrapped independently on a pool of threads, and the results
+ * are written in the same order as the input in a binary output file: a header
+ * with a magic number, the length n of the curves and the year fraction,
+ * followed by one record per date made by the date (an int) and the n bonds
+ * (doubles). All the numbers are little endian.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class HistoricalBootstrapPipeline {
+
+	private static final int MAGIC_NUMBER = 0x48435256;// "HCRV"
+	private static final int HEADER_SIZE = 16;
+
+	// the default number of bytes we map at once: a chunk always ends at the end of a line
+	private static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+	private static final int DATES_PER_BATCH = 256;
+
+	private final double yearFraction;
+	private final int numberOfSemiAnnualSwapRates;
+	private final int numberOfAnnualSwapRates;
+	private final int numberOfQuotes;
+	private final int curveLength;
+	private final int numberOfThreads;
+	private final long chunkSize;
+
+	/**
+	 * It builds a pipeline for quote files with a given structure.
+	 *
+	 * @param yearFraction,                the constant time step of the tenure
+	 *                                     structure
+	 * @param numberOfSemiAnnualSwapRates, the number of swap rates each of which
+	 *                                     gives one new bond
+	 * @param numberOfAnnualSwapRates,     the number of swap rates each of which
+	 *                                     gives two new bonds
+	 * @param numberOfThreads,             the number of threads bootstrapping the
+	 *                                     curves
+	 */
+	public HistoricalBootstrapPipeline(double yearFraction, int numberOfSemiAnnualSwapRates,
+			int numberOfAnnualSwapRates, int numberOfThreads) {
+		this(yearFraction, numberOfSemiAnnualSwapRates, numberOfAnnualSwapRates, numberOfThreads,
+				DEFAULT_CHUNK_SIZE);
+	}
+
+	/*
+	 * Constructor with a given number of bytes mapped at once: small chunks are
+	 * useful to test the lines lying across two chunks
+	 */
+	HistoricalBootstrapPipeline(double yearFraction, int numberOfSemiAnnualSwapRates, int numberOfAnnualSwapRates,
+			int numberOfThreads, long chunkSize) {
+		this.chunkSize = chunkSize;
+		this.yearFraction = yearFraction;
+		this.numberOfSemiAnnualSwapRates = numberOfSemiAnnualSwapRates;
+		this.numberOfAnnualSwapRates = numberOfAnnualSwapRates;
+		this.numberOfQuotes = 2 + numberOfSemiAnnualSwapRates + numberOfAnnualSwapRates;
+		this.curveLength = 2 + numberOfSemiAnnualSwapRates + 2 * numberOfAnnualSwapRates;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * It bootstraps the curves of all the dates of the input file and writes them
+	 * in the output file.
+	 *
+	 * @param input,  the path of the quote file
+	 * @param output, the path of the binary file where the curves are written
+	 * @return the number of dates which have been bootstrapped
+	 * @throws IOException
+	 */
+	public int run(Path input, Path output) throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		/*
+		 * The batches waiting to be written, in the order of the input. We do not let
+		 * this queue grow too much, so that the memory used does not depend on the size
+		 * of the file
+		 */
+		final Deque<Future<Batch>> pendingBatches = new ArrayDeque<Future<Batch>>();
+		final int maximumPendingBatches = 4 * numberOfThreads;
+		int numberOfDates = 0;
+
+		try (FileChannel inputChannel = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel outputChannel = FileChannel.open(output, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC_NUMBER).putInt(curveLength).putDouble(yearFraction).flip();
+			writeFully(outputChannel, header);
+
+			final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + Double.BYTES * curveLength)
+					.order(ByteOrder.LITTLE_ENDIAN);
+
+			final long fileSize = inputChannel.size();
+			long chunkStart = 0;
+			while (chunkStart < fileSize) {
+				final long chunkLength = Math.min(chunkSize, fileSize - chunkStart);
+				final MappedByteBuffer chunk = inputChannel.map(FileChannel.MapMode.READ_ONLY, chunkStart,
+						chunkLength);
+				// the chunk ends after the last complete line it contains, or at the end of the file
+				int chunkEnd = (int) chunkLength;
+				if (chunkStart + chunkLength < fileSize) {
+					while (chunkEnd > 0 && chunk.get(chunkEnd - 1) != '\n') {
+						chunkEnd--;
+					}
+					if (chunkEnd == 0) {
+						throw new IOException("A line of the quote file is longer than " + chunkSize + " bytes");
+					}
+				}
+
+				final QuoteParser parser = new QuoteParser(chunk, chunkEnd);
+				while (parser.hasNextLine()) {
+					final Batch batch = new Batch(DATES_PER_BATCH);
+					while (batch.size < DATES_PER_BATCH && parser.hasNextLine()) {
+						final double[] quotes = new double[numberOfQuotes];
+						batch.dates[batch.size] = parser.nextLine(quotes);
+						batch.quotes[batch.size] = quotes;
+						batch.size++;
+					}
+					numberOfDates += batch.size;
+					pendingBatches.addLast(executor.submit(() -> bootstrap(batch)));
+					while (pendingBatches.size() >= maximumPendingBatches) {
+						writeBatch(outputChannel, record, pendingBatches.removeFirst());
+					}
+				}
+				chunkStart += chunkEnd;
+			}
+			while (!pendingBatches.isEmpty()) {
+				writeBatch(outputChannel, record, pendingBatches.removeFirst());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return numberOfDates;
+	}
+
+	// every date of the batch is bootstrapped independently
+	private Batch bootstrap(Batch batch) {
+		for (int dateIndex = 0; dateIndex < batch.size; dateIndex++) {
+			final double[] quotes = batch.quotes[dateIndex];
+			final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(quotes[0], quotes[1],
+					yearFraction);
+			for (int rateIndex = 0; rateIndex < numberOfSemiAnnualSwapRates; rateIndex++) {
+				bootstrap.nextBondFromParSwapRate(quotes[2 + rateIndex]);
+			}
+			for (int rateIndex = 0; rateIndex < numberOfAnnualSwapRates; rateIndex++) {
+				bootstrap.nextTwoBondsFromParSwapRate(quotes[2 + numberOfSemiAnnualSwapRates + rateIndex]);
+			}
+			final ArrayList<Double> bonds = bootstrap.getBonds();
+			// the array of the quotes is not needed any more: we store the bonds in its place
+			final double[] curve = new double[curveLength];
+			for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+				curve[bondIndex] = bonds.get(bondIndex);
+			}
+			batch.quotes[dateIndex] = curve;
+		}
+		return batch;
+	}
+
+	private void writeBatch(FileChannel outputChannel, ByteBuffer record, Future<Batch> pendingBatch)
+			throws IOException {
+		final Batch batch;
+		try {
+			batch = pendingBatch.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the bootstrap", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("The bootstrap of a batch of dates failed", e.getCause());
+		}
+		for (int dateIndex = 0; dateIndex < batch.size; dateIndex++) {
+			record.clear();
+			record.putInt(batch.dates[dateIndex]);
+			for (final double bond : batch.quotes[dateIndex]) {
+				record.putDouble(bond);
+			}
+			record.flip();
+			writeFully(outputChannel, record);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * It reads the curve of a given record of an output file written by the
+	 * pipeline.
+	 *
+	 * @param output,      the path of the output file
+	 * @param recordIndex, the index of the record, i.e., of the line of the input
+	 *                     file
+	 * @param curve,       the array where the bonds are written
+	 * @return the date of the record
+	 * @throws IOException
+	 */
+	public static int readCurve(Path output, int recordIndex, double[] curve) throws IOException {
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ)) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+			if (header.getInt(0) != MAGIC_NUMBER) {
+				throw new IOException("This is not an output file of the pipeline");
+			}
+			final int curveLength = header.getInt(4);
+			final int recordSize = Integer.BYTES + Double.BYTES * curveLength;
+			final ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+			long position = HEADER_SIZE + (long) recordIndex * recordSize;
+			while (record.hasRemaining()) {
+				final int readBytes = channel.read(record, position);
+				if (readBytes < 0) {
+					throw new IOException("There is no record of index " + recordIndex);
+				}
+				position += readBytes;
+			}
+			record.flip();
+			final int date = record.getInt();
+			for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+				curve[bondIndex] = record.getDouble();
+			}
+			return date;
+		}
+	}
+
+	/*
+	 * The dates bootstrapped together by one thread: quotes[i] contains first the
+	 * quotes of the i-th date, then its bonds
+	 */
+	private static class Batch {
+		private final int[] dates;
+		private final double[][] quotes;
+		private int size;
+
+		Batch(int capacity) {
+			dates = new int[capacity];
+			quotes = new double[capacity][];
+		}
+	}
+
+	/*
+	 * It parses the lines of a chunk of the file directly from its bytes. Every
+	 * number is read as a long mantissa and a power of ten: when both are small
+	 * enough (which is always the case for quotes with at most 15 significant
+	 * digits) the double is computed exactly by one multiplication or division
+	 */
+	private static class QuoteParser {
+
+		private static final double[] POWERS_OF_TEN = new double[23];
+		static {
+			POWERS_OF_TEN[0] = 1.0;
+			for (int exponent = 1; exponent < POWERS_OF_TEN.length; exponent++) {
+				POWERS_OF_TEN[exponent] = POWERS_OF_TEN[exponent - 1] * 10;
+			}
+		}
+
+		private final ByteBuffer chunk;
+		private final int end;
+		private int position;
+
+		QuoteParser(ByteBuffer chunk, int end) {
+			this.chunk = chunk;
+			this.end = end;
+			skipBlankLines();
+		}
+
+		boolean hasNextLine() {
+			return position < end;
+		}
+
+		// it reads the date and the quotes of the next line, and returns the date
+		int nextLine(double[] quotes) throws IOException {
+			final int date = (int) parseLong();
+			for (int quoteIndex = 0; quoteIndex < quotes.length; quoteIndex++) {
+				expect((byte) ',');
+				quotes[quoteIndex] = parseDouble();
+			}
+			while (position < end && chunk.get(position) != '\n') {
+				final byte character = chunk.get(position++);
+				if (character != '\r' && character != ' ') {
+					throw new IOException("Too many quotes in a line of the quote file");
+				}
+			}
+			skipBlankLines();
+			return date;
+		}
+
+		private void skipBlankLines() {
+			while (position < end && (chunk.get(position) == '\n' || chunk.get(position) == '\r')) {
+				position++;
+			}
+		}
+
+		private void expect(byte separator) throws IOException {
+			while (position < end && chunk.get(position) == ' ') {
+				position++;
+			}
+			if (position >= end || chunk.get(position) != separator) {
+				throw new IOException("Missing quote in a line of the quote file");
+			}
+			position++;
+		}
+
+		private long parseLong() throws IOException {
+			final int start = position;
+			long value = 0;
+			while (position < end && chunk.get(position) >= '0' && chunk.get(position) <= '9') {
+				value = 10 * value + (chunk.get(position++) - '0');
+			}
+			if (position == start) {
+				throw new IOException("Missing date in a line of the quote file");
+			}
+			return value;
+		}
+
+		private double parseDouble() throws IOException {
+			while (position < end && chunk.get(position) == ' ') {
+				position++;
+			}
+			final int start = position;
+			boolean isNegative = false;
+			if (position < end && (chunk.get(position) == '-' || chunk.get(position) == '+')) {
+				isNegative = chunk.get(position++) == '-';
+			}
+			long mantissa = 0;
+			int numberOfDigits = 0;
+			int decimalExponent = 0;
+			boolean isExact = true;
+			boolean afterPoint = false;
+			while (position < end) {
+				final byte character = chunk.get(position);
+				if (character >= '0' && character <= '9') {
+					if (numberOfDigits < 18) {
+						mantissa = 10 * mantissa + (character - '0');
+						if (mantissa != 0) {
+							numberOfDigits++;
+						}
+						if (afterPoint) {
+							decimalExponent--;
+						}
+					} else {
+						isExact = false;// too many digits: we let Double.parseDouble do the job
+						if (!afterPoint) {
+							decimalExponent++;
+						}
+					}
+					position++;
+				} else if (character == '.' && !afterPoint) {
+					afterPoint = true;
+					position++;
+				} else {
+					break;
+				}
+			}
+			if (position < end && (chunk.get(position) == 'e' || chunk.get(position) == 'E')) {
+				position++;
+				boolean isExponentNegative = false;
+				if (position < end && (chunk.get(position) == '-' || chunk.get(position) == '+')) {
+					isExponentNegative = chunk.get(position++) == '-';
+				}
+				final long exponent = parseLong();
+				decimalExponent += isExponentNegative ? -exponent : exponent;
+			}
+			if (position == start) {
+				throw new IOException("Missing quote in a line of the quote file");
+			}
+			if (isExact && mantissa < (1L << 53) && Math.abs(decimalExponent) < POWERS_OF_TEN.length) {
+				final double value = decimalExponent >= 0 ? mantissa * POWERS_OF_TEN[decimalExponent]
+						: mantissa / POWERS_OF_TEN[-decimalExponent];
+				return isNegative ? -value : value;
+			}
+			// rare case: we build the String of this number only
+			final byte[] bytes = new byte[position - start];
+			for (int byteIndex = 0; byteIndex < bytes.length; byteIndex++) {
+				bytes[byteIndex] = chunk.get(start + byteIndex);
+			}
+			return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+		}
+	}
+}
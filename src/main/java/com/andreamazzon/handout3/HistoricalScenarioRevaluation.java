@@ -0,0 +1,167 @@
+package com.andreamazzon.handout3;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class revalues a book of swaps under many scenarios for the curve, as
+ * needed for the computation of historical Value at Risk. All the swaps are
+ * written on the same tenure structure, and are identified by the indices of
+ * their start and end dates as in SwapAnnuityIndex. For every scenario, the
+ * curve is converted to a zero coupon bond curve (if it is a Libor curve) and
+ * the prefix sums of the bonds times the time steps are computed only once:
+ * every swap is then revalued in O(1). The scenarios are split among the
+ * threads of a fork-join pool, and every thread reuses the same arrays for all
+ * the scenarios it handles. The profits and losses are not stored, but are
+ * given scenario by scenario to an object of type ScenarioPnLConsumer, so that
+ * the full matrix scenarios times swaps is never held in memory.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class HistoricalScenarioRevaluation {
+
+	/*
+	 * Under this number of scenarios, a task does not split its scenarios among
+	 * other tasks any longer
+	 */
+	private static final int SCENARIOS_PER_TASK = 16;
+
+	private final TimeDiscretization swapDates;
+	private final double[] timeSteps;
+	private final int curveLength;
+
+	private final int[] startIndices;
+	private final int[] endIndices;
+	private final double[] fixedRates;
+	private final double[] notionals;
+
+	// the values of the swaps for the base curve, with respect to which the P&L are computed
+	private final double[] baseSwapValues;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * It builds an object to revalue a book of swaps under many scenarios.
+	 *
+	 * @param swapDates,         the tenure structure T_1,...,T_n
+	 * @param baseZeroBondCurve, the bonds P(T_1;0),...,P(T_n;0) of today: the
+	 *                           profits and losses are computed with respect to
+	 *                           the values of the swaps for this curve
+	 * @param startIndices,      the indices of the start dates of the swaps
+	 * @param endIndices,        the indices of the end dates of the swaps
+	 * @param fixedRates,        the fixed rates of the swaps
+	 * @param notionals,         the notionals of the swaps
+	 * @param pool,              the fork-join pool where the scenarios are
+	 *                           revalued
+	 */
+	public HistoricalScenarioRevaluation(TimeDiscretization swapDates, double[] baseZeroBondCurve,
+			int[] startIndices, int[] endIndices, double[] fixedRates, double[] notionals, ForkJoinPool pool) {
+		this.swapDates = swapDates;
+		this.curveLength = baseZeroBondCurve.length;
+		this.timeSteps = new double[curveLength];
+		for (int periodIndex = 1; periodIndex < curveLength; periodIndex++) {
+			timeSteps[periodIndex] = swapDates.getTimeStep(periodIndex - 1);
+		}
+		this.startIndices = startIndices;
+		this.endIndices = endIndices;
+		this.fixedRates = fixedRates;
+		this.notionals = notionals;
+		this.pool = pool;
+
+		final SwapAnnuityIndex baseIndex = new SwapAnnuityIndex(swapDates, baseZeroBondCurve);
+		this.baseSwapValues = baseIndex.getSwapValues(startIndices, endIndices, fixedRates, notionals);
+	}
+
+	/**
+	 * It builds an object to revalue a book of swaps under many scenarios, using
+	 * the common fork-join pool.
+	 *
+	 * @param swapDates,         the tenure structure T_1,...,T_n
+	 * @param baseZeroBondCurve, the bonds P(T_1;0),...,P(T_n;0) of today
+	 * @param startIndices,      the indices of the start dates of the swaps
+	 * @param endIndices,        the indices of the end dates of the swaps
+	 * @param fixedRates,        the fixed rates of the swaps
+	 * @param notionals,         the notionals of the swaps
+	 */
+	public HistoricalScenarioRevaluation(TimeDiscretization swapDates, double[] baseZeroBondCurve,
+			int[] startIndices, int[] endIndices, double[] fixedRates, double[] notionals) {
+		this(swapDates, baseZeroBondCurve, startIndices, endIndices, fixedRates, notionals, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * It revalues the book under all the given scenarios, and gives the profits
+	 * and losses of every scenario to the consumer. The method returns when all
+	 * the scenarios have been revalued.
+	 *
+	 * @param scenarios, the scenarios for the curve
+	 * @param consumer,  the object receiving the profits and losses: it is called
+	 *                   by many threads at the same time
+	 */
+	public void revalue(CurveScenarioSet scenarios, ScenarioPnLConsumer consumer) {
+		if (scenarios.getCurveLength() != curveLength) {
+			throw new IllegalArgumentException("The scenarios must have the same length as the base curve");
+		}
+		pool.invoke(new RevaluationTask(scenarios, consumer, 0, scenarios.getNumberOfScenarios()));
+	}
+
+	/*
+	 * The task revaluing the scenarios from firstScenario (included) to
+	 * lastScenario (excluded): if they are too many, it splits them in two halves
+	 */
+	private class RevaluationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 3298561427081234405L;
+
+		private final CurveScenarioSet scenarios;
+		private final ScenarioPnLConsumer consumer;
+		private final int firstScenario;
+		private final int lastScenario;
+
+		RevaluationTask(CurveScenarioSet scenarios, ScenarioPnLConsumer consumer, int firstScenario,
+				int lastScenario) {
+			this.scenarios = scenarios;
+			this.consumer = consumer;
+			this.firstScenario = firstScenario;
+			this.lastScenario = lastScenario;
+		}
+
+		@Override
+		protected void compute() {
+			if (lastScenario - firstScenario > SCENARIOS_PER_TASK) {
+				final int middleScenario = (firstScenario + lastScenario) >>> 1;
+				invokeAll(new RevaluationTask(scenarios, consumer, firstScenario, middleScenario),
+						new RevaluationTask(scenarios, consumer, middleScenario, lastScenario));
+				return;
+			}
+			// these arrays are reused for all the scenarios of the task
+			final double[] curve = new double[curveLength];
+			final double[] bonds = scenarios.isBondCurve() ? curve : new double[curveLength];
+			final double[] prefixAnnuities = new double[curveLength];
+			final double[] swapPnLs = new double[startIndices.length];
+
+			for (int scenarioIndex = firstScenario; scenarioIndex < lastScenario; scenarioIndex++) {
+				scenarios.getCurve(scenarioIndex, curve);
+				if (!scenarios.isBondCurve()) {
+					SwapWithoutFinmath.liborToBondCurve(swapDates, curve, bonds);
+				}
+				for (int couponIndex = 1; couponIndex < curveLength; couponIndex++) {
+					prefixAnnuities[couponIndex] = prefixAnnuities[couponIndex - 1]
+							+ bonds[couponIndex] * timeSteps[couponIndex];
+				}
+				double bookPnL = 0.0;
+				for (int swapIndex = 0; swapIndex < swapPnLs.length; swapIndex++) {
+					final int start = startIndices[swapIndex];
+					final int end = endIndices[swapIndex];
+					final double swapValue = notionals[swapIndex] * (bonds[start] - bonds[end]
+							- fixedRates[swapIndex] * (prefixAnnuities[end] - prefixAnnuities[start]));
+					swapPnLs[swapIndex] = swapValue - baseSwapValues[swapIndex];
+					bookPnL += swapPnLs[swapIndex];
+				}
+				consumer.accept(scenarioIndex, swapPnLs, bookPnL);
+			}
+		}
+	}
+}
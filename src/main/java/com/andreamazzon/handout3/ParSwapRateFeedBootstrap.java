@@ -0,0 +1,67 @@
+package com.andreamazzon.handout3;
+
+/**
+ * This class bootstraps a new curve from the quotes collected by
+ * QuoteFeedAdapter at the end of every window, and publishes it with a
+ * CurvePublisher. The instruments are identified as in
+ * HistoricalBootstrapPipeline: the identifiers 0 and 1 are the first two bonds,
+ * the next numberOfSemiAnnualSwapRates identifiers are the par swap rates given
+ * to BootstrapFromParSwapRate.nextBondFromParSwapRate and the last
+ * numberOfAnnualSwapRates the ones given to nextTwoBondsFromParSwapRate.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class ParSwapRateFeedBootstrap implements QuoteWindowListener {
+
+	private final double yearFraction;
+	private final int numberOfSemiAnnualSwapRates;
+	private final int numberOfAnnualSwapRates;
+	private final CurvePublisher publisher;
+
+	/**
+	 * It builds an object which bootstraps and publishes a curve at the end of
+	 * every window.
+	 *
+	 * @param yearFraction,                the constant time step of the tenure
+	 *                                     structure
+	 * @param numberOfSemiAnnualSwapRates, the number of par swap rates each giving
+	 *                                     one bond
+	 * @param numberOfAnnualSwapRates,     the number of par swap rates each giving
+	 *                                     two bonds
+	 * @param publisher,                   the publisher of the curves
+	 */
+	public ParSwapRateFeedBootstrap(double yearFraction, int numberOfSemiAnnualSwapRates,
+			int numberOfAnnualSwapRates, CurvePublisher publisher) {
+		this.yearFraction = yearFraction;
+		this.numberOfSemiAnnualSwapRates = numberOfSemiAnnualSwapRates;
+		this.numberOfAnnualSwapRates = numberOfAnnualSwapRates;
+		this.publisher = publisher;
+	}
+
+	/**
+	 * @return the number of instruments the quotes of which are needed, i.e., the
+	 *         number to give to QuoteFeedAdapter
+	 */
+	public int getNumberOfInstruments() {
+		return 2 + numberOfSemiAnnualSwapRates + numberOfAnnualSwapRates;
+	}
+
+	@Override
+	public void windowClosed(double[] quotes, int numberOfUpdates) {
+		// no curve until every instrument has been quoted at least once
+		for (int instrumentIndex = 0; instrumentIndex < getNumberOfInstruments(); instrumentIndex++) {
+			if (Double.isNaN(quotes[instrumentIndex])) {
+				return;
+			}
+		}
+		final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(quotes[0], quotes[1], yearFraction);
+		for (int rateIndex = 0; rateIndex < numberOfSemiAnnualSwapRates; rateIndex++) {
+			bootstrap.nextBondFromParSwapRate(quotes[2 + rateIndex]);
+		}
+		for (int rateIndex = 0; rateIndex < numberOfAnnualSwapRates; rateIndex++) {
+			bootstrap.nextTwoBondsFromParSwapRate(quotes[2 + numberOfSemiAnnualSwapRates + rateIndex]);
+		}
+		publisher.publish(bootstrap, yearFraction);
+	}
+}
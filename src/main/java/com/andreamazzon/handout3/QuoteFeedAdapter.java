@@ -0,0 +1,233 @@
+package com.andreamazzon.handout3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * This class reads quote updates from a stream of binary frames, as sent by a
+ * market data feed through a socket or a pipe, and gives them to a
+ * QuoteWindowListener, typically a bootstrap. Every frame has 12 bytes: the
+ * identifier of the instrument (an int from 0 to numberOfInstruments-1) and
+ * its new value (a double), both big endian.
+ * The channel is read in non-blocking mode through a Selector. The updates are
+ * coalesced: the first update after a rebuild opens a window of given length,
+ * during which only the last value of every instrument is kept, and the
+ * listener is called once when the window closes. Under bursts of quotes, the
+ * listener is then called at most once every window, however many updates
+ * arrive. The windows are measured by a clock giving nanoseconds, which is
+ * System.nanoTime unless another one is given: for example a simulated clock,
+ * when a recorded feed is replayed.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class QuoteFeedAdapter implements Closeable {
+
+	public static final int FRAME_SIZE = Integer.BYTES + Double.BYTES;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ReadableByteChannel channel;
+	private final Selector selector;
+	private final long windowLengthInNanoseconds;
+	private final LongSupplier clock;
+	private final QuoteWindowListener listener;
+
+	// the last value of every instrument: NaN if it has never been quoted
+	private final double[] quotes;
+	// the copy given to the listener, so that the quotes can change while it works
+	private final double[] quotesOfWindow;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private volatile boolean isClosed = false;
+	private volatile boolean isRunning = false;
+	// only written by the thread of run, and read by other threads to monitor the feed
+	private volatile long numberOfFrames = 0;
+	private volatile long numberOfWindows = 0;
+
+	/**
+	 * It builds an adapter reading from a channel, which is put in non-blocking
+	 * mode.
+	 *
+	 * @param channel,             the channel, for example a SocketChannel or the
+	 *                             source of a Pipe
+	 * @param numberOfInstruments, the number of instruments
+	 * @param windowLength,        the length of the coalescing window
+	 * @param unit,                the unit of the length of the window
+	 * @param listener,            the object called at the end of every window
+	 * @throws IOException
+	 */
+	public <C extends SelectableChannel & ReadableByteChannel> QuoteFeedAdapter(C channel, int numberOfInstruments,
+			long windowLength, TimeUnit unit, QuoteWindowListener listener) throws IOException {
+		this(channel, numberOfInstruments, windowLength, unit, listener, System::nanoTime);
+	}
+
+	/**
+	 * It builds an adapter reading from a channel, which is put in non-blocking
+	 * mode, whose windows are measured by a given clock. If the clock does not
+	 * follow the real time, the adapter still checks it at least once every
+	 * window length of real time while a window is open.
+	 *
+	 * @param channel,             the channel, for example a SocketChannel or the
+	 *                             source of a Pipe
+	 * @param numberOfInstruments, the number of instruments
+	 * @param windowLength,        the length of the coalescing window
+	 * @param unit,                the unit of the length of the window
+	 * @param listener,            the object called at the end of every window
+	 * @param clock,               the clock, giving the time in nanoseconds
+	 * @throws IOException
+	 */
+	public <C extends SelectableChannel & ReadableByteChannel> QuoteFeedAdapter(C channel, int numberOfInstruments,
+			long windowLength, TimeUnit unit, QuoteWindowListener listener, LongSupplier clock) throws IOException {
+		this.channel = channel;
+		this.windowLengthInNanoseconds = unit.toNanos(windowLength);
+		this.clock = clock;
+		this.listener = listener;
+		quotes = new double[numberOfInstruments];
+		Arrays.fill(quotes, Double.NaN);
+		quotesOfWindow = new double[numberOfInstruments];
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * It reads and coalesces the quotes until the end of the stream or until the
+	 * adapter is closed by another thread. At the end of the stream, the last
+	 * window is closed at once. This method blocks the calling thread, which is
+	 * also the one calling the listener.
+	 *
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		isRunning = true;
+		try {
+			readUntilClosed();
+		} finally {
+			selector.close();
+		}
+	}
+
+	private void readUntilClosed() throws IOException {
+		boolean isWindowOpen = false;
+		long windowEnd = 0;
+		int updatesInWindow = 0;
+		boolean isEndOfStream = false;
+
+		while (!isClosed && !isEndOfStream) {
+			// without an open window we wait for data as long as needed
+			final long timeout = isWindowOpen
+					? Math.max(1, TimeUnit.NANOSECONDS.toMillis(windowEnd - clock.getAsLong() + 999_999))
+					: 0;
+			selector.select(timeout);
+			selector.selectedKeys().clear();
+
+			// we read until the channel has no more data, or until the window ends
+			int bytesRead;
+			while ((bytesRead = channel.read(buffer)) > 0) {
+				buffer.flip();
+				while (buffer.remaining() >= FRAME_SIZE) {
+					final int instrumentIndex = buffer.getInt();
+					final double value = buffer.getDouble();
+					if (instrumentIndex < 0 || instrumentIndex >= quotes.length) {
+						throw new IOException("Unknown instrument " + instrumentIndex);
+					}
+					quotes[instrumentIndex] = value;
+					numberOfFrames++;
+					updatesInWindow++;
+					if (!isWindowOpen) {
+						isWindowOpen = true;
+						windowEnd = clock.getAsLong() + windowLengthInNanoseconds;
+					}
+				}
+				// an incomplete frame stays in the buffer until the rest arrives
+				buffer.compact();
+				if (isWindowOpen && clock.getAsLong() - windowEnd >= 0) {
+					break;
+				}
+			}
+			isEndOfStream = bytesRead < 0;
+
+			if (isWindowOpen && (isEndOfStream || clock.getAsLong() - windowEnd >= 0)) {
+				System.arraycopy(quotes, 0, quotesOfWindow, 0, quotes.length);
+				numberOfWindows++;
+				listener.windowClosed(quotesOfWindow, updatesInWindow);
+				isWindowOpen = false;
+				updatesInWindow = 0;
+			}
+		}
+	}
+
+	/**
+	 * It stops the adapter: if run is being executed by another thread, it
+	 * returns as soon as possible, without closing the present window. The
+	 * channel is not closed, since it belongs to the caller.
+	 */
+	@Override
+	public void close() throws IOException {
+		isClosed = true;
+		if (isRunning) {
+			// run closes the selector when it returns
+			selector.wakeup();
+		} else {
+			selector.close();
+		}
+	}
+
+	/**
+	 * @return the number of frames read up to now
+	 */
+	public long getNumberOfFrames() {
+		return numberOfFrames;
+	}
+
+	/**
+	 * @return the number of windows closed up to now, i.e., the number of calls
+	 *         to the listener
+	 */
+	public long getNumberOfWindows() {
+		return numberOfWindows;
+	}
+
+	/**
+	 * It writes one frame in a buffer, as the feed (or a simulator of it) does.
+	 *
+	 * @param buffer,          the buffer, with at least FRAME_SIZE bytes remaining
+	 * @param instrumentIndex, the identifier of the instrument
+	 * @param value,           the new value of the quote
+	 */
+	public static void putFrame(ByteBuffer buffer, int instrumentIndex, double value) {
+		buffer.putInt(instrumentIndex);
+		buffer.putDouble(value);
+	}
+
+	/**
+	 * It writes a burst of frames on a channel, as the feed (or a simulator of
+	 * it) does, blocking until everything has been written.
+	 *
+	 * @param channel,           the channel, in blocking mode
+	 * @param instrumentIndices, the identifiers of the instruments
+	 * @param values,            the new values of the quotes
+	 * @throws IOException
+	 */
+	public static void writeFrames(WritableByteChannel channel, int[] instrumentIndices, double[] values)
+			throws IOException {
+		final ByteBuffer frames = ByteBuffer.allocate(FRAME_SIZE * instrumentIndices.length);
+		for (int frameIndex = 0; frameIndex < instrumentIndices.length; frameIndex++) {
+			putFrame(frames, instrumentIndices[frameIndex], values[frameIndex]);
+		}
+		frames.flip();
+		while (frames.hasRemaining()) {
+			channel.write(frames);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.andreamazzon.handout3;
+
+/**
+ * Interface for the objects receiving the quotes collected by QuoteFeedAdapter
+ * at the end of every coalescing window, typically to bootstrap a new curve.
+ * The methods are called by the thread running the adapter.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public interface QuoteWindowListener {
+
+	/**
+	 * It receives the last value of every instrument at the end of a window in
+	 * which at least one quote has been updated. The array is reused by the
+	 * adapter as soon as the method returns: the implementations must not keep a
+	 * reference to it.
+	 *
+	 * @param quotes,          the quotes: quotes[i] is the last value received
+	 *                         for the instrument with identifier i
+	 * @param numberOfUpdates, the number of updates received in the window
+	 */
+	void windowClosed(double[] quotes, int numberOfUpdates);
+}
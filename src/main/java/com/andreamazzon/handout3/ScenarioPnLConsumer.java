@@ -0,0 +1,23 @@
+package com.andreamazzon.handout3;
+
+/**
+ * Interface for the objects receiving the profits and losses of a book of swaps
+ * computed by HistoricalScenarioRevaluation, one scenario at a time. Since the
+ * scenarios are revalued in parallel, the implementations must be thread safe.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public interface ScenarioPnLConsumer {
+
+	/**
+	 * It receives the profits and losses of all the swaps of the book for a given
+	 * scenario. The array is reused for the next scenarios as soon as the method
+	 * returns: the implementations must not keep a reference to it.
+	 *
+	 * @param scenarioIndex, the index of the scenario
+	 * @param swapPnLs,      the profits and losses of the single swaps
+	 * @param bookPnL,       the profit and loss of the whole book
+	 */
+	void accept(int scenarioIndex, double[] swapPnLs, double bookPnL);
+}
@@ -71,4 +71,50 @@ public interface Swap {
 	 * @return the par swap rate
 	 */
 	double getParSwapRate(double yearFraction);
-}
\ No newline at end of file
+
+	/**
+	 * It computes and returns the annuity of the swap at evaluation time t = 0,
+	 * i.e., the value of the fixed legs for a unit swap rate. Since the value of
+	 * the swap is linear in the single swap rate, the default implementation gets
+	 * it as the difference of the values for swap rates 0 and 1.
+	 *
+	 * @return the annuity
+	 */
+	default double getAnnuity() {
+		return getSwapValue(0.0) - getSwapValue(1.0);
+	}
+
+	/**
+	 * It computes the values of the swap at evaluation time t = 0 for many single
+	 * swap rates at once, and writes them in the given array: no array is
+	 * allocated, so that the method can be called in tight loops.
+	 *
+	 * @parameter singleSwapRates, the single swap rates
+	 * @parameter swapValues, the array where the values of the swap are written:
+	 *            it must have at least the length of singleSwapRates
+	 */
+	default void getSwapValues(double[] singleSwapRates, double[] swapValues) {
+		final double annuity = getAnnuity();
+		// the value for a swap rate equal to zero is the value of the floating legs
+		final double floatingLegsValue = getParSwapRate() * annuity;
+		for (int rateIndex = 0; rateIndex < singleSwapRates.length; rateIndex++) {
+			swapValues[rateIndex] = floatingLegsValue - singleSwapRates[rateIndex] * annuity;
+		}
+	}
+
+	/**
+	 * It computes the value of the swap at evaluation time t = 0 for a single swap
+	 * rate together with its annuity, and writes them in the given array, without
+	 * allocating any array.
+	 *
+	 * @parameter singleSwapRate, the single swap rate
+	 * @parameter valueAndAnnuity, an array of length at least two: the value of
+	 *            the swap is written in the first element, the annuity in the
+	 *            second one
+	 */
+	default void getSwapValueAndAnnuity(double singleSwapRate, double[] valueAndAnnuity) {
+		final double annuity = getAnnuity();
+		valueAndAnnuity[0] = getParSwapRate() * annuity - singleSwapRate * annuity;
+		valueAndAnnuity[1] = annuity;
+	}
+}
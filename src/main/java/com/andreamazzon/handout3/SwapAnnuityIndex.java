@@ -0,0 +1,145 @@
+package com.andreamazzon.handout3;
+
+import java.util.stream.IntStream;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class allows to compute in O(1) the annuity, the par swap rate and the
+ * value of any swap whose payment dates are a subset of consecutive dates of a
+ * given tenure structure T_1,...,T_n, for a given zero coupon bond curve. The
+ * idea is that the annuity of the swap starting in T_{s+1} and ending in
+ * T_{e+1} is \sum_{i=s}^{e-1}(T_{i+2}-T_{i+1})P(T_{i+2};0), which is the
+ * difference of two prefix sums: these prefix sums are computed once in the
+ * constructor, so that every swap (spot-starting or forward-starting) is
+ * valued by looking at four numbers. A method is also provided to value a
+ * whole list of swaps in parallel.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class SwapAnnuityIndex {
+
+	private final double[] zeroBondCurve;
+	/*
+	 * prefixAnnuities[k] = \sum_{i=0}^{k-1}(T_{i+2}-T_{i+1})P(T_{i+2};0), so that
+	 * prefixAnnuities[0] = 0 and prefixAnnuities[n-1] is the annuity of the swap on
+	 * the whole tenure structure
+	 */
+	private final double[] prefixAnnuities;
+	private final int curveLength;
+
+	/**
+	 * It builds the index for a given tenure structure and a given zero coupon
+	 * bond curve.
+	 *
+	 * @param swapDates,     the tenure structure T_1,...,T_n, given as a
+	 *                       TimeDiscretization object
+	 * @param zeroBondCurve, the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public SwapAnnuityIndex(TimeDiscretization swapDates, double[] zeroBondCurve) {
+		this.curveLength = zeroBondCurve.length;
+		if (swapDates.getNumberOfTimes() < curveLength) {
+			throw new IllegalArgumentException("The tenure structure must have a date for every bond of the curve");
+		}
+		this.zeroBondCurve = zeroBondCurve;
+		this.prefixAnnuities = new double[curveLength];
+		for (int couponIndex = 1; couponIndex < curveLength; couponIndex++) {
+			prefixAnnuities[couponIndex] = prefixAnnuities[couponIndex - 1]
+					+ zeroBondCurve[couponIndex] * swapDates.getTimeStep(couponIndex - 1);
+		}
+	}
+
+	/**
+	 * It builds the index for a given zero coupon bond curve, in the case when all
+	 * the time steps of the tenure structure have same length.
+	 *
+	 * @param yearFraction,  the length of the step from one swap date to the other
+	 * @param zeroBondCurve, the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public SwapAnnuityIndex(double yearFraction, double[] zeroBondCurve) {
+		this(new TimeDiscretizationFromArray(yearFraction/* first time */, zeroBondCurve.length - 1/* number of time steps */,
+				yearFraction/* time step */), zeroBondCurve);
+	}
+
+	/**
+	 * It returns the annuity of the swap starting in T_{s+1} and ending in
+	 * T_{e+1}, i.e., \sum_{i=s}^{e-1}(T_{i+2}-T_{i+1})P(T_{i+2};0).
+	 *
+	 * @param startIndex, the index s of the start date
+	 * @param endIndex,   the index e of the end date
+	 * @return the annuity of the swap
+	 */
+	public double getAnnuity(int startIndex, int endIndex) {
+		return prefixAnnuities[endIndex] - prefixAnnuities[startIndex];
+	}
+
+	/**
+	 * It returns the par swap rate of the swap starting in T_{s+1} and ending in
+	 * T_{e+1}.
+	 *
+	 * @param startIndex, the index s of the start date
+	 * @param endIndex,   the index e of the end date
+	 * @return the par swap rate
+	 */
+	public double getParSwapRate(int startIndex, int endIndex) {
+		return (zeroBondCurve[startIndex] - zeroBondCurve[endIndex]) / getAnnuity(startIndex, endIndex);
+	}
+
+	/**
+	 * It returns the value of the swap starting in T_{s+1} and ending in T_{e+1},
+	 * with a single swap rate and unit notional: this is the value of the floating
+	 * legs minus the value of the fixed legs.
+	 *
+	 * @param startIndex, the index s of the start date
+	 * @param endIndex,   the index e of the end date
+	 * @param swapRate,   the single swap rate
+	 * @return the value of the swap
+	 */
+	public double getSwapValue(int startIndex, int endIndex, double swapRate) {
+		return zeroBondCurve[startIndex] - zeroBondCurve[endIndex] - swapRate * getAnnuity(startIndex, endIndex);
+	}
+
+	/**
+	 * It computes and returns the values of a list of swaps, given as a structure
+	 * of arrays: the i-th swap is identified by the i-th element of every array.
+	 * The swaps are valued in parallel.
+	 *
+	 * @param startIndices, the indices of the start dates
+	 * @param endIndices,   the indices of the end dates
+	 * @param swapRates,    the single swap rates
+	 * @param notionals,    the notionals
+	 * @return the values of the swaps
+	 */
+	public double[] getSwapValues(int[] startIndices, int[] endIndices, double[] swapRates, double[] notionals) {
+		final double[] swapValues = new double[startIndices.length];
+		IntStream.range(0, startIndices.length).parallel().forEach(swapIndex -> swapValues[swapIndex] = notionals[swapIndex]
+				* getSwapValue(startIndices[swapIndex], endIndices[swapIndex], swapRates[swapIndex]));
+		return swapValues;
+	}
+
+	/**
+	 * It computes and returns the par swap rates of a list of swaps, given as a
+	 * structure of arrays. The par swap rates are computed in parallel.
+	 *
+	 * @param startIndices, the indices of the start dates
+	 * @param endIndices,   the indices of the end dates
+	 * @return the par swap rates
+	 */
+	public double[] getParSwapRates(int[] startIndices, int[] endIndices) {
+		final double[] parSwapRates = new double[startIndices.length];
+		IntStream.range(0, startIndices.length).parallel().forEach(
+				swapIndex -> parSwapRates[swapIndex] = getParSwapRate(startIndices[swapIndex], endIndices[swapIndex]));
+		return parSwapRates;
+	}
+
+	/**
+	 * It returns the number of dates of the tenure structure
+	 *
+	 * @return the number of dates of the tenure structure
+	 */
+	public int getCurveLength() {
+		return curveLength;
+	}
+}
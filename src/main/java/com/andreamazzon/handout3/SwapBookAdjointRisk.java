@@ -0,0 +1,195 @@
+package com.andreamazzon.handout3;
+
+import com.andreamazzon.handout2.Bootstrap;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class computes the value of a whole book of swaps and its bucketed
+ * sensitivities with respect to the zero coupon bonds of the curve, in one
+ * single backward (adjoint) pass. All the swaps are written on the same tenure
+ * structure T_1,...,T_n, and every swap is identified by the index of its start
+ * date and of its end date in the tenure structure: a swap with indices (s, e)
+ * receives the floating legs and pays the fixed legs from T_{s+1} to T_{e+1},
+ * exactly as SwapWithoutFinmath does for the whole tenure structure. The value
+ * of such a swap is therefore
+ * N(P(T_{s+1};0) - P(T_{e+1};0) - K \sum_{i=s}^{e-1}(T_{i+2}-T_{i+1})P(T_{i+2};0)).
+ * Since this value is linear in the bonds, its gradient does not depend on the
+ * curve: the gradient of the whole book is accumulated with a difference array
+ * in O(number of swaps + curve length), and the value of the book is the scalar
+ * product of this gradient with the curve. The sensitivities with respect to
+ * the market quotes are then got by giving this gradient to the adjoint methods
+ * of Bootstrap and BootstrapFromParSwapRate, which walk the bootstrap
+ * recursion backwards.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class SwapBookAdjointRisk {
+
+	private final TimeDiscretization swapDates; // tenure structure, starting from T_1
+	private final int curveLength;
+
+	/*
+	 * The book is stored as a structure of arrays: the i-th swap is given by the
+	 * i-th element of every array
+	 */
+	private final int[] startIndices;
+	private final int[] endIndices;
+	private final double[] fixedRates;
+	private final double[] notionals;
+
+	/*
+	 * The gradient of the value of the book with respect to the bonds: it is
+	 * computed once, the first time it is needed
+	 */
+	private double[] bondSensitivities;
+
+	/**
+	 * It builds an object to compute the value and the bucketed sensitivities of a
+	 * book of swaps written on the same tenure structure.
+	 *
+	 * @param swapDates,    the tenure structure T_1,...,T_n, given as a
+	 *                      TimeDiscretization object
+	 * @param startIndices, the indices of the start dates of the swaps: the index
+	 *                      s identifies T_{s+1}
+	 * @param endIndices,   the indices of the end dates of the swaps: it must be
+	 *                      bigger than the start index and smaller than n
+	 * @param fixedRates,   the fixed rates of the swaps
+	 * @param notionals,    the notionals of the swaps: a negative notional
+	 *                      represents a swap where we receive the fixed legs
+	 */
+	public SwapBookAdjointRisk(TimeDiscretization swapDates, int[] startIndices, int[] endIndices,
+			double[] fixedRates, double[] notionals) {
+		if (startIndices.length != endIndices.length || startIndices.length != fixedRates.length
+				|| startIndices.length != notionals.length) {
+			throw new IllegalArgumentException("All the arrays describing the book must have the same length");
+		}
+		this.swapDates = swapDates;
+		this.curveLength = swapDates.getNumberOfTimes();
+		for (int swapIndex = 0; swapIndex < startIndices.length; swapIndex++) {
+			if (startIndices[swapIndex] < 0 || startIndices[swapIndex] >= endIndices[swapIndex]
+					|| endIndices[swapIndex] >= curveLength) {
+				throw new IllegalArgumentException("Swap " + swapIndex + " is not defined on the tenure structure");
+			}
+		}
+		this.startIndices = startIndices;
+		this.endIndices = endIndices;
+		this.fixedRates = fixedRates;
+		this.notionals = notionals;
+	}
+
+	/**
+	 * It builds an object to compute the value and the bucketed sensitivities of a
+	 * book of swaps, in the case when all the time steps of the tenure structure
+	 * have the same length.
+	 *
+	 * @param yearFraction, the length of the step from one swap date to the other
+	 * @param curveLength,  the number of dates of the tenure structure
+	 * @param startIndices, the indices of the start dates of the swaps
+	 * @param endIndices,   the indices of the end dates of the swaps
+	 * @param fixedRates,   the fixed rates of the swaps
+	 * @param notionals,    the notionals of the swaps
+	 */
+	public SwapBookAdjointRisk(double yearFraction, int curveLength, int[] startIndices, int[] endIndices,
+			double[] fixedRates, double[] notionals) {
+		this(new TimeDiscretizationFromArray(yearFraction/* first time */, curveLength - 1/* number of time steps */,
+				yearFraction/* time step */), startIndices, endIndices, fixedRates, notionals);
+	}
+
+	/**
+	 * It computes and returns the sensitivities of the value of the whole book with
+	 * respect to every zero coupon bond P(T_1;0),...,P(T_n;0) of the curve. Since
+	 * the value is linear in the bonds, the sensitivities do not depend on the
+	 * curve itself.
+	 *
+	 * @return the array whose i-th element is the derivative of the value of the
+	 *         book with respect to P(T_{i+1};0)
+	 */
+	public double[] getBondSensitivities() {
+		if (bondSensitivities == null) {
+			bondSensitivities = computeBondSensitivities();
+		}
+		return bondSensitivities.clone();
+	}
+
+	/*
+	 * Every swap contributes N to the start bond, -N to the end bond and -N K times
+	 * the year fraction to all the bonds of its fixed leg. The last contribution is
+	 * a constant (-N K) added on a range of indices: we do not loop over the range,
+	 * but we store the constant at the beginning of the range and its opposite just
+	 * after the end, and we get back the values by a running sum. This is what
+	 * makes the cost O(number of swaps + curve length).
+	 */
+	private double[] computeBondSensitivities() {
+		final double[] sensitivities = new double[curveLength];
+		final double[] fixedLegDifferences = new double[curveLength + 1];
+
+		for (int swapIndex = 0; swapIndex < startIndices.length; swapIndex++) {
+			final double notional = notionals[swapIndex];
+			final double fixedLegWeight = notional * fixedRates[swapIndex];
+			sensitivities[startIndices[swapIndex]] += notional;
+			sensitivities[endIndices[swapIndex]] -= notional;
+			// the fixed legs are paid at the dates with indices from s+1 to e
+			fixedLegDifferences[startIndices[swapIndex] + 1] -= fixedLegWeight;
+			fixedLegDifferences[endIndices[swapIndex] + 1] += fixedLegWeight;
+		}
+
+		double runningFixedLegWeight = 0.0;
+		for (int bondIndex = 1; bondIndex < curveLength; bondIndex++) {
+			runningFixedLegWeight += fixedLegDifferences[bondIndex];
+			sensitivities[bondIndex] += runningFixedLegWeight * swapDates.getTimeStep(bondIndex - 1);
+		}
+		return sensitivities;
+	}
+
+	/**
+	 * It computes and returns the value of the whole book for a given zero coupon
+	 * bond curve.
+	 *
+	 * @param zeroBondCurve, the bonds P(T_1;0),...,P(T_n;0)
+	 * @return the value of the book
+	 */
+	public double getBookValue(double[] zeroBondCurve) {
+		if (bondSensitivities == null) {
+			bondSensitivities = computeBondSensitivities();
+		}
+		// the value is linear in the bonds: it is the scalar product with the gradient
+		double bookValue = 0.0;
+		for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+			bookValue += bondSensitivities[bondIndex] * zeroBondCurve[bondIndex];
+		}
+		return bookValue;
+	}
+
+	/**
+	 * It computes and returns the sensitivities of the value of the whole book with
+	 * respect to the quotes used to bootstrap the curve by the given object of type
+	 * BootstrapFromParSwapRate.
+	 *
+	 * @param bootstrap, the object which has bootstrapped the curve: the bonds it
+	 *                   has computed must be the ones of the tenure structure of
+	 *                   the book
+	 * @return the sensitivities with respect to the two given bonds and to the par
+	 *         swap rates, in the order they have been given to the bootstrap
+	 */
+	public double[] getQuoteSensitivities(BootstrapFromParSwapRate bootstrap) {
+		return bootstrap.getQuoteSensitivities(getBondSensitivities());
+	}
+
+	/**
+	 * It computes and returns the sensitivities of the value of the whole book with
+	 * respect to the values of the coupon bonds used to bootstrap the curve by the
+	 * given object of type Bootstrap.
+	 *
+	 * @param bootstrap, the object which has bootstrapped the curve: the bonds it
+	 *                   has computed must be the ones of the tenure structure of
+	 *                   the book
+	 * @return the sensitivities with respect to the values of the coupon bonds, in
+	 *         the order they have been given to the bootstrap
+	 */
+	public double[] getQuoteSensitivities(Bootstrap bootstrap) {
+		return bootstrap.getCouponBondSensitivities(getBondSensitivities());
+	}
+}
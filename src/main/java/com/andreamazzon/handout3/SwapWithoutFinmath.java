@@ -1,6 +1,6 @@
 package com.andreamazzon.handout3;
 
-import java.util.Arrays;
+import com.andreamazzon.handout2.CurveSnapshot;
 
 import net.finmath.time.TimeDiscretization;
 import net.finmath.time.TimeDiscretizationFromArray;
@@ -15,7 +15,8 @@ import net.finmath.time.TimeDiscretizationFromArray;
  * tenure structure. Methods are implemented that allow to compute the value of
  * the swap for given swap rates (or only for one swap rate) and the par swap
  * rate. In both cases, if the time step of the tenure structure is constant, an
- * overloaded, more efficient version of the methods is provided.
+ * overloaded, more efficient version of the methods is provided. The annuity
+ * is looked up in a SwapAnnuityIndex built once in the constructor.
  *
  * @author Andrea Mazzon
  */
@@ -37,6 +38,12 @@ public class SwapWithoutFinmath implements Swap {
 	 */
 	private final double[] zeroBondCurve;
 	private final int curveLength;
+	/*
+	 * Prefix sums of the bonds times the time steps: the annuity (and then the par
+	 * swap rate) is computed from them in O(1), instead of looping over the curve
+	 * at every call
+	 */
+	private final SwapAnnuityIndex annuityIndex;
 
 	/**
 	 * It builds an object of type SwapWithoutFinmath, with the option of giving a
@@ -60,6 +67,7 @@ public class SwapWithoutFinmath implements Swap {
 		 * convert to bonds
 		 */
 		this.zeroBondCurve = isBondCurve ? curve : liborToBondCurve(curve);
+		this.annuityIndex = new SwapAnnuityIndex(swapDates, zeroBondCurve);
 	}
 
 	/**
@@ -102,37 +110,51 @@ public class SwapWithoutFinmath implements Swap {
 
 	}
 
+	/**
+	 * It builds an object of type SwapWithoutFinmath from a curve snapshot mapped
+	 * in memory: the tenure structure and the zero coupon bond curve are the ones
+	 * stored in the snapshot.
+	 *
+	 * @param snapshot: the curve, as written by the bootstrap
+	 */
+	public SwapWithoutFinmath(CurveSnapshot snapshot) {
+		this(snapshot.getTenureStructure(), snapshot.getBonds(), true);
+	}
+
 	/*
 	 * This methods converts Libor rates into a zero coupon bond curve: the idea is
 	 * that if we know P(T_{i};t) and L(T_i,T_{i+1},;t), we can infer P(T_{i};t).
 	 * Then we can proceed iteratively starting from P(0;0)=1
 	 */
 	private double[] liborToBondCurve(double[] libors) {
-
 		final double[] derivedBondsCurve = new double[curveLength];// vector that will store the zero coupon bond curve
+		liborToBondCurve(swapDates, libors, derivedBondsCurve);
+		return derivedBondsCurve;
+	}
+
+	/*
+	 * The conversion itself, writing the bonds in the given array: it is static and
+	 * package private because it is also used by HistoricalScenarioRevaluation,
+	 * which converts many Libor curves into the same array. The conventions are the
+	 * same as in BondsAndLibors.fromLiborsToBonds: libors[0] = L(0,T_1;0) and
+	 * libors[i] = L(T_i,T_{i+1};0).
+	 */
+	static void liborToBondCurve(TimeDiscretization swapDates, double[] libors, double[] bonds) {
 		final double firstBond = 1.0;// P(0;0)=1, we use it to calculate P(0;T_1) from L(0,T_1;0)
-		double currentLibor = libors[0];
-		double timeStep = swapDates.getTimeStep(0);
 		// P(T_1;0) = P(0;0)/(1+L(0,T_1;0)*T_1 (since T_0 = 0)
-		derivedBondsCurve[0] = firstBond / (1 + currentLibor * timeStep);
-		for (int periodIndex = 1; periodIndex < curveLength; periodIndex++) {
-			timeStep = swapDates.getTimeStep(periodIndex);
-			currentLibor = libors[periodIndex];// L(T_{i-1},T_i;0)
+		bonds[0] = firstBond / (1 + libors[0] * swapDates.getTime(0));
+		for (int periodIndex = 1; periodIndex < bonds.length; periodIndex++) {
+			final double timeStep = swapDates.getTimeStep(periodIndex - 1);
 			// P(T_i;0) = P(T_{i-1};0)/(1+L(T_{i-1},T_i;0)*(T_i-T_{i-1})
-			derivedBondsCurve[periodIndex] = derivedBondsCurve[periodIndex - 1] / (1 + currentLibor * timeStep);
+			bonds[periodIndex] = bonds[periodIndex - 1] / (1 + libors[periodIndex] * timeStep);
 		}
-		return derivedBondsCurve;
 	}
 
-	// This method computes and returns the annuity
-	private double getAnnuity() {
-		double annuity = 0.0;
-		// we compute the sum of the bonds multiplied by the time intervals
-		for (int couponIndex = 1; couponIndex < curveLength; couponIndex++) {
-			// remember that zeroBondCurve[1]=P(T_2;0), ... ,zeroBondCurve[n-1]=P(T_n;0)
-			annuity += zeroBondCurve[couponIndex] * swapDates.getTimeStep(couponIndex - 1);
-		}
-		return annuity;
+	// This method returns the annuity, i.e., the sum of the bonds multiplied by the time intervals
+	@Override
+	public double getAnnuity() {
+		// remember that zeroBondCurve[1]=P(T_2;0), ... ,zeroBondCurve[n-1]=P(T_n;0)
+		return annuityIndex.getAnnuity(0, curveLength - 1);
 	}
 
 	// This method computes the annuity when the swap dates are evenly distributed
@@ -208,18 +230,54 @@ public class SwapWithoutFinmath implements Swap {
 		return sumOfFloatingLegs - sumOfFixedLegs;
 	}
 
-	// case when the user gives just one swap rate
+	/*
+	 * Case when the user gives just one swap rate: the value of the fixed legs is
+	 * then the swap rate times the annuity, and we do not need to build an array
+	 * with all elements equal to singleSwapRate
+	 */
 	@Override
 	public double getSwapValue(double singleSwapRate) {
-		final double[] swapRates = new double[curveLength];
-		Arrays.fill(swapRates, singleSwapRate);// swapRates is now an array with all elements equal to singleSwapRate
-		return getSwapValue(swapRates);
+		return zeroBondCurve[0] - zeroBondCurve[curveLength - 1] - singleSwapRate * getAnnuity();
 	}
 
 	@Override
 	public double getSwapValue(double singleSwapRate, double yearFraction) {
-		final double[] swapRates = new double[curveLength];
-		Arrays.fill(swapRates, singleSwapRate);// swapRates is now an array with all elements equal to singleSwapRate
-		return getSwapValue(swapRates, yearFraction);
+		return zeroBondCurve[0] - zeroBondCurve[curveLength - 1] - singleSwapRate * getAnnuity(yearFraction);
+	}
+
+	@Override
+	public void getSwapValues(double[] singleSwapRates, double[] swapValues) {
+		final double sumOfFloatingLegs = zeroBondCurve[0] - zeroBondCurve[curveLength - 1];
+		final double annuity = getAnnuity();
+		for (int rateIndex = 0; rateIndex < singleSwapRates.length; rateIndex++) {
+			swapValues[rateIndex] = sumOfFloatingLegs - singleSwapRates[rateIndex] * annuity;
+		}
+	}
+
+	@Override
+	public void getSwapValueAndAnnuity(double singleSwapRate, double[] valueAndAnnuity) {
+		final double annuity = getAnnuity();
+		valueAndAnnuity[0] = zeroBondCurve[0] - zeroBondCurve[curveLength - 1] - singleSwapRate * annuity;
+		valueAndAnnuity[1] = annuity;
+	}
+
+	/**
+	 * It computes the values at evaluation time t = 0 of many swaps whose payment
+	 * dates are consecutive dates of the tenure structure given in the
+	 * constructor, and writes them in the given array without allocating any
+	 * array. The i-th swap starts at the date of index startIndices[i] and ends at
+	 * the date of index endIndices[i] of the tenure structure.
+	 *
+	 * @parameter startIndices, the indices of the start dates of the swaps
+	 * @parameter endIndices, the indices of the end dates of the swaps
+	 * @parameter singleSwapRates, the single swap rates of the swaps
+	 * @parameter swapValues, the array where the values of the swaps are written
+	 */
+	public void getSwapValues(int[] startIndices, int[] endIndices, double[] singleSwapRates, double[] swapValues) {
+		// every annuity is the difference of two prefix sums stored in the index
+		for (int swapIndex = 0; swapIndex < startIndices.length; swapIndex++) {
+			swapValues[swapIndex] = annuityIndex.getSwapValue(startIndices[swapIndex], endIndices[swapIndex],
+					singleSwapRates[swapIndex]);
+		}
 	}
-}
\ No newline at end of file
+}
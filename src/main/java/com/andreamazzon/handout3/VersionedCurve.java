@@ -0,0 +1,95 @@
+package com.andreamazzon.handout3;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class represents an immutable zero coupon bond curve, tagged with a
+ * version number, as published by CurvePublisher. The bonds are copied in the
+ * constructor, and the objects used to value swaps on the curve are built once
+ * there, so that an object of this class can be read by any number of threads
+ * without any synchronization.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class VersionedCurve {
+
+	private final long version;
+	private final long buildTimestamp;
+	private final TimeDiscretization tenureStructure;
+	private final double[] zeroBondCurve;
+
+	private final SwapAnnuityIndex annuityIndex;
+	private final Swap swap;
+
+	/**
+	 * It builds an immutable curve with a given version.
+	 *
+	 * @param version,         the version of the curve
+	 * @param tenureStructure, the dates T_1,...,T_n
+	 * @param zeroBondCurve,   the bonds P(T_1;0),...,P(T_n;0): they are copied
+	 * @param buildTimestamp,  the time when the curve has been built, in
+	 *                         milliseconds since the epoch
+	 */
+	public VersionedCurve(long version, TimeDiscretization tenureStructure, double[] zeroBondCurve,
+			long buildTimestamp) {
+		this.version = version;
+		this.buildTimestamp = buildTimestamp;
+		this.tenureStructure = tenureStructure;
+		this.zeroBondCurve = zeroBondCurve.clone();
+		this.annuityIndex = new SwapAnnuityIndex(tenureStructure, this.zeroBondCurve);
+		this.swap = new SwapWithoutFinmath(tenureStructure, this.zeroBondCurve, true);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getBuildTimestamp() {
+		return buildTimestamp;
+	}
+
+	public TimeDiscretization getTenureStructure() {
+		return tenureStructure;
+	}
+
+	public int getCurveLength() {
+		return zeroBondCurve.length;
+	}
+
+	/**
+	 * @param bondIndex, the index i
+	 * @return P(T_{i+1};0)
+	 */
+	public double getBond(int bondIndex) {
+		return zeroBondCurve[bondIndex];
+	}
+
+	/**
+	 * It returns a copy of the zero coupon bond curve
+	 *
+	 * @return the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public double[] getBonds() {
+		return zeroBondCurve.clone();
+	}
+
+	/**
+	 * It returns the index to value spot-starting and forward-starting swaps on
+	 * the curve
+	 *
+	 * @return the index
+	 */
+	public SwapAnnuityIndex getAnnuityIndex() {
+		return annuityIndex;
+	}
+
+	/**
+	 * It returns the swap on the whole tenure structure of the curve
+	 *
+	 * @return the swap
+	 */
+	public Swap getSwap() {
+		return swap;
+	}
+}
@@ -0,0 +1,32 @@
+package com.andreamazzon.handout3;
+
+/**
+ * This class represents a value computed on a curve published by
+ * CurvePublisher, tagged with the version of the curve that has been used.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class VersionedValue {
+
+	private final double value;
+	private final long curveVersion;
+
+	public VersionedValue(double value, long curveVersion) {
+		this.value = value;
+		this.curveVersion = curveVersion;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public long getCurveVersion() {
+		return curveVersion;
+	}
+
+	@Override
+	public String toString() {
+		return value + " (curve version " + curveVersion + ")";
+	}
+}
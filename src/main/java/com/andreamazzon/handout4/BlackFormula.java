@@ -0,0 +1,78 @@
+package com.andreamazzon.handout4;
+
+/**
+ * This class computes the undiscounted prices of a call and of a digital call
+ * under the Black model, with the cumulative distribution function of
+ * FastNormalDistribution. The prices only depend on the forward F, on the
+ * strike K and on the total volatility sigma sqrt(T), so that the same methods
+ * are used for caplets, swaptions and for the strips of calls of the
+ * replication of products in arrears, and the limit cases are treated in the
+ * same way everywhere. Under the Black model the forward is log-normal, hence
+ * it cannot be negative: a negative forward is rejected by an
+ * IllegalArgumentException, instead of giving NaN as the logarithm would do or
+ * being silently priced at its intrinsic value. A zero forward stays zero, so
+ * that its options are worth their intrinsic value.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public final class BlackFormula {
+
+	private BlackFormula() {
+	}
+
+	/**
+	 * It computes and returns the undiscounted price F Phi(d_1) - K Phi(d_2) of a
+	 * call under the Black model, with d_1 = log(F/K)/(sigma sqrt(T)) + sigma
+	 * sqrt(T)/2 and d_2 = d_1 - sigma sqrt(T).
+	 *
+	 * @param forward,         the forward F of the underlying
+	 * @param strike,          the strike K
+	 * @param totalVolatility, the total volatility sigma sqrt(T)
+	 * @return the price of the call
+	 * @throws IllegalArgumentException if the forward is negative
+	 */
+	public static double getCallValue(double forward, double strike, double totalVolatility) {
+		checkForward(forward);
+		if (strike <= 0) {
+			// the option is always exercised
+			return forward - strike;
+		}
+		if (totalVolatility <= 0 || forward <= 0) {
+			// no randomness left: the payoff is known
+			return Math.max(forward - strike, 0);
+		}
+		final double dPlus = Math.log(forward / strike) / totalVolatility + 0.5 * totalVolatility;
+		return forward * FastNormalDistribution.cumulativeDistribution(dPlus)
+				- strike * FastNormalDistribution.cumulativeDistribution(dPlus - totalVolatility);
+	}
+
+	/**
+	 * It computes and returns the undiscounted price Phi(d_2) of a digital call
+	 * paying one if the underlying is above the strike, under the Black model.
+	 *
+	 * @param forward,         the forward F of the underlying
+	 * @param strike,          the strike K
+	 * @param totalVolatility, the total volatility sigma sqrt(T)
+	 * @return the price of the digital call
+	 * @throws IllegalArgumentException if the forward is negative
+	 */
+	public static double getDigitalCallValue(double forward, double strike, double totalVolatility) {
+		checkForward(forward);
+		if (strike <= 0) {
+			return 1;
+		}
+		if (totalVolatility <= 0 || forward <= 0) {
+			return forward > strike ? 1 : 0;
+		}
+		return FastNormalDistribution
+				.cumulativeDistribution(Math.log(forward / strike) / totalVolatility - 0.5 * totalVolatility);
+	}
+
+	private static void checkForward(double forward) {
+		// written in this way, a NaN forward is rejected as well
+		if (!(forward >= 0)) {
+			throw new IllegalArgumentException("The forward " + forward + " of the Black model must be non negative");
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.andreamazzon.handout4;
+
+import java.util.stream.IntStream;
+
+/**
+ * This class computes the values of many caplets under the Black model at the
+ * same time, as InterestRatesProducts.calculateCapletValueBlackModel does for
+ * a single caplet. The caplets are given as a structure of arrays: the i-th
+ * caplet is identified by the i-th element of every array. The arrays are
+ * split in chunks of consecutive caplets which are valued in parallel, and
+ * inside every chunk the Black formula of BlackFormula, based on
+ * FastNormalDistribution, is computed in a single loop.
+ * The values of the caplets can also be summed into the values of caps, every
+ * caplet being given the identifier of the cap it belongs to.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public final class CapletBatchPricer {
+
+	// the number of caplets valued by one task: big enough to make the overhead of the task negligible
+	private static final int CHUNK_SIZE = 4096;
+
+	private CapletBatchPricer() {
+	}
+
+	/**
+	 * It computes and returns the values of a list of caplets under the Black
+	 * model.
+	 *
+	 * @param initialForwardLibors,       the L_0 = L(T_1,T_2;0) of the caplets
+	 * @param liborVolatilities,          the volatilities of the LIBOR processes
+	 *                                    under the Black model
+	 * @param strikes,                    the strikes of the caplets
+	 * @param fixingDates,                the T_1 of the caplets
+	 * @param paymentDates,               the T_2 of the caplets
+	 * @param paymentDateDiscountFactors, the P(T_2;0) of the caplets
+	 * @param notionals,                  the notionals of the caplets
+	 * @return the values of the caplets
+	 */
+	public static double[] calculateCapletValuesBlackModel(double[] initialForwardLibors, double[] liborVolatilities,
+			double[] strikes, double[] fixingDates, double[] paymentDates, double[] paymentDateDiscountFactors,
+			double[] notionals) {
+		final double[] capletValues = new double[initialForwardLibors.length];
+		calculateCapletValuesBlackModel(initialForwardLibors, liborVolatilities, strikes, fixingDates, paymentDates,
+				paymentDateDiscountFactors, notionals, capletValues);
+		return capletValues;
+	}
+
+	/**
+	 * It computes the values of a list of caplets under the Black model and
+	 * writes them in a given array, so that no memory is allocated when the same
+	 * book is valued many times.
+	 *
+	 * @param initialForwardLibors,       the L_0 = L(T_1,T_2;0) of the caplets
+	 * @param liborVolatilities,          the volatilities of the LIBOR processes
+	 *                                    under the Black model
+	 * @param strikes,                    the strikes of the caplets
+	 * @param fixingDates,                the T_1 of the caplets
+	 * @param paymentDates,               the T_2 of the caplets
+	 * @param paymentDateDiscountFactors, the P(T_2;0) of the caplets
+	 * @param notionals,                  the notionals of the caplets
+	 * @param capletValues,               the array where the values are written
+	 */
+	public static void calculateCapletValuesBlackModel(double[] initialForwardLibors, double[] liborVolatilities,
+			double[] strikes, double[] fixingDates, double[] paymentDates, double[] paymentDateDiscountFactors,
+			double[] notionals, double[] capletValues) {
+		final int numberOfCaplets = initialForwardLibors.length;
+		if (liborVolatilities.length != numberOfCaplets || strikes.length != numberOfCaplets
+				|| fixingDates.length != numberOfCaplets || paymentDates.length != numberOfCaplets
+				|| paymentDateDiscountFactors.length != numberOfCaplets || notionals.length != numberOfCaplets
+				|| capletValues.length != numberOfCaplets) {
+			throw new IllegalArgumentException("All the arrays must have the same length");
+		}
+		final int numberOfChunks = (numberOfCaplets + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		IntStream.range(0, numberOfChunks).parallel().forEach(chunkIndex -> calculateChunk(initialForwardLibors,
+				liborVolatilities, strikes, fixingDates, paymentDates, paymentDateDiscountFactors, notionals,
+				capletValues, chunkIndex * CHUNK_SIZE, Math.min(numberOfCaplets, (chunkIndex + 1) * CHUNK_SIZE)));
+	}
+
+	/*
+	 * The Black formula for the caplets from firstIndex (included) to lastIndex
+	 * (excluded): N P(T_2;0)(T_2-T_1)(L_0 Phi(d_1) - K Phi(d_2)), with d_1 =
+	 * (log(L_0/K) + sigma^2 T_1/2)/(sigma sqrt(T_1)) and d_2 = d_1 - sigma
+	 * sqrt(T_1).
+	 */
+	private static void calculateChunk(double[] initialForwardLibors, double[] liborVolatilities, double[] strikes,
+			double[] fixingDates, double[] paymentDates, double[] paymentDateDiscountFactors, double[] notionals,
+			double[] capletValues, int firstIndex, int lastIndex) {
+		for (int capletIndex = firstIndex; capletIndex < lastIndex; capletIndex++) {
+			final double forward = initialForwardLibors[capletIndex];
+			final double strike = strikes[capletIndex];
+			final double fixingDate = fixingDates[capletIndex];
+			final double volatilityTimesSquareRoot = liborVolatilities[capletIndex] * Math.sqrt(Math.max(fixingDate, 0));
+			final double optionValue = BlackFormula.getCallValue(forward, strike, volatilityTimesSquareRoot);
+			capletValues[capletIndex] = notionals[capletIndex] * paymentDateDiscountFactors[capletIndex]
+					* (paymentDates[capletIndex] - fixingDate) * optionValue;
+		}
+	}
+
+	/**
+	 * It computes and returns the values of a list of caps under the Black
+	 * model. Every cap is the sum of the caplets with its identifier.
+	 *
+	 * @param initialForwardLibors,       the L_0 = L(T_1,T_2;0) of the caplets
+	 * @param liborVolatilities,          the volatilities of the LIBOR processes
+	 *                                    under the Black model
+	 * @param strikes,                    the strikes of the caplets
+	 * @param fixingDates,                the T_1 of the caplets
+	 * @param paymentDates,               the T_2 of the caplets
+	 * @param paymentDateDiscountFactors, the P(T_2;0) of the caplets
+	 * @param notionals,                  the notionals of the caplets
+	 * @param capIdentifiers,             the identifier (from 0 to numberOfCaps-1)
+	 *                                    of the cap every caplet belongs to
+	 * @param numberOfCaps,               the number of caps
+	 * @return the values of the caps
+	 */
+	public static double[] calculateCapValuesBlackModel(double[] initialForwardLibors, double[] liborVolatilities,
+			double[] strikes, double[] fixingDates, double[] paymentDates, double[] paymentDateDiscountFactors,
+			double[] notionals, int[] capIdentifiers, int numberOfCaps) {
+		final double[] capletValues = calculateCapletValuesBlackModel(initialForwardLibors, liborVolatilities, strikes,
+				fixingDates, paymentDates, paymentDateDiscountFactors, notionals);
+		return aggregateIntoCaps(capIdentifiers, capletValues, numberOfCaps);
+	}
+
+	/**
+	 * It sums the values of caplets into the values of the caps they belong to.
+	 *
+	 * @param capIdentifiers, the identifier (from 0 to numberOfCaps-1) of the cap
+	 *                        every caplet belongs to
+	 * @param capletValues,   the values of the caplets
+	 * @param numberOfCaps,   the number of caps
+	 * @return the values of the caps
+	 */
+	public static double[] aggregateIntoCaps(int[] capIdentifiers, double[] capletValues, int numberOfCaps) {
+		if (capIdentifiers.length != capletValues.length) {
+			throw new IllegalArgumentException("Every caplet must have the identifier of its cap");
+		}
+		// a single loop: it is memory bound and much cheaper than the valuation of the caplets
+		final double[] capValues = new double[numberOfCaps];
+		for (int capletIndex = 0; capletIndex < capletValues.length; capletIndex++) {
+			capValues[capIdentifiers[capletIndex]] += capletValues[capletIndex];
+		}
+		return capValues;
+	}
+}
@@ -1,10 +1,13 @@
 package com.andreamazzon.handout4;
 
+import com.andreamazzon.handout2.CurveSnapshot;
 import com.andreamazzon.handout3.Swap;
 import com.andreamazzon.handout3.SwapWithoutFinmath;
 
 import net.finmath.exception.CalculationException;
 import net.finmath.functions.AnalyticFormulas;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
 import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
 import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
 import net.finmath.montecarlo.assetderivativevaluation.products.EuropeanOption;
@@ -84,6 +87,78 @@ public class InterestRatesProducts {
 		return notional * paymentDateDiscountFactor * periodLength * europeanOption.getValue(blackModel);
 	}
 
+	/**
+	 * This method calculates and return the value of a Caplet under the Black
+	 * model, using a Monte Carlo method with a given seed.
+	 *
+	 * @param initialForwardLibor,       i.e. L_0 = L(T_1,T_2;0)
+	 * @param liborVolatility,           the volatility of the LIBOR process under
+	 *                                   the Black model
+	 * @param strike,                    the strike of the option
+	 * @param fixing,                    i.e. T_1
+	 * @param paymentDate,               i.e. T_2
+	 * @param paymentDateDiscountFactor, i.e. P(T_2;0)
+	 * @param notional,                  i.e. N
+	 * @param seed,                      the seed of the random numbers
+	 * @throws CalculationException
+	 */
+	public static double calculateCapletValueBlackModel(double initialForwardLibor, double liborVolatility,
+			double strike, double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional,
+			int numberOfTimeStepsForDiscretization, int numberOfSimulations, int seed) throws CalculationException {
+
+		final double timeStep = fixingDate / numberOfTimeStepsForDiscretization;
+
+		final TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeStepsForDiscretization,
+				timeStep);
+
+		// the Brownian motion with our seed, which we give to the model
+		final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1,
+				numberOfSimulations, seed);
+
+		final AssetModelMonteCarloSimulationModel blackModel = new MonteCarloBlackScholesModel(initialForwardLibor, 0,
+				liborVolatility, brownianMotion);
+
+		return calculateCapletValueBlackModel(blackModel, strike, fixingDate, paymentDate, paymentDateDiscountFactor,
+				notional);
+	}
+
+	/**
+	 * This method calculates and return the value of a Caplet under the Black
+	 * model, using a Monte Carlo method with a given seed. The simulation is taken
+	 * from a cache: caplets differing only by strike, payment date, discount factor
+	 * or notional are then valued on the same paths, which are simulated only once.
+	 *
+	 * @param initialForwardLibor,       i.e. L_0 = L(T_1,T_2;0)
+	 * @param liborVolatility,           the volatility of the LIBOR process under
+	 *                                   the Black model
+	 * @param strike,                    the strike of the option
+	 * @param fixing,                    i.e. T_1
+	 * @param paymentDate,               i.e. T_2
+	 * @param paymentDateDiscountFactor, i.e. P(T_2;0)
+	 * @param notional,                  i.e. N
+	 * @param seed,                      the seed of the random numbers
+	 * @param cache,                     the cache of the simulations
+	 * @throws CalculationException
+	 */
+	public static double calculateCapletValueBlackModel(double initialForwardLibor, double liborVolatility,
+			double strike, double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional,
+			int numberOfTimeStepsForDiscretization, int numberOfSimulations, int seed, MonteCarloSimulationCache cache)
+			throws CalculationException {
+		final AssetModelMonteCarloSimulationModel blackModel = cache.getSimulation(initialForwardLibor,
+				liborVolatility, fixingDate, numberOfTimeStepsForDiscretization, numberOfSimulations, seed);
+		return calculateCapletValueBlackModel(blackModel, strike, fixingDate, paymentDate, paymentDateDiscountFactor,
+				notional);
+	}
+
+	// the value of the caplet on the paths of a given simulation of the LIBOR
+	private static double calculateCapletValueBlackModel(AssetModelMonteCarloSimulationModel blackModel,
+			double strike, double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional)
+			throws CalculationException {
+		final EuropeanOption europeanOption = new EuropeanOption(fixingDate, strike);
+		final double periodLength = paymentDate - fixingDate;
+		return notional * paymentDateDiscountFactor * periodLength * europeanOption.getValue(blackModel);
+	}
+
 	/**
 	 * It calculates the value of a swaption under the Black model. The price of the
 	 * swaption is computed as the price of a call option on the par swap rate S,
@@ -143,4 +218,21 @@ public class InterestRatesProducts {
 
 	}
 
+	/**
+	 * It calculates the value of a swaption under the Black model, for a curve
+	 * stored in a snapshot file mapped in memory: the tenure structure and the
+	 * zero coupon bond curve are the ones of the snapshot.
+	 *
+	 * @param curve,              the curve snapshot
+	 * @param strike,             the strike of the option
+	 * @param notional,           i.e. N
+	 * @param swapRateVolatility, the volatility of the par swap rate (log-normal
+	 *                            dynamics)
+	 */
+	public static double calculateSwaptionValueBlack(CurveSnapshot curve, double strike, double notional,
+			double swapRateVolatility) {
+		return calculateSwaptionValueBlack(curve.getBonds(), curve.getTenureStructure(), strike, notional,
+				swapRateVolatility);
+	}
+
 }
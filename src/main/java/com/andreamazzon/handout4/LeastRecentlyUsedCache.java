@@ -0,0 +1,146 @@
+package com.andreamazzon.handout4;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class represents a cache which keeps a bounded number of values, and
+ * whose values can also be bounded by their total weight, for example the
+ * memory they take. When one of the bounds is exceeded, the values used least
+ * recently are removed. A value which is not in the cache is built by a
+ * function of its key, outside the lock, so that values of different keys can
+ * be built in parallel: if two threads build the value of the same key at the
+ * same time, the one of the first is kept and returned to both. An object of
+ * this class can be used by many threads at the same time.
+ *
+ * @author Andrea Mazzon
+ *
+ * @param <K> the type of the keys, which must implement equals and hashCode
+ * @param <V> the type of the values
+ */
+public class LeastRecentlyUsedCache<K, V> {
+
+	private final int maximumNumberOfValues;
+	private final long maximumWeight;
+	private final ToLongFunction<? super K> weightOfKey;
+
+	// in access order: the first entry is the one used least recently
+	private final LinkedHashMap<K, V> values = new LinkedHashMap<K, V>(16, 0.75f, true);
+	private long weight = 0;
+	private long numberOfHits = 0;
+	private long numberOfMisses = 0;
+
+	/**
+	 * It builds an empty cache bounded by the number of values and by their total
+	 * weight.
+	 *
+	 * @param maximumNumberOfValues, the maximum number of values kept
+	 * @param maximumWeight,         the maximum total weight of the values kept
+	 * @param weightOfKey,           the weight of the value of a key
+	 */
+	public LeastRecentlyUsedCache(int maximumNumberOfValues, long maximumWeight,
+			ToLongFunction<? super K> weightOfKey) {
+		if (maximumNumberOfValues < 1 || maximumWeight < 1) {
+			throw new IllegalArgumentException("The cache must be able to keep at least one value");
+		}
+		this.maximumNumberOfValues = maximumNumberOfValues;
+		this.maximumWeight = maximumWeight;
+		this.weightOfKey = weightOfKey;
+	}
+
+	/**
+	 * It builds an empty cache bounded only by the number of values.
+	 *
+	 * @param maximumNumberOfValues, the maximum number of values kept
+	 */
+	public LeastRecentlyUsedCache(int maximumNumberOfValues) {
+		this(maximumNumberOfValues, Long.MAX_VALUE, key -> 0);
+	}
+
+	/**
+	 * It returns the value of the given key: the one already in the cache, if
+	 * any, or a new one built by the given function, which is added to the cache.
+	 *
+	 * @param key,     the key
+	 * @param builder, the function building the value of the key
+	 * @return the value
+	 */
+	public V get(K key, Function<? super K, ? extends V> builder) {
+		synchronized (values) {
+			final V value = values.get(key);
+			if (value != null) {
+				numberOfHits++;
+				return value;
+			}
+			numberOfMisses++;
+		}
+		final V newValue = builder.apply(key);
+		synchronized (values) {
+			final V value = values.putIfAbsent(key, newValue);
+			if (value != null) {
+				return value;
+			}
+			weight += weightOfKey.applyAsLong(key);
+			removeLeastRecentlyUsed();
+			return newValue;
+		}
+	}
+
+	private void removeLeastRecentlyUsed() {
+		final Iterator<Map.Entry<K, V>> iterator = values.entrySet().iterator();
+		// the value just added is the last one, and it is always kept
+		while (values.size() > 1 && (values.size() > maximumNumberOfValues || weight > maximumWeight)) {
+			weight -= weightOfKey.applyAsLong(iterator.next().getKey());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * It removes all the values.
+	 */
+	public void clear() {
+		synchronized (values) {
+			values.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * @return the number of values in the cache
+	 */
+	public int size() {
+		synchronized (values) {
+			return values.size();
+		}
+	}
+
+	/**
+	 * @return the total weight of the values in the cache
+	 */
+	public long getWeight() {
+		synchronized (values) {
+			return weight;
+		}
+	}
+
+	/**
+	 * @return the number of requests answered by a value in the cache
+	 */
+	public long getNumberOfHits() {
+		synchronized (values) {
+			return numberOfHits;
+		}
+	}
+
+	/**
+	 * @return the number of requests for which a new value was built
+	 */
+	public long getNumberOfMisses() {
+		synchronized (values) {
+			return numberOfMisses;
+		}
+	}
+}
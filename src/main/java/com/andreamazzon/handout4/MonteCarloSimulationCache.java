@@ -0,0 +1,165 @@
+package com.andreamazzon.handout4;
+
+import java.util.Objects;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class keeps the Monte Carlo simulations of the LIBOR under the Black
+ * model used by InterestRatesProducts.calculateCapletValueBlackModel, so that
+ * caplets which only differ by strike, notional or discount factor, as the ones
+ * of a strike ladder, are valued on the same paths: the paths are simulated
+ * once, when the first caplet is valued, and the finmath model keeps them.
+ * A simulation is identified by the initial value and the volatility of the
+ * LIBOR, the fixing date, the number of time steps, the number of paths and the
+ * seed.
+ *
+ * Since the paths take a lot of memory, the number of simulations and their
+ * estimated total size are bounded: when one of the bounds is exceeded, the
+ * simulations used least recently are removed, by a LeastRecentlyUsedCache.
+ * An object of this class can be used by many threads at the same time.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class MonteCarloSimulationCache {
+
+	private final LeastRecentlyUsedCache<SimulationKey, AssetModelMonteCarloSimulationModel> simulations;
+
+	/**
+	 * It builds an empty cache.
+	 *
+	 * @param maximumNumberOfSimulations, the maximum number of simulations kept
+	 * @param maximumNumberOfBytes,       the maximum estimated memory taken by the
+	 *                                    paths of all the simulations kept
+	 */
+	public MonteCarloSimulationCache(int maximumNumberOfSimulations, long maximumNumberOfBytes) {
+		if (maximumNumberOfSimulations < 1 || maximumNumberOfBytes < 1) {
+			throw new IllegalArgumentException("The cache must be able to keep at least one simulation");
+		}
+		simulations = new LeastRecentlyUsedCache<SimulationKey, AssetModelMonteCarloSimulationModel>(
+				maximumNumberOfSimulations, maximumNumberOfBytes, SimulationKey::getNumberOfBytes);
+	}
+
+	/**
+	 * It returns the simulation of the LIBOR with the given parameters: the one
+	 * already in the cache, if any, or a new one, which is added to the cache.
+	 *
+	 * @param initialForwardLibor,                i.e. L_0 = L(T_1,T_2;0)
+	 * @param liborVolatility,                    the volatility of the LIBOR
+	 * @param fixingDate,                         i.e. T_1, the last time of the
+	 *                                            simulation
+	 * @param numberOfTimeStepsForDiscretization, the number of time steps
+	 * @param numberOfSimulations,                the number of paths
+	 * @param seed,                               the seed of the random numbers
+	 * @return the simulation
+	 */
+	public AssetModelMonteCarloSimulationModel getSimulation(double initialForwardLibor, double liborVolatility,
+			double fixingDate, int numberOfTimeStepsForDiscretization, int numberOfSimulations, int seed) {
+		final SimulationKey key = new SimulationKey(initialForwardLibor, liborVolatility, fixingDate,
+				numberOfTimeStepsForDiscretization, numberOfSimulations, seed);
+		// building the model is cheap: the paths are only simulated when it is first used
+		return simulations.get(key, simulationKey -> {
+			final double timeStep = fixingDate / numberOfTimeStepsForDiscretization;
+			final TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeStepsForDiscretization,
+					timeStep);
+			final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1,
+					numberOfSimulations, seed);
+			return new MonteCarloBlackScholesModel(initialForwardLibor, 0, liborVolatility, brownianMotion);
+		});
+	}
+
+	/**
+	 * It removes all the simulations.
+	 */
+	public void clear() {
+		simulations.clear();
+	}
+
+	/**
+	 * @return the number of simulations in the cache
+	 */
+	public int getNumberOfSimulations() {
+		return simulations.size();
+	}
+
+	/**
+	 * @return the estimated memory taken by the paths of the simulations in the
+	 *         cache, in bytes
+	 */
+	public long getNumberOfBytes() {
+		return simulations.getWeight();
+	}
+
+	/**
+	 * @return the number of requests answered by a simulation in the cache
+	 */
+	public long getNumberOfHits() {
+		return simulations.getNumberOfHits();
+	}
+
+	/**
+	 * @return the number of requests for which a new simulation was built
+	 */
+	public long getNumberOfMisses() {
+		return simulations.getNumberOfMisses();
+	}
+
+	/*
+	 * The parameters identifying a simulation. The doubles are compared by their
+	 * bits, as Double.equals does.
+	 */
+	private static final class SimulationKey {
+
+		private final double initialForwardLibor;
+		private final double liborVolatility;
+		private final double fixingDate;
+		private final int numberOfTimeSteps;
+		private final int numberOfSimulations;
+		private final int seed;
+
+		SimulationKey(double initialForwardLibor, double liborVolatility, double fixingDate, int numberOfTimeSteps,
+				int numberOfSimulations, int seed) {
+			this.initialForwardLibor = initialForwardLibor;
+			this.liborVolatility = liborVolatility;
+			this.fixingDate = fixingDate;
+			this.numberOfTimeSteps = numberOfTimeSteps;
+			this.numberOfSimulations = numberOfSimulations;
+			this.seed = seed;
+		}
+
+		/*
+		 * The Brownian increments and the values of the LIBOR at every time, one
+		 * double for every path.
+		 */
+		long getNumberOfBytes() {
+			return (2L * numberOfTimeSteps + 1) * numberOfSimulations * Double.BYTES;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+			if (!(object instanceof SimulationKey)) {
+				return false;
+			}
+			final SimulationKey other = (SimulationKey) object;
+			return Double.compare(initialForwardLibor, other.initialForwardLibor) == 0
+					&& Double.compare(liborVolatility, other.liborVolatility) == 0
+					&& Double.compare(fixingDate, other.fixingDate) == 0 && numberOfTimeSteps == other.numberOfTimeSteps
+					&& numberOfSimulations == other.numberOfSimulations && seed == other.seed;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps,
+					numberOfSimulations, seed);
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package com.andreamazzon.handout5;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import net.finmath.functions.LinearAlgebra;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.randomnumbers.MersenneTwister;
+
+/**
+ * This class values caps, floors and cap spreads made by any number of caplets
+ * by a Monte Carlo method, when the LIBORs have log-normal dynamics with given
+ * volatilities and correlations, as in
+ * InterestRatesProductsEnhanced.calculateCapValueBlackModel, which is limited to
+ * two caplets.
+ *
+ * The payoff of the i-th caplet only depends on the value of the i-th LIBOR at
+ * its fixing date T_i, i.e., L_i(T_i) = L_i(0) exp(-Sigma_ii/2 + X_i), where X
+ * is a normal vector with covariances Sigma_ij = sigma_i sigma_j rho_ij
+ * min(T_i,T_j): the LIBORs are then simulated only at their fixing dates,
+ * without time discretization, as X = A Z with Z a vector of independent
+ * standard normal random variables. The matrix A is computed once, when the
+ * object is built: it is the Cholesky factor of Sigma, or, if fewer factors
+ * are wanted, the matrix given by the principal components of the
+ * correlations of X.
+ *
+ * The paths are generated and used in blocks of fixed size, and only the sums
+ * of the payoffs of every caplet are kept, so that the memory does not depend
+ * on the number of paths. Every block has its own random number generator,
+ * whose seed depends on the seed given and on the index of the block: the
+ * blocks are split in a fixed number of groups valued in parallel, and the
+ * values do not depend on the number of threads.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CorrelatedCapMonteCarlo {
+
+	private static final int BLOCK_SIZE = 1024;
+	private static final int NUMBER_OF_GROUPS = 16;
+
+	private final int numberOfCaplets;
+	private final double[] initialLibors;
+	private final double[] paymentUnits;
+	// the values -Sigma_ii/2, the row i of A and the number of its elements which are not zero
+	private final double[] drifts;
+	private final double[][] factorLoadings;
+	private final int[] rowLengths;
+	private final int numberOfFactors;
+
+	/**
+	 * It builds the object, computing the decomposition of the covariance matrix.
+	 *
+	 * @param initialLibors,              the L_i(0) = L(T_i,T_{i+1};0)
+	 * @param liborVolatilities,          the volatilities of the LIBORs
+	 * @param correlationMatrix,          the correlations of the LIBORs
+	 * @param fixingDates,                the fixing dates T_i
+	 * @param paymentDates,               the payment dates T_{i+1}
+	 * @param paymentDateDiscountFactors, the P(T_{i+1};0)
+	 * @param notional,                   i.e. N
+	 * @param numberOfFactors,            the number of independent normal random
+	 *                                    variables used for every path: if it is
+	 *                                    the number of caplets, the covariance is
+	 *                                    exact
+	 */
+	public CorrelatedCapMonteCarlo(double[] initialLibors, double[] liborVolatilities, double[][] correlationMatrix,
+			double[] fixingDates, double[] paymentDates, double[] paymentDateDiscountFactors, double notional,
+			int numberOfFactors) {
+		numberOfCaplets = initialLibors.length;
+		if (liborVolatilities.length != numberOfCaplets || correlationMatrix.length != numberOfCaplets
+				|| fixingDates.length != numberOfCaplets || paymentDates.length != numberOfCaplets
+				|| paymentDateDiscountFactors.length != numberOfCaplets) {
+			throw new IllegalArgumentException("Every caplet must have its LIBOR, volatility and dates");
+		}
+		if (numberOfFactors < 1 || numberOfFactors > numberOfCaplets) {
+			throw new IllegalArgumentException("The number of factors must be between 1 and the number of caplets");
+		}
+		this.initialLibors = initialLibors.clone();
+		this.numberOfFactors = numberOfFactors;
+		paymentUnits = new double[numberOfCaplets];
+		drifts = new double[numberOfCaplets];
+		final double[][] covarianceMatrix = new double[numberOfCaplets][numberOfCaplets];
+		for (int rowIndex = 0; rowIndex < numberOfCaplets; rowIndex++) {
+			paymentUnits[rowIndex] = notional * paymentDateDiscountFactors[rowIndex]
+					* (paymentDates[rowIndex] - fixingDates[rowIndex]);
+			for (int columnIndex = 0; columnIndex < numberOfCaplets; columnIndex++) {
+				covarianceMatrix[rowIndex][columnIndex] = liborVolatilities[rowIndex] * liborVolatilities[columnIndex]
+						* correlationMatrix[rowIndex][columnIndex]
+						* Math.max(Math.min(fixingDates[rowIndex], fixingDates[columnIndex]), 0);
+			}
+			drifts[rowIndex] = -0.5 * covarianceMatrix[rowIndex][rowIndex];
+		}
+		rowLengths = new int[numberOfCaplets];
+		if (numberOfFactors == numberOfCaplets) {
+			factorLoadings = getCholeskyFactor(covarianceMatrix);
+			// the factor is lower triangular
+			for (int rowIndex = 0; rowIndex < numberOfCaplets; rowIndex++) {
+				rowLengths[rowIndex] = rowIndex + 1;
+			}
+		} else {
+			factorLoadings = getReducedFactors(covarianceMatrix, numberOfFactors);
+			Arrays.fill(rowLengths, numberOfFactors);
+		}
+	}
+
+	/*
+	 * The lower triangular matrix A with A A^T = Sigma. Sigma may only be positive
+	 * semi-definite (for example when two LIBORs are perfectly correlated, or a
+	 * LIBOR has already been fixed): a pivot which is zero up to rounding gives a
+	 * zero column.
+	 */
+	private static double[][] getCholeskyFactor(double[][] covarianceMatrix) {
+		final int dimension = covarianceMatrix.length;
+		final double[][] factor = new double[dimension][dimension];
+		for (int columnIndex = 0; columnIndex < dimension; columnIndex++) {
+			double pivot = covarianceMatrix[columnIndex][columnIndex];
+			for (int k = 0; k < columnIndex; k++) {
+				pivot -= factor[columnIndex][k] * factor[columnIndex][k];
+			}
+			if (pivot < -1E-10 * Math.max(covarianceMatrix[columnIndex][columnIndex], 1E-300)) {
+				throw new IllegalArgumentException("The correlation matrix is not positive semi-definite");
+			}
+			final double diagonalElement = pivot > 1E-14 * covarianceMatrix[columnIndex][columnIndex]
+					? Math.sqrt(pivot)
+					: 0;
+			factor[columnIndex][columnIndex] = diagonalElement;
+			for (int rowIndex = columnIndex + 1; rowIndex < dimension; rowIndex++) {
+				if (diagonalElement == 0) {
+					continue;
+				}
+				double element = covarianceMatrix[rowIndex][columnIndex];
+				for (int k = 0; k < columnIndex; k++) {
+					element -= factor[rowIndex][k] * factor[columnIndex][k];
+				}
+				factor[rowIndex][columnIndex] = element / diagonalElement;
+			}
+		}
+		return factor;
+	}
+
+	/*
+	 * The principal components of the correlations of X, given by
+	 * LinearAlgebra.factorReduction, multiplied by the standard deviations of X.
+	 * A LIBOR which has already been fixed has no randomness, and a zero row.
+	 */
+	private static double[][] getReducedFactors(double[][] covarianceMatrix, int numberOfFactors) {
+		final int dimension = covarianceMatrix.length;
+		final double[] standardDeviations = new double[dimension];
+		for (int rowIndex = 0; rowIndex < dimension; rowIndex++) {
+			standardDeviations[rowIndex] = Math.sqrt(covarianceMatrix[rowIndex][rowIndex]);
+		}
+		final double[][] correlations = new double[dimension][dimension];
+		for (int rowIndex = 0; rowIndex < dimension; rowIndex++) {
+			for (int columnIndex = 0; columnIndex < dimension; columnIndex++) {
+				final double product = standardDeviations[rowIndex] * standardDeviations[columnIndex];
+				correlations[rowIndex][columnIndex] = rowIndex == columnIndex ? 1.0
+						: product > 0 ? covarianceMatrix[rowIndex][columnIndex] / product : 0.0;
+			}
+		}
+		final double[][] factors = LinearAlgebra.factorReduction(correlations, numberOfFactors);
+		for (int rowIndex = 0; rowIndex < dimension; rowIndex++) {
+			for (int factorIndex = 0; factorIndex < numberOfFactors; factorIndex++) {
+				factors[rowIndex][factorIndex] *= standardDeviations[rowIndex];
+			}
+		}
+		return factors;
+	}
+
+	/**
+	 * It computes and returns the values of the caplets (or floorlets) of many
+	 * products at the same time, on the same paths.
+	 *
+	 * @param strikes,             the strikes: strikes[p][i] is the strike of the
+	 *                             i-th caplet of the p-th product
+	 * @param areCaps,             true for the products made by caplets, false for
+	 *                             the ones made by floorlets
+	 * @param numberOfSimulations, the number of paths
+	 * @param seed,                the seed of the random numbers
+	 * @return the values: values[p][i] is the value of the i-th caplet (or
+	 *         floorlet) of the p-th product
+	 */
+	public double[][] getCapletValues(double[][] strikes, boolean[] areCaps, int numberOfSimulations, int seed) {
+		final int numberOfProducts = strikes.length;
+		if (areCaps.length != numberOfProducts) {
+			throw new IllegalArgumentException("Every product must be a cap or a floor");
+		}
+		for (final double[] productStrikes : strikes) {
+			if (productStrikes.length != numberOfCaplets) {
+				throw new IllegalArgumentException("Every caplet must have its strike");
+			}
+		}
+		final int numberOfBlocks = (numberOfSimulations + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final double[][][] sumsOfGroups = new double[NUMBER_OF_GROUPS][numberOfProducts][numberOfCaplets];
+		IntStream.range(0, NUMBER_OF_GROUPS).parallel().forEach(groupIndex -> {
+			final double[] normals = new double[numberOfFactors];
+			final double[] libors = new double[numberOfCaplets];
+			final double[][] sums = sumsOfGroups[groupIndex];
+			for (int blockIndex = groupIndex; blockIndex < numberOfBlocks; blockIndex += NUMBER_OF_GROUPS) {
+				final MersenneTwister randomNumberGenerator = new MersenneTwister(
+						seed + 0x9E3779B97F4A7C15L * blockIndex);
+				final int pathsInBlock = Math.min(BLOCK_SIZE, numberOfSimulations - blockIndex * BLOCK_SIZE);
+				for (int pathIndex = 0; pathIndex < pathsInBlock; pathIndex++) {
+					for (int factorIndex = 0; factorIndex < numberOfFactors; factorIndex++) {
+						normals[factorIndex] = NormalDistribution
+								.inverseCumulativeDistribution(randomNumberGenerator.nextDouble());
+					}
+					for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+						final double[] loadings = factorLoadings[capletIndex];
+						double normal = 0;
+						for (int factorIndex = 0; factorIndex < rowLengths[capletIndex]; factorIndex++) {
+							normal += loadings[factorIndex] * normals[factorIndex];
+						}
+						libors[capletIndex] = initialLibors[capletIndex] * Math.exp(drifts[capletIndex] + normal);
+					}
+					for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+						final double[] productStrikes = strikes[productIndex];
+						final double[] productSums = sums[productIndex];
+						final double sign = areCaps[productIndex] ? 1.0 : -1.0;
+						for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+							productSums[capletIndex] += Math.max(sign * (libors[capletIndex] - productStrikes[capletIndex]),
+									0);
+						}
+					}
+				}
+			}
+		});
+
+		// the groups are summed always in the same order
+		final double[][] values = new double[numberOfProducts][numberOfCaplets];
+		for (int groupIndex = 0; groupIndex < NUMBER_OF_GROUPS; groupIndex++) {
+			for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+				for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+					values[productIndex][capletIndex] += sumsOfGroups[groupIndex][productIndex][capletIndex];
+				}
+			}
+		}
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+				values[productIndex][capletIndex] *= paymentUnits[capletIndex] / numberOfSimulations;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * It computes and returns the value of a cap with the same strike for all the
+	 * caplets.
+	 *
+	 * @param strike,              the strike
+	 * @param numberOfSimulations, the number of paths
+	 * @param seed,                the seed of the random numbers
+	 * @return the value of the cap
+	 */
+	public double getCapValue(double strike, int numberOfSimulations, int seed) {
+		return getSumOfValues(strike, true, numberOfSimulations, seed);
+	}
+
+	/**
+	 * It computes and returns the value of a floor with the same strike for all
+	 * the floorlets.
+	 *
+	 * @param strike,              the strike
+	 * @param numberOfSimulations, the number of paths
+	 * @param seed,                the seed of the random numbers
+	 * @return the value of the floor
+	 */
+	public double getFloorValue(double strike, int numberOfSimulations, int seed) {
+		return getSumOfValues(strike, false, numberOfSimulations, seed);
+	}
+
+	/**
+	 * It computes and returns the value of a cap spread, i.e., of a cap with a
+	 * lower strike bought and a cap with an upper strike sold. The two caps are
+	 * valued on the same paths.
+	 *
+	 * @param lowerStrike,         the strike of the cap bought
+	 * @param upperStrike,         the strike of the cap sold
+	 * @param numberOfSimulations, the number of paths
+	 * @param seed,                the seed of the random numbers
+	 * @return the value of the cap spread
+	 */
+	public double getCapSpreadValue(double lowerStrike, double upperStrike, int numberOfSimulations, int seed) {
+		final double[][] strikes = new double[2][numberOfCaplets];
+		Arrays.fill(strikes[0], lowerStrike);
+		Arrays.fill(strikes[1], upperStrike);
+		final double[][] values = getCapletValues(strikes, new boolean[] { true, true }, numberOfSimulations, seed);
+		double value = 0;
+		for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+			value += values[0][capletIndex] - values[1][capletIndex];
+		}
+		return value;
+	}
+
+	private double getSumOfValues(double strike, boolean isCap, int numberOfSimulations, int seed) {
+		final double[][] strikes = new double[1][numberOfCaplets];
+		Arrays.fill(strikes[0], strike);
+		final double[] values = getCapletValues(strikes, new boolean[] { isCap }, numberOfSimulations, seed)[0];
+		double value = 0;
+		for (final double capletValue : values) {
+			value += capletValue;
+		}
+		return value;
+	}
+
+	/**
+	 * @return the number of caplets
+	 */
+	public int getNumberOfCaplets() {
+		return numberOfCaplets;
+	}
+}
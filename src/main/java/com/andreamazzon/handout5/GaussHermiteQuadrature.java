@@ -0,0 +1,118 @@
+package com.andreamazzon.handout5;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * This class approximates the expectation E[f(Z)] of a function of a standard
+ * normal random variable Z by the Gauss-Hermite quadrature with n nodes, i.e.,
+ * by sum_i w_i f(z_i). The rule is exact when f is a polynomial of degree up to
+ * 2n-1. The nodes are the zeros of the Hermite polynomial of degree n, found by
+ * the Newton method from the usual initial guesses (see Numerical Recipes,
+ * Section 4.5).
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class GaussHermiteQuadrature {
+
+	private static final double PI_TO_MINUS_ONE_FOURTH = Math.pow(Math.PI, -0.25);
+	private static final double TOLERANCE = 1E-14;
+	private static final int MAXIMUM_NUMBER_OF_ITERATIONS = 100;
+
+	private final double[] nodes;
+	private final double[] weights;
+
+	/**
+	 * It computes the nodes and the weights of the rule.
+	 *
+	 * @param numberOfNodes, the number n of nodes
+	 */
+	public GaussHermiteQuadrature(int numberOfNodes) {
+		if (numberOfNodes < 1) {
+			throw new IllegalArgumentException("The rule must have at least one node");
+		}
+		nodes = new double[numberOfNodes];
+		weights = new double[numberOfNodes];
+		/*
+		 * The zeros x_i of the Hermite polynomials H_n orthogonal with respect to
+		 * exp(-x^2), in decreasing order, with weights W_i summing to sqrt(pi). Then
+		 * z_i = sqrt(2) x_i and w_i = W_i/sqrt(pi).
+		 */
+		final double[] zeros = new double[numberOfNodes];
+		double zero = 0;
+		for (int zeroIndex = 0; zeroIndex < (numberOfNodes + 1) / 2; zeroIndex++) {
+			if (zeroIndex == 0) {
+				zero = Math.sqrt(2 * numberOfNodes + 1) - 1.85575 * Math.pow(2 * numberOfNodes + 1, -0.16667);
+			} else if (zeroIndex == 1) {
+				zero -= 1.14 * Math.pow(numberOfNodes, 0.426) / zero;
+			} else if (zeroIndex == 2) {
+				zero = 1.86 * zero - 0.86 * zeros[0];
+			} else if (zeroIndex == 3) {
+				zero = 1.91 * zero - 0.91 * zeros[1];
+			} else {
+				zero = 2.0 * zero - zeros[zeroIndex - 2];
+			}
+			double derivative = 0;
+			for (int iteration = 0; iteration < MAXIMUM_NUMBER_OF_ITERATIONS; iteration++) {
+				// the normalized Hermite polynomials by their recurrence relation
+				double polynomial = PI_TO_MINUS_ONE_FOURTH;
+				double previousPolynomial = 0;
+				for (int degree = 1; degree <= numberOfNodes; degree++) {
+					final double secondPreviousPolynomial = previousPolynomial;
+					previousPolynomial = polynomial;
+					polynomial = zero * Math.sqrt(2.0 / degree) * previousPolynomial
+							- Math.sqrt((degree - 1.0) / degree) * secondPreviousPolynomial;
+				}
+				derivative = Math.sqrt(2.0 * numberOfNodes) * previousPolynomial;
+				final double step = polynomial / derivative;
+				zero -= step;
+				if (Math.abs(step) <= TOLERANCE) {
+					break;
+				}
+			}
+			zeros[zeroIndex] = zero;
+			zeros[numberOfNodes - 1 - zeroIndex] = -zero;
+			final double weight = 2.0 / (derivative * derivative) / Math.sqrt(Math.PI);
+			nodes[zeroIndex] = Math.sqrt(2) * zero;
+			nodes[numberOfNodes - 1 - zeroIndex] = -nodes[zeroIndex];
+			weights[zeroIndex] = weight;
+			weights[numberOfNodes - 1 - zeroIndex] = weight;
+		}
+	}
+
+	/**
+	 * It computes and returns the approximation of E[f(Z)], with Z standard
+	 * normal.
+	 *
+	 * @param function, the function f
+	 * @return the approximation of the expectation
+	 */
+	public double getExpectation(DoubleUnaryOperator function) {
+		double expectation = 0;
+		for (int nodeIndex = 0; nodeIndex < nodes.length; nodeIndex++) {
+			expectation += weights[nodeIndex] * function.applyAsDouble(nodes[nodeIndex]);
+		}
+		return expectation;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int getNumberOfNodes() {
+		return nodes.length;
+	}
+
+	/**
+	 * @return the nodes z_i, in decreasing order
+	 */
+	public double[] getNodes() {
+		return nodes.clone();
+	}
+
+	/**
+	 * @return the weights w_i, summing to 1
+	 */
+	public double[] getWeights() {
+		return weights.clone();
+	}
+}
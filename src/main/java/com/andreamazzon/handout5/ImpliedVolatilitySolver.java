@@ -0,0 +1,298 @@
+package com.andreamazzon.handout5;
+
+import java.util.stream.IntStream;
+
+import com.andreamazzon.handout4.FastNormalDistribution;
+
+import net.finmath.functions.NormalDistribution;
+
+/**
+ * This class computes the implied volatilities of many prices of caplets or
+ * swaptions at the same time, i.e., the volatilities which, given to the
+ * formulas of InterestRatesProducts.calculateCapletValueBlackModel,
+ * calculateSwaptionValueBlack or
+ * InterestRatesProductsEnhanced.calculateSwaptionValueBachelier, give back the
+ * prices. Every price is written as payoffUnit * C, where the payoff unit is
+ * N P(T_2;0)(T_2-T_1) for a caplet and N times the annuity for a swaption, and
+ * C is the undiscounted value of a call option with given forward, strike and
+ * maturity under the Black (log-normal) or Bachelier (normal) model.
+ *
+ * The call is first normalized: by put-call parity, only the time value of the
+ * out of the money option is inverted, as a function of the total volatility
+ * s = sigma sqrt(T). The equation is solved for the logarithm of the time value,
+ * which is much closer to a linear function of s than the time value itself
+ * when the option is far out of the money, by the Householder method of order
+ * three: it uses the first three derivatives of the price with respect to s,
+ * which are known in closed form, and it gets to the precision of the double
+ * numbers in two or three iterations from the starting points chosen below.
+ * The root is always kept in a bracket, and if a step goes out of it the
+ * bracket is halved instead: the number of iterations is then bounded.
+ *
+ * The prices which are not compatible with the model (for example, smaller than
+ * the intrinsic value, or bigger than the forward under the Black model) do not
+ * have an implied volatility: they are reported, and their volatility is NaN.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public final class ImpliedVolatilitySolver {
+
+	private static final int MAXIMUM_NUMBER_OF_ITERATIONS = 64;
+	private static final double RELATIVE_ACCURACY = 1E-15;
+	private static final int CHUNK_SIZE = 1024;
+	private static final double SQRT_TWO_PI = Math.sqrt(2 * Math.PI);
+
+	private ImpliedVolatilitySolver() {
+	}
+
+	/**
+	 * It computes and returns the implied volatility of a price under the Black
+	 * model.
+	 *
+	 * @param forward,    the initial value of the LIBOR or of the par swap rate
+	 * @param strike,     the strike
+	 * @param maturity,   the maturity of the option, i.e., the fixing date of the
+	 *                    caplet or the exercise date of the swaption
+	 * @param price,      the price
+	 * @param payoffUnit, the number multiplying the value of the call option
+	 * @return the implied volatility, or NaN if the price is not compatible with
+	 *         the Black model
+	 */
+	public static double calculateBlackImpliedVolatility(double forward, double strike, double maturity,
+			double price, double payoffUnit) {
+		if (!(forward > 0 && strike > 0 && maturity > 0 && payoffUnit > 0)) {
+			return Double.NaN;
+		}
+		/*
+		 * With x = log(F/K), the call divided by sqrt(FK) is b(s) = e^{x/2} Phi(x/s +
+		 * s/2) - e^{-x/2} Phi(x/s - s/2). By put-call parity, the time value of the call
+		 * with x is the one of the call with -|x|, which is out of the money: it lies
+		 * between 0 and e^{-|x|/2}.
+		 */
+		final double x = -Math.abs(Math.log(forward / strike));
+		// the time value is bounded by min(F,K): the call is worth at most F, the put at most K
+		final double timeValue = price / payoffUnit - Math.max(forward - strike, 0);
+		if (!(timeValue >= 0 && timeValue < Math.min(forward, strike))) {
+			return Double.NaN;
+		}
+		if (timeValue == 0) {
+			return 0;
+		}
+		final double totalVolatility = solveForTotalVolatility(x, timeValue / Math.sqrt(forward * strike), true);
+		return totalVolatility / Math.sqrt(maturity);
+	}
+
+	/**
+	 * It computes and returns the implied volatility of a price under the
+	 * Bachelier model.
+	 *
+	 * @param forward,    the initial value of the LIBOR or of the par swap rate
+	 * @param strike,     the strike
+	 * @param maturity,   the maturity of the option, i.e., the fixing date of the
+	 *                    caplet or the exercise date of the swaption
+	 * @param price,      the price
+	 * @param payoffUnit, the number multiplying the value of the call option
+	 * @return the implied volatility, or NaN if the price is not compatible with
+	 *         the Bachelier model
+	 */
+	public static double calculateBachelierImpliedVolatility(double forward, double strike, double maturity,
+			double price, double payoffUnit) {
+		if (!(maturity > 0 && payoffUnit > 0) || Double.isNaN(forward) || Double.isNaN(strike)) {
+			return Double.NaN;
+		}
+		/*
+		 * With theta = -|F-K|, the time value of the call is v(s) = s phi(theta/s) +
+		 * theta Phi(theta/s), which can be any non negative number.
+		 */
+		final double theta = -Math.abs(forward - strike);
+		final double timeValue = price / payoffUnit - Math.max(forward - strike, 0);
+		if (!(timeValue >= 0) || Double.isInfinite(timeValue)) {
+			return Double.NaN;
+		}
+		if (timeValue == 0) {
+			return 0;
+		}
+		final double totalVolatility = solveForTotalVolatility(theta, timeValue, false);
+		return totalVolatility / Math.sqrt(maturity);
+	}
+
+	/**
+	 * It computes the implied volatilities of a list of prices under the Black
+	 * model, given as a structure of arrays, in parallel.
+	 *
+	 * @param forwards,             the initial values of the LIBORs or of the par
+	 *                              swap rates
+	 * @param strikes,              the strikes
+	 * @param maturities,           the maturities of the options
+	 * @param prices,               the prices
+	 * @param payoffUnits,          the numbers multiplying the values of the call
+	 *                              options
+	 * @param impliedVolatilities,  the array where the implied volatilities are
+	 *                              written
+	 * @return the indices of the prices which are not compatible with the model,
+	 *         in increasing order: their volatility is NaN
+	 */
+	public static int[] calculateBlackImpliedVolatilities(double[] forwards, double[] strikes, double[] maturities,
+			double[] prices, double[] payoffUnits, double[] impliedVolatilities) {
+		return calculateImpliedVolatilities(forwards, strikes, maturities, prices, payoffUnits, impliedVolatilities,
+				true);
+	}
+
+	/**
+	 * It computes the implied volatilities of a list of prices under the
+	 * Bachelier model, given as a structure of arrays, in parallel.
+	 *
+	 * @param forwards,             the initial values of the LIBORs or of the par
+	 *                              swap rates
+	 * @param strikes,              the strikes
+	 * @param maturities,           the maturities of the options
+	 * @param prices,               the prices
+	 * @param payoffUnits,          the numbers multiplying the values of the call
+	 *                              options
+	 * @param impliedVolatilities,  the array where the implied volatilities are
+	 *                              written
+	 * @return the indices of the prices which are not compatible with the model,
+	 *         in increasing order: their volatility is NaN
+	 */
+	public static int[] calculateBachelierImpliedVolatilities(double[] forwards, double[] strikes,
+			double[] maturities, double[] prices, double[] payoffUnits, double[] impliedVolatilities) {
+		return calculateImpliedVolatilities(forwards, strikes, maturities, prices, payoffUnits, impliedVolatilities,
+				false);
+	}
+
+	private static int[] calculateImpliedVolatilities(double[] forwards, double[] strikes, double[] maturities,
+			double[] prices, double[] payoffUnits, double[] impliedVolatilities, boolean isLogNormal) {
+		final int numberOfPrices = prices.length;
+		if (forwards.length != numberOfPrices || strikes.length != numberOfPrices
+				|| maturities.length != numberOfPrices || payoffUnits.length != numberOfPrices
+				|| impliedVolatilities.length != numberOfPrices) {
+			throw new IllegalArgumentException("All the arrays must have the same length");
+		}
+		final int numberOfChunks = (numberOfPrices + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		IntStream.range(0, numberOfChunks).parallel().forEach(chunkIndex -> {
+			final int lastIndex = Math.min(numberOfPrices, (chunkIndex + 1) * CHUNK_SIZE);
+			for (int priceIndex = chunkIndex * CHUNK_SIZE; priceIndex < lastIndex; priceIndex++) {
+				impliedVolatilities[priceIndex] = isLogNormal
+						? calculateBlackImpliedVolatility(forwards[priceIndex], strikes[priceIndex],
+								maturities[priceIndex], prices[priceIndex], payoffUnits[priceIndex])
+						: calculateBachelierImpliedVolatility(forwards[priceIndex], strikes[priceIndex],
+								maturities[priceIndex], prices[priceIndex], payoffUnits[priceIndex]);
+			}
+		});
+		// the failures are collected at the end, so that the parallel loop does not share anything
+		return IntStream.range(0, numberOfPrices).filter(priceIndex -> Double.isNaN(impliedVolatilities[priceIndex]))
+				.toArray();
+	}
+
+	/*
+	 * It solves log(f(s)) = log(target), where f is the normalized time value b of
+	 * the Black model (with moneyness x <= 0) or v of the Bachelier model (with
+	 * moneyness theta <= 0), by the Householder method of order three, kept in a
+	 * bracket.
+	 */
+	private static double solveForTotalVolatility(double moneyness, double target, boolean isLogNormal) {
+		double lowerBound;
+		double upperBound;
+		double totalVolatility;
+		if (isLogNormal) {
+			/*
+			 * b is convex on the left of its inflection point sqrt(2|x|) and concave on
+			 * the right: we start from there, and at the money from the inverse of 2
+			 * Phi(s/2) - 1.
+			 */
+			lowerBound = 0;
+			upperBound = Double.POSITIVE_INFINITY;
+			totalVolatility = moneyness == 0
+					? 2 * NormalDistribution.inverseCumulativeDistribution(0.5 * (1 + target))
+					: Math.sqrt(-2 * moneyness);
+		} else {
+			/*
+			 * v(s) <= s/sqrt(2 pi) and, since the call is 1-Lipschitz in the strike,
+			 * v(s) >= s/sqrt(2 pi) - |theta|: this gives the bracket.
+			 */
+			lowerBound = SQRT_TWO_PI * target;
+			upperBound = SQRT_TWO_PI * (target - moneyness);
+			totalVolatility = moneyness == 0 ? lowerBound : Math.sqrt(lowerBound * upperBound);
+		}
+		final double logTarget = Math.log(target);
+		final double[] derivatives = new double[4];
+		for (int iteration = 0; iteration < MAXIMUM_NUMBER_OF_ITERATIONS; iteration++) {
+			if (isLogNormal) {
+				computeBlackDerivatives(moneyness, totalVolatility, derivatives);
+			} else {
+				computeBachelierDerivatives(moneyness, totalVolatility, derivatives);
+			}
+			final double value = derivatives[0];
+			if (!(value > 0)) {
+				// the time value underflows: the root is on the right
+				lowerBound = totalVolatility;
+				totalVolatility = Double.isInfinite(upperBound) ? 2 * totalVolatility
+						: 0.5 * (lowerBound + upperBound);
+				continue;
+			}
+			final double objective = Math.log(value) - logTarget;
+			if (objective == 0) {
+				return totalVolatility;
+			}
+			if (objective < 0) {
+				lowerBound = totalVolatility;
+			} else {
+				upperBound = totalVolatility;
+			}
+			// the derivatives of log(f) from the ones of f
+			final double firstRatio = derivatives[1] / value;
+			final double secondRatio = derivatives[2] / value;
+			final double thirdRatio = derivatives[3] / value;
+			final double firstDerivative = firstRatio;
+			final double secondDerivative = secondRatio - firstRatio * firstRatio;
+			final double thirdDerivative = thirdRatio - 3 * firstRatio * secondRatio
+					+ 2 * firstRatio * firstRatio * firstRatio;
+
+			final double newtonStep = -objective / firstDerivative;
+			final double halleyRatio = secondDerivative / firstDerivative;
+			final double householderRatio = thirdDerivative / firstDerivative;
+			final double step = newtonStep * (1 + 0.5 * newtonStep * halleyRatio)
+					/ (1 + newtonStep * (halleyRatio + newtonStep * householderRatio / 6));
+			double nextTotalVolatility = totalVolatility + step;
+			if (!(nextTotalVolatility > lowerBound && nextTotalVolatility < upperBound)) {
+				nextTotalVolatility = Double.isInfinite(upperBound) ? 2 * totalVolatility
+						: 0.5 * (lowerBound + upperBound);
+			}
+			if (Math.abs(nextTotalVolatility - totalVolatility) <= RELATIVE_ACCURACY * totalVolatility) {
+				return nextTotalVolatility;
+			}
+			totalVolatility = nextTotalVolatility;
+		}
+		return totalVolatility;
+	}
+
+	/*
+	 * b(s) and its first three derivatives: b'(s) = exp(-x^2/(2s^2) - s^2/8)/sqrt(2
+	 * pi), b''(s) = b'(s)(x^2/s^3 - s/4), b'''(s) = b'(s)((x^2/s^3 - s/4)^2 -
+	 * 3x^2/s^4 - 1/4).
+	 */
+	private static void computeBlackDerivatives(double x, double s, double[] derivatives) {
+		final double h = x / s;
+		final double t = 0.5 * s;
+		derivatives[0] = Math.exp(0.5 * x) * FastNormalDistribution.cumulativeDistribution(h + t)
+				- Math.exp(-0.5 * x) * FastNormalDistribution.cumulativeDistribution(h - t);
+		final double vega = Math.exp(-0.5 * h * h - 0.5 * t * t) / SQRT_TWO_PI;
+		final double curvature = h * h / s - 0.5 * t;
+		derivatives[1] = vega;
+		derivatives[2] = vega * curvature;
+		derivatives[3] = vega * (curvature * curvature - 3 * h * h / (s * s) - 0.25);
+	}
+
+	/*
+	 * v(s) and its first three derivatives: with z = theta/s, v'(s) = phi(z),
+	 * v''(s) = phi(z) z^2/s, v'''(s) = phi(z) z^2 (z^2-3)/s^2.
+	 */
+	private static void computeBachelierDerivatives(double theta, double s, double[] derivatives) {
+		final double z = theta / s;
+		final double density = Math.exp(-0.5 * z * z) / SQRT_TWO_PI;
+		derivatives[0] = s * density + theta * FastNormalDistribution.cumulativeDistribution(z);
+		derivatives[1] = density;
+		derivatives[2] = density * z * z / s;
+		derivatives[3] = density * z * z * (z * z - 3) / (s * s);
+	}
+}
@@ -1,5 +1,6 @@
 package com.andreamazzon.handout5;
 
+import com.andreamazzon.handout2.CurveSnapshot;
 import com.andreamazzon.handout3.Swap;
 import com.andreamazzon.handout3.SwapWithoutFinmath;
 import com.andreamazzon.handout4.InterestRatesProducts;
@@ -85,6 +86,23 @@ public class InterestRatesProductsEnhanced extends InterestRatesProducts {
 
 	}
 
+	/**
+	 * Calculate the value of a swaption under the Bachelier model, for a curve
+	 * stored in a snapshot file mapped in memory: the tenure structure and the
+	 * zero coupon bond curve are the ones of the snapshot.
+	 *
+	 * @param curve,              the curve snapshot
+	 * @param strike,             the strike of the option
+	 * @param notional,           i.e. N
+	 * @param swapRateVolatility, the volatility of the swap process (normal
+	 *                            dynamics)
+	 */
+	public static double calculateSwaptionValueBachelier(CurveSnapshot curve, double strike, double notional,
+			double swapRateVolatility) {
+		return calculateSwaptionValueBachelier(curve.getBonds(), curve.getTenureStructure(), strike, notional,
+				swapRateVolatility);
+	}
+
 	/**
 	 * This method calculates and return the value of a cap involving two caplets
 	 * under the Black model for the two Libors involved, using a Monte Carlo
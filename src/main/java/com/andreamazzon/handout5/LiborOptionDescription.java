@@ -0,0 +1,181 @@
+package com.andreamazzon.handout5;
+
+/**
+ * This class describes an option on LIBOR rates with log-normal dynamics, as
+ * the ones valued by InterestRatesProductsEnhanced, so that PricingRouter can
+ * choose how to value it. Two kinds of payoffs are described:
+ * - a sum of calls, i.e., a cap: the i-th caplet pays N(T_{i+1}-T_i)(L_i(T_i)
+ * - K_i)^+ at its payment date. Every caplet only depends on one LIBOR, so the
+ * correlation of the LIBORs does not change the value;
+ * - a call on a spread: the option pays N(T_2-T_1)(L_2(T_1) - L_1(T_1) - K)^+ at
+ * T_2, which depends on the correlation of the two LIBORs.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class LiborOptionDescription {
+
+	/**
+	 * The kinds of payoffs described by the class.
+	 */
+	public enum PayoffType {
+		SUM_OF_CALLS, CALL_ON_SPREAD
+	}
+
+	private final PayoffType payoffType;
+	private final double[] initialLibors;
+	private final double[] liborVolatilities;
+	private final double[][] correlationMatrix;
+	private final double[] strikes;
+	private final double[] fixingDates;
+	private final double[] paymentDates;
+	private final double[] paymentDateDiscountFactors;
+	private final double notional;
+
+	private LiborOptionDescription(PayoffType payoffType, double[] initialLibors, double[] liborVolatilities,
+			double[][] correlationMatrix, double[] strikes, double[] fixingDates, double[] paymentDates,
+			double[] paymentDateDiscountFactors, double notional) {
+		if (liborVolatilities.length != initialLibors.length || correlationMatrix.length != initialLibors.length) {
+			throw new IllegalArgumentException("Every LIBOR must have a volatility and a row of correlations");
+		}
+		this.payoffType = payoffType;
+		this.initialLibors = initialLibors.clone();
+		this.liborVolatilities = liborVolatilities.clone();
+		this.correlationMatrix = new double[correlationMatrix.length][];
+		for (int rowIndex = 0; rowIndex < correlationMatrix.length; rowIndex++) {
+			this.correlationMatrix[rowIndex] = correlationMatrix[rowIndex].clone();
+		}
+		this.strikes = strikes.clone();
+		this.fixingDates = fixingDates.clone();
+		this.paymentDates = paymentDates.clone();
+		this.paymentDateDiscountFactors = paymentDateDiscountFactors.clone();
+		this.notional = notional;
+	}
+
+	/**
+	 * It describes a cap.
+	 *
+	 * @param initialLibors,              the L_i(0) = L(T_i,T_{i+1};0)
+	 * @param liborVolatilities,          the volatilities of the LIBORs
+	 * @param correlationMatrix,          the correlations of the LIBORs
+	 * @param strikes,                    the strikes K_i of the caplets
+	 * @param fixingDates,                the fixing dates T_i
+	 * @param paymentDates,               the payment dates T_{i+1}
+	 * @param paymentDateDiscountFactors, the P(T_{i+1};0)
+	 * @param notional,                   i.e. N
+	 * @return the description of the cap
+	 */
+	public static LiborOptionDescription cap(double[] initialLibors, double[] liborVolatilities,
+			double[][] correlationMatrix, double[] strikes, double[] fixingDates, double[] paymentDates,
+			double[] paymentDateDiscountFactors, double notional) {
+		if (strikes.length != initialLibors.length || fixingDates.length != initialLibors.length
+				|| paymentDates.length != initialLibors.length
+				|| paymentDateDiscountFactors.length != initialLibors.length) {
+			throw new IllegalArgumentException("Every caplet must have its LIBOR, strike and dates");
+		}
+		return new LiborOptionDescription(PayoffType.SUM_OF_CALLS, initialLibors, liborVolatilities,
+				correlationMatrix, strikes, fixingDates, paymentDates, paymentDateDiscountFactors, notional);
+	}
+
+	/**
+	 * It describes a call on the spread of two LIBORs fixing at the same date.
+	 *
+	 * @param initialFirstLibor,         i.e. L_1(0)
+	 * @param initialSecondLibor,        i.e. L_2(0)
+	 * @param firstLiborVolatility,      the volatility of L_1
+	 * @param secondLiborVolatility,     the volatility of L_2
+	 * @param correlation,               the correlation of the two LIBORs
+	 * @param strike,                    the strike K
+	 * @param fixingDate,                i.e. T_1
+	 * @param paymentDate,               i.e. T_2
+	 * @param paymentDateDiscountFactor, i.e. P(T_2;0)
+	 * @param notional,                  i.e. N
+	 * @return the description of the option
+	 */
+	public static LiborOptionDescription spreadOption(double initialFirstLibor, double initialSecondLibor,
+			double firstLiborVolatility, double secondLiborVolatility, double correlation, double strike,
+			double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional) {
+		return new LiborOptionDescription(PayoffType.CALL_ON_SPREAD,
+				new double[] { initialFirstLibor, initialSecondLibor },
+				new double[] { firstLiborVolatility, secondLiborVolatility },
+				new double[][] { { 1.0, correlation }, { correlation, 1.0 } }, new double[] { strike },
+				new double[] { fixingDate }, new double[] { paymentDate }, new double[] { paymentDateDiscountFactor },
+				notional);
+	}
+
+	/**
+	 * @return the kind of payoff
+	 */
+	public PayoffType getPayoffType() {
+		return payoffType;
+	}
+
+	/**
+	 * @return the number of LIBORs the payoff depends on
+	 */
+	public int getNumberOfLibors() {
+		return initialLibors.length;
+	}
+
+	/**
+	 * @return the initial values of the LIBORs
+	 */
+	public double[] getInitialLibors() {
+		return initialLibors.clone();
+	}
+
+	/**
+	 * @return the volatilities of the LIBORs
+	 */
+	public double[] getLiborVolatilities() {
+		return liborVolatilities.clone();
+	}
+
+	/**
+	 * @return the correlations of the LIBORs
+	 */
+	public double[][] getCorrelationMatrix() {
+		final double[][] copy = new double[correlationMatrix.length][];
+		for (int rowIndex = 0; rowIndex < correlationMatrix.length; rowIndex++) {
+			copy[rowIndex] = correlationMatrix[rowIndex].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * @return the strikes: one for every caplet, or the one of the spread option
+	 */
+	public double[] getStrikes() {
+		return strikes.clone();
+	}
+
+	/**
+	 * @return the fixing dates: one for every caplet, or the one of the spread
+	 *         option
+	 */
+	public double[] getFixingDates() {
+		return fixingDates.clone();
+	}
+
+	/**
+	 * @return the payment dates: one for every caplet, or the one of the spread
+	 *         option
+	 */
+	public double[] getPaymentDates() {
+		return paymentDates.clone();
+	}
+
+	/**
+	 * @return the discount factors of the payment dates
+	 */
+	public double[] getPaymentDateDiscountFactors() {
+		return paymentDateDiscountFactors.clone();
+	}
+
+	/**
+	 * @return the notional
+	 */
+	public double getNotional() {
+		return notional;
+	}
+}
@@ -0,0 +1,16 @@
+package com.andreamazzon.handout5;
+
+/**
+ * The ways in which PricingRouter can value a product.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public enum PricingMethod {
+	// a closed formula: exact, and computed in microseconds
+	ANALYTIC,
+	// a closed formula integrated numerically over one random variable
+	SEMI_ANALYTIC,
+	// a simulation of all the random variables the payoff depends on
+	MONTE_CARLO
+}
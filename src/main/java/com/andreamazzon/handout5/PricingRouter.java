@@ -0,0 +1,209 @@
+package com.andreamazzon.handout5;
+
+import java.util.logging.Logger;
+
+import com.andreamazzon.handout4.BlackFormula;
+import com.andreamazzon.handout4.InterestRatesProducts;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloMultiAssetBlackScholesModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class values the options described by LiborOptionDescription, choosing
+ * the cheapest method which gives the value with a given tolerance within a
+ * given time:
+ * - a cap is a sum of caplets, each depending on one LIBOR only: its value does
+ * not depend on the correlation of the LIBORs and it is the sum of the values
+ * of the caplets given by the Black formula, so it is always computed
+ * analytically (a two-dimensional Monte Carlo as the one of
+ * InterestRatesProductsEnhanced.calculateCapValueBlackModel takes seconds to
+ * get a value which is less precise);
+ * - the call on a spread has no closed formula, but given the first LIBOR the
+ * second one is log-normal: its value is the expectation of a Black formula
+ * with respect to one normal random variable, computed by a Gauss-Hermite
+ * quadrature whose number of nodes is doubled until the value changes less
+ * than the tolerance;
+ * - if this does not happen within half the time allowed, the value is computed
+ * by Monte Carlo, with the number of paths needed to get a standard error
+ * smaller than the tolerance, estimated by a first simulation with few paths.
+ * If these paths take more than the time allowed, fewer paths are used and a
+ * warning is logged.
+ * The method chosen is logged, and returned together with the value.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class PricingRouter {
+
+	private static final Logger LOGGER = Logger.getLogger(PricingRouter.class.getName());
+
+	private static final int FIRST_NUMBER_OF_NODES = 8;
+	private static final int MAXIMUM_NUMBER_OF_NODES = 512;
+	private static final int PILOT_NUMBER_OF_PATHS = 2000;
+	// a rough estimate of the time needed to simulate and use the value of one LIBOR on one path
+	private static final double NANOSECONDS_PER_SIMULATED_VALUE = 50;
+
+	private final int maximumNumberOfPaths;
+	private final int seed;
+
+	/**
+	 * It builds a router.
+	 *
+	 * @param maximumNumberOfPaths, the maximum number of paths of a Monte Carlo
+	 *                              simulation, which bounds the memory used
+	 * @param seed,                 the seed of the Monte Carlo simulations
+	 */
+	public PricingRouter(int maximumNumberOfPaths, int seed) {
+		this.maximumNumberOfPaths = maximumNumberOfPaths;
+		this.seed = seed;
+	}
+
+	/**
+	 * It computes and returns the value of a product.
+	 *
+	 * @param product,                    the description of the product
+	 * @param tolerance,                  the absolute error allowed
+	 * @param latencyBudgetInNanoseconds, the time allowed
+	 * @return the value, with the method used to compute it
+	 * @throws CalculationException
+	 */
+	public RoutedPrice getValue(LiborOptionDescription product, double tolerance, long latencyBudgetInNanoseconds)
+			throws CalculationException {
+		if (!(tolerance > 0)) {
+			throw new IllegalArgumentException("The tolerance must be positive");
+		}
+		final long startTime = System.nanoTime();
+		if (product.getPayoffType() == LiborOptionDescription.PayoffType.SUM_OF_CALLS) {
+			final double value = getCapValue(product);
+			return log(new RoutedPrice(value, PricingMethod.ANALYTIC, 0, System.nanoTime() - startTime),
+					product);
+		}
+
+		// the quadrature can take half the time: the rest is left for the simulation
+		final RoutedPrice semiAnalyticPrice = getSpreadOptionValueByQuadrature(product, tolerance,
+				latencyBudgetInNanoseconds / 2, startTime);
+		if (semiAnalyticPrice.getErrorEstimate() <= tolerance) {
+			return log(semiAnalyticPrice, product);
+		}
+		return log(getValueByMonteCarlo(product, tolerance, latencyBudgetInNanoseconds, startTime), product);
+	}
+
+	private RoutedPrice log(RoutedPrice price, LiborOptionDescription product) {
+		LOGGER.info(() -> String.format("%s with %d LIBORs valued by %s in %d microseconds (error estimate %.3g)",
+				product.getPayoffType(), product.getNumberOfLibors(), price.getMethod(),
+				price.getElapsedNanoseconds() / 1000, price.getErrorEstimate()));
+		return price;
+	}
+
+	// the sum of the Black formulas of the caplets
+	private static double getCapValue(LiborOptionDescription product) {
+		final double[] initialLibors = product.getInitialLibors();
+		final double[] liborVolatilities = product.getLiborVolatilities();
+		final double[] strikes = product.getStrikes();
+		final double[] fixingDates = product.getFixingDates();
+		final double[] paymentDates = product.getPaymentDates();
+		final double[] discountFactors = product.getPaymentDateDiscountFactors();
+		double value = 0;
+		for (int capletIndex = 0; capletIndex < initialLibors.length; capletIndex++) {
+			value += InterestRatesProducts.calculateCapletValueBlackModel(initialLibors[capletIndex],
+					liborVolatilities[capletIndex], strikes[capletIndex], fixingDates[capletIndex],
+					paymentDates[capletIndex], discountFactors[capletIndex], product.getNotional());
+		}
+		return value;
+	}
+
+	/*
+	 * With L_1(T) = L_1(0) exp(-sigma_1^2 T/2 + sigma_1 sqrt(T) Z_1) and L_2(T) =
+	 * L_2(0) exp(-sigma_2^2 T/2 + sigma_2 sqrt(T)(rho Z_1 + sqrt(1-rho^2) Z_2)),
+	 * given Z_1 the LIBOR L_2(T) is log-normal with mean F(Z_1) = L_2(0) exp(-rho^2
+	 * sigma_2^2 T/2 + rho sigma_2 sqrt(T) Z_1) and volatility sigma_2 sqrt(1-rho^2):
+	 * the expectation of the payoff given Z_1 is then the Black formula with strike
+	 * L_1(T) + K.
+	 */
+	private static RoutedPrice getSpreadOptionValueByQuadrature(LiborOptionDescription product, double tolerance,
+			long latencyBudgetInNanoseconds, long startTime) {
+		final double[] initialLibors = product.getInitialLibors();
+		final double[] liborVolatilities = product.getLiborVolatilities();
+		final double correlation = product.getCorrelationMatrix()[0][1];
+		final double strike = product.getStrikes()[0];
+		final double fixingDate = product.getFixingDates()[0];
+		final double payoffUnit = product.getNotional() * product.getPaymentDateDiscountFactors()[0]
+				* (product.getPaymentDates()[0] - fixingDate);
+
+		final double firstTotalVolatility = liborVolatilities[0] * Math.sqrt(fixingDate);
+		final double secondTotalVolatility = liborVolatilities[1] * Math.sqrt(fixingDate);
+		final double conditionalTotalVolatility = secondTotalVolatility * Math.sqrt(1 - correlation * correlation);
+
+		double value = Double.NaN;
+		double errorEstimate = Double.POSITIVE_INFINITY;
+		for (int numberOfNodes = FIRST_NUMBER_OF_NODES; numberOfNodes <= MAXIMUM_NUMBER_OF_NODES
+				&& System.nanoTime() - startTime < latencyBudgetInNanoseconds; numberOfNodes *= 2) {
+			final GaussHermiteQuadrature quadrature = new GaussHermiteQuadrature(numberOfNodes);
+			final double newValue = payoffUnit * quadrature.getExpectation(z -> {
+				final double firstLibor = initialLibors[0]
+						* Math.exp(-0.5 * firstTotalVolatility * firstTotalVolatility + firstTotalVolatility * z);
+				final double conditionalForward = initialLibors[1]
+						* Math.exp(-0.5 * correlation * correlation * secondTotalVolatility * secondTotalVolatility
+								+ correlation * secondTotalVolatility * z);
+				return BlackFormula.getCallValue(conditionalForward, firstLibor + strike, conditionalTotalVolatility);
+			});
+			if (!Double.isNaN(value)) {
+				errorEstimate = Math.abs(newValue - value);
+			}
+			value = newValue;
+			if (errorEstimate <= tolerance) {
+				break;
+			}
+		}
+		return new RoutedPrice(value, PricingMethod.SEMI_ANALYTIC, errorEstimate, System.nanoTime() - startTime);
+	}
+
+	private RoutedPrice getValueByMonteCarlo(LiborOptionDescription product, double tolerance,
+			long latencyBudgetInNanoseconds, long startTime) throws CalculationException {
+		// a first simulation, to estimate the standard deviation of the payoff
+		final RandomVariable pilotPayoff = getDiscountedPayoff(product, PILOT_NUMBER_OF_PATHS);
+		final double standardDeviation = pilotPayoff.getStandardError() * Math.sqrt(PILOT_NUMBER_OF_PATHS);
+		final double neededNumberOfPaths = Math.ceil(Math.pow(standardDeviation / tolerance, 2));
+
+		final long remainingTime = latencyBudgetInNanoseconds - (System.nanoTime() - startTime);
+		final double affordableNumberOfPaths = remainingTime
+				/ (NANOSECONDS_PER_SIMULATED_VALUE * product.getNumberOfLibors());
+		final int numberOfPaths = (int) Math.max(PILOT_NUMBER_OF_PATHS,
+				Math.min(Math.min(neededNumberOfPaths, affordableNumberOfPaths), maximumNumberOfPaths));
+		if (numberOfPaths < neededNumberOfPaths) {
+			LOGGER.warning(() -> String.format("%.3g paths would be needed to get the tolerance, only %d are used",
+					neededNumberOfPaths, numberOfPaths));
+		}
+
+		final RandomVariable payoff = numberOfPaths == PILOT_NUMBER_OF_PATHS ? pilotPayoff
+				: getDiscountedPayoff(product, numberOfPaths);
+		return new RoutedPrice(payoff.getAverage(), PricingMethod.MONTE_CARLO, payoff.getStandardError(),
+				System.nanoTime() - startTime);
+	}
+
+	/*
+	 * The discounted payoff of the spread option on every path, simulated as in
+	 * InterestRatesProductsEnhanced.calculateCapValueBlackModel.
+	 */
+	private RandomVariable getDiscountedPayoff(LiborOptionDescription product, int numberOfPaths)
+			throws CalculationException {
+		// the LIBORs are log-normal: we only need their values at the fixing date
+		final TimeDiscretization times = new TimeDiscretizationFromArray(0.0, product.getFixingDates()[0]);
+		final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times,
+				product.getNumberOfLibors(), numberOfPaths, seed);
+		final AssetModelMonteCarloSimulationModel model = new MonteCarloMultiAssetBlackScholesModel(brownianMotion,
+				product.getInitialLibors(), 0, product.getLiborVolatilities(), product.getCorrelationMatrix());
+
+		final double fixingDate = product.getFixingDates()[0];
+		final RandomVariable payoff = model.getAssetValue(fixingDate, 1).sub(model.getAssetValue(fixingDate, 0))
+				.sub(product.getStrikes()[0]).floor(0.0)
+				.mult(product.getPaymentDateDiscountFactors()[0] * (product.getPaymentDates()[0] - fixingDate));
+		return payoff.mult(product.getNotional());
+	}
+}
@@ -0,0 +1,54 @@
+package com.andreamazzon.handout5;
+
+/**
+ * This class wraps the value of a product computed by PricingRouter, together
+ * with the method chosen, an estimate of the error and the time taken.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class RoutedPrice {
+
+	private final double value;
+	private final PricingMethod method;
+	private final double errorEstimate;
+	private final long elapsedNanoseconds;
+
+	RoutedPrice(double value, PricingMethod method, double errorEstimate, long elapsedNanoseconds) {
+		this.value = value;
+		this.method = method;
+		this.errorEstimate = errorEstimate;
+		this.elapsedNanoseconds = elapsedNanoseconds;
+	}
+
+	/**
+	 * @return the value of the product
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the method used to compute the value
+	 */
+	public PricingMethod getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return an estimate of the absolute error of the value: zero for an
+	 *         analytic value, the difference with the rule with half the nodes
+	 *         for a semi-analytic value, the standard error for a Monte Carlo
+	 *         value
+	 */
+	public double getErrorEstimate() {
+		return errorEstimate;
+	}
+
+	/**
+	 * @return the time taken to compute the value, in nanoseconds
+	 */
+	public long getElapsedNanoseconds() {
+		return elapsedNanoseconds;
+	}
+}
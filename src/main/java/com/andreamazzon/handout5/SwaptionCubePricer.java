@@ -0,0 +1,207 @@
+package com.andreamazzon.handout5;
+
+import java.util.stream.IntStream;
+
+import com.andreamazzon.handout3.SwapAnnuityIndex;
+import com.andreamazzon.handout4.BlackFormula;
+import com.andreamazzon.handout4.FastNormalDistribution;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class computes the values of a whole cube of swaptions, i.e., of the
+ * swaptions with every expiry, every tenor and every strike of given lists,
+ * under the Black or the Bachelier model. The swaption with expiry T_{s+1} and
+ * tenor of l periods is the option to enter at T_{s+1} the swap with payment
+ * dates T_{s+2},...,T_{s+l+1}: its value is N A (Black or Bachelier value of a
+ * call on the par swap rate S with strike K), where A is the annuity of the
+ * swap.
+ *
+ * Differently from InterestRatesProducts.calculateSwaptionValueBlack and
+ * InterestRatesProductsEnhanced.calculateSwaptionValueBachelier, which build a
+ * swap for every swaption and only consider swaptions expiring in T_1, the
+ * annuities and the par swap rates are given by a SwapAnnuityIndex, which
+ * computes them from prefix sums: they are computed once for every pair
+ * (expiry, tenor), and then the formula is evaluated for all the strikes in a
+ * single loop. The pairs are valued in parallel.
+ *
+ * The strikes are either the same for all the pairs, or given as differences
+ * from the par swap rate of every pair. The cube is returned as a flat array:
+ * the value of the swaption with the e-th expiry, the t-th tenor and the k-th
+ * strike is in the position (e * numberOfTenors + t) * numberOfStrikes + k, and
+ * the volatilities are given in the same way.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class SwaptionCubePricer {
+
+	private static final double ONE_OVER_SQRT_TWO_PI = 1 / Math.sqrt(2 * Math.PI);
+
+	private final SwapAnnuityIndex annuityIndex;
+	private final TimeDiscretization swapDates;
+
+	/**
+	 * It builds the pricer for a given tenure structure and a given zero coupon
+	 * bond curve.
+	 *
+	 * @param swapDates,     the tenure structure T_1,...,T_n, given as a
+	 *                       TimeDiscretization object
+	 * @param zeroBondCurve, the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public SwaptionCubePricer(TimeDiscretization swapDates, double[] zeroBondCurve) {
+		this.swapDates = swapDates;
+		this.annuityIndex = new SwapAnnuityIndex(swapDates, zeroBondCurve);
+	}
+
+	/**
+	 * It builds the pricer for a given zero coupon bond curve, in the case when
+	 * all the time steps of the tenure structure have same length.
+	 *
+	 * @param yearFraction,  the length of the step from one swap date to the other
+	 * @param zeroBondCurve, the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public SwaptionCubePricer(double yearFraction, double[] zeroBondCurve) {
+		this(new TimeDiscretizationFromArray(yearFraction, zeroBondCurve.length - 1, yearFraction), zeroBondCurve);
+	}
+
+	/**
+	 * It computes and returns the values of a cube of swaptions under the Black
+	 * model.
+	 *
+	 * @param expiryIndices,  the indices s of the expiries T_{s+1}
+	 * @param tenorLengths,   the numbers l of periods of the swaps
+	 * @param strikes,        the strikes
+	 * @param volatilities,   the volatilities of the par swap rates, one for
+	 *                        every swaption, in the order of the cube
+	 * @param notional,       i.e. N
+	 * @return the values of the swaptions, in the order of the cube
+	 */
+	public double[] getBlackCube(int[] expiryIndices, int[] tenorLengths, double[] strikes, double[] volatilities,
+			double notional) {
+		return getCube(expiryIndices, tenorLengths, strikes, false, volatilities, notional, true);
+	}
+
+	/**
+	 * It computes and returns the values of a cube of swaptions under the Black
+	 * model, when the strikes are given as differences from the par swap rate of
+	 * every pair (expiry, tenor), as in the quotes of the market.
+	 *
+	 * @param expiryIndices, the indices s of the expiries T_{s+1}
+	 * @param tenorLengths,  the numbers l of periods of the swaps
+	 * @param strikeOffsets, the differences K - S(0) of the strikes from the par
+	 *                       swap rates
+	 * @param volatilities,  the volatilities of the par swap rates, one for every
+	 *                       swaption, in the order of the cube
+	 * @param notional,      i.e. N
+	 * @return the values of the swaptions, in the order of the cube
+	 */
+	public double[] getBlackCubeWithStrikeOffsets(int[] expiryIndices, int[] tenorLengths, double[] strikeOffsets,
+			double[] volatilities, double notional) {
+		return getCube(expiryIndices, tenorLengths, strikeOffsets, true, volatilities, notional, true);
+	}
+
+	/**
+	 * It computes and returns the values of a cube of swaptions under the
+	 * Bachelier model.
+	 *
+	 * @param expiryIndices,  the indices s of the expiries T_{s+1}
+	 * @param tenorLengths,   the numbers l of periods of the swaps
+	 * @param strikes,        the strikes
+	 * @param volatilities,   the (normal) volatilities of the par swap rates,
+	 *                        one for every swaption, in the order of the cube
+	 * @param notional,       i.e. N
+	 * @return the values of the swaptions, in the order of the cube
+	 */
+	public double[] getBachelierCube(int[] expiryIndices, int[] tenorLengths, double[] strikes,
+			double[] volatilities, double notional) {
+		return getCube(expiryIndices, tenorLengths, strikes, false, volatilities, notional, false);
+	}
+
+	/**
+	 * It computes and returns the values of a cube of swaptions under the
+	 * Bachelier model, when the strikes are given as differences from the par
+	 * swap rate of every pair (expiry, tenor), as in the quotes of the market.
+	 *
+	 * @param expiryIndices, the indices s of the expiries T_{s+1}
+	 * @param tenorLengths,  the numbers l of periods of the swaps
+	 * @param strikeOffsets, the differences K - S(0) of the strikes from the par
+	 *                       swap rates
+	 * @param volatilities,  the (normal) volatilities of the par swap rates, one
+	 *                       for every swaption, in the order of the cube
+	 * @param notional,      i.e. N
+	 * @return the values of the swaptions, in the order of the cube
+	 */
+	public double[] getBachelierCubeWithStrikeOffsets(int[] expiryIndices, int[] tenorLengths,
+			double[] strikeOffsets, double[] volatilities, double notional) {
+		return getCube(expiryIndices, tenorLengths, strikeOffsets, true, volatilities, notional, false);
+	}
+
+	/**
+	 * It computes and returns the forward par swap rates of all the pairs (expiry,
+	 * tenor), i.e., the at the money strikes of the cube.
+	 *
+	 * @param expiryIndices, the indices s of the expiries T_{s+1}
+	 * @param tenorLengths,  the numbers l of periods of the swaps
+	 * @return the par swap rates: the one of the e-th expiry and t-th tenor is in
+	 *         the position e * numberOfTenors + t
+	 */
+	public double[] getParSwapRates(int[] expiryIndices, int[] tenorLengths) {
+		final double[] parSwapRates = new double[expiryIndices.length * tenorLengths.length];
+		for (int expiryIndex = 0; expiryIndex < expiryIndices.length; expiryIndex++) {
+			for (int tenorIndex = 0; tenorIndex < tenorLengths.length; tenorIndex++) {
+				final int startIndex = expiryIndices[expiryIndex];
+				parSwapRates[expiryIndex * tenorLengths.length + tenorIndex] = annuityIndex
+						.getParSwapRate(startIndex, startIndex + tenorLengths[tenorIndex]);
+			}
+		}
+		return parSwapRates;
+	}
+
+	private double[] getCube(int[] expiryIndices, int[] tenorLengths, double[] strikes, boolean areStrikeOffsets,
+			double[] volatilities, double notional, boolean isLogNormal) {
+		final int numberOfTenors = tenorLengths.length;
+		final int numberOfStrikes = strikes.length;
+		final int numberOfPairs = expiryIndices.length * numberOfTenors;
+		if (volatilities.length != numberOfPairs * numberOfStrikes) {
+			throw new IllegalArgumentException("Every swaption of the cube must have a volatility");
+		}
+		for (final int expiryIndex : expiryIndices) {
+			for (final int tenorLength : tenorLengths) {
+				if (expiryIndex < 0 || tenorLength < 1 || expiryIndex + tenorLength >= annuityIndex.getCurveLength()) {
+					throw new IllegalArgumentException("The swap with start index " + expiryIndex + " and "
+							+ tenorLength + " periods is not in the tenure structure");
+				}
+			}
+		}
+		final double[] values = new double[numberOfPairs * numberOfStrikes];
+		IntStream.range(0, numberOfPairs).parallel().forEach(pairIndex -> {
+			final int startIndex = expiryIndices[pairIndex / numberOfTenors];
+			final int endIndex = startIndex + tenorLengths[pairIndex % numberOfTenors];
+			// the only numbers depending on the pair, computed once for all the strikes
+			final double annuity = notional * annuityIndex.getAnnuity(startIndex, endIndex);
+			final double parSwapRate = annuityIndex.getParSwapRate(startIndex, endIndex);
+			final double squareRootOfExpiry = Math.sqrt(swapDates.getTime(startIndex));
+			final double strikeShift = areStrikeOffsets ? parSwapRate : 0;
+			final int firstPosition = pairIndex * numberOfStrikes;
+			for (int strikeIndex = 0; strikeIndex < numberOfStrikes; strikeIndex++) {
+				final double totalVolatility = volatilities[firstPosition + strikeIndex] * squareRootOfExpiry;
+				values[firstPosition + strikeIndex] = annuity * (isLogNormal
+						? BlackFormula.getCallValue(parSwapRate, strikeShift + strikes[strikeIndex], totalVolatility)
+						: getBachelierValue(parSwapRate, strikeShift + strikes[strikeIndex], totalVolatility));
+			}
+		});
+		return values;
+	}
+
+	// the value of a call under the Bachelier model: (F-K) Phi(d) + sigma sqrt(T) phi(d), d = (F-K)/(sigma sqrt(T))
+	private static double getBachelierValue(double forward, double strike, double totalVolatility) {
+		if (totalVolatility <= 0) {
+			return Math.max(forward - strike, 0);
+		}
+		final double moneyness = (forward - strike) / totalVolatility;
+		return (forward - strike) * FastNormalDistribution.cumulativeDistribution(moneyness)
+				+ totalVolatility * ONE_OVER_SQRT_TWO_PI * Math.exp(-0.5 * moneyness * moneyness);
+	}
+}
@@ -0,0 +1,208 @@
+package com.andreamazzon.handout6;
+
+import java.util.stream.IntStream;
+
+import com.andreamazzon.handout4.FastNormalDistribution;
+
+/**
+ * This class computes the values of many Quanto Caplets at the same time, as
+ * InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue does for a
+ * single one, together with their sensitivities to all the market data: the
+ * foreign forward LIBOR, its volatility, the volatility of the forward FX rate,
+ * the correlation of the two and the discount factor. The sensitivities are
+ * computed by their closed formulas in the same loop as the values, so that
+ * they cost a few multiplications more than the values, instead of one or two
+ * more valuations for every one of them as with finite differences.
+ *
+ * With U = N q P(T_2;0)(T_2-T_1) and the adjusted forward F = L(0)exp(-rho
+ * sigma_L sigma_X T_1), the value is V = U (F Phi(d_1) - K Phi(d_2)), so that
+ * dV/dF = U Phi(d_1) and dV/dsigma_L = U F phi(d_1) sqrt(T_1) for F fixed:
+ * - dV/dL(0) = U exp(-rho sigma_L sigma_X T_1) Phi(d_1);
+ * - dV/dsigma_L = U F (phi(d_1) sqrt(T_1) - Phi(d_1) rho sigma_X T_1);
+ * - dV/dsigma_X = -U F Phi(d_1) rho sigma_L T_1;
+ * - dV/drho = -U F Phi(d_1) sigma_L sigma_X T_1;
+ * - dV/dP(T_2;0) = N q (T_2-T_1)(F Phi(d_1) - K Phi(d_2)), i.e., the
+ * undiscounted value.
+ *
+ * The trades are given as a structure of arrays, and the results are written in
+ * arrays which belong to the object and are reused at every valuation, so that
+ * a book can be revalued many times without allocating memory. The trades are
+ * split in chunks which are valued in parallel.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class QuantoCapletBatchPricer {
+
+	private static final int CHUNK_SIZE = 4096;
+	private static final double ONE_OVER_SQRT_TWO_PI = 1 / Math.sqrt(2 * Math.PI);
+
+	private final int numberOfTrades;
+	private final double[] values;
+	private final double[] forwardDeltas;
+	private final double[] liborVegas;
+	private final double[] fxVegas;
+	private final double[] correlationSensitivities;
+	private final double[] discountFactorSensitivities;
+
+	/**
+	 * It builds a pricer for a given number of trades, allocating the arrays of
+	 * the results.
+	 *
+	 * @param numberOfTrades, the number of Quanto Caplets valued together
+	 */
+	public QuantoCapletBatchPricer(int numberOfTrades) {
+		this.numberOfTrades = numberOfTrades;
+		values = new double[numberOfTrades];
+		forwardDeltas = new double[numberOfTrades];
+		liborVegas = new double[numberOfTrades];
+		fxVegas = new double[numberOfTrades];
+		correlationSensitivities = new double[numberOfTrades];
+		discountFactorSensitivities = new double[numberOfTrades];
+	}
+
+	/**
+	 * It computes the values and the sensitivities of the Quanto Caplets, which
+	 * can then be got by the getters of the class.
+	 *
+	 * @param initialForeignForwardLibors, the foreign forward LIBORs at time 0
+	 * @param foreignLiborVolatilities,    the volatilities of the foreign LIBORs
+	 * @param fxVolatilities,              the volatilities of the forward FX rates
+	 * @param correlationsFxForeignLibor,  the correlations between the forward FX
+	 *                                     rates and the foreign LIBORs
+	 * @param fixingDates,                 the T_1 of the caplets
+	 * @param paymentDates,                the T_2 of the caplets
+	 * @param strikes,                     the strikes
+	 * @param paymentDateDiscountFactors,  the P(T_2;0) of the caplets
+	 * @param notionalsInForeignCurrency,  the notionals N, in foreign currency
+	 * @param quantoRates,                 the constant conversion factors q
+	 */
+	public void calculate(double[] initialForeignForwardLibors, double[] foreignLiborVolatilities,
+			double[] fxVolatilities, double[] correlationsFxForeignLibor, double[] fixingDates, double[] paymentDates,
+			double[] strikes, double[] paymentDateDiscountFactors, double[] notionalsInForeignCurrency,
+			double[] quantoRates) {
+		for (final double[] input : new double[][] { initialForeignForwardLibors, foreignLiborVolatilities,
+				fxVolatilities, correlationsFxForeignLibor, fixingDates, paymentDates, strikes,
+				paymentDateDiscountFactors, notionalsInForeignCurrency, quantoRates }) {
+			if (input.length != numberOfTrades) {
+				throw new IllegalArgumentException("Every array must have one element for every trade");
+			}
+		}
+		final int numberOfChunks = (numberOfTrades + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		IntStream.range(0, numberOfChunks).parallel().forEach(chunkIndex -> {
+			final int lastIndex = Math.min(numberOfTrades, (chunkIndex + 1) * CHUNK_SIZE);
+			for (int tradeIndex = chunkIndex * CHUNK_SIZE; tradeIndex < lastIndex; tradeIndex++) {
+				final double fixingDate = Math.max(fixingDates[tradeIndex], 0);
+				final double liborVolatility = foreignLiborVolatilities[tradeIndex];
+				final double fxVolatility = fxVolatilities[tradeIndex];
+				final double correlation = correlationsFxForeignLibor[tradeIndex];
+				final double strike = strikes[tradeIndex];
+				final double undiscountedPaymentUnit = notionalsInForeignCurrency[tradeIndex] * quantoRates[tradeIndex]
+						* (paymentDates[tradeIndex] - fixingDates[tradeIndex]);
+				final double paymentUnit = undiscountedPaymentUnit * paymentDateDiscountFactors[tradeIndex];
+				// the drift of the foreign LIBOR under the domestic measure, see page 206 of the script
+				final double convexityFactor = Math.exp(-correlation * liborVolatility * fxVolatility * fixingDate);
+				final double adjustedForward = initialForeignForwardLibors[tradeIndex] * convexityFactor;
+
+				final double squareRootOfFixing = Math.sqrt(fixingDate);
+				final double totalVolatility = liborVolatility * squareRootOfFixing;
+				// Phi(d_1), Phi(d_2) and phi(d_1): with no randomness left, the limits for sigma -> 0
+				final double probabilityAbove;
+				final double strikeProbability;
+				final double density;
+				if (strike <= 0) {
+					probabilityAbove = 1;
+					strikeProbability = 1;
+					density = 0;
+				} else if (totalVolatility <= 0) {
+					probabilityAbove = adjustedForward > strike ? 1 : 0;
+					strikeProbability = probabilityAbove;
+					density = 0;
+				} else {
+					final double dPlus = Math.log(adjustedForward / strike) / totalVolatility + 0.5 * totalVolatility;
+					probabilityAbove = FastNormalDistribution.cumulativeDistribution(dPlus);
+					strikeProbability = FastNormalDistribution.cumulativeDistribution(dPlus - totalVolatility);
+					density = ONE_OVER_SQRT_TWO_PI * Math.exp(-0.5 * dPlus * dPlus);
+				}
+				final double undiscountedValue = undiscountedPaymentUnit
+						* (adjustedForward * probabilityAbove - strike * strikeProbability);
+				// the sensitivity to the adjusted forward, times the adjusted forward
+				final double scaledDelta = paymentUnit * adjustedForward * probabilityAbove;
+
+				values[tradeIndex] = paymentDateDiscountFactors[tradeIndex] * undiscountedValue;
+				/*
+				 * The derivatives with respect to L_0 and P(T_2;0) are computed directly
+				 * and not by dividing by them, so that they are finite when L_0 or
+				 * P(T_2;0) are zero.
+				 */
+				forwardDeltas[tradeIndex] = paymentUnit * convexityFactor * probabilityAbove;
+				liborVegas[tradeIndex] = paymentUnit * adjustedForward * density * squareRootOfFixing
+						- scaledDelta * correlation * fxVolatility * fixingDate;
+				fxVegas[tradeIndex] = -scaledDelta * correlation * liborVolatility * fixingDate;
+				correlationSensitivities[tradeIndex] = -scaledDelta * liborVolatility * fxVolatility * fixingDate;
+				discountFactorSensitivities[tradeIndex] = undiscountedValue;
+			}
+		});
+	}
+
+	/**
+	 * @return the values of the Quanto Caplets computed by the last call of
+	 *         calculate. The array belongs to the object and is overwritten by the
+	 *         next call.
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @return the derivatives of the values with respect to the initial foreign
+	 *         forward LIBORs. The array belongs to the object and is overwritten by
+	 *         the next call of calculate.
+	 */
+	public double[] getForwardDeltas() {
+		return forwardDeltas;
+	}
+
+	/**
+	 * @return the derivatives of the values with respect to the volatilities of
+	 *         the foreign LIBORs. The array belongs to the object and is
+	 *         overwritten by the next call of calculate.
+	 */
+	public double[] getLiborVegas() {
+		return liborVegas;
+	}
+
+	/**
+	 * @return the derivatives of the values with respect to the volatilities of
+	 *         the forward FX rates. The array belongs to the object and is
+	 *         overwritten by the next call of calculate.
+	 */
+	public double[] getFxVegas() {
+		return fxVegas;
+	}
+
+	/**
+	 * @return the derivatives of the values with respect to the correlations. The
+	 *         array belongs to the object and is overwritten by the next call of
+	 *         calculate.
+	 */
+	public double[] getCorrelationSensitivities() {
+		return correlationSensitivities;
+	}
+
+	/**
+	 * @return the derivatives of the values with respect to the discount factors
+	 *         P(T_2;0). The array belongs to the object and is overwritten by the
+	 *         next call of calculate.
+	 */
+	public double[] getDiscountFactorSensitivities() {
+		return discountFactorSensitivities;
+	}
+
+	/**
+	 * @return the number of trades
+	 */
+	public int getNumberOfTrades() {
+		return numberOfTrades;
+	}
+}
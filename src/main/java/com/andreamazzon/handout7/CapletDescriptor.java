@@ -0,0 +1,58 @@
+package com.andreamazzon.handout7;
+
+/**
+ * This class describes a caplet on the LIBOR L(T_{i+1},T_{i+2}) of a zero
+ * coupon bond curve, paid in T_{i+2} and valued under the Black model, as in
+ * InterestRatesProducts.calculateCapletValueBlackModel: the initial LIBOR and
+ * the discount factor are taken from the curve.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CapletDescriptor implements ProductDescriptor {
+
+	private final String curveName;
+	private final String volatilityName;
+	private final int fixingIndex;
+	private final double strike;
+	private final double notional;
+
+	/**
+	 * @param curveName,      the name of the curve giving the LIBOR and the
+	 *                        discount factor
+	 * @param volatilityName, the name of the volatility of the LIBOR
+	 * @param fixingIndex,    the index i of the fixing date T_{i+1} in the curve
+	 * @param strike,         the strike of the caplet
+	 * @param notional,       i.e. N
+	 */
+	public CapletDescriptor(String curveName, String volatilityName, int fixingIndex, double strike,
+			double notional) {
+		this.curveName = curveName;
+		this.volatilityName = volatilityName;
+		this.fixingIndex = fixingIndex;
+		this.strike = strike;
+		this.notional = notional;
+	}
+
+	@Override
+	public String[] getCurveNames() {
+		return new String[] { curveName };
+	}
+
+	@Override
+	public String[] getParameterNames() {
+		return new String[] { volatilityName };
+	}
+
+	public int getFixingIndex() {
+		return fixingIndex;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	public double getNotional() {
+		return notional;
+	}
+}
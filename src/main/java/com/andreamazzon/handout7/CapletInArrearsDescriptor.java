@@ -0,0 +1,26 @@
+package com.andreamazzon.handout7;
+
+/**
+ * This class describes a caplet on the LIBOR L(T_{i+1},T_{i+2}) of a zero
+ * coupon bond curve, paid in arrears, i.e., in T_{i+1}, and valued under the
+ * Black model as in InterestRatesProductsInArrears.calculateCapletInArrearsBlack.
+ * The terms are the same as the ones of a caplet: only the pricer changes.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CapletInArrearsDescriptor extends CapletDescriptor {
+
+	/**
+	 * @param curveName,      the name of the curve giving the LIBOR and the
+	 *                        discount factor
+	 * @param volatilityName, the name of the volatility of the LIBOR
+	 * @param fixingIndex,    the index i of the fixing date T_{i+1} in the curve
+	 * @param strike,         the strike of the caplet
+	 * @param notional,       i.e. N
+	 */
+	public CapletInArrearsDescriptor(String curveName, String volatilityName, int fixingIndex, double strike,
+			double notional) {
+		super(curveName, volatilityName, fixingIndex, strike, notional);
+	}
+}
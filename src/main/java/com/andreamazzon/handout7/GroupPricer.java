@@ -0,0 +1,28 @@
+package com.andreamazzon.handout7;
+
+import java.util.List;
+
+/**
+ * This interface describes a pricer valuing together a group of products of
+ * the same type which need the same market data, registered in a
+ * ProductRegistry for that type.
+ *
+ * @author Andrea Mazzon
+ *
+ * @param <D> the type of the products
+ */
+@FunctionalInterface
+public interface GroupPricer<D extends ProductDescriptor> {
+
+	/**
+	 * It computes and returns the values of a group of products.
+	 *
+	 * @param products,   the products
+	 * @param curves,     the curves named by the products, in the order of
+	 *                    getCurveNames
+	 * @param parameters, the parameters named by the products, in the order of
+	 *                    getParameterNames
+	 * @return the values of the products, in the same order
+	 */
+	double[] calculateValues(List<D> products, MarketDataSet.Curve[] curves, double[] parameters);
+}
@@ -0,0 +1,186 @@
+package com.andreamazzon.handout7;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.andreamazzon.handout3.SwapAnnuityIndex;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class keeps the market data needed to value a book of products
+ * described by ProductDescriptor objects: zero coupon bond curves and scalar
+ * parameters, such as volatilities and correlations, each of them identified
+ * by a name. The products only give the names of the data they need, so that
+ * the same book can be valued with different market data. The number of
+ * lookups is counted, in order to check that a PricingPlan looks every item up
+ * once, however many products use it.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class MarketDataSet {
+
+	private final Map<String, Curve> curves = new HashMap<String, Curve>();
+	private final Map<String, Double> parameters = new HashMap<String, Double>();
+	private final AtomicLong numberOfLookups = new AtomicLong();
+
+	/**
+	 * It adds a zero coupon bond curve, or replaces the one with the same name.
+	 *
+	 * @param name,            the name of the curve
+	 * @param tenureStructure, the dates T_1,...,T_n, given as a TimeDiscretization
+	 *                         object
+	 * @param zeroBondCurve,   the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public void putCurve(String name, TimeDiscretization tenureStructure, double[] zeroBondCurve) {
+		curves.put(name, new Curve(tenureStructure, zeroBondCurve.clone()));
+	}
+
+	/**
+	 * It adds a zero coupon bond curve, or replaces the one with the same name, in
+	 * the case when the dates are T_i = i * yearFraction.
+	 *
+	 * @param name,          the name of the curve
+	 * @param yearFraction,  the length of the step from one date to the other
+	 * @param zeroBondCurve, the bonds P(T_1;0),...,P(T_n;0)
+	 */
+	public void putCurve(String name, double yearFraction, double[] zeroBondCurve) {
+		putCurve(name, new TimeDiscretizationFromArray(yearFraction, zeroBondCurve.length - 1, yearFraction),
+				zeroBondCurve);
+	}
+
+	/**
+	 * It adds a scalar parameter, for example a volatility or a correlation, or
+	 * replaces the one with the same name.
+	 *
+	 * @param name,  the name of the parameter
+	 * @param value, the value of the parameter
+	 */
+	public void putParameter(String name, double value) {
+		parameters.put(name, value);
+	}
+
+	/**
+	 * It returns the curve with a given name.
+	 *
+	 * @param name, the name of the curve
+	 * @return the curve
+	 */
+	public Curve getCurve(String name) {
+		numberOfLookups.incrementAndGet();
+		final Curve curve = curves.get(name);
+		if (curve == null) {
+			throw new IllegalArgumentException("There is no curve named " + name);
+		}
+		return curve;
+	}
+
+	/**
+	 * It returns the parameter with a given name.
+	 *
+	 * @param name, the name of the parameter
+	 * @return the value of the parameter
+	 */
+	public double getParameter(String name) {
+		numberOfLookups.incrementAndGet();
+		final Double value = parameters.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("There is no parameter named " + name);
+		}
+		return value;
+	}
+
+	/**
+	 * @return the number of calls of getCurve and getParameter up to now
+	 */
+	public long getNumberOfLookups() {
+		return numberOfLookups.get();
+	}
+
+	/**
+	 * This class represents a zero coupon bond curve P(T_1;0),...,P(T_n;0),
+	 * together with the quantities which are derived from it and shared by all
+	 * the products on the curve: the forward LIBORs L(T_{i+1},T_{i+2};0) and the
+	 * annuities and par swap rates of the swaps, given by a SwapAnnuityIndex.
+	 * They are all computed once, when the curve is added to the market data.
+	 */
+	public static class Curve {
+
+		private final TimeDiscretization tenureStructure;
+		private final double[] zeroBondCurve;
+		private final double[] forwardLibors;
+		private final SwapAnnuityIndex annuityIndex;
+
+		Curve(TimeDiscretization tenureStructure, double[] zeroBondCurve) {
+			this.tenureStructure = tenureStructure;
+			this.zeroBondCurve = zeroBondCurve;
+			this.annuityIndex = new SwapAnnuityIndex(tenureStructure, zeroBondCurve);
+			forwardLibors = new double[zeroBondCurve.length - 1];
+			for (int liborIndex = 0; liborIndex < forwardLibors.length; liborIndex++) {
+				forwardLibors[liborIndex] = (zeroBondCurve[liborIndex] / zeroBondCurve[liborIndex + 1] - 1)
+						/ tenureStructure.getTimeStep(liborIndex);
+			}
+		}
+
+		/**
+		 * @param dateIndex, the index i of the date
+		 * @return the date T_{i+1}
+		 */
+		public double getTime(int dateIndex) {
+			return tenureStructure.getTime(dateIndex);
+		}
+
+		/**
+		 * @param dateIndex, the index i of the date
+		 * @return the bond P(T_{i+1};0)
+		 */
+		public double getBond(int dateIndex) {
+			return zeroBondCurve[dateIndex];
+		}
+
+		/**
+		 * @param liborIndex, the index i of the fixing date
+		 * @return the forward LIBOR L(T_{i+1},T_{i+2};0)
+		 */
+		public double getForwardLibor(int liborIndex) {
+			return forwardLibors[liborIndex];
+		}
+
+		/**
+		 * @return the object giving the annuities and the par swap rates of the
+		 *         swaps on the curve
+		 */
+		public SwapAnnuityIndex getAnnuityIndex() {
+			return annuityIndex;
+		}
+
+		/**
+		 * @return the number n of bonds of the curve
+		 */
+		public int getCurveLength() {
+			return zeroBondCurve.length;
+		}
+
+		/**
+		 * It checks if another curve has the same dates T_1,...,T_n as this one, so
+		 * that bonds of the two curves with the same index have the same maturity.
+		 *
+		 * @param otherCurve, the other curve
+		 * @return true if the two curves have the same dates
+		 */
+		public boolean hasSameDates(Curve otherCurve) {
+			if (otherCurve.getCurveLength() != getCurveLength()) {
+				return false;
+			}
+			for (int dateIndex = 0; dateIndex < getCurveLength(); dateIndex++) {
+				if (Double.compare(otherCurve.getTime(dateIndex), getTime(dateIndex)) != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package com.andreamazzon.handout7;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a pricing service for the products of PricingRequestType,
+ * which can be called by many clients at the same time, in the same process or
+ * through a PricingServiceSocketServer. Instead of calling the static methods
+ * of InterestRatesProducts, InterestRatesProductsFurtherEnhanced and
+ * InterestRatesProductsInArrears for every request, the requests are put in a
+ * queue and valued in micro-batches: the first request arriving when the queue
+ * is empty opens a window of given length, and all the requests arriving
+ * during the window (up to a maximum number) are valued together. The requests
+ * of a batch are grouped by type and every group is valued by the vectorized
+ * pricer of its type. In this way, under load, the cost of the dispatch is paid
+ * once per batch, and the pricers work on arrays, whereas a single request
+ * waits at most the length of the window.
+ *
+ * The caller gets a CompletableFuture, which is completed by the thread of the
+ * service when the batch is valued. The service keeps the number of requests
+ * and of batches, the throughput and the latencies of the last requests, from
+ * the submission to the end of the valuation of their batch. The statistics
+ * of a batch are updated before its futures are completed.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class MicroBatchingPricingService implements Closeable {
+
+	// the number of latencies kept to compute the percentiles
+	private static final int NUMBER_OF_LATENCY_SAMPLES = 1 << 16;
+
+	private final long windowLengthInNanoseconds;
+	private final int maximumBatchSize;
+	private final BlockingQueue<PricingRequest> queue = new LinkedBlockingQueue<PricingRequest>();
+	private final Thread dispatcher;
+	private final long startTime;
+	private volatile boolean isClosed = false;
+
+	// the statistics are written by the dispatcher and read by the getters
+	private final Object statisticsLock = new Object();
+	private final long[] latencies = new long[NUMBER_OF_LATENCY_SAMPLES];
+	private long numberOfRequests = 0;
+	private long numberOfBatches = 0;
+
+	/**
+	 * It builds the service and starts its thread.
+	 *
+	 * @param windowLength,     the length of the window during which the
+	 *                          requests are gathered, for example 200
+	 *                          microseconds
+	 * @param unit,             the unit of the length of the window
+	 * @param maximumBatchSize, the maximum number of requests in a batch: the
+	 *                          batch is valued when it is full, even if the
+	 *                          window is not closed
+	 */
+	public MicroBatchingPricingService(long windowLength, TimeUnit unit, int maximumBatchSize) {
+		if (maximumBatchSize < 1) {
+			throw new IllegalArgumentException("The maximum size of a batch must be positive");
+		}
+		this.windowLengthInNanoseconds = unit.toNanos(windowLength);
+		this.maximumBatchSize = maximumBatchSize;
+		this.startTime = System.nanoTime();
+		dispatcher = new Thread(this::dispatch, "micro-batching-pricing-service");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * It submits the valuation of a product.
+	 *
+	 * @param type,       the type of the product
+	 * @param parameters, the parameters of the product, in the order of the
+	 *                    static method valuing it
+	 * @return a future which is completed with the value of the product, or
+	 *         exceptionally if the valuation fails or the service is closed
+	 */
+	public CompletableFuture<Double> submit(PricingRequestType type, double... parameters) {
+		if (parameters.length != type.getNumberOfParameters()) {
+			throw new IllegalArgumentException(
+					type + " needs " + type.getNumberOfParameters() + " parameters, not " + parameters.length);
+		}
+		final PricingRequest request = new PricingRequest(type, parameters.clone());
+		if (isClosed) {
+			request.future.completeExceptionally(new IllegalStateException("The pricing service is closed"));
+			return request.future;
+		}
+		queue.add(request);
+		// if the service has been closed meanwhile, the dispatcher might never see the request
+		if (isClosed && queue.remove(request)) {
+			request.future.completeExceptionally(new IllegalStateException("The pricing service is closed"));
+		}
+		return request.future;
+	}
+
+	private void dispatch() {
+		final List<PricingRequest> batch = new ArrayList<PricingRequest>(maximumBatchSize);
+		try {
+			while (!isClosed) {
+				// without requests, we wait as long as needed
+				final PricingRequest firstRequest = queue.take();
+				batch.add(firstRequest);
+				final long windowEnd = System.nanoTime() + windowLengthInNanoseconds;
+				while (batch.size() < maximumBatchSize) {
+					final long remainingTime = windowEnd - System.nanoTime();
+					if (remainingTime <= 0) {
+						// what has already arrived goes in this batch anyway
+						queue.drainTo(batch, maximumBatchSize - batch.size());
+						break;
+					}
+					final PricingRequest request = queue.poll(remainingTime, TimeUnit.NANOSECONDS);
+					if (request == null) {
+						break;
+					}
+					batch.add(request);
+				}
+				valueBatch(batch);
+				batch.clear();
+			}
+		} catch (final InterruptedException e) {
+			// the service has been closed: the requests still in the queue are failed below
+		}
+		final IllegalStateException closedException = new IllegalStateException("The pricing service is closed");
+		batch.forEach(request -> request.future.completeExceptionally(closedException));
+		PricingRequest request;
+		while ((request = queue.poll()) != null) {
+			request.future.completeExceptionally(closedException);
+		}
+	}
+
+	private void valueBatch(List<PricingRequest> batch) {
+		final Map<PricingRequestType, List<PricingRequest>> requestsByType = new EnumMap<PricingRequestType, List<PricingRequest>>(
+				PricingRequestType.class);
+		for (final PricingRequest request : batch) {
+			requestsByType.computeIfAbsent(request.type, type -> new ArrayList<PricingRequest>()).add(request);
+		}
+		// the values (or the failure) of every group, in the order of requestsByType
+		final List<double[]> valuesByType = new ArrayList<double[]>(requestsByType.size());
+		final List<RuntimeException> failuresByType = new ArrayList<RuntimeException>(requestsByType.size());
+		for (final Map.Entry<PricingRequestType, List<PricingRequest>> group : requestsByType.entrySet()) {
+			final PricingRequestType type = group.getKey();
+			final List<PricingRequest> requests = group.getValue();
+			// from the requests to the structure of arrays of the vectorized pricers
+			final double[][] parameters = new double[type.getNumberOfParameters()][requests.size()];
+			for (int requestIndex = 0; requestIndex < requests.size(); requestIndex++) {
+				final double[] requestParameters = requests.get(requestIndex).parameters;
+				for (int parameterIndex = 0; parameterIndex < parameters.length; parameterIndex++) {
+					parameters[parameterIndex][requestIndex] = requestParameters[parameterIndex];
+				}
+			}
+			try {
+				valuesByType.add(type.calculateValues(parameters));
+				failuresByType.add(null);
+			} catch (final RuntimeException e) {
+				valuesByType.add(null);
+				failuresByType.add(e);
+			}
+		}
+
+		/*
+		 * The statistics are recorded before any future is completed: a caller
+		 * waiting for its futures then always finds its requests counted.
+		 */
+		final long completionTime = System.nanoTime();
+		synchronized (statisticsLock) {
+			for (final PricingRequest request : batch) {
+				latencies[(int) (numberOfRequests % NUMBER_OF_LATENCY_SAMPLES)] = completionTime
+						- request.submissionTime;
+				numberOfRequests++;
+			}
+			numberOfBatches++;
+		}
+
+		int groupIndex = 0;
+		for (final List<PricingRequest> requests : requestsByType.values()) {
+			final double[] values = valuesByType.get(groupIndex);
+			final RuntimeException failure = failuresByType.get(groupIndex);
+			for (int requestIndex = 0; requestIndex < requests.size(); requestIndex++) {
+				final CompletableFuture<Double> future = requests.get(requestIndex).future;
+				if (failure == null) {
+					future.complete(values[requestIndex]);
+				} else {
+					future.completeExceptionally(failure);
+				}
+			}
+			groupIndex++;
+		}
+	}
+
+	/**
+	 * It stops the service: the requests which have not been valued yet are
+	 * completed exceptionally, and the new ones are refused.
+	 */
+	@Override
+	public void close() {
+		isClosed = true;
+		dispatcher.interrupt();
+		try {
+			dispatcher.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the number of requests valued up to now
+	 */
+	public long getNumberOfRequests() {
+		synchronized (statisticsLock) {
+			return numberOfRequests;
+		}
+	}
+
+	/**
+	 * @return the number of batches valued up to now
+	 */
+	public long getNumberOfBatches() {
+		synchronized (statisticsLock) {
+			return numberOfBatches;
+		}
+	}
+
+	/**
+	 * @return the number of requests valued per second since the service has
+	 *         been built
+	 */
+	public double getThroughput() {
+		return getNumberOfRequests() / ((System.nanoTime() - startTime) / 1E9);
+	}
+
+	/**
+	 * It computes and returns a percentile of the latencies of the last 65536
+	 * requests, from their submission to the end of the valuation of their batch.
+	 *
+	 * @param percentile, the percentile, between 0 and 100: for example, 50 for
+	 *                    the median and 99 for the latency which is exceeded by
+	 *                    one request out of one hundred
+	 * @return the percentile of the latencies, in nanoseconds, or NaN if no
+	 *         request has been valued yet
+	 */
+	public double getLatencyPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile must be between 0 and 100");
+		}
+		final long[] sortedLatencies;
+		synchronized (statisticsLock) {
+			sortedLatencies = Arrays.copyOf(latencies, (int) Math.min(numberOfRequests, NUMBER_OF_LATENCY_SAMPLES));
+		}
+		if (sortedLatencies.length == 0) {
+			return Double.NaN;
+		}
+		Arrays.sort(sortedLatencies);
+		// nearest rank
+		final int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+		return sortedLatencies[Math.max(rank, 1) - 1];
+	}
+
+	private static final class PricingRequest {
+
+		private final PricingRequestType type;
+		private final double[] parameters;
+		private final long submissionTime = System.nanoTime();
+		private final CompletableFuture<Double> future = new CompletableFuture<Double>();
+
+		PricingRequest(PricingRequestType type, double[] parameters) {
+			this.type = type;
+			this.parameters = parameters;
+		}
+	}
+}
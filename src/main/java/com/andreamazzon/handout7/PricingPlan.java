@@ -0,0 +1,161 @@
+package com.andreamazzon.handout7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class values a book of products in one pass, as compiled by a
+ * ProductRegistry. When the plan is built, the products are split in groups
+ * having the same class (hence the same pricer) and the same names of market
+ * data, and the names of all the curves and parameters used by the book are
+ * collected. When the book is valued, every curve and every parameter is looked
+ * up once in the MarketDataSet, every group is valued by its pricer with the
+ * data it needs, and the values are written back in the order of the book. The
+ * same plan can be used to value the book with different market data, for
+ * example in a scenario analysis.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class PricingPlan {
+
+	private final int numberOfProducts;
+	private final String[] curveNames;
+	private final String[] parameterNames;
+	private final List<ProductGroup> groups = new ArrayList<ProductGroup>();
+
+	PricingPlan(ProductRegistry registry, List<? extends ProductDescriptor> book) {
+		numberOfProducts = book.size();
+		// the position of every name in the arrays of the market data looked up
+		final Map<String, Integer> curvePositions = new LinkedHashMap<String, Integer>();
+		final Map<String, Integer> parameterPositions = new LinkedHashMap<String, Integer>();
+		final Map<List<Object>, ProductGroup> groupsByKey = new LinkedHashMap<List<Object>, ProductGroup>();
+
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final ProductDescriptor product = book.get(productIndex);
+			final GroupPricer<?> pricer = registry.getPricer(product.getClass());
+			if (pricer == null) {
+				throw new IllegalArgumentException("No pricer is registered for " + product.getClass().getName());
+			}
+			final String[] productCurveNames = product.getCurveNames();
+			final String[] productParameterNames = product.getParameterNames();
+			final List<Object> key = Arrays.asList(product.getClass(), Arrays.asList(productCurveNames),
+					Arrays.asList(productParameterNames));
+			ProductGroup group = groupsByKey.get(key);
+			if (group == null) {
+				final int[] curveIndices = new int[productCurveNames.length];
+				for (int nameIndex = 0; nameIndex < curveIndices.length; nameIndex++) {
+					curveIndices[nameIndex] = curvePositions.computeIfAbsent(productCurveNames[nameIndex],
+							name -> curvePositions.size());
+				}
+				final int[] parameterIndices = new int[productParameterNames.length];
+				for (int nameIndex = 0; nameIndex < parameterIndices.length; nameIndex++) {
+					parameterIndices[nameIndex] = parameterPositions.computeIfAbsent(
+							productParameterNames[nameIndex], name -> parameterPositions.size());
+				}
+				group = new ProductGroup(pricer, curveIndices, parameterIndices);
+				groupsByKey.put(key, group);
+				groups.add(group);
+			}
+			group.products.add(product);
+			group.positions.add(productIndex);
+		}
+		curveNames = curvePositions.keySet().toArray(new String[0]);
+		parameterNames = parameterPositions.keySet().toArray(new String[0]);
+	}
+
+	/**
+	 * It computes and returns the values of all the products of the book.
+	 *
+	 * @param marketData, the market data named by the products
+	 * @return the values of the products, in the order of the book
+	 */
+	public double[] getValues(MarketDataSet marketData) {
+		// every item of market data is looked up once for the whole book
+		final MarketDataSet.Curve[] curves = new MarketDataSet.Curve[curveNames.length];
+		for (int curveIndex = 0; curveIndex < curves.length; curveIndex++) {
+			curves[curveIndex] = marketData.getCurve(curveNames[curveIndex]);
+		}
+		final double[] parameters = new double[parameterNames.length];
+		for (int parameterIndex = 0; parameterIndex < parameters.length; parameterIndex++) {
+			parameters[parameterIndex] = marketData.getParameter(parameterNames[parameterIndex]);
+		}
+
+		final double[] values = new double[numberOfProducts];
+		for (final ProductGroup group : groups) {
+			final MarketDataSet.Curve[] groupCurves = new MarketDataSet.Curve[group.curveIndices.length];
+			for (int nameIndex = 0; nameIndex < groupCurves.length; nameIndex++) {
+				groupCurves[nameIndex] = curves[group.curveIndices[nameIndex]];
+			}
+			final double[] groupParameters = new double[group.parameterIndices.length];
+			for (int nameIndex = 0; nameIndex < groupParameters.length; nameIndex++) {
+				groupParameters[nameIndex] = parameters[group.parameterIndices[nameIndex]];
+			}
+			final double[] groupValues = group.calculateValues(groupCurves, groupParameters);
+			for (int productIndex = 0; productIndex < groupValues.length; productIndex++) {
+				values[group.positions.get(productIndex)] = groupValues[productIndex];
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return the number of products of the book
+	 */
+	public int getNumberOfProducts() {
+		return numberOfProducts;
+	}
+
+	/**
+	 * @return the number of groups of products valued together
+	 */
+	public int getNumberOfGroups() {
+		return groups.size();
+	}
+
+	/**
+	 * @return the names of the curves used by the book
+	 */
+	public String[] getCurveNames() {
+		return curveNames.clone();
+	}
+
+	/**
+	 * @return the names of the parameters used by the book
+	 */
+	public String[] getParameterNames() {
+		return parameterNames.clone();
+	}
+
+	/*
+	 * The products of the same class with the same market data, with their
+	 * positions in the book and the positions of their market data in the arrays
+	 * looked up by getValues.
+	 */
+	private static final class ProductGroup {
+
+		private final GroupPricer<?> pricer;
+		private final int[] curveIndices;
+		private final int[] parameterIndices;
+		private final List<ProductDescriptor> products = new ArrayList<ProductDescriptor>();
+		private final List<Integer> positions = new ArrayList<Integer>();
+
+		ProductGroup(GroupPricer<?> pricer, int[] curveIndices, int[] parameterIndices) {
+			this.pricer = pricer;
+			this.curveIndices = curveIndices;
+			this.parameterIndices = parameterIndices;
+		}
+
+		/*
+		 * The pricer has been registered for the class of all the products of the
+		 * group, hence the cast is safe.
+		 */
+		@SuppressWarnings("unchecked")
+		double[] calculateValues(MarketDataSet.Curve[] curves, double[] parameters) {
+			return ((GroupPricer<ProductDescriptor>) pricer).calculateValues(products, curves, parameters);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.andreamazzon.handout7;
+
+import com.andreamazzon.handout4.CapletBatchPricer;
+import com.andreamazzon.handout6.QuantoCapletBatchPricer;
+
+/**
+ * This enum lists the products which can be valued by a
+ * MicroBatchingPricingService. Every product is described by the parameters of
+ * the static method valuing it, in the same order, and is valued in batches by
+ * a vectorized pricer:
+ * - CAPLET_BLACK: the parameters of
+ * InterestRatesProducts.calculateCapletValueBlackModel, valued by
+ * CapletBatchPricer;
+ * - CAPLET_IN_ARREARS_BLACK: the parameters of
+ * InterestRatesProductsInArrears.calculateCapletInArrearsBlack, valued by
+ * CapletBatchPricer as a classic caplet plus a caplet on L_0 exp(sigma^2 T_1)
+ * with notional N (T_2-T_1) L_0;
+ * - QUANTO_CAPLET: the parameters of
+ * InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue, valued by
+ * QuantoCapletBatchPricer.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public enum PricingRequestType {
+
+	CAPLET_BLACK(7) {
+		@Override
+		public double[] calculateValues(double[][] parameters) {
+			return CapletBatchPricer.calculateCapletValuesBlackModel(parameters[0], parameters[1], parameters[2],
+					parameters[3], parameters[4], parameters[5], parameters[6]);
+		}
+	},
+
+	CAPLET_IN_ARREARS_BLACK(7) {
+		@Override
+		public double[] calculateValues(double[][] parameters) {
+			final double[] initialForwardLibors = parameters[0];
+			final double[] liborVolatilities = parameters[1];
+			final double[] fixingDates = parameters[3];
+			final double[] paymentDates = parameters[4];
+			final double[] notionals = parameters[6];
+			final int numberOfRequests = initialForwardLibors.length;
+			// the same formula as InterestRatesProductsInArrears.calculateCapletInArrearsBlack
+			final double[] shiftedForwardLibors = new double[numberOfRequests];
+			final double[] adjustmentNotionals = new double[numberOfRequests];
+			for (int requestIndex = 0; requestIndex < numberOfRequests; requestIndex++) {
+				final double liborVolatility = liborVolatilities[requestIndex];
+				shiftedForwardLibors[requestIndex] = initialForwardLibors[requestIndex]
+						* Math.exp(liborVolatility * liborVolatility * fixingDates[requestIndex]);
+				adjustmentNotionals[requestIndex] = notionals[requestIndex]
+						* (paymentDates[requestIndex] - fixingDates[requestIndex]) * initialForwardLibors[requestIndex];
+			}
+			final double[] values = CapletBatchPricer.calculateCapletValuesBlackModel(initialForwardLibors,
+					liborVolatilities, parameters[2], fixingDates, paymentDates, parameters[5], notionals);
+			final double[] convexityAdjustments = CapletBatchPricer.calculateCapletValuesBlackModel(
+					shiftedForwardLibors, liborVolatilities, parameters[2], fixingDates, paymentDates, parameters[5],
+					adjustmentNotionals);
+			for (int requestIndex = 0; requestIndex < numberOfRequests; requestIndex++) {
+				values[requestIndex] += convexityAdjustments[requestIndex];
+			}
+			return values;
+		}
+	},
+
+	QUANTO_CAPLET(10) {
+		@Override
+		public double[] calculateValues(double[][] parameters) {
+			final QuantoCapletBatchPricer pricer = new QuantoCapletBatchPricer(parameters[0].length);
+			pricer.calculate(parameters[0], parameters[1], parameters[2], parameters[3], parameters[4],
+					parameters[5], parameters[6], parameters[7], parameters[8], parameters[9]);
+			return pricer.getValues();
+		}
+	};
+
+	private final int numberOfParameters;
+
+	PricingRequestType(int numberOfParameters) {
+		this.numberOfParameters = numberOfParameters;
+	}
+
+	/**
+	 * @return the number of parameters describing one product
+	 */
+	public int getNumberOfParameters() {
+		return numberOfParameters;
+	}
+
+	/**
+	 * It computes and returns the values of a batch of products of this type.
+	 *
+	 * @param parameters, the parameters of the products, given as a structure of
+	 *                    arrays: parameters[p][i] is the p-th parameter of the
+	 *                    i-th product
+	 * @return the values of the products
+	 */
+	public abstract double[] calculateValues(double[][] parameters);
+}
@@ -0,0 +1,124 @@
+package com.andreamazzon.handout7;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class calls a PricingServiceSocketServer on the loopback interface, with
+ * the same methods as the MicroBatchingPricingService it exposes: every
+ * request is written on the socket at once, and the future it returns is
+ * completed by a thread reading the responses. See PricingServiceSocketServer
+ * for the format of the messages. The client can be used by many threads at
+ * the same time.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class PricingServiceSocketClient implements Closeable {
+
+	private final Socket socket;
+	private final DataOutputStream output;
+	private final AtomicInteger nextRequestIdentifier = new AtomicInteger();
+	private final Map<Integer, CompletableFuture<Double>> pendingRequests = new ConcurrentHashMap<Integer, CompletableFuture<Double>>();
+
+	/**
+	 * It connects to a server on the loopback interface.
+	 *
+	 * @param port, the port of the server
+	 * @throws IOException
+	 */
+	public PricingServiceSocketClient(int port) throws IOException {
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay(true);
+		output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		final Thread readingThread = new Thread(() -> readResponses(input), "pricing-client-responses");
+		readingThread.setDaemon(true);
+		readingThread.start();
+	}
+
+	/**
+	 * It submits the valuation of a product to the server.
+	 *
+	 * @param type,       the type of the product
+	 * @param parameters, the parameters of the product, in the order of the
+	 *                    static method valuing it
+	 * @return a future which is completed with the value of the product, or
+	 *         exceptionally if the valuation fails or the connection is closed
+	 */
+	public CompletableFuture<Double> submit(PricingRequestType type, double... parameters) {
+		if (parameters.length != type.getNumberOfParameters()) {
+			throw new IllegalArgumentException(
+					type + " needs " + type.getNumberOfParameters() + " parameters, not " + parameters.length);
+		}
+		final int requestIdentifier = nextRequestIdentifier.getAndIncrement();
+		final CompletableFuture<Double> future = new CompletableFuture<Double>();
+		pendingRequests.put(requestIdentifier, future);
+		try {
+			synchronized (output) {
+				output.writeInt(requestIdentifier);
+				output.writeInt(type.ordinal());
+				for (final double parameter : parameters) {
+					output.writeDouble(parameter);
+				}
+				output.flush();
+			}
+		} catch (final IOException e) {
+			pendingRequests.remove(requestIdentifier);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void readResponses(DataInputStream input) {
+		try {
+			while (true) {
+				final int requestIdentifier = input.readInt();
+				final double value = input.readDouble();
+				final CompletableFuture<Double> future = pendingRequests.remove(requestIdentifier);
+				if (future == null) {
+					continue;
+				}
+				if (Double.isNaN(value)) {
+					future.completeExceptionally(new IOException("The valuation failed on the server"));
+				} else {
+					future.complete(value);
+				}
+			}
+		} catch (final IOException e) {
+			// the connection has been closed: nothing will arrive for the pending requests
+			for (final Integer requestIdentifier : pendingRequests.keySet()) {
+				final CompletableFuture<Double> future = pendingRequests.remove(requestIdentifier);
+				if (future != null) {
+					future.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of requests whose response has not arrived yet
+	 */
+	public int getNumberOfPendingRequests() {
+		return pendingRequests.size();
+	}
+
+	/**
+	 * It closes the connection: the requests whose response has not arrived yet
+	 * are completed exceptionally.
+	 */
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
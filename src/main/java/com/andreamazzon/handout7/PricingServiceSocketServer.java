@@ -0,0 +1,197 @@
+package com.andreamazzon.handout7;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class makes a MicroBatchingPricingService available through a socket
+ * on the loopback interface, so that it can be called by other processes on
+ * the same machine, for example by a PricingServiceSocketClient. Every
+ * connection is read by its own thread, and the requests are submitted to the
+ * service as they arrive, so that the requests of all the connections are
+ * valued in the same batches. The values are written back as soon as they are
+ * computed, hence not necessarily in the order of the requests: the futures
+ * only put the responses in a queue, and every connection has a second thread
+ * which takes all the responses in the queue, writes them and flushes the
+ * socket once for all of them. In this way the thread of the service never
+ * waits for a socket. When the client closes its side of the connection, the
+ * responses of the requests already received are still written before the
+ * socket is closed.
+ *
+ * All the numbers are big endian. A request is made by its identifier (an int,
+ * chosen by the client), the ordinal of its PricingRequestType (an int) and
+ * the parameters of the product (doubles, as many as the type needs). A
+ * response is made by the identifier of the request (an int) and the value (a
+ * double), which is NaN if the valuation failed.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class PricingServiceSocketServer implements Closeable {
+
+	private final MicroBatchingPricingService service;
+	private final ServerSocket serverSocket;
+	private final List<Socket> connections = new CopyOnWriteArrayList<Socket>();
+	private volatile boolean isClosed = false;
+
+	/**
+	 * It opens the socket and starts the thread accepting the connections.
+	 *
+	 * @param service, the service valuing the requests
+	 * @param port,    the port, or 0 to use any free port
+	 * @throws IOException
+	 */
+	public PricingServiceSocketServer(MicroBatchingPricingService service, int port) throws IOException {
+		this.service = service;
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		final Thread acceptingThread = new Thread(this::acceptConnections, "pricing-server-accept");
+		acceptingThread.setDaemon(true);
+		acceptingThread.start();
+	}
+
+	private void acceptConnections() {
+		while (!isClosed) {
+			try {
+				final Socket connection = serverSocket.accept();
+				connection.setTcpNoDelay(true);
+				connections.add(connection);
+				final Thread connectionThread = new Thread(() -> serve(connection), "pricing-server-connection");
+				connectionThread.setDaemon(true);
+				connectionThread.start();
+			} catch (final IOException e) {
+				// the server socket has been closed
+				return;
+			}
+		}
+	}
+
+	private void serve(Socket connection) {
+		final BlockingQueue<Response> responses = new LinkedBlockingQueue<Response>();
+		final Thread writingThread = new Thread(() -> writeResponses(connection, responses), "pricing-server-writer");
+		writingThread.setDaemon(true);
+		writingThread.start();
+		int numberOfRequests = 0;
+		try {
+			final DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			final PricingRequestType[] types = PricingRequestType.values();
+			while (!isClosed) {
+				final int requestIdentifier;
+				try {
+					requestIdentifier = input.readInt();
+				} catch (final EOFException e) {
+					// the client has closed the connection
+					return;
+				}
+				final int typeIndex = input.readInt();
+				if (typeIndex < 0 || typeIndex >= types.length) {
+					throw new IOException("Unknown product type " + typeIndex);
+				}
+				final double[] parameters = new double[types[typeIndex].getNumberOfParameters()];
+				for (int parameterIndex = 0; parameterIndex < parameters.length; parameterIndex++) {
+					parameters[parameterIndex] = input.readDouble();
+				}
+				// the queue is not bounded, so the thread completing the future never waits
+				service.submit(types[typeIndex], parameters).whenComplete((value, exception) -> responses
+						.add(new Response(requestIdentifier, exception == null ? value : Double.NaN)));
+				numberOfRequests++;
+			}
+		} catch (final IOException e) {
+			// a broken connection only ends itself
+		} finally {
+			// the writing thread closes the socket once it has written this many responses
+			responses.add(new Response(numberOfRequests));
+		}
+	}
+
+	/*
+	 * It writes the responses of a connection, flushing once for all the
+	 * responses found in the queue, until all the requests read from the
+	 * connection have been answered or the socket is closed.
+	 */
+	private void writeResponses(Socket connection, BlockingQueue<Response> responses) {
+		final List<Response> drainedResponses = new ArrayList<Response>();
+		int numberOfRequests = -1;
+		int numberOfWrittenResponses = 0;
+		try (Socket socket = connection) {
+			final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			while (numberOfRequests < 0 || numberOfWrittenResponses < numberOfRequests) {
+				drainedResponses.add(responses.take());
+				responses.drainTo(drainedResponses);
+				for (final Response response : drainedResponses) {
+					if (response.isEndOfRequests) {
+						numberOfRequests = response.requestIdentifier;
+					} else {
+						output.writeInt(response.requestIdentifier);
+						output.writeDouble(response.value);
+						numberOfWrittenResponses++;
+					}
+				}
+				output.flush();
+				drainedResponses.clear();
+			}
+		} catch (final IOException e) {
+			// the connection has been closed: the remaining responses are lost
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			connections.remove(connection);
+		}
+	}
+
+	/**
+	 * @return the port the server is listening to
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * It closes the socket and all the connections. The service is not closed,
+	 * since it belongs to the caller.
+	 */
+	@Override
+	public void close() throws IOException {
+		isClosed = true;
+		serverSocket.close();
+		for (final Socket connection : connections) {
+			connection.close();
+		}
+	}
+
+	/*
+	 * The value of a request, or the mark put in the queue when no more requests
+	 * are read from the connection: in that case the identifier is the number of
+	 * requests read.
+	 */
+	private static final class Response {
+
+		private final int requestIdentifier;
+		private final double value;
+		private final boolean isEndOfRequests;
+
+		Response(int requestIdentifier, double value) {
+			this.requestIdentifier = requestIdentifier;
+			this.value = value;
+			isEndOfRequests = false;
+		}
+
+		Response(int numberOfRequests) {
+			requestIdentifier = numberOfRequests;
+			value = Double.NaN;
+			isEndOfRequests = true;
+		}
+	}
+}
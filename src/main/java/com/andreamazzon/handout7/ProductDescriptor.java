@@ -0,0 +1,25 @@
+package com.andreamazzon.handout7;
+
+/**
+ * This interface describes a product of a book to be valued through a
+ * ProductRegistry. A descriptor only keeps the terms of the contract and the
+ * names of the market data it needs, which are looked up in a MarketDataSet
+ * when the book is valued. The products of the same class with the same names
+ * of market data are valued together by the same GroupPricer.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public interface ProductDescriptor {
+
+	/**
+	 * @return the names of the zero coupon bond curves needed by the product
+	 */
+	String[] getCurveNames();
+
+	/**
+	 * @return the names of the scalar parameters needed by the product, for
+	 *         example volatilities and correlations
+	 */
+	String[] getParameterNames();
+}
@@ -0,0 +1,168 @@
+package com.andreamazzon.handout7;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.andreamazzon.handout3.SwapAnnuityIndex;
+
+import net.finmath.functions.AnalyticFormulas;
+
+/**
+ * This class keeps the pricers of the types of products which can appear in a
+ * book, and compiles a book into a PricingPlan, which values all its products
+ * in one pass. A pricer is registered for a class of ProductDescriptor, and is
+ * used for the products of exactly that class: for example, a
+ * CapletInArrearsDescriptor is not valued by the pricer of CapletDescriptor.
+ * The registry given by withAnalyticPricers values caplets, caplets in arrears
+ * and quanto caplets by the vectorized pricers of PricingRequestType, and
+ * swaptions by the SwapAnnuityIndex of their curve, so that client code does
+ * not need to call the static methods of InterestRatesProductsInArrears with
+ * their long lists of arguments.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class ProductRegistry {
+
+	private final Map<Class<? extends ProductDescriptor>, GroupPricer<?>> pricers = new HashMap<Class<? extends ProductDescriptor>, GroupPricer<?>>();
+
+	/**
+	 * It registers the pricer of a type of products, replacing the one already
+	 * registered for the type, if any.
+	 *
+	 * @param <D>,          the type of the products
+	 * @param productClass, the class of the products
+	 * @param pricer,       the pricer
+	 */
+	public <D extends ProductDescriptor> void register(Class<D> productClass, GroupPricer<? super D> pricer) {
+		pricers.put(productClass, pricer);
+	}
+
+	/**
+	 * It returns the pricer registered for a type of products.
+	 *
+	 * @param productClass, the class of the products
+	 * @return the pricer, or null if no pricer is registered for the class
+	 */
+	public GroupPricer<?> getPricer(Class<? extends ProductDescriptor> productClass) {
+		return pricers.get(productClass);
+	}
+
+	/**
+	 * It compiles a book into a plan: the products are grouped by pricer and by
+	 * market data, and the names of the market data are collected, so that every
+	 * valuation of the plan looks every item up once.
+	 *
+	 * @param book, the products of the book
+	 * @return the plan valuing the book
+	 */
+	public PricingPlan compile(List<? extends ProductDescriptor> book) {
+		return new PricingPlan(this, book);
+	}
+
+	/**
+	 * It builds and returns a registry with the pricers of CapletDescriptor,
+	 * CapletInArrearsDescriptor, QuantoCapletDescriptor and SwaptionDescriptor.
+	 *
+	 * @return the registry
+	 */
+	public static ProductRegistry withAnalyticPricers() {
+		final ProductRegistry registry = new ProductRegistry();
+		registry.register(CapletDescriptor.class, (products, curves, parameters) -> PricingRequestType.CAPLET_BLACK
+				.calculateValues(getCapletParameters(products, curves[0], parameters[0])));
+		registry.register(CapletInArrearsDescriptor.class,
+				(products, curves, parameters) -> PricingRequestType.CAPLET_IN_ARREARS_BLACK
+						.calculateValues(getCapletParameters(products, curves[0], parameters[0])));
+		registry.register(QuantoCapletDescriptor.class, ProductRegistry::calculateQuantoCapletValues);
+		registry.register(SwaptionDescriptor.class, ProductRegistry::calculateSwaptionValues);
+		return registry;
+	}
+
+	/*
+	 * The parameters of InterestRatesProducts.calculateCapletValueBlackModel, as a
+	 * structure of arrays, from the terms of the caplets and the market data they
+	 * share.
+	 */
+	private static double[][] getCapletParameters(List<? extends CapletDescriptor> products, MarketDataSet.Curve curve,
+			double volatility) {
+		final int numberOfProducts = products.size();
+		final double[][] capletParameters = new double[7][numberOfProducts];
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final CapletDescriptor caplet = products.get(productIndex);
+			final int fixingIndex = caplet.getFixingIndex();
+			checkFixingIndex(fixingIndex, curve);
+			capletParameters[0][productIndex] = curve.getForwardLibor(fixingIndex);
+			capletParameters[1][productIndex] = volatility;
+			capletParameters[2][productIndex] = caplet.getStrike();
+			capletParameters[3][productIndex] = curve.getTime(fixingIndex);
+			capletParameters[4][productIndex] = curve.getTime(fixingIndex + 1);
+			capletParameters[5][productIndex] = curve.getBond(fixingIndex + 1);
+			capletParameters[6][productIndex] = caplet.getNotional();
+		}
+		return capletParameters;
+	}
+
+	/*
+	 * The parameters of InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue.
+	 * The fixing index gives both the foreign LIBOR and the domestic bond, so the
+	 * two curves must have the same dates: this is checked once for the group,
+	 * before any product is valued.
+	 */
+	private static double[] calculateQuantoCapletValues(List<QuantoCapletDescriptor> products,
+			MarketDataSet.Curve[] curves, double[] parameters) {
+		final MarketDataSet.Curve foreignCurve = curves[0];
+		final MarketDataSet.Curve domesticCurve = curves[1];
+		if (!foreignCurve.hasSameDates(domesticCurve)) {
+			throw new IllegalArgumentException("The foreign and the domestic curves of the quanto caplets "
+					+ products.get(0).getCurveNames()[0] + " and " + products.get(0).getCurveNames()[1]
+					+ " must have the same dates");
+		}
+		final int numberOfProducts = products.size();
+		final double[][] quantoParameters = new double[10][numberOfProducts];
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final QuantoCapletDescriptor caplet = products.get(productIndex);
+			final int fixingIndex = caplet.getFixingIndex();
+			checkFixingIndex(fixingIndex, foreignCurve);
+			checkFixingIndex(fixingIndex, domesticCurve);
+			quantoParameters[0][productIndex] = foreignCurve.getForwardLibor(fixingIndex);
+			quantoParameters[1][productIndex] = parameters[0];
+			quantoParameters[2][productIndex] = parameters[1];
+			quantoParameters[3][productIndex] = parameters[2];
+			quantoParameters[4][productIndex] = foreignCurve.getTime(fixingIndex);
+			quantoParameters[5][productIndex] = foreignCurve.getTime(fixingIndex + 1);
+			quantoParameters[6][productIndex] = caplet.getStrike();
+			quantoParameters[7][productIndex] = domesticCurve.getBond(fixingIndex + 1);
+			quantoParameters[8][productIndex] = caplet.getNotionalInForeignCurrency();
+			quantoParameters[9][productIndex] = caplet.getQuantoRate();
+		}
+		return PricingRequestType.QUANTO_CAPLET.calculateValues(quantoParameters);
+	}
+
+	// N A (Black value of a call on the par swap rate), with A and S given by the index of the curve
+	private static double[] calculateSwaptionValues(List<SwaptionDescriptor> products, MarketDataSet.Curve[] curves,
+			double[] parameters) {
+		final MarketDataSet.Curve curve = curves[0];
+		final SwapAnnuityIndex annuityIndex = curve.getAnnuityIndex();
+		final double[] values = new double[products.size()];
+		for (int productIndex = 0; productIndex < values.length; productIndex++) {
+			final SwaptionDescriptor swaption = products.get(productIndex);
+			final int startIndex = swaption.getExpiryIndex();
+			final int endIndex = startIndex + swaption.getTenorLength();
+			if (startIndex < 0 || swaption.getTenorLength() < 1 || endIndex >= curve.getCurveLength()) {
+				throw new IllegalArgumentException("The swap with start index " + startIndex + " and "
+						+ swaption.getTenorLength() + " periods is not in the curve");
+			}
+			values[productIndex] = swaption.getNotional() * annuityIndex.getAnnuity(startIndex, endIndex)
+					* AnalyticFormulas.blackScholesOptionValue(annuityIndex.getParSwapRate(startIndex, endIndex), 0,
+							parameters[0], curve.getTime(startIndex), swaption.getStrike());
+		}
+		return values;
+	}
+
+	private static void checkFixingIndex(int fixingIndex, MarketDataSet.Curve curve) {
+		if (fixingIndex < 0 || fixingIndex + 1 >= curve.getCurveLength()) {
+			throw new IllegalArgumentException("The LIBOR with fixing index " + fixingIndex + " is not in the curve");
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.andreamazzon.handout7;
+
+/**
+ * This class describes a Quanto Caplet, as in
+ * InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue: the foreign
+ * LIBOR L(T_{i+1},T_{i+2}) is taken from the foreign curve, the discount factor
+ * P(T_{i+2};0) from the domestic one, which must have the same dates.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class QuantoCapletDescriptor implements ProductDescriptor {
+
+	private final String foreignCurveName;
+	private final String domesticCurveName;
+	private final String liborVolatilityName;
+	private final String fxVolatilityName;
+	private final String correlationName;
+	private final int fixingIndex;
+	private final double strike;
+	private final double notionalInForeignCurrency;
+	private final double quantoRate;
+
+	/**
+	 * @param foreignCurveName,          the name of the curve giving the foreign
+	 *                                   LIBOR
+	 * @param domesticCurveName,         the name of the curve giving the discount
+	 *                                   factor
+	 * @param liborVolatilityName,       the name of the volatility of the foreign
+	 *                                   LIBOR
+	 * @param fxVolatilityName,          the name of the volatility of the forward
+	 *                                   FX rate
+	 * @param correlationName,           the name of the correlation between the
+	 *                                   forward FX rate and the foreign LIBOR
+	 * @param fixingIndex,               the index i of the fixing date T_{i+1} in
+	 *                                   the curves
+	 * @param strike,                    the strike of the caplet
+	 * @param notionalInForeignCurrency, the notional N, in foreign currency
+	 * @param quantoRate,                the constant conversion factor
+	 */
+	public QuantoCapletDescriptor(String foreignCurveName, String domesticCurveName, String liborVolatilityName,
+			String fxVolatilityName, String correlationName, int fixingIndex, double strike,
+			double notionalInForeignCurrency, double quantoRate) {
+		this.foreignCurveName = foreignCurveName;
+		this.domesticCurveName = domesticCurveName;
+		this.liborVolatilityName = liborVolatilityName;
+		this.fxVolatilityName = fxVolatilityName;
+		this.correlationName = correlationName;
+		this.fixingIndex = fixingIndex;
+		this.strike = strike;
+		this.notionalInForeignCurrency = notionalInForeignCurrency;
+		this.quantoRate = quantoRate;
+	}
+
+	@Override
+	public String[] getCurveNames() {
+		return new String[] { foreignCurveName, domesticCurveName };
+	}
+
+	@Override
+	public String[] getParameterNames() {
+		return new String[] { liborVolatilityName, fxVolatilityName, correlationName };
+	}
+
+	public int getFixingIndex() {
+		return fixingIndex;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	public double getNotionalInForeignCurrency() {
+		return notionalInForeignCurrency;
+	}
+
+	public double getQuantoRate() {
+		return quantoRate;
+	}
+}
@@ -0,0 +1,63 @@
+package com.andreamazzon.handout7;
+
+/**
+ * This class describes a swaption valued under the Black model: the option to
+ * enter in T_{s+1} the swap with payment dates T_{s+2},...,T_{s+l+1} of a zero
+ * coupon bond curve, as in the cubes of SwaptionCubePricer.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class SwaptionDescriptor implements ProductDescriptor {
+
+	private final String curveName;
+	private final String volatilityName;
+	private final int expiryIndex;
+	private final int tenorLength;
+	private final double strike;
+	private final double notional;
+
+	/**
+	 * @param curveName,      the name of the curve
+	 * @param volatilityName, the name of the volatility of the par swap rate
+	 * @param expiryIndex,    the index s of the expiry T_{s+1} in the curve
+	 * @param tenorLength,    the number l of periods of the swap
+	 * @param strike,         the strike of the swaption
+	 * @param notional,       i.e. N
+	 */
+	public SwaptionDescriptor(String curveName, String volatilityName, int expiryIndex, int tenorLength,
+			double strike, double notional) {
+		this.curveName = curveName;
+		this.volatilityName = volatilityName;
+		this.expiryIndex = expiryIndex;
+		this.tenorLength = tenorLength;
+		this.strike = strike;
+		this.notional = notional;
+	}
+
+	@Override
+	public String[] getCurveNames() {
+		return new String[] { curveName };
+	}
+
+	@Override
+	public String[] getParameterNames() {
+		return new String[] { volatilityName };
+	}
+
+	public int getExpiryIndex() {
+		return expiryIndex;
+	}
+
+	public int getTenorLength() {
+		return tenorLength;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	public double getNotional() {
+		return notional;
+	}
+}
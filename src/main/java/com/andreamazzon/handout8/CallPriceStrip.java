@@ -0,0 +1,253 @@
+package com.andreamazzon.handout8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.andreamazzon.handout4.BlackFormula;
+
+/**
+ * This class represents the strip of the prices C(K) = E^{T_2}[(L(T_1)-K)^+] of
+ * the calls on the LIBOR with a given fixing date, for all the strikes K, when
+ * the volatility of the Black formula depends on the strike through a
+ * VolatilitySurface object. Together with the prices, it stores the integrals
+ * I(K) of C(x) for x from K to infinity, which are what is needed to price the
+ * products in arrears by static replication, see InArrearsReplicationPricer.
+ *
+ * The integral from 0 to a maximum strike, above which the calls are worth
+ * nothing, is computed by adaptive Simpson quadrature: an interval is halved
+ * until the value of Simpson's rule on it and the sum of the values on its two
+ * halves differ less than the tolerance. Only the strikes of the accepted
+ * intervals are kept, with the call prices on them and the integrals from every
+ * interval to the maximum strike. The integral from any other strike is then
+ * given by the last ones plus the integral, on the interval the strike belongs
+ * to, of the parabola through the three prices of the interval: this is
+ * Simpson's rule itself when the strike is the start of the interval. In this
+ * way, once the strip is built, the price of any product on the fixing costs
+ * a binary search and a few operations, without evaluating the surface again.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class CallPriceStrip {
+
+	private static final int NUMBER_OF_INITIAL_INTERVALS = 16;
+	private static final int MAXIMUM_DEPTH = 30;
+	private static final int MAXIMUM_NUMBER_OF_DOUBLINGS = 20;
+	// the calls are worth nothing when d_1 is below this number
+	private static final double NUMBER_OF_STANDARD_DEVIATIONS = 10;
+
+	private final double initialForwardLibor;
+	private final double fixingDate;
+	private final VolatilitySurface volatilitySurface;
+
+	// the starts of the intervals, with the maximum strike at the end
+	private final double[] intervalStarts;
+	// the prices at the start, at the middle and at the end of every interval
+	private final double[] startValues;
+	private final double[] middleValues;
+	private final double[] endValues;
+	// the integrals of the prices from the start of every interval to the maximum strike
+	private final double[] integralsToMaximumStrike;
+
+	/**
+	 * It builds the strip of call prices for a given fixing date and a given
+	 * initial value of the LIBOR.
+	 *
+	 * @param initialForwardLibor, i.e. L_0 = L(T_1,T_2;0)
+	 * @param fixingDate,          i.e. T_1
+	 * @param volatilitySurface,   the Black volatilities of the LIBOR
+	 * @param relativeTolerance,   the tolerance of the quadrature, relative to
+	 *                             L_0^2, which is the order of the integral of all
+	 *                             the call prices
+	 */
+	public CallPriceStrip(double initialForwardLibor, double fixingDate, VolatilitySurface volatilitySurface,
+			double relativeTolerance) {
+		this.initialForwardLibor = initialForwardLibor;
+		this.fixingDate = fixingDate;
+		this.volatilitySurface = volatilitySurface;
+
+		/*
+		 * The maximum strike K is such that d_1 = -NUMBER_OF_STANDARD_DEVIATIONS with
+		 * the at the money volatility. If the surface is higher for high strikes, it is
+		 * doubled until the call with this strike is worth nothing, up to the
+		 * tolerance.
+		 */
+		final double tolerance = relativeTolerance * initialForwardLibor * initialForwardLibor;
+		double maximumStrike = getMaximumStrike(volatilitySurface.getVolatility(fixingDate, initialForwardLibor));
+		for (int doublingIndex = 0; doublingIndex < MAXIMUM_NUMBER_OF_DOUBLINGS
+				&& getCallValue(maximumStrike) * maximumStrike > tolerance; doublingIndex++) {
+			maximumStrike *= 2;
+		}
+
+		final List<double[]> intervals = new ArrayList<double[]>();
+		final double initialLength = maximumStrike / NUMBER_OF_INITIAL_INTERVALS;
+		for (int intervalIndex = 0; intervalIndex < NUMBER_OF_INITIAL_INTERVALS; intervalIndex++) {
+			final double start = intervalIndex * initialLength;
+			final double end = intervalIndex == NUMBER_OF_INITIAL_INTERVALS - 1 ? maximumStrike
+					: start + initialLength;
+			addIntervals(intervals, start, end, getCallValue(start), getCallValue(0.5 * (start + end)),
+					getCallValue(end), tolerance / NUMBER_OF_INITIAL_INTERVALS, 0);
+		}
+
+		final int numberOfIntervals = intervals.size();
+		intervalStarts = new double[numberOfIntervals + 1];
+		startValues = new double[numberOfIntervals];
+		middleValues = new double[numberOfIntervals];
+		endValues = new double[numberOfIntervals];
+		integralsToMaximumStrike = new double[numberOfIntervals + 1];
+		for (int intervalIndex = 0; intervalIndex < numberOfIntervals; intervalIndex++) {
+			final double[] interval = intervals.get(intervalIndex);
+			intervalStarts[intervalIndex] = interval[0];
+			startValues[intervalIndex] = interval[2];
+			middleValues[intervalIndex] = interval[3];
+			endValues[intervalIndex] = interval[4];
+		}
+		intervalStarts[numberOfIntervals] = maximumStrike;
+		// the sums are done from the right, where the prices are small
+		for (int intervalIndex = numberOfIntervals - 1; intervalIndex >= 0; intervalIndex--) {
+			integralsToMaximumStrike[intervalIndex] = integralsToMaximumStrike[intervalIndex + 1]
+					+ getIntegralOfParabola(intervalIndex, intervalStarts[intervalIndex]);
+		}
+	}
+
+	private double getMaximumStrike(double volatility) {
+		final double totalVolatility = volatility * Math.sqrt(Math.max(fixingDate, 0));
+		return initialForwardLibor
+				* Math.exp(totalVolatility * (NUMBER_OF_STANDARD_DEVIATIONS + 0.5 * totalVolatility));
+	}
+
+	/*
+	 * Adaptive Simpson quadrature: the interval [start, end] is accepted if
+	 * Simpson's rule on it and on its two halves give the same value up to the
+	 * tolerance, otherwise the two halves are treated in the same way, with half
+	 * the tolerance. The intervals are added from left to right, as {start, end,
+	 * C(start), C(middle), C(end)}.
+	 */
+	private void addIntervals(List<double[]> intervals, double start, double end, double startValue,
+			double middleValue, double endValue, double tolerance, int depth) {
+		final double middle = 0.5 * (start + end);
+		final double leftMiddleValue = getCallValue(0.5 * (start + middle));
+		final double rightMiddleValue = getCallValue(0.5 * (middle + end));
+		final double wholeIntegral = (end - start) / 6 * (startValue + 4 * middleValue + endValue);
+		final double halvesIntegral = (end - start) / 12
+				* (startValue + 4 * leftMiddleValue + 2 * middleValue + 4 * rightMiddleValue + endValue);
+		// the error of Simpson's rule on the halves is about 1/15 of the difference
+		if (depth >= MAXIMUM_DEPTH || Math.abs(halvesIntegral - wholeIntegral) <= 15 * tolerance) {
+			intervals.add(new double[] { start, middle, startValue, leftMiddleValue, middleValue });
+			intervals.add(new double[] { middle, end, middleValue, rightMiddleValue, endValue });
+		} else {
+			addIntervals(intervals, start, middle, startValue, leftMiddleValue, middleValue, 0.5 * tolerance,
+					depth + 1);
+			addIntervals(intervals, middle, end, middleValue, rightMiddleValue, endValue, 0.5 * tolerance,
+					depth + 1);
+		}
+	}
+
+	/*
+	 * The integral from the strike to the end of the interval of the parabola
+	 * through the prices at the start, the middle and the end of the interval. With
+	 * x = (K - start) / h, h half the length of the interval, the parabola is f_0 +
+	 * c_1 x + c_2 x^2 for x in [0,2].
+	 */
+	private double getIntegralOfParabola(int intervalIndex, double strike) {
+		final double halfLength = 0.5 * (intervalStarts[intervalIndex + 1] - intervalStarts[intervalIndex]);
+		final double startValue = startValues[intervalIndex];
+		final double middleValue = middleValues[intervalIndex];
+		final double endValue = endValues[intervalIndex];
+		final double firstCoefficient = 0.5 * (-3 * startValue + 4 * middleValue - endValue);
+		final double secondCoefficient = 0.5 * (startValue - 2 * middleValue + endValue);
+		final double x = (strike - intervalStarts[intervalIndex]) / halfLength;
+		final double primitiveAtEnd = 2 * startValue + 2 * firstCoefficient + 8.0 / 3 * secondCoefficient;
+		final double primitiveAtStrike = x * (startValue + x * (0.5 * firstCoefficient + x / 3 * secondCoefficient));
+		return halfLength * (primitiveAtEnd - primitiveAtStrike);
+	}
+
+	/**
+	 * It computes and returns the price E^{T_2}[(L(T_1)-K)^+] of a call on the
+	 * LIBOR, in units of P(T_2;0) and per unit of notional and of period length,
+	 * with the volatility of the surface for the strike.
+	 *
+	 * @param strike, the strike K
+	 * @return the price of the call
+	 */
+	public double getCallValue(double strike) {
+		if (strike <= 0) {
+			return initialForwardLibor - strike;
+		}
+		final double totalVolatility = volatilitySurface.getVolatility(fixingDate, strike)
+				* Math.sqrt(Math.max(fixingDate, 0));
+		return BlackFormula.getCallValue(initialForwardLibor, strike, totalVolatility);
+	}
+
+	/**
+	 * It computes and returns the price E^{T_2}[1_{L(T_1)>K}] of a digital call
+	 * on the LIBOR, as minus the derivative of the call price with respect to the
+	 * strike. This is computed by central differences, so that the derivative of
+	 * the volatility with respect to the strike, i.e., the skew, is taken into
+	 * account.
+	 *
+	 * @param strike, the strike K
+	 * @return the price of the digital call
+	 */
+	public double getDigitalValue(double strike) {
+		if (strike <= 0) {
+			return 1;
+		}
+		final double shift = Math.min(1E-4 * initialForwardLibor, 0.5 * strike);
+		return (getCallValue(strike - shift) - getCallValue(strike + shift)) / (2 * shift);
+	}
+
+	/**
+	 * It returns the integral of the call prices C(x) for x from the strike K to
+	 * infinity. For K equal to zero, this is E^{T_2}[L(T_1)^2]/2.
+	 *
+	 * @param strike, the strike K
+	 * @return the integral
+	 */
+	public double getIntegralOfCallValues(double strike) {
+		final int numberOfIntervals = startValues.length;
+		if (strike >= intervalStarts[numberOfIntervals]) {
+			return 0;
+		}
+		if (strike <= 0) {
+			// for negative strikes, the price of the call is L_0 - K
+			return integralsToMaximumStrike[0] - strike * initialForwardLibor + 0.5 * strike * strike;
+		}
+		int intervalIndex = Arrays.binarySearch(intervalStarts, strike);
+		if (intervalIndex >= 0) {
+			return integralsToMaximumStrike[intervalIndex];
+		}
+		// the strike is in the interval before the insertion point
+		intervalIndex = -intervalIndex - 2;
+		return integralsToMaximumStrike[intervalIndex + 1] + getIntegralOfParabola(intervalIndex, strike);
+	}
+
+	/**
+	 * @return the initial value of the LIBOR
+	 */
+	public double getInitialForwardLibor() {
+		return initialForwardLibor;
+	}
+
+	/**
+	 * @return the fixing date of the LIBOR
+	 */
+	public double getFixingDate() {
+		return fixingDate;
+	}
+
+	/**
+	 * @return the strike above which the calls are considered to be worth nothing
+	 */
+	public double getMaximumStrike() {
+		return intervalStarts[intervalStarts.length - 1];
+	}
+
+	/**
+	 * @return the number of intervals of the quadrature
+	 */
+	public int getNumberOfIntervals() {
+		return startValues.length;
+	}
+}
@@ -0,0 +1,362 @@
+package com.andreamazzon.handout8;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.andreamazzon.handout4.BlackFormula;
+
+/**
+ * This class represents a book of caplets, digital caplets and floaters under
+ * the Black model, and computes their classical prices (i.e., for payment date
+ * T_2) and their prices in arrears (i.e., for payment date T_1), as
+ * CapletWithBlack, DigitalCapletWithBlack and FloaterWithBlack do for a single
+ * product. Instead of one object for every product, the book keeps one array
+ * for every field, plus a column giving the type of every product: the initial
+ * LIBOR is computed from the bonds (or the first bond from the LIBOR) once, when
+ * the product is added, and the values are computed by one loop for every
+ * type, so that no method is called through the abstract class for every
+ * product. The loops are split in chunks which are valued in parallel.
+ *
+ * The book is not thread-safe: the products are sorted by type and the values
+ * returned by the getters are cached when the book is first valued after a
+ * product has been added, so the book must not be valued or modified by more
+ * than one thread at the same time without external synchronization.
+ *
+ * The formulas are the ones of EuropeanOptionPossiblyInArrears: if V(L) is the
+ * classical price as a function of the initial value of the LIBOR, the
+ * convexity adjustment is (T_2-T_1) L_0 V(L_0 exp(sigma^2 T_1)) and the price
+ * in arrears is V(L_0) plus the convexity adjustment. With U = N P(T_2;0)
+ * (T_2-T_1), V(L) is U times the Black price of a call for the caplet, U times
+ * the Black price of a digital call for the digital caplet and U L for the
+ * floater.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class EuropeanOptionInArrearsBook {
+
+	/**
+	 * The types of products of the book.
+	 */
+	public enum ProductType {
+		CAPLET, DIGITAL_CAPLET, FLOATER
+	}
+
+	private static final ProductType[] PRODUCT_TYPES = ProductType.values();
+	private static final int CHUNK_SIZE = 4096;
+
+	private int numberOfProducts = 0;
+	private byte[] productTypes;
+	private double[] firstTimes;
+	private double[] secondTimes;
+	private double[] secondBonds;
+	private double[] initialLibors;
+	private double[] liborVolatilities;
+	private double[] notionals;
+	// the strikes of the caplets and of the digital caplets, NaN for the floaters
+	private double[] strikes;
+
+	/*
+	 * The indices of the products sorted by type, and the position of the first
+	 * product of every type: computed when the book is valued, if products have
+	 * been added since the last valuation
+	 */
+	private int[] indicesByType;
+	private int[] typeStarts;
+
+	/*
+	 * The values returned by the getters, computed together by one valuation of
+	 * the book and discarded when a product is added
+	 */
+	private double[] cachedValuesInClassicUnits;
+	private double[] cachedValuesInArrears;
+	private double[] cachedConvexityAdjustments;
+
+	/**
+	 * It builds an empty book.
+	 *
+	 * @param initialCapacity, the number of products for which memory is
+	 *                         allocated at once: the arrays grow when more
+	 *                         products are added
+	 */
+	public EuropeanOptionInArrearsBook(int initialCapacity) {
+		final int capacity = Math.max(initialCapacity, 1);
+		productTypes = new byte[capacity];
+		firstTimes = new double[capacity];
+		secondTimes = new double[capacity];
+		secondBonds = new double[capacity];
+		initialLibors = new double[capacity];
+		liborVolatilities = new double[capacity];
+		notionals = new double[capacity];
+		strikes = new double[capacity];
+	}
+
+	/**
+	 * It adds a caplet to the book, with the same parameters as the constructor
+	 * of CapletWithBlack.
+	 *
+	 * @param firstTime,               T_1
+	 * @param secondTime,              T_2
+	 * @param firstBondOrInitialLibor, P(T_1;0) or L(T_1,T_2;0)
+	 * @param secondBond,              P(T_2;0)
+	 * @param liborVolatility,         the volatility of the LIBOR
+	 * @param notional,                i.e. N
+	 * @param giveLibor,               true if L(T_1,T_2;0) is given, false if
+	 *                                 P(T_1;0) is given
+	 * @param strike,                  the strike of the caplet
+	 * @return the index of the product in the book
+	 */
+	public int addCaplet(double firstTime, double secondTime, double firstBondOrInitialLibor, double secondBond,
+			double liborVolatility, double notional, boolean giveLibor, double strike) {
+		return addProduct(ProductType.CAPLET, firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+				liborVolatility, notional, giveLibor, strike);
+	}
+
+	/**
+	 * It adds a digital caplet to the book, with the same parameters as the
+	 * constructor of DigitalCapletWithBlack.
+	 *
+	 * @param firstTime,               T_1
+	 * @param secondTime,              T_2
+	 * @param firstBondOrInitialLibor, P(T_1;0) or L(T_1,T_2;0)
+	 * @param secondBond,              P(T_2;0)
+	 * @param liborVolatility,         the volatility of the LIBOR
+	 * @param notional,                i.e. N
+	 * @param giveLibor,               true if L(T_1,T_2;0) is given, false if
+	 *                                 P(T_1;0) is given
+	 * @param strike,                  the strike of the digital caplet
+	 * @return the index of the product in the book
+	 */
+	public int addDigitalCaplet(double firstTime, double secondTime, double firstBondOrInitialLibor,
+			double secondBond, double liborVolatility, double notional, boolean giveLibor, double strike) {
+		return addProduct(ProductType.DIGITAL_CAPLET, firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+				liborVolatility, notional, giveLibor, strike);
+	}
+
+	/**
+	 * It adds a floater to the book, with the same parameters as the constructor
+	 * of FloaterWithBlack.
+	 *
+	 * @param firstTime,               T_1
+	 * @param secondTime,              T_2
+	 * @param firstBondOrInitialLibor, P(T_1;0) or L(T_1,T_2;0)
+	 * @param secondBond,              P(T_2;0)
+	 * @param liborVolatility,         the volatility of the LIBOR
+	 * @param notional,                i.e. N
+	 * @param giveLibor,               true if L(T_1,T_2;0) is given, false if
+	 *                                 P(T_1;0) is given
+	 * @return the index of the product in the book
+	 */
+	public int addFloater(double firstTime, double secondTime, double firstBondOrInitialLibor, double secondBond,
+			double liborVolatility, double notional, boolean giveLibor) {
+		return addProduct(ProductType.FLOATER, firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+				liborVolatility, notional, giveLibor, Double.NaN);
+	}
+
+	private int addProduct(ProductType type, double firstTime, double secondTime, double firstBondOrInitialLibor,
+			double secondBond, double liborVolatility, double notional, boolean giveLibor, double strike) {
+		if (numberOfProducts == productTypes.length) {
+			grow();
+		}
+		final int productIndex = numberOfProducts;
+		productTypes[productIndex] = (byte) type.ordinal();
+		firstTimes[productIndex] = firstTime;
+		secondTimes[productIndex] = secondTime;
+		secondBonds[productIndex] = secondBond;
+		// as in EuropeanOptionPossiblyInArrears, but only the LIBOR is stored
+		initialLibors[productIndex] = giveLibor ? firstBondOrInitialLibor
+				: 1 / (secondTime - firstTime) * (firstBondOrInitialLibor / secondBond - 1);
+		liborVolatilities[productIndex] = liborVolatility;
+		notionals[productIndex] = notional;
+		strikes[productIndex] = strike;
+		numberOfProducts++;
+		indicesByType = null;
+		cachedValuesInClassicUnits = null;
+		cachedValuesInArrears = null;
+		cachedConvexityAdjustments = null;
+		return productIndex;
+	}
+
+	private void grow() {
+		final int capacity = 2 * productTypes.length;
+		productTypes = Arrays.copyOf(productTypes, capacity);
+		firstTimes = Arrays.copyOf(firstTimes, capacity);
+		secondTimes = Arrays.copyOf(secondTimes, capacity);
+		secondBonds = Arrays.copyOf(secondBonds, capacity);
+		initialLibors = Arrays.copyOf(initialLibors, capacity);
+		liborVolatilities = Arrays.copyOf(liborVolatilities, capacity);
+		notionals = Arrays.copyOf(notionals, capacity);
+		strikes = Arrays.copyOf(strikes, capacity);
+	}
+
+	// counting sort of the indices of the products by type
+	private void sortByType() {
+		typeStarts = new int[PRODUCT_TYPES.length + 1];
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			typeStarts[productTypes[productIndex] + 1]++;
+		}
+		for (int typeIndex = 0; typeIndex < PRODUCT_TYPES.length; typeIndex++) {
+			typeStarts[typeIndex + 1] += typeStarts[typeIndex];
+		}
+		indicesByType = new int[numberOfProducts];
+		final int[] nextPositions = Arrays.copyOf(typeStarts, PRODUCT_TYPES.length);
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			indicesByType[nextPositions[productTypes[productIndex]]++] = productIndex;
+		}
+	}
+
+	/**
+	 * It computes the classical prices, the prices in arrears and the convexity
+	 * adjustments of all the products, and writes them in given arrays, so that
+	 * no memory is allocated when the same book is valued many times.
+	 *
+	 * @param valuesInClassicUnits, the array where the classical prices are
+	 *                              written
+	 * @param valuesInArrears,      the array where the prices in arrears are
+	 *                              written
+	 * @param convexityAdjustments, the array where the convexity adjustments are
+	 *                              written
+	 */
+	public void calculateValues(double[] valuesInClassicUnits, double[] valuesInArrears,
+			double[] convexityAdjustments) {
+		if (valuesInClassicUnits.length < numberOfProducts || valuesInArrears.length < numberOfProducts
+				|| convexityAdjustments.length < numberOfProducts) {
+			throw new IllegalArgumentException("The arrays must have a position for every product");
+		}
+		if (indicesByType == null) {
+			sortByType();
+		}
+		for (final ProductType type : PRODUCT_TYPES) {
+			final int typeStart = typeStarts[type.ordinal()];
+			final int typeEnd = typeStarts[type.ordinal() + 1];
+			final int numberOfChunks = (typeEnd - typeStart + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			IntStream.range(0, numberOfChunks).parallel()
+					.forEach(chunkIndex -> calculateChunk(type, typeStart + chunkIndex * CHUNK_SIZE,
+							Math.min(typeEnd, typeStart + (chunkIndex + 1) * CHUNK_SIZE), valuesInClassicUnits,
+							valuesInArrears, convexityAdjustments));
+		}
+	}
+
+	/*
+	 * The products of a chunk all have the same type: the switch is done once for
+	 * the chunk, and every loop only computes one formula.
+	 */
+	private void calculateChunk(ProductType type, int firstPosition, int lastPosition,
+			double[] valuesInClassicUnits, double[] valuesInArrears, double[] convexityAdjustments) {
+		for (int position = firstPosition; position < lastPosition; position++) {
+			final int productIndex = indicesByType[position];
+			final double fixingDate = firstTimes[productIndex];
+			final double periodLength = secondTimes[productIndex] - fixingDate;
+			final double paymentUnit = notionals[productIndex] * secondBonds[productIndex] * periodLength;
+			final double initialLibor = initialLibors[productIndex];
+			final double liborVolatility = liborVolatilities[productIndex];
+			// the initial value of the LIBOR giving the convexity adjustment, see EuropeanOptionPossiblyInArrears
+			final double shiftedLibor = initialLibor * Math.exp(liborVolatility * liborVolatility * fixingDate);
+			final double totalVolatility = liborVolatility * Math.sqrt(fixingDate);
+			final double classicValue;
+			final double shiftedValue;
+			switch (type) {
+			case CAPLET:
+				classicValue = paymentUnit
+						* BlackFormula.getCallValue(initialLibor, strikes[productIndex], totalVolatility);
+				shiftedValue = paymentUnit
+						* BlackFormula.getCallValue(shiftedLibor, strikes[productIndex], totalVolatility);
+				break;
+			case DIGITAL_CAPLET:
+				classicValue = paymentUnit
+						* BlackFormula.getDigitalCallValue(initialLibor, strikes[productIndex], totalVolatility);
+				shiftedValue = paymentUnit
+						* BlackFormula.getDigitalCallValue(shiftedLibor, strikes[productIndex], totalVolatility);
+				break;
+			default:
+				classicValue = paymentUnit * initialLibor;
+				shiftedValue = paymentUnit * shiftedLibor;
+			}
+			final double convexityAdjustment = periodLength * initialLibor * shiftedValue;
+			valuesInClassicUnits[productIndex] = classicValue;
+			convexityAdjustments[productIndex] = convexityAdjustment;
+			valuesInArrears[productIndex] = classicValue + convexityAdjustment;
+		}
+	}
+
+	/**
+	 * @return the classical prices of all the products, in the order in which
+	 *         they have been added
+	 */
+	public double[] getValuesInClassicUnits() {
+		calculateCachedValues();
+		return cachedValuesInClassicUnits.clone();
+	}
+
+	/**
+	 * @return the prices in arrears of all the products, in the order in which
+	 *         they have been added
+	 */
+	public double[] getValuesInArrears() {
+		calculateCachedValues();
+		return cachedValuesInArrears.clone();
+	}
+
+	/**
+	 * @return the convexity adjustments of all the products, in the order in
+	 *         which they have been added
+	 */
+	public double[] getConvexityAdjustments() {
+		calculateCachedValues();
+		return cachedConvexityAdjustments.clone();
+	}
+
+	// one valuation gives the three arrays, which are kept until a product is added
+	private void calculateCachedValues() {
+		if (cachedValuesInArrears == null) {
+			final double[] valuesInClassicUnits = new double[numberOfProducts];
+			final double[] valuesInArrears = new double[numberOfProducts];
+			final double[] convexityAdjustments = new double[numberOfProducts];
+			calculateValues(valuesInClassicUnits, valuesInArrears, convexityAdjustments);
+			cachedValuesInClassicUnits = valuesInClassicUnits;
+			cachedValuesInArrears = valuesInArrears;
+			cachedConvexityAdjustments = convexityAdjustments;
+		}
+	}
+
+	/**
+	 * @return the number of products of the book
+	 */
+	public int getNumberOfProducts() {
+		return numberOfProducts;
+	}
+
+	/**
+	 * @param productIndex, the index of the product
+	 * @return the type of the product
+	 */
+	public ProductType getProductType(int productIndex) {
+		checkIndex(productIndex);
+		return PRODUCT_TYPES[productTypes[productIndex]];
+	}
+
+	/**
+	 * @param productIndex, the index of the product
+	 * @return the initial value L(T_1,T_2;0) of the LIBOR of the product
+	 */
+	public double getInitialValueLibor(int productIndex) {
+		checkIndex(productIndex);
+		return initialLibors[productIndex];
+	}
+
+	/**
+	 * @param productIndex, the index of the product
+	 * @return the bond P(T_1;0) of the product
+	 */
+	public double getFirstBond(int productIndex) {
+		checkIndex(productIndex);
+		return secondBonds[productIndex]
+				* (initialLibors[productIndex] * (secondTimes[productIndex] - firstTimes[productIndex]) + 1);
+	}
+
+	private void checkIndex(int productIndex) {
+		if (productIndex < 0 || productIndex >= numberOfProducts) {
+			throw new IndexOutOfBoundsException("There is no product with index " + productIndex);
+		}
+	}
+}
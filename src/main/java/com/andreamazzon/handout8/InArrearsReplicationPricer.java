@@ -0,0 +1,213 @@
+package com.andreamazzon.handout8;
+
+import java.util.Objects;
+
+import com.andreamazzon.handout4.LeastRecentlyUsedCache;
+
+/**
+ * This class computes the prices in arrears (i.e., for payment date T_1) of
+ * caplets, digital caplets and floaters when the Black volatility of the LIBOR
+ * depends on the strike, i.e., when there is a smile. In this case the formulas
+ * of EuropeanOptionPossiblyInArrears and of
+ * InterestRatesProductsInArrears.calculateCapletInArrearsBlack, which rely on
+ * the log-normal distribution of the LIBOR, cannot be used. However, a payoff
+ * paid in arrears is equivalent to the payoff f(L) = g(L)(1 + (T_2-T_1)L) paid
+ * in T_2, and its price is P(T_2;0) E^{T_2}[f(L)]. This expectation can be
+ * written in terms of the call prices C(K) = E^{T_2}[(L-K)^+] for all the
+ * strikes K (static replication), because f''(K) gives the amount of calls with
+ * strike K which replicate f. With tau = T_2-T_1 and I(K) the integral of C(x)
+ * for x from K to infinity, we get:
+ * - caplet with strike K: N P(T_2;0) tau ((1 + tau K) C(K) + 2 tau I(K));
+ * - digital caplet with strike K: N P(T_2;0) tau ((1 + tau K) D(K) + tau C(K)),
+ * where D(K) = -C'(K) is the price of the digital call;
+ * - floater: N P(T_2;0) tau (L_0 + 2 tau I(0)).
+ *
+ * The integrals I(K) are given by a CallPriceStrip object, which is built by
+ * adaptive quadrature over the strikes. The strips are cached per fixing date,
+ * initial value of the LIBOR and volatility surface, so that the quadrature is
+ * done once for every fixing, and then used for all the caplets, floaters and
+ * digital caplets on it. The surfaces are compared by identity: the same object
+ * must be given in order to use the cached strips. The cache keeps a maximum
+ * number of strips in a LeastRecentlyUsedCache: when it is full, the strip
+ * used least recently is removed, so that the strips (and the surfaces they
+ * refer to) of old fixings or of surfaces which are not used any more do not
+ * accumulate.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+public class InArrearsReplicationPricer {
+
+	private static final int DEFAULT_MAXIMUM_NUMBER_OF_STRIPS = 1000;
+
+	private final double relativeTolerance;
+	private final LeastRecentlyUsedCache<StripKey, CallPriceStrip> strips;
+
+	/**
+	 * It builds a pricer whose strips are computed with a given tolerance, and
+	 * which keeps at most a given number of strips.
+	 *
+	 * @param relativeTolerance,     the tolerance of the quadrature, relative to
+	 *                               the square of the initial value of the LIBOR
+	 * @param maximumNumberOfStrips, the maximum number of strips kept in the cache
+	 */
+	public InArrearsReplicationPricer(double relativeTolerance, int maximumNumberOfStrips) {
+		if (maximumNumberOfStrips < 1) {
+			throw new IllegalArgumentException("The cache must be able to keep at least one strip");
+		}
+		this.relativeTolerance = relativeTolerance;
+		strips = new LeastRecentlyUsedCache<StripKey, CallPriceStrip>(maximumNumberOfStrips);
+	}
+
+	/**
+	 * It builds a pricer whose strips are computed with a given tolerance, and
+	 * which keeps at most 1000 strips.
+	 *
+	 * @param relativeTolerance, the tolerance of the quadrature, relative to the
+	 *                           square of the initial value of the LIBOR
+	 */
+	public InArrearsReplicationPricer(double relativeTolerance) {
+		this(relativeTolerance, DEFAULT_MAXIMUM_NUMBER_OF_STRIPS);
+	}
+
+	/**
+	 * It builds a pricer whose strips are computed with a relative tolerance of
+	 * 1E-10, and which keeps at most 1000 strips.
+	 */
+	public InArrearsReplicationPricer() {
+		this(1E-10);
+	}
+
+	/**
+	 * It returns the strip of call prices for the given fixing: the one in the
+	 * cache, if any, or a new one, which is added to the cache.
+	 *
+	 * @param initialForwardLibor, i.e. L_0 = L(T_1,T_2;0)
+	 * @param volatilitySurface,   the Black volatilities of the LIBOR
+	 * @param fixingDate,          i.e. T_1
+	 * @return the strip
+	 */
+	public CallPriceStrip getStrip(double initialForwardLibor, VolatilitySurface volatilitySurface,
+			double fixingDate) {
+		final StripKey key = new StripKey(initialForwardLibor, volatilitySurface, fixingDate);
+		return strips.get(key,
+				stripKey -> new CallPriceStrip(initialForwardLibor, fixingDate, volatilitySurface, relativeTolerance));
+	}
+
+	/**
+	 * It calculates the value of a Caplet payed in arrears by static replication.
+	 *
+	 * @param initialForwardLibor,       i.e. L_0 = L(T_1,T_2;0)
+	 * @param volatilitySurface,         the Black volatilities of the LIBOR
+	 * @param strike,                    the strike of the option
+	 * @param fixingDate,                i.e. T_1
+	 * @param paymentDate,               i.e. T_2
+	 * @param paymentDateDiscountFactor, i.e. P(T_2;0)
+	 * @param notional,                  i.e. N
+	 * @return the value of the caplet in arrears
+	 */
+	public double getCapletInArrearsValue(double initialForwardLibor, VolatilitySurface volatilitySurface,
+			double strike, double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional) {
+		final double periodLength = paymentDate - fixingDate;
+		final CallPriceStrip strip = getStrip(initialForwardLibor, volatilitySurface, fixingDate);
+		// (1 + tau K) calls for the kink of the payoff in K, 2 tau calls for every strike above K
+		return notional * paymentDateDiscountFactor * periodLength * ((1 + periodLength * strike)
+				* strip.getCallValue(strike) + 2 * periodLength * strip.getIntegralOfCallValues(strike));
+	}
+
+	/**
+	 * It calculates the value of a digital Caplet payed in arrears by static
+	 * replication. The digital caplet pays N (T_2-T_1) if L(T_1,T_2;T_1) is above
+	 * the strike, as DigitalCapletWithBlack.
+	 *
+	 * @param initialForwardLibor,       i.e. L_0 = L(T_1,T_2;0)
+	 * @param volatilitySurface,         the Black volatilities of the LIBOR
+	 * @param strike,                    the strike of the option
+	 * @param fixingDate,                i.e. T_1
+	 * @param paymentDate,               i.e. T_2
+	 * @param paymentDateDiscountFactor, i.e. P(T_2;0)
+	 * @param notional,                  i.e. N
+	 * @return the value of the digital caplet in arrears
+	 */
+	public double getDigitalCapletInArrearsValue(double initialForwardLibor, VolatilitySurface volatilitySurface,
+			double strike, double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional) {
+		final double periodLength = paymentDate - fixingDate;
+		final CallPriceStrip strip = getStrip(initialForwardLibor, volatilitySurface, fixingDate);
+		// (1 + tau K) digitals for the jump of the payoff in K, tau calls for the slope above K
+		return notional * paymentDateDiscountFactor * periodLength
+				* ((1 + periodLength * strike) * strip.getDigitalValue(strike)
+						+ periodLength * strip.getCallValue(strike));
+	}
+
+	/**
+	 * It calculates the value of a floater payed in arrears by static
+	 * replication.
+	 *
+	 * @param initialForwardLibor,       i.e. L_0 = L(T_1,T_2;0)
+	 * @param volatilitySurface,         the Black volatilities of the LIBOR
+	 * @param fixingDate,                i.e. T_1
+	 * @param paymentDate,               i.e. T_2
+	 * @param paymentDateDiscountFactor, i.e. P(T_2;0)
+	 * @param notional,                  i.e. N
+	 * @return the value of the floater in arrears
+	 */
+	public double getFloaterInArrearsValue(double initialForwardLibor, VolatilitySurface volatilitySurface,
+			double fixingDate, double paymentDate, double paymentDateDiscountFactor, double notional) {
+		final double periodLength = paymentDate - fixingDate;
+		final CallPriceStrip strip = getStrip(initialForwardLibor, volatilitySurface, fixingDate);
+		// E^{T_2}[L^2] = 2 I(0): here the convexity adjustment depends on the whole smile
+		return notional * paymentDateDiscountFactor * periodLength
+				* (initialForwardLibor + 2 * periodLength * strip.getIntegralOfCallValues(0));
+	}
+
+	/**
+	 * @return the number of strips in the cache
+	 */
+	public int getNumberOfStrips() {
+		return strips.size();
+	}
+
+	/**
+	 * It removes all the strips from the cache, for example when the surface
+	 * object has been recalibrated in place.
+	 */
+	public void clear() {
+		strips.clear();
+	}
+
+	/*
+	 * The parameters identifying a strip. The doubles are compared by their bits,
+	 * as Double.equals does, the surfaces by identity.
+	 */
+	private static final class StripKey {
+
+		private final double initialForwardLibor;
+		private final VolatilitySurface volatilitySurface;
+		private final double fixingDate;
+
+		StripKey(double initialForwardLibor, VolatilitySurface volatilitySurface, double fixingDate) {
+			this.initialForwardLibor = initialForwardLibor;
+			this.volatilitySurface = volatilitySurface;
+			this.fixingDate = fixingDate;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+			if (!(object instanceof StripKey)) {
+				return false;
+			}
+			final StripKey other = (StripKey) object;
+			return Double.compare(initialForwardLibor, other.initialForwardLibor) == 0
+					&& volatilitySurface == other.volatilitySurface
+					&& Double.compare(fixingDate, other.fixingDate) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(initialForwardLibor, System.identityHashCode(volatilitySurface), fixingDate);
+		}
+	}
+}
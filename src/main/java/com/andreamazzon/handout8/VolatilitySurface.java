@@ -0,0 +1,26 @@
+package com.andreamazzon.handout8;
+
+/**
+ * This interface describes a surface of Black volatilities of the LIBOR, i.e.,
+ * the volatility to use in the Black formula for a caplet with a given fixing
+ * date and a given strike. A flat surface gives back the Black model of the
+ * other classes of this package, whereas a surface depending on the strike
+ * describes a smile: in this case, the prices in arrears cannot be computed by
+ * the convexity adjustment of EuropeanOptionPossiblyInArrears, but can be
+ * computed by static replication, see InArrearsReplicationPricer.
+ *
+ * @author Andrea Mazzon
+ *
+ */
+@FunctionalInterface
+public interface VolatilitySurface {
+
+	/**
+	 * It returns the Black volatility for a given fixing date and a given strike.
+	 *
+	 * @param fixingDate, i.e. T_1
+	 * @param strike,     the strike of the caplet
+	 * @return the volatility
+	 */
+	double getVolatility(double fixingDate, double strike);
+}
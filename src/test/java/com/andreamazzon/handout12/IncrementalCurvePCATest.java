@@ -0,0 +1,116 @@
+package com.andreamazzon.handout12;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.functions.LinearAlgebra;
+
+/**
+ * This is a test class for IncrementalCurvePCA: we simulate the daily moves of
+ * a curve driven by three factors (level, slope and curvature) plus noise, we
+ * add them one by one and we compare the running covariance with the one
+ * computed in one go, and the factor matrix with the one returned by
+ * LinearAlgebra.factorReduction applied to the empirical correlation matrix.
+ *
+ * @author Andrea Mazzon
+ */
+public class IncrementalCurvePCATest {
+
+	private static final int DIMENSION = 30;
+	private static final int NUMBER_OF_FACTORS = 3;
+
+	@Test
+	public void testCovarianceAndFactors() {
+		final double[][] curveChanges = simulateCurveChanges(1000, 1897);
+
+		final IncrementalCurvePCA pca = new IncrementalCurvePCA(DIMENSION, NUMBER_OF_FACTORS);
+		pca.update(curveChanges);
+
+		// the covariance computed in one go, with the two-pass formula
+		final double[] mean = new double[DIMENSION];
+		for (final double[] curveChange : curveChanges) {
+			for (int component = 0; component < DIMENSION; component++) {
+				mean[component] += curveChange[component] / curveChanges.length;
+			}
+		}
+		final double[][] covarianceMatrix = pca.getCovarianceMatrix();
+		for (int row = 0; row < DIMENSION; row++) {
+			for (int col = 0; col < DIMENSION; col++) {
+				double covariance = 0.0;
+				for (final double[] curveChange : curveChanges) {
+					covariance += (curveChange[row] - mean[row]) * (curveChange[col] - mean[col]);
+				}
+				covariance /= curveChanges.length - 1;
+				Assert.assertEquals(covariance, covarianceMatrix[row][col], 1E-12 * Math.abs(covariance) + 1E-18);
+			}
+		}
+
+		pca.refreshFactors(500, 1E-13);
+		assertSameFactorReduction(pca);
+	}
+
+	@Test
+	public void testWarmStart() {
+		final double[][] curveChanges = simulateCurveChanges(800, 3141);
+
+		final IncrementalCurvePCA pca = new IncrementalCurvePCA(DIMENSION, NUMBER_OF_FACTORS);
+		for (int day = 0; day < 500; day++) {
+			pca.update(curveChanges[day]);
+		}
+		final int iterationsFromScratch = pca.refreshFactors(500, 1E-10);
+
+		// then one refresh every day, started from the factors of the day before
+		int maximumIterationsPerDay = 0;
+		for (int day = 500; day < curveChanges.length; day++) {
+			pca.update(curveChanges[day]);
+			maximumIterationsPerDay = Math.max(maximumIterationsPerDay, pca.refreshFactors(500, 1E-10));
+		}
+		Assert.assertTrue(maximumIterationsPerDay < iterationsFromScratch);
+		assertSameFactorReduction(pca);
+	}
+
+	private static void assertSameFactorReduction(IncrementalCurvePCA pca) {
+		final double[][] factorMatrix = pca.getFactorMatrix();
+		final double[][] expectedFactorMatrix = LinearAlgebra.factorReduction(pca.getCorrelationMatrix(),
+				NUMBER_OF_FACTORS);
+
+		// the columns are determined up to their sign
+		for (int factor = 0; factor < NUMBER_OF_FACTORS; factor++) {
+			double scalarProduct = 0.0;
+			for (int row = 0; row < DIMENSION; row++) {
+				scalarProduct += factorMatrix[row][factor] * expectedFactorMatrix[row][factor];
+			}
+			final double sign = Math.signum(scalarProduct);
+			for (int row = 0; row < DIMENSION; row++) {
+				Assert.assertEquals(expectedFactorMatrix[row][factor], sign * factorMatrix[row][factor], 1E-6);
+			}
+		}
+
+		final double[][] reducedCorrelationMatrix = pca.getReducedCorrelationMatrix();
+		for (int row = 0; row < DIMENSION; row++) {
+			Assert.assertEquals(1.0, reducedCorrelationMatrix[row][row], 1E-10);
+		}
+	}
+
+	/*
+	 * Moves of a curve with DIMENSION points, given by level, slope and curvature
+	 * with decreasing volatilities, plus some independent noise.
+	 */
+	private static double[][] simulateCurveChanges(int numberOfDays, long seed) {
+		final Random random = new Random(seed);
+		final double[][] curveChanges = new double[numberOfDays][DIMENSION];
+		for (int day = 0; day < numberOfDays; day++) {
+			final double level = 0.0010 * random.nextGaussian();
+			final double slope = 0.0005 * random.nextGaussian();
+			final double curvature = 0.0002 * random.nextGaussian();
+			for (int component = 0; component < DIMENSION; component++) {
+				final double x = (double) component / (DIMENSION - 1);
+				curveChanges[day][component] = 0.0001 + level + slope * (x - 0.5) + curvature * (x - 0.5) * (x - 0.5)
+						+ 0.00005 * random.nextGaussian();
+			}
+		}
+		return curveChanges;
+	}
+}
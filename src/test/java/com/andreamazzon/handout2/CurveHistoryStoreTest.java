@@ -0,0 +1,122 @@
+package com.andreamazzon.handout2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class for CurveHistoryWriter and CurveHistoryStore: we write
+ * the history of a curve whose zero rates move by a few basis points every
+ * day, and we check that the curves of single dates and the series of single
+ * tenors are read back exactly, and that the file is smaller than the raw
+ * doubles.
+ *
+ * @author Andrea Mazzon
+ */
+public class CurveHistoryStoreTest {
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		final int curveLength = 30;
+		final int numberOfDates = 1000;
+		final TimeDiscretization tenureStructure = new TimeDiscretizationFromArray(0.5, curveLength - 1, 0.5);
+
+		// business days only: the dates are not consecutive integers
+		final int[] dates = new int[numberOfDates];
+		final double[][] curves = new double[numberOfDates][curveLength];
+		final Random random = new Random(1897);
+		double level = 0.01;
+		double slope = 0.005;
+		for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+			dates[dateIndex] = 20000000 + 10000 * (dateIndex / 250) + 100 * (1 + dateIndex % 250 / 21)
+					+ 1 + dateIndex % 250 % 21;
+			level += 0.0003 * random.nextGaussian();
+			slope += 0.0001 * random.nextGaussian();
+			for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+				final double maturity = tenureStructure.getTime(bondIndex);
+				curves[dateIndex][bondIndex] = Math.exp(-(level + slope * (1 - Math.exp(-maturity / 5))) * maturity);
+			}
+		}
+
+		final Path directory = Files.createTempDirectory("history");
+		final Path path = directory.resolve("curves.chs");
+		try (CurveHistoryWriter writer = new CurveHistoryWriter(path, tenureStructure, 64)) {
+			for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+				writer.append(dates[dateIndex], curves[dateIndex]);
+			}
+			writer.commit();
+		}
+
+		final CurveHistoryStore store = CurveHistoryStore.open(path);
+		Assert.assertEquals(numberOfDates, store.getNumberOfDates());
+		Assert.assertEquals(curveLength, store.getNumberOfTenors());
+		Assert.assertEquals(tenureStructure.getTime(curveLength - 1),
+				store.getTenureStructure().getTime(curveLength - 1), 0.0);
+		Assert.assertArrayEquals(dates, store.getDates());
+
+		final double[] curve = new double[curveLength];
+		for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex += 37) {
+			Assert.assertTrue(store.getCurve(dates[dateIndex], curve));
+			Assert.assertArrayEquals(curves[dateIndex], curve, 0.0);
+		}
+		// a date which is not in the history
+		Assert.assertFalse(store.getCurve(dates[10] + 50, curve));
+		Assert.assertFalse(store.getCurve(dates[numberOfDates - 1] + 1, curve));
+
+		// a range crossing many blocks
+		final int firstIndex = 100;
+		final int lastIndex = 530;
+		final double[] series = store.getTenorSeries(7, dates[firstIndex - 1] + 1, dates[lastIndex + 1] - 1);
+		final int[] datesInRange = store.getDates(dates[firstIndex - 1] + 1, dates[lastIndex + 1] - 1);
+		Assert.assertEquals(lastIndex - firstIndex + 1, series.length);
+		for (int dateIndex = firstIndex; dateIndex <= lastIndex; dateIndex++) {
+			Assert.assertEquals(curves[dateIndex][7], series[dateIndex - firstIndex], 0.0);
+			Assert.assertEquals(dates[dateIndex], datesInRange[dateIndex - firstIndex]);
+		}
+
+		final long rawSize = (long) numberOfDates * (curveLength * Double.BYTES + Integer.BYTES);
+		Assert.assertTrue(Files.size(path) < 0.85 * rawSize);
+
+		Files.delete(path);
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testHistoryNotCommitted() throws IOException {
+		final TimeDiscretization tenureStructure = new TimeDiscretizationFromArray(0.5, 3, 0.5);
+		final Path directory = Files.createTempDirectory("history");
+		final Path path = directory.resolve("curves.chs");
+		try (CurveHistoryWriter writer = new CurveHistoryWriter(path, tenureStructure, 4)) {
+			writer.append(20211018, new double[] { 0.99, 0.98, 0.97, 0.96 });
+			// a date before the last one: the exception leaves the block
+			writer.append(20211015, new double[] { 0.99, 0.98, 0.97, 0.96 });
+			Assert.fail("The dates must be increasing");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+		// the partial history is not published, and the temporary file is deleted
+		Assert.assertFalse(Files.exists(path));
+		try (Stream<Path> files = Files.list(directory)) {
+			Assert.assertEquals(0, files.count());
+		}
+
+		final CurveHistoryWriter writer = new CurveHistoryWriter(path, tenureStructure, 4);
+		writer.append(20211018, new double[] { 0.99, 0.98, 0.97, 0.96 });
+		writer.commit();
+		// closing a committed writer, even twice, has no effect
+		writer.close();
+		writer.close();
+		Assert.assertEquals(1, CurveHistoryStore.open(path).getNumberOfDates());
+
+		Files.delete(path);
+		Files.delete(directory);
+	}
+}
@@ -0,0 +1,71 @@
+package com.andreamazzon.handout2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout3.Swap;
+import com.andreamazzon.handout3.SwapWithoutFinmath;
+import com.andreamazzon.handout4.InterestRatesProducts;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class for CurveSnapshot: we bootstrap a curve, write it in a
+ * snapshot file, map the file and check that the curve we get is the same, and
+ * that a swap and a swaption can be valued directly from the snapshot.
+ *
+ * @author Andrea Mazzon
+ */
+public class CurveSnapshotTest {
+
+	@Test
+	public void testWriteAndMap() throws IOException {
+		final double[] couponBonds = { 1.93, 2.77, 3.55, 4.45, 5.2, 5.9, 6.55, 7.15 };
+		final double[] coupons = { 2.1, 1.9, 1.8, 2.2, 2.1, 1.95, 2, 2.05 };
+		final double yearFraction = 0.5;
+
+		final Bootstrap bootstrap = new Bootstrap(yearFraction, coupons[0], couponBonds[0]);
+		for (int couponBondIndex = 1; couponBondIndex < couponBonds.length; couponBondIndex++) {
+			bootstrap.nextBondFromCouponBond(couponBonds[couponBondIndex], coupons[couponBondIndex]);
+		}
+		final List<Double> computedBonds = bootstrap.getBonds();
+
+		final Path directory = Files.createTempDirectory("curves");
+		final Path path = directory.resolve("curve.bin");
+		bootstrap.writeSnapshot(path);
+
+		final CurveSnapshot snapshot = CurveSnapshot.map(path);
+
+		final TimeDiscretization times = new TimeDiscretizationFromArray(yearFraction, couponBonds.length - 1,
+				yearFraction);
+		final double[] bonds = computedBonds.stream().mapToDouble(Double::doubleValue).toArray();
+		final double[] libors = new BondsAndLibors(times).fromBondToLibors(bonds);
+
+		Assert.assertEquals(couponBonds.length, snapshot.getCurveLength());
+		for (int bondIndex = 0; bondIndex < bonds.length; bondIndex++) {
+			Assert.assertEquals(times.getTime(bondIndex), snapshot.getTime(bondIndex), 0.0);
+			Assert.assertEquals(bonds[bondIndex], snapshot.getBond(bondIndex), 0.0);
+			Assert.assertEquals(libors[bondIndex], snapshot.getLibor(bondIndex), 0.0);
+		}
+		Assert.assertTrue(snapshot.getBuildTimestamp() > 0);
+
+		// the swap and the swaption are valued directly from the snapshot
+		final Swap swapFromSnapshot = new SwapWithoutFinmath(snapshot);
+		final Swap swap = new SwapWithoutFinmath(times, bonds, true);
+		Assert.assertEquals(swap.getParSwapRate(), swapFromSnapshot.getParSwapRate(), 0.0);
+
+		final double swaptionValue = InterestRatesProducts.calculateSwaptionValueBlack(bonds, times, 0.03, 10000,
+				0.3);
+		Assert.assertEquals(swaptionValue,
+				InterestRatesProducts.calculateSwaptionValueBlack(snapshot, 0.03, 10000, 0.3), 0.0);
+
+		Files.delete(path);
+		Files.delete(directory);
+	}
+}
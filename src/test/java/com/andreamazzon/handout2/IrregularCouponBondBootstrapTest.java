@@ -0,0 +1,117 @@
+package com.andreamazzon.handout2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This is a test class for IrregularCouponBondBootstrap: we generate a
+ * universe of bonds with random maturities, coupon frequencies and coupons,
+ * given in random order, we price them with a log-linear curve whose dates are
+ * their maturities, and we check that the bootstrap gives back this curve, also
+ * after the prices change.
+ *
+ * @author Andrea Mazzon
+ */
+public class IrregularCouponBondBootstrapTest {
+
+	@Test
+	public void testUniverse() {
+		final int numberOfBonds = 400;
+		final Random random = new Random(1897);
+
+		// maturities between one month and 30 years, all different
+		final double[] maturities = new double[numberOfBonds];
+		for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+			maturities[bondIndex] = (1 + random.nextInt(360 * 30)) / 360.0 + bondIndex * 1E-7;
+		}
+		final ArrayList<double[]> paymentTimesOfBonds = new ArrayList<double[]>();
+		final ArrayList<double[]> amountsOfBonds = new ArrayList<double[]>();
+		for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+			// annual, semi-annual or quarterly coupons, paid backwards from the maturity
+			final double period = new double[] { 1.0, 0.5, 0.25 }[random.nextInt(3)];
+			final double coupon = 0.04 * random.nextDouble();
+			final int numberOfCoupons = (int) Math.ceil(maturities[bondIndex] / period - 1E-9);
+			final double[] paymentTimes = new double[numberOfCoupons];
+			final double[] amounts = new double[numberOfCoupons];
+			for (int couponIndex = 0; couponIndex < numberOfCoupons; couponIndex++) {
+				paymentTimes[couponIndex] = maturities[bondIndex] - (numberOfCoupons - 1 - couponIndex) * period;
+				amounts[couponIndex] = coupon * period;
+			}
+			amounts[numberOfCoupons - 1] += 1.0;
+			paymentTimesOfBonds.add(paymentTimes);
+			amountsOfBonds.add(amounts);
+		}
+
+		final IrregularCouponBondBootstrap bootstrap = new IrregularCouponBondBootstrap();
+		for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+			bootstrap.addBond(1.0, paymentTimesOfBonds.get(bondIndex), amountsOfBonds.get(bondIndex));
+		}
+		Assert.assertEquals(numberOfBonds, bootstrap.getNumberOfBonds());
+
+		for (final double shift : new double[] { 0.0, 0.015 }) {
+			final double[] discountFactors = new double[numberOfBonds];
+			for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+				final double maturity = maturities[bondIndex];
+				discountFactors[bondIndex] = Math.exp(-(0.01 + shift + 0.02 * (1 - Math.exp(-maturity / 7))
+						+ 0.002 * Math.sin(5 * maturity)) * maturity);
+			}
+			final LogLinearDiscountCurve sortedCurve = getSortedCurve(maturities, discountFactors);
+
+			// the prices are the values of the bonds on the curve
+			for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+				final double[] paymentTimes = paymentTimesOfBonds.get(bondIndex);
+				final double[] amounts = amountsOfBonds.get(bondIndex);
+				double price = 0.0;
+				for (int flowIndex = 0; flowIndex < paymentTimes.length; flowIndex++) {
+					price += amounts[flowIndex] * sortedCurve.getDiscountFactor(paymentTimes[flowIndex]);
+				}
+				bootstrap.setPrice(bondIndex, price);
+			}
+
+			final LogLinearDiscountCurve curve = bootstrap.bootstrap();
+			for (int bondIndex = 0; bondIndex < numberOfBonds; bondIndex++) {
+				Assert.assertEquals(discountFactors[bondIndex], curve.getDiscountFactor(maturities[bondIndex]), 1E-12);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSameMaturity() {
+		final IrregularCouponBondBootstrap bootstrap = new IrregularCouponBondBootstrap();
+		bootstrap.addBond(0.99, new double[] { 0.5, 1.0 }, new double[] { 0.01, 1.01 });
+		bootstrap.addBond(0.98, new double[] { 1.0 }, new double[] { 1.0 });
+		bootstrap.bootstrap();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonPositivePrice() {
+		final IrregularCouponBondBootstrap bootstrap = new IrregularCouponBondBootstrap();
+		final int bondIndex = bootstrap.addBond(0.99, new double[] { 0.5, 1.0 }, new double[] { 0.01, 1.01 });
+		bootstrap.setPrice(bondIndex, -0.5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPriceNotANumber() {
+		final IrregularCouponBondBootstrap bootstrap = new IrregularCouponBondBootstrap();
+		bootstrap.addBond(Double.NaN, new double[] { 0.5, 1.0 }, new double[] { 0.01, 1.01 });
+	}
+
+	private static LogLinearDiscountCurve getSortedCurve(double[] maturities, double[] discountFactors) {
+		final double[][] pairs = new double[maturities.length][];
+		for (int bondIndex = 0; bondIndex < maturities.length; bondIndex++) {
+			pairs[bondIndex] = new double[] { maturities[bondIndex], discountFactors[bondIndex] };
+		}
+		Arrays.sort(pairs, (first, second) -> Double.compare(first[0], second[0]));
+		final double[] sortedMaturities = new double[maturities.length];
+		final double[] sortedDiscountFactors = new double[maturities.length];
+		for (int bondIndex = 0; bondIndex < maturities.length; bondIndex++) {
+			sortedMaturities[bondIndex] = pairs[bondIndex][0];
+			sortedDiscountFactors[bondIndex] = pairs[bondIndex][1];
+		}
+		return new LogLinearDiscountCurve(sortedMaturities, sortedDiscountFactors);
+	}
+}
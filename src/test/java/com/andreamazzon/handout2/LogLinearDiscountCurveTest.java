@@ -0,0 +1,82 @@
+package com.andreamazzon.handout2;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class for LogLinearDiscountCurve: the discount factors must
+ * be the ones of the curve at the dates of the tenure structure, and between
+ * them the ones got by searching the interval of the time by binary search and
+ * interpolating the logarithms of the bonds.
+ *
+ * @author Andrea Mazzon
+ */
+public class LogLinearDiscountCurveTest {
+
+	@Test
+	public void testUniformTenureStructure() {
+		final int curveLength = 40;
+		final double[] bonds = new double[curveLength];
+		for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+			bonds[bondIndex] = Math.exp(-0.01 * (bondIndex + 1) * 0.5 - 0.0002 * bondIndex * bondIndex * 0.25);
+		}
+		final LogLinearDiscountCurve curve = new LogLinearDiscountCurve(
+				new TimeDiscretizationFromArray(0.5, curveLength - 1, 0.5), bonds);
+
+		Assert.assertEquals(curveLength + 1, curve.getNumberOfNodes());
+		for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+			Assert.assertEquals(bonds[bondIndex], curve.getDiscountFactor(0.5 * (bondIndex + 1)), 1E-15);
+		}
+		Assert.assertEquals(1.0, curve.getDiscountFactor(0.0), 0.0);
+		compareWithBinarySearch(curve, 25.0);
+	}
+
+	@Test
+	public void testIrregularTenureStructure() {
+		final double[] times = { 0.0, 1.0 / 12, 0.25, 0.5, 1.0, 2.0, 2.01, 5.0, 10.0, 30.0 };
+		final double[] bonds = new double[times.length];
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			bonds[timeIndex] = Math.exp(-(0.005 + 0.01 * Math.sqrt(times[timeIndex])) * times[timeIndex]);
+		}
+		final LogLinearDiscountCurve curve = new LogLinearDiscountCurve(times, bonds);
+
+		Assert.assertEquals(times.length, curve.getNumberOfNodes());
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			Assert.assertEquals(bonds[timeIndex], curve.getDiscountFactor(times[timeIndex]), 1E-15);
+		}
+		compareWithBinarySearch(curve, 35.0);
+	}
+
+	private static void compareWithBinarySearch(LogLinearDiscountCurve curve, double horizon) {
+		final double[] nodeTimes = curve.getNodeTimes();
+		final double[] nodeBonds = curve.getNodeDiscountFactors();
+
+		final Random random = new Random(1897);
+		final double[] times = new double[10000];
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			// also some times before zero and after the last date
+			times[timeIndex] = -0.5 + (horizon + 0.5) * random.nextDouble();
+		}
+		final double[] discountFactors = new double[times.length];
+		curve.discountFactors(times, discountFactors);
+
+		for (int timeIndex = 0; timeIndex < times.length; timeIndex++) {
+			final double time = times[timeIndex];
+			// the last node on the left of the time, but at most the last but one
+			int left = Arrays.binarySearch(nodeTimes, time);
+			left = left >= 0 ? left : -left - 2;
+			left = Math.max(0, Math.min(left, nodeTimes.length - 2));
+			final double weight = (time - nodeTimes[left]) / (nodeTimes[left + 1] - nodeTimes[left]);
+			final double expected = Math.exp(
+					(1 - weight) * Math.log(nodeBonds[left]) + weight * Math.log(nodeBonds[left + 1]));
+
+			Assert.assertEquals(expected, discountFactors[timeIndex], 1E-13);
+			Assert.assertEquals(discountFactors[timeIndex], curve.getDiscountFactor(time), 0.0);
+		}
+	}
+}
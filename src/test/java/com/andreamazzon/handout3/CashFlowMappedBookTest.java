@@ -0,0 +1,120 @@
+package com.andreamazzon.handout3;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout2.LogLinearDiscountCurve;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class for CashFlowMappedBook: a book of swaps mapped on the
+ * curve must have the value given by SwapBookAdjointRisk on every curve with
+ * the same dates, also after some trades are removed, while cash flows paid
+ * between the dates of the curve keep their value on the mapping curve and
+ * have an error of second order on a moved curve.
+ *
+ * @author Andrea Mazzon
+ */
+public class CashFlowMappedBookTest {
+
+	private static final int CURVE_LENGTH = 30;
+	private static final double YEAR_FRACTION = 0.5;
+
+	@Test
+	public void testSwapBook() {
+		final TimeDiscretization swapDates = new TimeDiscretizationFromArray(YEAR_FRACTION, CURVE_LENGTH - 1,
+				YEAR_FRACTION);
+		final double[] bonds = getBonds(0.0);
+		final CashFlowMappedBook book = new CashFlowMappedBook(new LogLinearDiscountCurve(swapDates, bonds));
+
+		final int numberOfSwaps = 200;
+		final Random random = new Random(1897);
+		final int[] startIndices = new int[numberOfSwaps];
+		final int[] endIndices = new int[numberOfSwaps];
+		final double[] fixedRates = new double[numberOfSwaps];
+		final double[] notionals = new double[numberOfSwaps];
+		for (int swapIndex = 0; swapIndex < numberOfSwaps; swapIndex++) {
+			startIndices[swapIndex] = random.nextInt(CURVE_LENGTH - 1);
+			endIndices[swapIndex] = startIndices[swapIndex] + 1
+					+ random.nextInt(CURVE_LENGTH - 1 - startIndices[swapIndex]);
+			fixedRates[swapIndex] = 0.005 + 0.02 * random.nextDouble();
+			notionals[swapIndex] = 1E6 * (random.nextDouble() - 0.5);
+			book.addSwap(swapIndex, swapDates, startIndices[swapIndex], endIndices[swapIndex],
+					fixedRates[swapIndex], notionals[swapIndex]);
+		}
+		Assert.assertEquals(numberOfSwaps, book.getNumberOfTrades());
+
+		// we remove the swaps with odd identifier: the book must have the value of the other ones
+		for (int swapIndex = 1; swapIndex < numberOfSwaps; swapIndex += 2) {
+			Assert.assertTrue(book.removeTrade(swapIndex));
+		}
+		Assert.assertFalse(book.removeTrade(1));
+		final int numberOfRemainingSwaps = numberOfSwaps / 2;
+		final int[] remainingStartIndices = new int[numberOfRemainingSwaps];
+		final int[] remainingEndIndices = new int[numberOfRemainingSwaps];
+		final double[] remainingFixedRates = new double[numberOfRemainingSwaps];
+		final double[] remainingNotionals = new double[numberOfRemainingSwaps];
+		for (int swapIndex = 0; swapIndex < numberOfRemainingSwaps; swapIndex++) {
+			remainingStartIndices[swapIndex] = startIndices[2 * swapIndex];
+			remainingEndIndices[swapIndex] = endIndices[2 * swapIndex];
+			remainingFixedRates[swapIndex] = fixedRates[2 * swapIndex];
+			remainingNotionals[swapIndex] = notionals[2 * swapIndex];
+		}
+		final SwapBookAdjointRisk remainingBook = new SwapBookAdjointRisk(swapDates, remainingStartIndices,
+				remainingEndIndices, remainingFixedRates, remainingNotionals);
+
+		// the cash flows are paid at the dates of the curve: the value is exact also on moved curves
+		for (final double shift : new double[] { 0.0, 0.01, -0.005 }) {
+			final double[] movedBonds = getBonds(shift);
+			final LogLinearDiscountCurve movedCurve = new LogLinearDiscountCurve(swapDates, movedBonds);
+			Assert.assertEquals(remainingBook.getBookValue(movedBonds), book.getBookValue(movedCurve), 1E-6);
+		}
+	}
+
+	@Test
+	public void testCashFlowsBetweenDates() {
+		final TimeDiscretization swapDates = new TimeDiscretizationFromArray(YEAR_FRACTION, CURVE_LENGTH - 1,
+				YEAR_FRACTION);
+		final LogLinearDiscountCurve mappingCurve = new LogLinearDiscountCurve(swapDates, getBonds(0.0));
+		final CashFlowMappedBook book = new CashFlowMappedBook(mappingCurve);
+
+		final double[] paymentTimes = { 0.1, 0.8, 3.3, 7.77, 14.9 };
+		final double[] amounts = { 100.0, -250.0, 40.0, 1000.0, -30.0 };
+		book.addCashFlows(7, paymentTimes, amounts);
+
+		final double[] errors = new double[2];
+		final double[] shifts = { 1E-3, 2E-3 };
+		for (int shiftIndex = 0; shiftIndex < shifts.length; shiftIndex++) {
+			final LogLinearDiscountCurve movedCurve = new LogLinearDiscountCurve(swapDates,
+					getBonds(shifts[shiftIndex]));
+			double value = 0.0;
+			double mappingValue = 0.0;
+			for (int flowIndex = 0; flowIndex < paymentTimes.length; flowIndex++) {
+				value += amounts[flowIndex] * movedCurve.getDiscountFactor(paymentTimes[flowIndex]);
+				mappingValue += amounts[flowIndex] * mappingCurve.getDiscountFactor(paymentTimes[flowIndex]);
+			}
+			Assert.assertEquals(mappingValue, book.getBookValue(mappingCurve), 1E-10);
+			errors[shiftIndex] = Math.abs(book.getBookValue(movedCurve) - value);
+		}
+		// doubling the shift, the error is multiplied by (about) four
+		Assert.assertEquals(4.0, errors[1] / errors[0], 0.1);
+	}
+
+	/*
+	 * Bonds of a curve with an upward sloping zero rate, plus a parallel shift of
+	 * the zero rates
+	 */
+	private static double[] getBonds(double shift) {
+		final double[] bonds = new double[CURVE_LENGTH];
+		for (int bondIndex = 0; bondIndex < CURVE_LENGTH; bondIndex++) {
+			final double maturity = YEAR_FRACTION * (bondIndex + 1);
+			final double zeroRate = 0.005 + 0.02 * (1 - Math.exp(-maturity / 5)) + shift * (1 + 0.1 * bondIndex);
+			bonds[bondIndex] = Math.exp(-zeroRate * maturity);
+		}
+		return bonds;
+	}
+}
@@ -0,0 +1,82 @@
+package com.andreamazzon.handout3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class for CurvePublisher: a feed thread publishes curves
+ * whose bonds all depend on the version, while some pricing threads read them.
+ * Every curve a pricing thread gets must be consistent, i.e., all its bonds
+ * must come from the same version, and the versions must never go backwards.
+ *
+ * @author Andrea Mazzon
+ */
+public class CurvePublisherTest {
+
+	@Test
+	public void testConsistentSnapshots() throws InterruptedException {
+		final int curveLength = 40;
+		final TimeDiscretization tenureStructure = new TimeDiscretizationFromArray(0.5, curveLength - 1, 0.5);
+		final CurvePublisher publisher = new CurvePublisher();
+		final double[] bonds = new double[curveLength];
+
+		fillBonds(bonds, 0);
+		publisher.publish(tenureStructure, bonds);
+
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final AtomicInteger inconsistentCurves = new AtomicInteger(0);
+		final List<Thread> readers = new ArrayList<Thread>();
+
+		for (int readerIndex = 0; readerIndex < 4; readerIndex++) {
+			final Thread reader = new Thread(() -> {
+				long lastVersion = 0;
+				while (!stop.get()) {
+					final VersionedValue parSwapRate = publisher
+							.value(curve -> curve.getAnnuityIndex().getParSwapRate(0, curveLength - 1));
+					final VersionedCurve curve = publisher.getCurve();
+					// the bonds of the version v are computed from the shift v - 1
+					final double shift = 1E-4 * (curve.getVersion() - 1);
+					for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+						if (curve.getBond(bondIndex) != Math.exp(-(0.01 + shift) * 0.5 * (bondIndex + 1))) {
+							inconsistentCurves.incrementAndGet();
+						}
+					}
+					if (parSwapRate.getCurveVersion() < lastVersion) {
+						inconsistentCurves.incrementAndGet();
+					}
+					lastVersion = parSwapRate.getCurveVersion();
+				}
+			});
+			readers.add(reader);
+			reader.start();
+		}
+
+		// the feed thread: the same array is modified and published again and again
+		for (int shiftIndex = 1; shiftIndex <= 2000; shiftIndex++) {
+			fillBonds(bonds, shiftIndex);
+			publisher.publish(tenureStructure, bonds);
+		}
+		stop.set(true);
+		for (final Thread reader : readers) {
+			reader.join();
+		}
+
+		Assert.assertEquals(0, inconsistentCurves.get());
+		Assert.assertEquals(2001, publisher.getCurve().getVersion());
+	}
+
+	private static void fillBonds(double[] bonds, int shiftIndex) {
+		final double shift = 1E-4 * shiftIndex;
+		for (int bondIndex = 0; bondIndex < bonds.length; bondIndex++) {
+			bonds[bondIndex] = Math.exp(-(0.01 + shift) * 0.5 * (bondIndex + 1));
+		}
+	}
+}
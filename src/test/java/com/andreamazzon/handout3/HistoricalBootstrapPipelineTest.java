@@ -0,0 +1,90 @@
+package com.andreamazzon.handout3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This is a test class for HistoricalBootstrapPipeline: we write a quote file
+ * with many dates, whose quotes are random perturbations of the ones of
+ * BootstrapFromParSwapRateTest, we run the pipeline with small chunks and many
+ * threads, and we check that every curve in the output file is the one got by
+ * bootstrapping the quotes of its line directly.
+ *
+ * @author Andrea Mazzon
+ */
+public class HistoricalBootstrapPipelineTest {
+
+	@Test
+	public void testPipeline() throws IOException {
+		final double yearFraction = 0.5;
+		final double[] firstBonds = { 0.98, 0.975 };
+		final double[] semiAnnualSwapRates = { 0.0086, 0.0077, 0.0073, 0.0084 };
+		final double[] annualSwapRates = { 0.0075, 0.0085, 0.0095, 0.0092 };
+		final int numberOfDates = 1500;
+
+		final Path directory = Files.createTempDirectory("history");
+		final Path input = directory.resolve("quotes.csv");
+		final Path output = directory.resolve("curves.bin");
+
+		final Random random = new Random(3141);
+		final String[][] lines = new String[numberOfDates][];
+		try (BufferedWriter writer = Files.newBufferedWriter(input)) {
+			for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+				final ArrayList<String> fields = new ArrayList<String>();
+				fields.add(String.valueOf(20000101 + dateIndex));
+				final double shift = 0.0005 * random.nextGaussian();
+				for (final double bond : firstBonds) {
+					fields.add(String.format(Locale.ROOT, "%.10f", bond * Math.exp(-shift * 0.5)));
+				}
+				for (final double swapRate : semiAnnualSwapRates) {
+					fields.add(String.valueOf(swapRate + shift));
+				}
+				for (final double swapRate : annualSwapRates) {
+					// also numbers in scientific notation
+					fields.add(String.format(Locale.ROOT, "%.8e", swapRate + shift));
+				}
+				lines[dateIndex] = fields.toArray(new String[0]);
+				writer.write(String.join(",", fields));
+				writer.write(dateIndex % 2 == 0 ? "\n" : "\r\n");
+			}
+		}
+
+		final HistoricalBootstrapPipeline pipeline = new HistoricalBootstrapPipeline(yearFraction,
+				semiAnnualSwapRates.length, annualSwapRates.length, 3, 4096/* bytes mapped at once */);
+		Assert.assertEquals(numberOfDates, pipeline.run(input, output));
+
+		final int curveLength = 2 + semiAnnualSwapRates.length + 2 * annualSwapRates.length;
+		final double[] curve = new double[curveLength];
+		for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex += 7) {
+			final String[] fields = lines[dateIndex];
+			final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(Double.parseDouble(fields[1]),
+					Double.parseDouble(fields[2]), yearFraction);
+			for (int rateIndex = 0; rateIndex < semiAnnualSwapRates.length; rateIndex++) {
+				bootstrap.nextBondFromParSwapRate(Double.parseDouble(fields[3 + rateIndex]));
+			}
+			for (int rateIndex = 0; rateIndex < annualSwapRates.length; rateIndex++) {
+				bootstrap.nextTwoBondsFromParSwapRate(
+						Double.parseDouble(fields[3 + semiAnnualSwapRates.length + rateIndex]));
+			}
+
+			final int date = HistoricalBootstrapPipeline.readCurve(output, dateIndex, curve);
+			Assert.assertEquals(Integer.parseInt(fields[0]), date);
+			for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+				// the quotes must be parsed exactly as Double.parseDouble does
+				Assert.assertEquals(bootstrap.getBonds().get(bondIndex), curve[bondIndex], 0.0);
+			}
+		}
+
+		Files.delete(input);
+		Files.delete(output);
+		Files.delete(directory);
+	}
+}
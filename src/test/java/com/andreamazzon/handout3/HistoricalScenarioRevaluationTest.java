@@ -0,0 +1,84 @@
+package com.andreamazzon.handout3;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout2.BondsAndLibors;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class for HistoricalScenarioRevaluation: the profits and
+ * losses of the book computed in parallel for shocked Libor curves are compared
+ * with the ones got by converting every shocked curve with BondsAndLibors and
+ * by constructing an object of type SwapWithoutFinmath for every swap and
+ * every scenario.
+ *
+ * @author Andrea Mazzon
+ */
+public class HistoricalScenarioRevaluationTest {
+
+	@Test
+	public void testLiborScenarios() {
+		final double yearFraction = 0.5;
+		final int curveLength = 20;
+		final TimeDiscretization swapDates = new TimeDiscretizationFromArray(yearFraction, curveLength - 1,
+				yearFraction);
+		final BondsAndLibors converter = new BondsAndLibors(swapDates);
+
+		final double[] baseLibors = new double[curveLength];
+		for (int periodIndex = 0; periodIndex < curveLength; periodIndex++) {
+			baseLibors[periodIndex] = 0.01 + 0.001 * periodIndex;
+		}
+		final double[] baseBonds = converter.fromLiborsToBonds(baseLibors);
+
+		final int[] startIndices = { 0, 0, 3, 8, 1 };
+		final int[] endIndices = { 19, 10, 15, 19, 4 };
+		final double[] fixedRates = { 0.02, 0.015, 0.022, 0.025, 0.012 };
+		final double[] notionals = { 1E6, -5E5, 2E6, 1E6, -3E6 };
+
+		// shocks of some basis points on every Libor
+		final int numberOfScenarios = 200;
+		final Random random = new Random(1897);
+		final double[] shocks = new double[numberOfScenarios * curveLength];
+		for (int valueIndex = 0; valueIndex < shocks.length; valueIndex++) {
+			shocks[valueIndex] = 0.001 * random.nextGaussian();
+		}
+		final CurveScenarioSet scenarios = CurveScenarioSet.fromShocks(baseLibors, shocks, false);
+
+		final HistoricalScenarioRevaluation revaluation = new HistoricalScenarioRevaluation(swapDates, baseBonds,
+				startIndices, endIndices, fixedRates, notionals);
+		final BookValueAtRisk valueAtRisk = new BookValueAtRisk(numberOfScenarios);
+		revaluation.revalue(scenarios, valueAtRisk);
+
+		final double[] times = swapDates.getAsDoubleArray();
+		final double[] shockedLibors = new double[curveLength];
+		for (int scenarioIndex = 0; scenarioIndex < numberOfScenarios; scenarioIndex++) {
+			scenarios.getCurve(scenarioIndex, shockedLibors);
+			final double[] shockedBonds = converter.fromLiborsToBonds(shockedLibors);
+			double bookPnL = 0.0;
+			for (int swapIndex = 0; swapIndex < startIndices.length; swapIndex++) {
+				final int start = startIndices[swapIndex];
+				final int end = endIndices[swapIndex];
+				final Swap shockedSwap = new SwapWithoutFinmath(Arrays.copyOfRange(times, start, end + 1),
+						Arrays.copyOfRange(shockedBonds, start, end + 1), true);
+				final Swap baseSwap = new SwapWithoutFinmath(Arrays.copyOfRange(times, start, end + 1),
+						Arrays.copyOfRange(baseBonds, start, end + 1), true);
+				bookPnL += notionals[swapIndex] * (shockedSwap.getSwapValue(fixedRates[swapIndex])
+						- baseSwap.getSwapValue(fixedRates[swapIndex]));
+			}
+			Assert.assertEquals(bookPnL, valueAtRisk.getBookPnL(scenarioIndex), 1E-6);
+		}
+
+		System.out.println("99% Value at Risk of the book: " + valueAtRisk.getValueAtRisk(0.99));
+
+		// the Libor curve given to SwapWithoutFinmath is converted as in BondsAndLibors
+		final Swap swapFromLibors = new SwapWithoutFinmath(swapDates, baseLibors, false);
+		final Swap swapFromBonds = new SwapWithoutFinmath(swapDates, baseBonds, true);
+		Assert.assertEquals(swapFromBonds.getParSwapRate(), swapFromLibors.getParSwapRate(), 1E-15);
+	}
+}
@@ -0,0 +1,172 @@
+package com.andreamazzon.handout3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This is a test class for QuoteFeedAdapter: a simulator of the feed sends
+ * bursts of quotes through a pipe, and we check that every burst is coalesced
+ * in one window, with the last value of every quote, that the curve is rebuilt
+ * once for every window, and that the last curve is the one bootstrapped from
+ * the last quotes. The windows are measured by a simulated clock, moved by the
+ * simulator after every burst, so that the test does not depend on the
+ * scheduling of the threads. The quotes are the ones of
+ * BootstrapFromParSwapRateTest, randomly perturbed.
+ *
+ * @author Andrea Mazzon
+ */
+public class QuoteFeedAdapterTest {
+
+	private static final double YEAR_FRACTION = 0.5;
+	private static final long WINDOW_LENGTH = 10;
+	private static final double[] FINAL_QUOTES = { 0.98, 0.975, 0.0086, 0.0077, 0.0073, 0.0084, 0.0075, 0.0085,
+			0.0095, 0.0092 };
+
+	@Test
+	public void testCoalescedRebuilds() throws Exception {
+		final CurvePublisher publisher = new CurvePublisher();
+		final ParSwapRateFeedBootstrap bootstrap = new ParSwapRateFeedBootstrap(YEAR_FRACTION, 4, 4, publisher);
+		final List<double[]> quotesOfWindows = new ArrayList<double[]>();
+		final List<Integer> updatesOfWindows = new ArrayList<Integer>();
+		final QuoteWindowListener listener = (quotes, numberOfUpdates) -> {
+			quotesOfWindows.add(quotes.clone());
+			updatesOfWindows.add(numberOfUpdates);
+			bootstrap.windowClosed(quotes, numberOfUpdates);
+		};
+		// a simulated clock, moved by the simulator of the feed: the windows do not depend on the scheduling
+		final AtomicLong clock = new AtomicLong();
+		final Pipe pipe = Pipe.open();
+		final QuoteFeedAdapter adapter = new QuoteFeedAdapter(pipe.source(), bootstrap.getNumberOfInstruments(),
+				WINDOW_LENGTH, TimeUnit.MILLISECONDS, listener, clock::get);
+
+		final int numberOfBursts = 20;
+		final int framesPerBurst = 500;
+		final double[][] lastQuotesOfBursts = new double[numberOfBursts][];
+		final Thread simulator = new Thread(() -> {
+			final Random random = new Random(1897);
+			final double[] lastQuotes = new double[FINAL_QUOTES.length];
+			try {
+				for (int burstIndex = 0; burstIndex < numberOfBursts; burstIndex++) {
+					final int[] instrumentIndices = new int[framesPerBurst];
+					final double[] values = new double[framesPerBurst];
+					for (int frameIndex = 0; frameIndex < framesPerBurst; frameIndex++) {
+						// the last frames of the last burst give the final quotes
+						final int finalIndex = frameIndex - (framesPerBurst - FINAL_QUOTES.length);
+						if (burstIndex == numberOfBursts - 1 && finalIndex >= 0) {
+							instrumentIndices[frameIndex] = finalIndex;
+							values[frameIndex] = FINAL_QUOTES[finalIndex];
+						} else {
+							instrumentIndices[frameIndex] = frameIndex % FINAL_QUOTES.length;
+							values[frameIndex] = FINAL_QUOTES[instrumentIndices[frameIndex]]
+									* (1 + 0.01 * random.nextGaussian());
+						}
+						lastQuotes[instrumentIndices[frameIndex]] = values[frameIndex];
+					}
+					lastQuotesOfBursts[burstIndex] = lastQuotes.clone();
+					QuoteFeedAdapter.writeFrames(pipe.sink(), instrumentIndices, values);
+					// the whole burst is read inside the window, which then ends
+					final long framesRead = (burstIndex + 1L) * framesPerBurst;
+					waitFor(() -> adapter.getNumberOfFrames() == framesRead);
+					clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_LENGTH));
+					final long windowsClosed = burstIndex + 1L;
+					waitFor(() -> adapter.getNumberOfWindows() == windowsClosed);
+				}
+			} catch (final IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			} finally {
+				try {
+					pipe.sink().close();
+				} catch (final IOException e) {
+					// the adapter stops anyway at the end of the stream
+				}
+			}
+		});
+		simulator.start();
+		adapter.run();
+		simulator.join();
+
+		Assert.assertEquals(numberOfBursts * framesPerBurst, adapter.getNumberOfFrames());
+		// exactly one window for every burst, with the last value of every quote
+		Assert.assertEquals(numberOfBursts, adapter.getNumberOfWindows());
+		Assert.assertEquals(numberOfBursts, quotesOfWindows.size());
+		for (int burstIndex = 0; burstIndex < numberOfBursts; burstIndex++) {
+			Assert.assertEquals(framesPerBurst, (int) updatesOfWindows.get(burstIndex));
+			Assert.assertArrayEquals(lastQuotesOfBursts[burstIndex], quotesOfWindows.get(burstIndex), 0.0);
+		}
+
+		final BootstrapFromParSwapRate expectedBootstrap = new BootstrapFromParSwapRate(FINAL_QUOTES[0],
+				FINAL_QUOTES[1], YEAR_FRACTION);
+		for (int rateIndex = 2; rateIndex < 6; rateIndex++) {
+			expectedBootstrap.nextBondFromParSwapRate(FINAL_QUOTES[rateIndex]);
+		}
+		for (int rateIndex = 6; rateIndex < 10; rateIndex++) {
+			expectedBootstrap.nextTwoBondsFromParSwapRate(FINAL_QUOTES[rateIndex]);
+		}
+		final VersionedCurve curve = publisher.getCurve();
+		// every instrument is quoted in the first burst, so every window rebuilds the curve once
+		Assert.assertEquals(numberOfBursts, curve.getVersion());
+		for (int bondIndex = 0; bondIndex < expectedBootstrap.getBonds().size(); bondIndex++) {
+			Assert.assertEquals(expectedBootstrap.getBonds().get(bondIndex), curve.getBond(bondIndex), 0.0);
+		}
+	}
+
+	// it waits until the condition holds, checking it every millisecond, for at most ten seconds
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() - deadline >= 0) {
+				throw new IllegalStateException("The adapter did not read the feed in time");
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void testFramesSplitAcrossReads() throws Exception {
+		final List<double[]> windows = new ArrayList<double[]>();
+		final Pipe pipe = Pipe.open();
+		final QuoteFeedAdapter adapter = new QuoteFeedAdapter(pipe.source(), 3, 1, TimeUnit.MILLISECONDS,
+				(quotes, numberOfUpdates) -> windows.add(quotes.clone()));
+
+		final Thread simulator = new Thread(() -> {
+			try {
+				final ByteBuffer frames = ByteBuffer.allocate(2 * QuoteFeedAdapter.FRAME_SIZE);
+				QuoteFeedAdapter.putFrame(frames, 2, 0.5);
+				QuoteFeedAdapter.putFrame(frames, 0, 1.5);
+				frames.flip();
+				// the frames are sent a few bytes at a time
+				while (frames.hasRemaining()) {
+					final ByteBuffer piece = frames.slice();
+					piece.limit(Math.min(5, piece.remaining()));
+					frames.position(frames.position() + piece.limit());
+					while (piece.hasRemaining()) {
+						pipe.sink().write(piece);
+					}
+					Thread.sleep(5);
+				}
+				pipe.sink().close();
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		simulator.start();
+		adapter.run();
+		simulator.join();
+
+		Assert.assertEquals(2, adapter.getNumberOfFrames());
+		final double[] lastQuotes = windows.get(windows.size() - 1);
+		Assert.assertEquals(1.5, lastQuotes[0], 0.0);
+		Assert.assertTrue(Double.isNaN(lastQuotes[1]));
+		Assert.assertEquals(0.5, lastQuotes[2], 0.0);
+	}
+}
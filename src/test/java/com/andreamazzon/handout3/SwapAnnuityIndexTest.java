@@ -0,0 +1,53 @@
+package com.andreamazzon.handout3;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This is a test class, checking that the par swap rates and the values of
+ * spot-starting and forward-starting swaps computed by SwapAnnuityIndex are the
+ * same as the ones computed by SwapWithoutFinmath for the corresponding part of
+ * the curve.
+ *
+ * @author Andrea Mazzon
+ */
+public class SwapAnnuityIndexTest {
+
+	@Test
+	public void testSubSwaps() {
+		final double[] times = { 0.5, 1, 1.5, 2, 3, 3.5, 4, 5 };
+		final double[] zeroCouponBondCurve = { 0.9986509108, 0.9949129829, 0.9897033769, 0.9835370208, 0.9765298116,
+				0.9689909565, 0.9612, 0.9498 };
+
+		final SwapAnnuityIndex index = new SwapAnnuityIndex(new TimeDiscretizationFromArray(times),
+				zeroCouponBondCurve);
+
+		final int[] startIndices = { 0, 0, 2, 3, 5 };
+		final int[] endIndices = { 7, 4, 6, 4, 7 };
+		final double[] swapRates = { 0.01, 0.012, 0.009, 0.011, 0.013 };
+		final double[] notionals = { 1000, -2000, 500, 100, 3000 };
+
+		final double[] parSwapRates = index.getParSwapRates(startIndices, endIndices);
+		final double[] swapValues = index.getSwapValues(startIndices, endIndices, swapRates, notionals);
+
+		final double tolerance = 1E-13;
+
+		for (int swapIndex = 0; swapIndex < startIndices.length; swapIndex++) {
+			final int start = startIndices[swapIndex];
+			final int end = endIndices[swapIndex];
+			// the swap on the part of the tenure structure between the two dates
+			final Swap swap = new SwapWithoutFinmath(Arrays.copyOfRange(times, start, end + 1),
+					Arrays.copyOfRange(zeroCouponBondCurve, start, end + 1), true);
+
+			Assert.assertEquals(swap.getParSwapRate(), parSwapRates[swapIndex], tolerance);
+			Assert.assertEquals(notionals[swapIndex] * swap.getSwapValue(swapRates[swapIndex]),
+					swapValues[swapIndex], tolerance * Math.abs(notionals[swapIndex]));
+			// the value at the par swap rate must be zero
+			Assert.assertEquals(0.0, index.getSwapValue(start, end, parSwapRates[swapIndex]), tolerance);
+		}
+	}
+}
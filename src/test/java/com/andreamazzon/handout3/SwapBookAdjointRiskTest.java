@@ -0,0 +1,156 @@
+package com.andreamazzon.handout3;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout2.Bootstrap;
+
+/**
+ * This is a test class for SwapBookAdjointRisk. We first check that the value
+ * of the book is the sum of the values of the single swaps computed by
+ * SwapWithoutFinmath, and then that the sensitivities with respect to the
+ * market quotes got by the adjoint methods of the bootstrap classes are the
+ * same as the ones computed by bumping every quote and bootstrapping again.
+ *
+ * @author Andrea Mazzon
+ */
+public class SwapBookAdjointRiskTest {
+
+	final double yearFraction = 0.5;
+
+	final double[] firstBonds = { 0.98, 0.975 };
+	final double[] semiAnnualSwapRates = { 0.0086, 0.0077, 0.0073, 0.0084 };
+	final double[] annualSwapRates = { 0.0075, 0.0085, 0.0095, 0.0092 };
+
+	// the book: every swap is given by start index, end index, fixed rate and notional
+	final int[] startIndices = { 0, 0, 2, 5, 1, 7 };
+	final int[] endIndices = { 13, 5, 9, 13, 3, 11 };
+	final double[] fixedRates = { 0.009, 0.008, 0.0085, 0.01, 0.007, 0.0095 };
+	final double[] notionals = { 10000, -5000, 20000, 7000, 3000, -12000 };
+
+	@Test
+	public void testBookValue() {
+		final double[] bonds = bootstrapFromParSwapRates(firstBonds, semiAnnualSwapRates, annualSwapRates);
+		final SwapBookAdjointRisk risk = new SwapBookAdjointRisk(yearFraction, bonds.length, startIndices,
+				endIndices, fixedRates, notionals);
+
+		double sumOfSwapValues = 0.0;
+		for (int swapIndex = 0; swapIndex < startIndices.length; swapIndex++) {
+			// a swap starting later is a swap on a shorter curve
+			final double[] subCurve = Arrays.copyOfRange(bonds, startIndices[swapIndex], endIndices[swapIndex] + 1);
+			final Swap swap = new SwapWithoutFinmath(yearFraction, subCurve, true);
+			sumOfSwapValues += notionals[swapIndex] * swap.getSwapValue(fixedRates[swapIndex], yearFraction);
+		}
+		System.out.println("Value of the book: " + risk.getBookValue(bonds));
+
+		Assert.assertEquals(sumOfSwapValues, risk.getBookValue(bonds), 1E-10);
+	}
+
+	@Test
+	public void testParSwapRateSensitivities() {
+		final double[] bonds = bootstrapFromParSwapRates(firstBonds, semiAnnualSwapRates, annualSwapRates);
+		final SwapBookAdjointRisk risk = new SwapBookAdjointRisk(yearFraction, bonds.length, startIndices,
+				endIndices, fixedRates, notionals);
+
+		final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(firstBonds[0], firstBonds[1],
+				yearFraction);
+		for (final double swapRate : semiAnnualSwapRates) {
+			bootstrap.nextBondFromParSwapRate(swapRate);
+		}
+		for (final double swapRate : annualSwapRates) {
+			bootstrap.nextTwoBondsFromParSwapRate(swapRate);
+		}
+		final double[] adjointSensitivities = risk.getQuoteSensitivities(bootstrap);
+
+		// bump and bootstrap again, for every quote
+		final double bump = 1E-7;
+		final double[] bumpedSensitivities = new double[adjointSensitivities.length];
+		for (int quoteIndex = 0; quoteIndex < adjointSensitivities.length; quoteIndex++) {
+			final double[] upFirstBonds = firstBonds.clone();
+			final double[] upSemiAnnualSwapRates = semiAnnualSwapRates.clone();
+			final double[] upAnnualSwapRates = annualSwapRates.clone();
+			final double[] downFirstBonds = firstBonds.clone();
+			final double[] downSemiAnnualSwapRates = semiAnnualSwapRates.clone();
+			final double[] downAnnualSwapRates = annualSwapRates.clone();
+			if (quoteIndex < 2) {
+				upFirstBonds[quoteIndex] += bump;
+				downFirstBonds[quoteIndex] -= bump;
+			} else if (quoteIndex < 2 + semiAnnualSwapRates.length) {
+				upSemiAnnualSwapRates[quoteIndex - 2] += bump;
+				downSemiAnnualSwapRates[quoteIndex - 2] -= bump;
+			} else {
+				upAnnualSwapRates[quoteIndex - 2 - semiAnnualSwapRates.length] += bump;
+				downAnnualSwapRates[quoteIndex - 2 - semiAnnualSwapRates.length] -= bump;
+			}
+			final double upValue = risk.getBookValue(
+					bootstrapFromParSwapRates(upFirstBonds, upSemiAnnualSwapRates, upAnnualSwapRates));
+			final double downValue = risk.getBookValue(
+					bootstrapFromParSwapRates(downFirstBonds, downSemiAnnualSwapRates, downAnnualSwapRates));
+			bumpedSensitivities[quoteIndex] = (upValue - downValue) / (2 * bump);
+		}
+		System.out.println("Adjoint sensitivities: " + Arrays.toString(adjointSensitivities));
+		System.out.println("Bumped sensitivities:  " + Arrays.toString(bumpedSensitivities));
+
+		for (int quoteIndex = 0; quoteIndex < adjointSensitivities.length; quoteIndex++) {
+			Assert.assertEquals(bumpedSensitivities[quoteIndex], adjointSensitivities[quoteIndex],
+					1E-4 * Math.max(1.0, Math.abs(bumpedSensitivities[quoteIndex])));
+		}
+	}
+
+	@Test
+	public void testCouponBondSensitivities() {
+		final double[] couponBonds = { 1.93, 2.77, 3.55, 4.45, 5.2, 5.9, 6.55, 7.15 };
+		final double[] coupons = { 2.1, 1.9, 1.8, 2.2, 2.1, 1.95, 2, 2.05 };
+
+		final Bootstrap bootstrap = bootstrapFromCouponBonds(couponBonds, coupons);
+		final int curveLength = couponBonds.length;
+
+		final SwapBookAdjointRisk risk = new SwapBookAdjointRisk(yearFraction, curveLength, new int[] { 0, 2, 1 },
+				new int[] { 7, 6, 4 }, new double[] { 0.02, 0.025, 0.015 }, new double[] { 100, -50, 80 });
+
+		final double[] adjointSensitivities = risk.getQuoteSensitivities(bootstrap);
+
+		final double bump = 1E-6;
+		for (int quoteIndex = 0; quoteIndex < curveLength; quoteIndex++) {
+			final double[] upCouponBonds = couponBonds.clone();
+			final double[] downCouponBonds = couponBonds.clone();
+			upCouponBonds[quoteIndex] += bump;
+			downCouponBonds[quoteIndex] -= bump;
+			final double upValue = risk.getBookValue(toArray(bootstrapFromCouponBonds(upCouponBonds, coupons)));
+			final double downValue = risk.getBookValue(toArray(bootstrapFromCouponBonds(downCouponBonds, coupons)));
+			Assert.assertEquals((upValue - downValue) / (2 * bump), adjointSensitivities[quoteIndex], 1E-6);
+		}
+	}
+
+	private double[] bootstrapFromParSwapRates(double[] firstBonds, double[] semiAnnualSwapRates,
+			double[] annualSwapRates) {
+		final BootstrapFromParSwapRate bootstrap = new BootstrapFromParSwapRate(firstBonds[0], firstBonds[1],
+				yearFraction);
+		for (final double swapRate : semiAnnualSwapRates) {
+			bootstrap.nextBondFromParSwapRate(swapRate);
+		}
+		for (final double swapRate : annualSwapRates) {
+			bootstrap.nextTwoBondsFromParSwapRate(swapRate);
+		}
+		return toArray(bootstrap.getBonds());
+	}
+
+	private Bootstrap bootstrapFromCouponBonds(double[] couponBonds, double[] coupons) {
+		final Bootstrap bootstrap = new Bootstrap(yearFraction, coupons[0], couponBonds[0]);
+		for (int couponBondIndex = 1; couponBondIndex < couponBonds.length; couponBondIndex++) {
+			bootstrap.nextBondFromCouponBond(couponBonds[couponBondIndex], coupons[couponBondIndex]);
+		}
+		return bootstrap;
+	}
+
+	private double[] toArray(Bootstrap bootstrap) {
+		return toArray(bootstrap.getBonds());
+	}
+
+	private static double[] toArray(List<Double> bonds) {
+		return bonds.stream().mapToDouble(Double::doubleValue).toArray();
+	}
+}
@@ -1,5 +1,7 @@
 package com.andreamazzon.handout3;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -52,4 +54,41 @@ public class SwapWithoutFinmathTest {
 		Assert.assertEquals(0, newSwapValue, tolerance);
 	}
 
+	@Test
+	public void testBatchMethods() {
+		final double[] times = { 0.5, 1, 1.5, 2, 3, 3.5 };
+		final double[] zeroCouponBondCurve = { 0.9986509108, 0.9949129829, 0.9897033769, 0.9835370208, 0.9765298116,
+				0.9689909565 };
+		final SwapWithoutFinmath swapCalculator = new SwapWithoutFinmath(times, zeroCouponBondCurve, true);
+
+		final double[] singleSwapRates = { 0.005, 0.01, 0.015, 0.02 };
+		final double[] swapValues = new double[singleSwapRates.length];
+		swapCalculator.getSwapValues(singleSwapRates, swapValues);
+
+		final double[] valueAndAnnuity = new double[2];
+		final double tolerance = 1E-15;
+
+		for (int rateIndex = 0; rateIndex < singleSwapRates.length; rateIndex++) {
+			// the old way: an array with all elements equal to the single swap rate
+			final double[] swapRates = new double[zeroCouponBondCurve.length];
+			Arrays.fill(swapRates, singleSwapRates[rateIndex]);
+			final double swapValue = swapCalculator.getSwapValue(swapRates);
+
+			Assert.assertEquals(swapValue, swapValues[rateIndex], tolerance);
+			Assert.assertEquals(swapValue, swapCalculator.getSwapValue(singleSwapRates[rateIndex]), tolerance);
+
+			swapCalculator.getSwapValueAndAnnuity(singleSwapRates[rateIndex], valueAndAnnuity);
+			Assert.assertEquals(swapValue, valueAndAnnuity[0], tolerance);
+			Assert.assertEquals(swapCalculator.getAnnuity(), valueAndAnnuity[1], tolerance);
+		}
+
+		// the swap on the whole tenure structure, and the one starting at T_3 and ending at T_5
+		final double[] subSwapValues = new double[2];
+		swapCalculator.getSwapValues(new int[] { 0, 2 }, new int[] { 5, 4 }, new double[] { 0.01, 0.01 },
+				subSwapValues);
+		Assert.assertEquals(swapCalculator.getSwapValue(0.01), subSwapValues[0], tolerance);
+		final Swap subSwapCalculator = new SwapWithoutFinmath(Arrays.copyOfRange(times, 2, 5),
+				Arrays.copyOfRange(zeroCouponBondCurve, 2, 5), true);
+		Assert.assertEquals(subSwapCalculator.getSwapValue(0.01), subSwapValues[1], tolerance);
+	}
 }
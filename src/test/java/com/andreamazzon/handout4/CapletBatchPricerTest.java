@@ -0,0 +1,82 @@
+package com.andreamazzon.handout4;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.functions.NormalDistribution;
+
+/**
+ * This is a test class for FastNormalDistribution and CapletBatchPricer: we
+ * check that the normal cumulative distribution function is the one of the
+ * finmath library up to the double precision, and that the values of a book of
+ * random caplets, and of the caps made by them, are the ones computed one at a
+ * time by InterestRatesProducts.calculateCapletValueBlackModel.
+ *
+ * @author Andrea Mazzon
+ */
+public class CapletBatchPricerTest {
+
+	@Test
+	public void testCumulativeDistribution() {
+		for (double x = -40; x <= 40; x += 0.001) {
+			Assert.assertEquals(NormalDistribution.cumulativeDistribution(x),
+					FastNormalDistribution.cumulativeDistribution(x), 1E-14);
+		}
+	}
+
+	@Test
+	public void testCapletsAndCaps() {
+		final int numberOfCaps = 1000;
+		final int capletsPerCap = 20;
+		final int numberOfCaplets = numberOfCaps * capletsPerCap;
+
+		final double[] forwards = new double[numberOfCaplets];
+		final double[] volatilities = new double[numberOfCaplets];
+		final double[] strikes = new double[numberOfCaplets];
+		final double[] fixingDates = new double[numberOfCaplets];
+		final double[] paymentDates = new double[numberOfCaplets];
+		final double[] discountFactors = new double[numberOfCaplets];
+		final double[] notionals = new double[numberOfCaplets];
+		final int[] capIdentifiers = new int[numberOfCaplets];
+
+		final Random random = new Random(1897);
+		for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+			final int periodIndex = capletIndex % capletsPerCap;
+			capIdentifiers[capletIndex] = capletIndex / capletsPerCap;
+			forwards[capletIndex] = 0.005 + 0.05 * random.nextDouble();
+			volatilities[capletIndex] = 0.05 + 0.5 * random.nextDouble();
+			// some caplets deep in and out of the money
+			strikes[capletIndex] = forwards[capletIndex] * Math.exp(2 * random.nextGaussian());
+			// the first caplet of every cap has already fixed
+			fixingDates[capletIndex] = 0.5 * periodIndex;
+			paymentDates[capletIndex] = fixingDates[capletIndex] + 0.5;
+			discountFactors[capletIndex] = Math.exp(-0.02 * paymentDates[capletIndex]);
+			notionals[capletIndex] = 10000;
+		}
+
+		final double[] capletValues = CapletBatchPricer.calculateCapletValuesBlackModel(forwards, volatilities,
+				strikes, fixingDates, paymentDates, discountFactors, notionals);
+		final double[] expectedCapValues = new double[numberOfCaps];
+		for (int capletIndex = 0; capletIndex < numberOfCaplets; capletIndex++) {
+			final double expectedValue = InterestRatesProducts.calculateCapletValueBlackModel(forwards[capletIndex],
+					volatilities[capletIndex], strikes[capletIndex], fixingDates[capletIndex],
+					paymentDates[capletIndex], discountFactors[capletIndex], notionals[capletIndex]);
+			Assert.assertEquals(expectedValue, capletValues[capletIndex], 1E-10);
+			expectedCapValues[capIdentifiers[capletIndex]] += expectedValue;
+		}
+
+		final double[] capValues = CapletBatchPricer.calculateCapValuesBlackModel(forwards, volatilities, strikes,
+				fixingDates, paymentDates, discountFactors, notionals, capIdentifiers, numberOfCaps);
+		Assert.assertArrayEquals(expectedCapValues, capValues, 1E-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeForward() {
+		// a negative forward is not possible under the Black model
+		CapletBatchPricer.calculateCapletValuesBlackModel(new double[] { -0.01 }, new double[] { 0.2 },
+				new double[] { 0.02 }, new double[] { 1 }, new double[] { 1.5 }, new double[] { 0.97 },
+				new double[] { 10000 });
+	}
+}
@@ -0,0 +1,90 @@
+package com.andreamazzon.handout4;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.exception.CalculationException;
+
+/**
+ * This is a test class for MonteCarloSimulationCache: we value a strike ladder
+ * of caplets with and without the cache, and we check that the values are the
+ * same, that the paths are simulated only once, and that the least recently
+ * used simulations are removed when the cache is full.
+ *
+ * @author Andrea Mazzon
+ */
+public class MonteCarloSimulationCacheTest {
+
+	final double initialForwardLibor = 0.05;
+	final double liborVolatility = 0.3;
+	final double fixingDate = 1;
+	final double paymentDate = 2;
+	final double discountFactorAtMaturity = 0.91;
+	final double notional = 10000;
+
+	final int numberOfTimeSteps = 10;
+	final int numberOfSimulations = 10000;
+
+	@Test
+	public void testStrikeLadder() throws CalculationException {
+		final MonteCarloSimulationCache cache = new MonteCarloSimulationCache(10, Long.MAX_VALUE);
+		final int seed = 1897;
+		for (double strike = 0.03; strike <= 0.07; strike += 0.005) {
+			final double valueWithCache = InterestRatesProducts.calculateCapletValueBlackModel(initialForwardLibor,
+					liborVolatility, strike, fixingDate, paymentDate, discountFactorAtMaturity, notional,
+					numberOfTimeSteps, numberOfSimulations, seed, cache);
+			final double valueWithoutCache = InterestRatesProducts.calculateCapletValueBlackModel(initialForwardLibor,
+					liborVolatility, strike, fixingDate, paymentDate, discountFactorAtMaturity, notional,
+					numberOfTimeSteps, numberOfSimulations, seed);
+			Assert.assertEquals(valueWithoutCache, valueWithCache, 1E-12);
+		}
+		Assert.assertEquals(1, cache.getNumberOfSimulations());
+		Assert.assertEquals(1, cache.getNumberOfMisses());
+		Assert.assertEquals(8, cache.getNumberOfHits());
+		Assert.assertEquals((2L * numberOfTimeSteps + 1) * numberOfSimulations * Double.BYTES,
+				cache.getNumberOfBytes());
+
+		// the default seed of the finmath library gives the values of the overload without seed
+		final double defaultSeedValue = InterestRatesProducts.calculateCapletValueBlackModel(initialForwardLibor,
+				liborVolatility, 0.044, fixingDate, paymentDate, discountFactorAtMaturity, notional,
+				numberOfTimeSteps, numberOfSimulations);
+		Assert.assertEquals(defaultSeedValue,
+				InterestRatesProducts.calculateCapletValueBlackModel(initialForwardLibor, liborVolatility, 0.044,
+						fixingDate, paymentDate, discountFactorAtMaturity, notional, numberOfTimeSteps,
+						numberOfSimulations, 3141, cache),
+				1E-12);
+	}
+
+	@Test
+	public void testEviction() {
+		final long bytesPerSimulation = (2L * numberOfTimeSteps + 1) * numberOfSimulations * Double.BYTES;
+		final MonteCarloSimulationCache cache = new MonteCarloSimulationCache(3, 100 * bytesPerSimulation);
+		for (int seed = 0; seed < 3; seed++) {
+			cache.getSimulation(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps,
+					numberOfSimulations, seed);
+		}
+		// the simulation with seed 0 becomes the one used most recently
+		cache.getSimulation(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps, numberOfSimulations,
+				0);
+		cache.getSimulation(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps, numberOfSimulations,
+				3);
+		Assert.assertEquals(3, cache.getNumberOfSimulations());
+		Assert.assertEquals(4, cache.getNumberOfMisses());
+		// the simulation with seed 1 has been removed, the one with seed 0 has not
+		cache.getSimulation(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps, numberOfSimulations,
+				0);
+		Assert.assertEquals(4, cache.getNumberOfMisses());
+		cache.getSimulation(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps, numberOfSimulations,
+				1);
+		Assert.assertEquals(5, cache.getNumberOfMisses());
+
+		// with a memory bound of two simulations, only two are kept
+		final MonteCarloSimulationCache smallCache = new MonteCarloSimulationCache(10, 2 * bytesPerSimulation);
+		for (int seed = 0; seed < 5; seed++) {
+			smallCache.getSimulation(initialForwardLibor, liborVolatility, fixingDate, numberOfTimeSteps,
+					numberOfSimulations, seed);
+		}
+		Assert.assertEquals(2, smallCache.getNumberOfSimulations());
+		Assert.assertEquals(2 * bytesPerSimulation, smallCache.getNumberOfBytes());
+	}
+}
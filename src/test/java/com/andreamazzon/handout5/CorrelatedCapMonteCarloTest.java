@@ -0,0 +1,83 @@
+package com.andreamazzon.handout5;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout4.InterestRatesProducts;
+
+/**
+ * This is a test class for CorrelatedCapMonteCarlo: a cap, a floor and a cap
+ * spread made by 40 caplets are valued by Monte Carlo, with all the factors and
+ * with three factors only, and compared with the sums of the analytic values of
+ * the caplets.
+ *
+ * @author Andrea Mazzon
+ */
+public class CorrelatedCapMonteCarloTest {
+
+	private static final int NUMBER_OF_CAPLETS = 40;
+	private static final double YEAR_FRACTION = 0.25;
+	private static final double NOTIONAL = 10000;
+
+	final double[] initialLibors = new double[NUMBER_OF_CAPLETS];
+	final double[] volatilities = new double[NUMBER_OF_CAPLETS];
+	final double[][] correlationMatrix = new double[NUMBER_OF_CAPLETS][NUMBER_OF_CAPLETS];
+	final double[] fixingDates = new double[NUMBER_OF_CAPLETS];
+	final double[] paymentDates = new double[NUMBER_OF_CAPLETS];
+	final double[] discountFactors = new double[NUMBER_OF_CAPLETS];
+
+	public CorrelatedCapMonteCarloTest() {
+		for (int capletIndex = 0; capletIndex < NUMBER_OF_CAPLETS; capletIndex++) {
+			initialLibors[capletIndex] = 0.02 + 0.0005 * capletIndex;
+			volatilities[capletIndex] = 0.3 - 0.002 * capletIndex;
+			// the first caplet fixes today
+			fixingDates[capletIndex] = YEAR_FRACTION * capletIndex;
+			paymentDates[capletIndex] = fixingDates[capletIndex] + YEAR_FRACTION;
+			discountFactors[capletIndex] = Math.exp(-0.025 * paymentDates[capletIndex]);
+			for (int otherIndex = 0; otherIndex < NUMBER_OF_CAPLETS; otherIndex++) {
+				correlationMatrix[capletIndex][otherIndex] = Math.exp(-0.1 * Math.abs(capletIndex - otherIndex));
+			}
+		}
+	}
+
+	private double getAnalyticCapValue(double strike) {
+		double value = 0;
+		for (int capletIndex = 0; capletIndex < NUMBER_OF_CAPLETS; capletIndex++) {
+			value += InterestRatesProducts.calculateCapletValueBlackModel(initialLibors[capletIndex],
+					volatilities[capletIndex], strike, fixingDates[capletIndex], paymentDates[capletIndex],
+					discountFactors[capletIndex], NOTIONAL);
+		}
+		return value;
+	}
+
+	@Test
+	public void testCapFloorAndSpread() {
+		final double strike = 0.03;
+		final double upperStrike = 0.04;
+		final int numberOfSimulations = 100000;
+		final double analyticCapValue = getAnalyticCapValue(strike);
+		// by the put-call parity for every caplet
+		double analyticFloorValue = analyticCapValue;
+		for (int capletIndex = 0; capletIndex < NUMBER_OF_CAPLETS; capletIndex++) {
+			analyticFloorValue -= NOTIONAL * discountFactors[capletIndex] * YEAR_FRACTION
+					* (initialLibors[capletIndex] - strike);
+		}
+		final double analyticSpreadValue = analyticCapValue - getAnalyticCapValue(upperStrike);
+
+		for (final int numberOfFactors : new int[] { NUMBER_OF_CAPLETS, 3 }) {
+			final CorrelatedCapMonteCarlo monteCarlo = new CorrelatedCapMonteCarlo(initialLibors, volatilities,
+					correlationMatrix, fixingDates, paymentDates, discountFactors, NOTIONAL, numberOfFactors);
+			final double capValue = monteCarlo.getCapValue(strike, numberOfSimulations, 1897);
+			final double floorValue = monteCarlo.getFloorValue(strike, numberOfSimulations, 1897);
+			final double spreadValue = monteCarlo.getCapSpreadValue(strike, upperStrike, numberOfSimulations, 1897);
+			System.out.println(numberOfFactors + " factors: cap " + capValue + " (" + analyticCapValue + "), floor "
+					+ floorValue + " (" + analyticFloorValue + "), spread " + spreadValue + " ("
+					+ analyticSpreadValue + ")");
+			Assert.assertEquals(analyticCapValue, capValue, 0.01 * analyticCapValue);
+			Assert.assertEquals(analyticFloorValue, floorValue, 0.01 * analyticFloorValue);
+			Assert.assertEquals(analyticSpreadValue, spreadValue, 0.01 * analyticSpreadValue);
+			// the same seed gives the same paths
+			Assert.assertEquals(capValue, monteCarlo.getCapValue(strike, numberOfSimulations, 1897), 0.0);
+		}
+	}
+}
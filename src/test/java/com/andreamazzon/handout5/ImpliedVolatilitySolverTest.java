@@ -0,0 +1,138 @@
+package com.andreamazzon.handout5;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout3.Swap;
+import com.andreamazzon.handout3.SwapWithoutFinmath;
+import com.andreamazzon.handout4.InterestRatesProducts;
+
+import net.finmath.functions.AnalyticFormulas;
+
+/**
+ * This is a test class for ImpliedVolatilitySolver: the prices of random
+ * caplets and swaptions are computed with known volatilities, and we check that
+ * the volatilities are given back, and that the prices which are not compatible
+ * with the models are reported.
+ *
+ * @author Andrea Mazzon
+ */
+public class ImpliedVolatilitySolverTest {
+
+	private static final int NUMBER_OF_PRICES = 20000;
+
+	@Test
+	public void testBlackImpliedVolatilities() {
+		final double[] forwards = new double[NUMBER_OF_PRICES];
+		final double[] strikes = new double[NUMBER_OF_PRICES];
+		final double[] maturities = new double[NUMBER_OF_PRICES];
+		final double[] prices = new double[NUMBER_OF_PRICES];
+		final double[] payoffUnits = new double[NUMBER_OF_PRICES];
+		final double[] volatilities = new double[NUMBER_OF_PRICES];
+
+		final Random random = new Random(1897);
+		for (int priceIndex = 0; priceIndex < NUMBER_OF_PRICES; priceIndex++) {
+			forwards[priceIndex] = 0.005 + 0.05 * random.nextDouble();
+			volatilities[priceIndex] = 0.05 + random.nextDouble();
+			maturities[priceIndex] = 0.25 + 10 * random.nextDouble();
+			// strikes up to three standard deviations away from the forward
+			strikes[priceIndex] = forwards[priceIndex] * Math.exp(
+					volatilities[priceIndex] * Math.sqrt(maturities[priceIndex]) * 3 * (2 * random.nextDouble() - 1));
+			final double paymentDate = maturities[priceIndex] + 0.5;
+			final double discountFactor = Math.exp(-0.02 * paymentDate);
+			prices[priceIndex] = InterestRatesProducts.calculateCapletValueBlackModel(forwards[priceIndex],
+					volatilities[priceIndex], strikes[priceIndex], maturities[priceIndex], paymentDate,
+					discountFactor, 10000);
+			payoffUnits[priceIndex] = 10000 * discountFactor * 0.5;
+		}
+
+		final double[] impliedVolatilities = new double[NUMBER_OF_PRICES];
+		final int[] failures = ImpliedVolatilitySolver.calculateBlackImpliedVolatilities(forwards, strikes,
+				maturities, prices, payoffUnits, impliedVolatilities);
+		Assert.assertEquals(0, failures.length);
+		for (int priceIndex = 0; priceIndex < NUMBER_OF_PRICES; priceIndex++) {
+			Assert.assertEquals(volatilities[priceIndex], impliedVolatilities[priceIndex],
+					1E-9 * volatilities[priceIndex]);
+		}
+	}
+
+	@Test
+	public void testBachelierImpliedVolatilities() {
+		final double[] forwards = new double[NUMBER_OF_PRICES];
+		final double[] strikes = new double[NUMBER_OF_PRICES];
+		final double[] maturities = new double[NUMBER_OF_PRICES];
+		final double[] prices = new double[NUMBER_OF_PRICES];
+		final double[] payoffUnits = new double[NUMBER_OF_PRICES];
+		final double[] volatilities = new double[NUMBER_OF_PRICES];
+
+		final Random random = new Random(1897);
+		for (int priceIndex = 0; priceIndex < NUMBER_OF_PRICES; priceIndex++) {
+			// negative rates are allowed by the Bachelier model
+			forwards[priceIndex] = -0.01 + 0.05 * random.nextDouble();
+			volatilities[priceIndex] = 0.001 + 0.02 * random.nextDouble();
+			maturities[priceIndex] = 0.25 + 10 * random.nextDouble();
+			strikes[priceIndex] = forwards[priceIndex]
+					+ volatilities[priceIndex] * Math.sqrt(maturities[priceIndex]) * 3 * (2 * random.nextDouble() - 1);
+			payoffUnits[priceIndex] = 10000 * (1 + 4 * random.nextDouble());
+			prices[priceIndex] = AnalyticFormulas.bachelierOptionValue(forwards[priceIndex], volatilities[priceIndex],
+					maturities[priceIndex], strikes[priceIndex], payoffUnits[priceIndex]);
+		}
+
+		final double[] impliedVolatilities = new double[NUMBER_OF_PRICES];
+		final int[] failures = ImpliedVolatilitySolver.calculateBachelierImpliedVolatilities(forwards, strikes,
+				maturities, prices, payoffUnits, impliedVolatilities);
+		Assert.assertEquals(0, failures.length);
+		for (int priceIndex = 0; priceIndex < NUMBER_OF_PRICES; priceIndex++) {
+			Assert.assertEquals(volatilities[priceIndex], impliedVolatilities[priceIndex],
+					1E-9 * volatilities[priceIndex]);
+		}
+	}
+
+	@Test
+	public void testSwaptions() {
+		final double[] bondCurve = { 0.98, 0.95, 0.92, 0.9, 0.87 };
+		final double yearFraction = 1;
+		final double notional = 10000;
+		final Swap swap = new SwapWithoutFinmath(yearFraction, bondCurve, true);
+		final double parSwapRate = swap.getParSwapRate(yearFraction);
+		final double annuity = (bondCurve[0] - bondCurve[bondCurve.length - 1]) / parSwapRate;
+		final double strike = 1.1 * parSwapRate;
+
+		final double blackPrice = InterestRatesProducts.calculateSwaptionValueBlack(bondCurve, yearFraction, strike,
+				notional, 0.3);
+		Assert.assertEquals(0.3, ImpliedVolatilitySolver.calculateBlackImpliedVolatility(parSwapRate, strike,
+				yearFraction, blackPrice, notional * annuity), 1E-12);
+
+		final double bachelierPrice = InterestRatesProductsEnhanced.calculateSwaptionValueBachelier(bondCurve,
+				yearFraction, strike, notional, 0.01);
+		Assert.assertEquals(0.01, ImpliedVolatilitySolver.calculateBachelierImpliedVolatility(parSwapRate, strike,
+				yearFraction, bachelierPrice, notional * annuity), 1E-14);
+	}
+
+	@Test
+	public void testArbitrageViolations() {
+		final double forward = 0.03;
+		// below the intrinsic value, above the forward, at the intrinsic value, negative, at the money
+		final double[] strikes = { 0.02, 0.02, 0.02, 0.04, 0.03 };
+		final double[] prices = { 0.0099, 0.0301, forward - 0.02, -1E-6, 0.004 };
+		final double[] forwards = { forward, forward, forward, forward, forward };
+		final double[] maturities = { 1, 1, 1, 1, 1 };
+		final double[] payoffUnits = { 1, 1, 1, 1, 1 };
+
+		final double[] impliedVolatilities = new double[prices.length];
+		final int[] blackFailures = ImpliedVolatilitySolver.calculateBlackImpliedVolatilities(forwards, strikes,
+				maturities, prices, payoffUnits, impliedVolatilities);
+		Assert.assertArrayEquals(new int[] { 0, 1, 3 }, blackFailures);
+		Assert.assertEquals(0, impliedVolatilities[2], 0);
+		Assert.assertTrue(impliedVolatilities[4] > 0);
+
+		// under the Bachelier model, any price above the intrinsic value is possible
+		final int[] bachelierFailures = ImpliedVolatilitySolver.calculateBachelierImpliedVolatilities(forwards,
+				strikes, maturities, prices, payoffUnits, impliedVolatilities);
+		Assert.assertArrayEquals(new int[] { 0, 3 }, bachelierFailures);
+		Assert.assertTrue(Double.isNaN(impliedVolatilities[0]));
+		Assert.assertEquals(0, impliedVolatilities[2], 0);
+	}
+}
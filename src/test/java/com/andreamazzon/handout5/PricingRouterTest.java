@@ -0,0 +1,79 @@
+package com.andreamazzon.handout5;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.functions.AnalyticFormulas;
+
+/**
+ * This is a test class for PricingRouter: we check that a cap is valued
+ * analytically, with the value of the Monte Carlo method of
+ * InterestRatesProductsEnhanced, that a spread option is valued by quadrature
+ * when there is enough time, with the value given by the Margrabe formula when
+ * the strike is zero, and by Monte Carlo when there is no time for the
+ * quadrature.
+ *
+ * @author Andrea Mazzon
+ */
+public class PricingRouterTest {
+
+	final double firstLibor = 0.05;
+	final double secondLibor = 0.055;
+	final double firstVolatility = 0.3;
+	final double secondVolatility = 0.25;
+	final double correlation = 0.6;
+	final double notional = 10000;
+
+	@Test
+	public void testGaussHermiteQuadrature() {
+		final GaussHermiteQuadrature quadrature = new GaussHermiteQuadrature(20);
+		Assert.assertEquals(1.0, quadrature.getExpectation(z -> 1.0), 1E-14);
+		Assert.assertEquals(1.0, quadrature.getExpectation(z -> z * z), 1E-13);
+		Assert.assertEquals(3.0, quadrature.getExpectation(z -> z * z * z * z), 1E-12);
+		Assert.assertEquals(Math.exp(0.5 * 0.7 * 0.7), quadrature.getExpectation(z -> Math.exp(0.7 * z)), 1E-13);
+	}
+
+	@Test
+	public void testCap() throws CalculationException {
+		final LiborOptionDescription cap = LiborOptionDescription.cap(new double[] { firstLibor, secondLibor },
+				new double[] { firstVolatility, secondVolatility },
+				new double[][] { { 1.0, correlation }, { correlation, 1.0 } }, new double[] { 0.045, 0.05 },
+				new double[] { 1, 2 }, new double[] { 2, 3 }, new double[] { 0.91, 0.87 }, notional);
+
+		final RoutedPrice price = new PricingRouter(1000000, 1897).getValue(cap, 1E-6, 1_000_000_000L);
+		Assert.assertEquals(PricingMethod.ANALYTIC, price.getMethod());
+		Assert.assertEquals(0, price.getErrorEstimate(), 0);
+
+		final double monteCarloValue = InterestRatesProductsEnhanced.calculateCapValueBlackModel(firstLibor,
+				secondLibor, firstVolatility, secondVolatility, correlation, 0.045, 0.05, 1, 2, 3, 0.91, 0.87,
+				notional, 10, 100000);
+		Assert.assertEquals(monteCarloValue, price.getValue(), 0.03 * monteCarloValue);
+	}
+
+	@Test
+	public void testSpreadOption() throws CalculationException {
+		final double fixingDate = 2;
+		final double paymentDate = 2.5;
+		final double discountFactor = 0.95;
+		final LiborOptionDescription spreadOption = LiborOptionDescription.spreadOption(firstLibor, secondLibor,
+				firstVolatility, secondVolatility, correlation, 0.0, fixingDate, paymentDate, discountFactor,
+				notional);
+
+		final PricingRouter router = new PricingRouter(1000000, 1897);
+		final RoutedPrice semiAnalyticPrice = router.getValue(spreadOption, 1E-8, 1_000_000_000L);
+		Assert.assertEquals(PricingMethod.SEMI_ANALYTIC, semiAnalyticPrice.getMethod());
+
+		// with strike zero, the option to exchange L_1 for L_2 has the Margrabe formula
+		final double spreadVolatility = Math.sqrt(firstVolatility * firstVolatility
+				+ secondVolatility * secondVolatility - 2 * correlation * firstVolatility * secondVolatility);
+		final double margrabeValue = notional * discountFactor * (paymentDate - fixingDate)
+				* AnalyticFormulas.blackScholesOptionValue(secondLibor, 0, spreadVolatility, fixingDate, firstLibor);
+		Assert.assertEquals(margrabeValue, semiAnalyticPrice.getValue(), 1E-8);
+
+		// without time for the quadrature, few paths are simulated
+		final RoutedPrice monteCarloPrice = router.getValue(spreadOption, 1E-8, 0);
+		Assert.assertEquals(PricingMethod.MONTE_CARLO, monteCarloPrice.getMethod());
+		Assert.assertEquals(margrabeValue, monteCarloPrice.getValue(), 4 * monteCarloPrice.getErrorEstimate());
+	}
+}
@@ -0,0 +1,115 @@
+package com.andreamazzon.handout5;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout3.SwapWithoutFinmath;
+import com.andreamazzon.handout4.InterestRatesProducts;
+
+import net.finmath.functions.AnalyticFormulas;
+
+/**
+ * This is a test class for SwaptionCubePricer: every swaption of a cube is
+ * compared with the value of the formulas of the finmath library for a swap
+ * built on the bonds between its start and end dates, and the swaptions
+ * expiring in T_1 on the whole curve with the values of
+ * InterestRatesProducts.calculateSwaptionValueBlack and
+ * InterestRatesProductsEnhanced.calculateSwaptionValueBachelier.
+ *
+ * @author Andrea Mazzon
+ */
+public class SwaptionCubePricerTest {
+
+	@Test
+	public void testCube() {
+		final double yearFraction = 0.5;
+		final int curveLength = 41;
+		final double[] zeroBondCurve = new double[curveLength];
+		for (int bondIndex = 0; bondIndex < curveLength; bondIndex++) {
+			final double maturity = yearFraction * (bondIndex + 1);
+			zeroBondCurve[bondIndex] = Math.exp(-(0.01 + 0.002 * maturity) * maturity);
+		}
+		final double notional = 10000;
+
+		final int[] expiryIndices = { 0, 1, 3, 7, 11, 19 };
+		final int[] tenorLengths = { 1, 2, 4, 10, 20 };
+		final double[] strikes = { 0.005, 0.01, 0.02, 0.03, 0.04, 0.05 };
+		final int numberOfStrikes = strikes.length;
+		final int numberOfSwaptions = expiryIndices.length * tenorLengths.length * numberOfStrikes;
+		final double[] blackVolatilities = new double[numberOfSwaptions];
+		final double[] normalVolatilities = new double[numberOfSwaptions];
+		for (int swaptionIndex = 0; swaptionIndex < numberOfSwaptions; swaptionIndex++) {
+			blackVolatilities[swaptionIndex] = 0.2 + 0.001 * swaptionIndex;
+			normalVolatilities[swaptionIndex] = 0.005 + 0.00001 * swaptionIndex;
+		}
+
+		final SwaptionCubePricer pricer = new SwaptionCubePricer(yearFraction, zeroBondCurve);
+		final double[] blackCube = pricer.getBlackCube(expiryIndices, tenorLengths, strikes, blackVolatilities,
+				notional);
+		final double[] bachelierCube = pricer.getBachelierCube(expiryIndices, tenorLengths, strikes,
+				normalVolatilities, notional);
+		final double[] parSwapRates = pricer.getParSwapRates(expiryIndices, tenorLengths);
+
+		for (int expiryIndex = 0; expiryIndex < expiryIndices.length; expiryIndex++) {
+			for (int tenorIndex = 0; tenorIndex < tenorLengths.length; tenorIndex++) {
+				final int startIndex = expiryIndices[expiryIndex];
+				final int endIndex = startIndex + tenorLengths[tenorIndex];
+				final double[] swapBonds = new double[endIndex - startIndex + 1];
+				System.arraycopy(zeroBondCurve, startIndex, swapBonds, 0, swapBonds.length);
+				final double parSwapRate = new SwapWithoutFinmath(yearFraction, swapBonds, true)
+						.getParSwapRate(yearFraction);
+				final double annuity = (swapBonds[0] - swapBonds[swapBonds.length - 1]) / parSwapRate;
+				final double expiry = yearFraction * (startIndex + 1);
+				final int pairIndex = expiryIndex * tenorLengths.length + tenorIndex;
+				Assert.assertEquals(parSwapRate, parSwapRates[pairIndex], 1E-14);
+				for (int strikeIndex = 0; strikeIndex < numberOfStrikes; strikeIndex++) {
+					final int position = pairIndex * numberOfStrikes + strikeIndex;
+					final double blackValue = notional * annuity * AnalyticFormulas.blackScholesOptionValue(
+							parSwapRate, 0, blackVolatilities[position], expiry, strikes[strikeIndex]);
+					final double bachelierValue = notional * AnalyticFormulas.bachelierOptionValue(parSwapRate,
+							normalVolatilities[position], expiry, strikes[strikeIndex], annuity);
+					Assert.assertEquals(blackValue, blackCube[position], 1E-10);
+					Assert.assertEquals(bachelierValue, bachelierCube[position], 1E-10);
+				}
+			}
+		}
+
+		// at the money and around it: the strikes relative to the par swap rates
+		final double[] strikeOffsets = { -0.01, -0.005, 0, 0.005, 0.01, 0.02 };
+		final double[] relativeCube = pricer.getBachelierCubeWithStrikeOffsets(expiryIndices, tenorLengths,
+				strikeOffsets, normalVolatilities, notional);
+		final double[] relativeBlackCube = pricer.getBlackCubeWithStrikeOffsets(expiryIndices, tenorLengths,
+				strikeOffsets, blackVolatilities, notional);
+		for (int pairIndex = 0; pairIndex < parSwapRates.length; pairIndex++) {
+			final double[] pairStrikes = new double[numberOfStrikes];
+			for (int strikeIndex = 0; strikeIndex < numberOfStrikes; strikeIndex++) {
+				pairStrikes[strikeIndex] = parSwapRates[pairIndex] + strikeOffsets[strikeIndex];
+			}
+			final int[] pairExpiry = { expiryIndices[pairIndex / tenorLengths.length] };
+			final int[] pairTenor = { tenorLengths[pairIndex % tenorLengths.length] };
+			final double[] pairVolatilities = new double[numberOfStrikes];
+			System.arraycopy(normalVolatilities, pairIndex * numberOfStrikes, pairVolatilities, 0, numberOfStrikes);
+			final double[] pairValues = pricer.getBachelierCube(pairExpiry, pairTenor, pairStrikes, pairVolatilities,
+					notional);
+			System.arraycopy(blackVolatilities, pairIndex * numberOfStrikes, pairVolatilities, 0, numberOfStrikes);
+			final double[] pairBlackValues = pricer.getBlackCube(pairExpiry, pairTenor, pairStrikes,
+					pairVolatilities, notional);
+			for (int strikeIndex = 0; strikeIndex < numberOfStrikes; strikeIndex++) {
+				Assert.assertEquals(pairValues[strikeIndex], relativeCube[pairIndex * numberOfStrikes + strikeIndex],
+						1E-12);
+				Assert.assertEquals(pairBlackValues[strikeIndex],
+						relativeBlackCube[pairIndex * numberOfStrikes + strikeIndex], 1E-12);
+			}
+		}
+
+		// the swaption expiring in T_1 on the whole curve, as in the methods with one swaption
+		final double[] wholeCurveCube = pricer.getBlackCube(new int[] { 0 }, new int[] { curveLength - 1 },
+				new double[] { 0.03 }, new double[] { 0.25 }, notional);
+		Assert.assertEquals(InterestRatesProducts.calculateSwaptionValueBlack(zeroBondCurve, yearFraction, 0.03,
+				notional, 0.25), wholeCurveCube[0], 1E-10);
+		final double[] wholeCurveBachelierCube = pricer.getBachelierCube(new int[] { 0 },
+				new int[] { curveLength - 1 }, new double[] { 0.03 }, new double[] { 0.006 }, notional);
+		Assert.assertEquals(InterestRatesProductsEnhanced.calculateSwaptionValueBachelier(zeroBondCurve,
+				yearFraction, 0.03, notional, 0.006), wholeCurveBachelierCube[0], 1E-10);
+	}
+}
@@ -0,0 +1,135 @@
+package com.andreamazzon.handout6;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This is a test class for QuantoCapletBatchPricer: the values of a book of
+ * random Quanto Caplets are compared with the ones of
+ * InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue, and the
+ * sensitivities with central finite differences of this method.
+ *
+ * @author Andrea Mazzon
+ */
+public class QuantoCapletBatchPricerTest {
+
+	@Test
+	public void testValuesAndSensitivities() {
+		final int numberOfTrades = 10000;
+		final double[] libors = new double[numberOfTrades];
+		final double[] liborVolatilities = new double[numberOfTrades];
+		final double[] fxVolatilities = new double[numberOfTrades];
+		final double[] correlations = new double[numberOfTrades];
+		final double[] fixingDates = new double[numberOfTrades];
+		final double[] paymentDates = new double[numberOfTrades];
+		final double[] strikes = new double[numberOfTrades];
+		final double[] discountFactors = new double[numberOfTrades];
+		final double[] notionals = new double[numberOfTrades];
+		final double[] quantoRates = new double[numberOfTrades];
+
+		final Random random = new Random(1897);
+		for (int tradeIndex = 0; tradeIndex < numberOfTrades; tradeIndex++) {
+			libors[tradeIndex] = 0.01 + 0.05 * random.nextDouble();
+			liborVolatilities[tradeIndex] = 0.1 + 0.4 * random.nextDouble();
+			fxVolatilities[tradeIndex] = 0.05 + 0.25 * random.nextDouble();
+			correlations[tradeIndex] = 2 * random.nextDouble() - 1;
+			fixingDates[tradeIndex] = 0.25 + 5 * random.nextDouble();
+			paymentDates[tradeIndex] = fixingDates[tradeIndex] + 0.5;
+			strikes[tradeIndex] = libors[tradeIndex] * (0.6 + 0.8 * random.nextDouble());
+			discountFactors[tradeIndex] = Math.exp(-0.02 * paymentDates[tradeIndex]);
+			notionals[tradeIndex] = 10000;
+			quantoRates[tradeIndex] = 0.8 + 0.4 * random.nextDouble();
+		}
+
+		final QuantoCapletBatchPricer pricer = new QuantoCapletBatchPricer(numberOfTrades);
+		pricer.calculate(libors, liborVolatilities, fxVolatilities, correlations, fixingDates, paymentDates, strikes,
+				discountFactors, notionals, quantoRates);
+
+		final double bump = 1E-6;
+		for (int tradeIndex = 0; tradeIndex < numberOfTrades; tradeIndex++) {
+			final int i = tradeIndex;
+			final double value = InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i],
+					liborVolatilities[i], fxVolatilities[i], correlations[i], fixingDates[i], paymentDates[i],
+					strikes[i], discountFactors[i], notionals[i], quantoRates[i]);
+			Assert.assertEquals(value, pricer.getValues()[i], 1E-10);
+
+			final double forwardDelta = (InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(
+					libors[i] + bump, liborVolatilities[i], fxVolatilities[i], correlations[i], fixingDates[i],
+					paymentDates[i], strikes[i], discountFactors[i], notionals[i], quantoRates[i])
+					- InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i] - bump,
+							liborVolatilities[i], fxVolatilities[i], correlations[i], fixingDates[i], paymentDates[i],
+							strikes[i], discountFactors[i], notionals[i], quantoRates[i]))
+					/ (2 * bump);
+			final double liborVega = (InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i],
+					liborVolatilities[i] + bump, fxVolatilities[i], correlations[i], fixingDates[i], paymentDates[i],
+					strikes[i], discountFactors[i], notionals[i], quantoRates[i])
+					- InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i],
+							liborVolatilities[i] - bump, fxVolatilities[i], correlations[i], fixingDates[i],
+							paymentDates[i], strikes[i], discountFactors[i], notionals[i], quantoRates[i]))
+					/ (2 * bump);
+			final double fxVega = (InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i],
+					liborVolatilities[i], fxVolatilities[i] + bump, correlations[i], fixingDates[i], paymentDates[i],
+					strikes[i], discountFactors[i], notionals[i], quantoRates[i])
+					- InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i], liborVolatilities[i],
+							fxVolatilities[i] - bump, correlations[i], fixingDates[i], paymentDates[i], strikes[i],
+							discountFactors[i], notionals[i], quantoRates[i]))
+					/ (2 * bump);
+			final double correlationSensitivity = (InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(
+					libors[i], liborVolatilities[i], fxVolatilities[i], correlations[i] + bump, fixingDates[i],
+					paymentDates[i], strikes[i], discountFactors[i], notionals[i], quantoRates[i])
+					- InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i], liborVolatilities[i],
+							fxVolatilities[i], correlations[i] - bump, fixingDates[i], paymentDates[i], strikes[i],
+							discountFactors[i], notionals[i], quantoRates[i]))
+					/ (2 * bump);
+			final double discountFactorSensitivity = (InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(
+					libors[i], liborVolatilities[i], fxVolatilities[i], correlations[i], fixingDates[i],
+					paymentDates[i], strikes[i], discountFactors[i] + bump, notionals[i], quantoRates[i])
+					- InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[i], liborVolatilities[i],
+							fxVolatilities[i], correlations[i], fixingDates[i], paymentDates[i], strikes[i],
+							discountFactors[i] - bump, notionals[i], quantoRates[i]))
+					/ (2 * bump);
+
+			// the finite differences are precise up to about 1E-6 relative
+			Assert.assertEquals(forwardDelta, pricer.getForwardDeltas()[i], 1E-5 * Math.abs(forwardDelta) + 1E-6);
+			Assert.assertEquals(liborVega, pricer.getLiborVegas()[i], 1E-5 * Math.abs(liborVega) + 1E-6);
+			Assert.assertEquals(fxVega, pricer.getFxVegas()[i], 1E-5 * Math.abs(fxVega) + 1E-6);
+			Assert.assertEquals(correlationSensitivity, pricer.getCorrelationSensitivities()[i],
+					1E-5 * Math.abs(correlationSensitivity) + 1E-6);
+			Assert.assertEquals(discountFactorSensitivity, pricer.getDiscountFactorSensitivities()[i],
+					1E-5 * Math.abs(discountFactorSensitivity) + 1E-6);
+		}
+	}
+
+	@Test
+	public void testZeroForwardAndDiscountFactor() {
+		// a zero forward with positive and negative strike, and a zero discount factor
+		final double[] libors = { 0, 0, 0.03 };
+		final double[] strikes = { 0.02, -0.01, 0.02 };
+		final double[] discountFactors = { 0.95, 0.95, 0 };
+		final double[] liborVolatilities = { 0.3, 0.3, 0.3 };
+		final double[] fxVolatilities = { 0.1, 0.1, 0.1 };
+		final double[] correlations = { -0.4, -0.4, -0.4 };
+		final double[] fixingDates = { 1, 1, 1 };
+		final double[] paymentDates = { 1.5, 1.5, 1.5 };
+		final double[] notionals = { 10000, 10000, 10000 };
+		final double[] quantoRates = { 0.9, 0.9, 0.9 };
+
+		final QuantoCapletBatchPricer pricer = new QuantoCapletBatchPricer(3);
+		pricer.calculate(libors, liborVolatilities, fxVolatilities, correlations, fixingDates, paymentDates, strikes,
+				discountFactors, notionals, quantoRates);
+
+		// out of the money, the caplet does not move with the forward
+		Assert.assertEquals(0, pricer.getValues()[0], 0.0);
+		Assert.assertEquals(0, pricer.getForwardDeltas()[0], 0.0);
+		// always exercised, the caplet is linear in the adjusted forward
+		final double paymentUnit = 10000 * 0.9 * 0.95 * 0.5;
+		Assert.assertEquals(paymentUnit * Math.exp(0.4 * 0.3 * 0.1), pricer.getForwardDeltas()[1], 1E-10);
+		// with a zero discount factor, its sensitivity is the undiscounted value
+		Assert.assertEquals(0, pricer.getValues()[2], 0.0);
+		Assert.assertEquals(InterestRatesProductsFurtherEnhanced.calculateQuantoCapletValue(libors[2],
+				liborVolatilities[2], fxVolatilities[2], correlations[2], fixingDates[2], paymentDates[2], strikes[2],
+				1, notionals[2], quantoRates[2]), pricer.getDiscountFactorSensitivities()[2], 1E-10);
+	}
+}
@@ -0,0 +1,128 @@
+package com.andreamazzon.handout7;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This is a test class for MicroBatchingPricingService: caplets, caplets in
+ * arrears and quanto caplets are submitted by many threads, in the same process
+ * and through a socket, and their values are compared with the ones of the
+ * static methods of InterestRatesProductsInArrears.
+ *
+ * @author Andrea Mazzon
+ */
+public class MicroBatchingPricingServiceTest {
+
+	private static final int NUMBER_OF_REQUESTS = 3000;
+
+	private final PricingRequestType[] types = new PricingRequestType[NUMBER_OF_REQUESTS];
+	private final double[][] parameters = new double[NUMBER_OF_REQUESTS][];
+	private final double[] expectedValues = new double[NUMBER_OF_REQUESTS];
+
+	public MicroBatchingPricingServiceTest() {
+		final Random random = new Random(1897);
+		for (int requestIndex = 0; requestIndex < NUMBER_OF_REQUESTS; requestIndex++) {
+			final double initialForwardLibor = 0.01 + 0.05 * random.nextDouble();
+			final double liborVolatility = 0.1 + 0.4 * random.nextDouble();
+			final double strike = initialForwardLibor * (0.6 + 0.8 * random.nextDouble());
+			final double fixingDate = 0.5 + 5 * random.nextDouble();
+			final double paymentDate = fixingDate + 0.5;
+			final double discountFactor = Math.exp(-0.02 * paymentDate);
+			final double notional = 10000;
+			switch (requestIndex % 3) {
+			case 0:
+				types[requestIndex] = PricingRequestType.CAPLET_BLACK;
+				parameters[requestIndex] = new double[] { initialForwardLibor, liborVolatility, strike, fixingDate,
+						paymentDate, discountFactor, notional };
+				expectedValues[requestIndex] = InterestRatesProductsInArrears.calculateCapletValueBlackModel(
+						initialForwardLibor, liborVolatility, strike, fixingDate, paymentDate, discountFactor,
+						notional);
+				break;
+			case 1:
+				types[requestIndex] = PricingRequestType.CAPLET_IN_ARREARS_BLACK;
+				parameters[requestIndex] = new double[] { initialForwardLibor, liborVolatility, strike, fixingDate,
+						paymentDate, discountFactor, notional };
+				expectedValues[requestIndex] = InterestRatesProductsInArrears.calculateCapletInArrearsBlack(
+						initialForwardLibor, liborVolatility, strike, fixingDate, paymentDate, discountFactor,
+						notional);
+				break;
+			default:
+				final double fxVolatility = 0.05 + 0.2 * random.nextDouble();
+				final double correlation = 2 * random.nextDouble() - 1;
+				final double quantoRate = 0.9;
+				types[requestIndex] = PricingRequestType.QUANTO_CAPLET;
+				parameters[requestIndex] = new double[] { initialForwardLibor, liborVolatility, fxVolatility,
+						correlation, fixingDate, paymentDate, strike, discountFactor, notional, quantoRate };
+				expectedValues[requestIndex] = InterestRatesProductsInArrears.calculateQuantoCapletValue(
+						initialForwardLibor, liborVolatility, fxVolatility, correlation, fixingDate, paymentDate,
+						strike, discountFactor, notional, quantoRate);
+			}
+		}
+	}
+
+	@Test
+	public void testInProcess() throws InterruptedException, ExecutionException {
+		try (MicroBatchingPricingService service = new MicroBatchingPricingService(200, TimeUnit.MICROSECONDS,
+				1024)) {
+			// the requests are submitted by several threads at the same time
+			final List<CompletableFuture<Double>> futures = new ArrayList<CompletableFuture<Double>>();
+			for (int requestIndex = 0; requestIndex < NUMBER_OF_REQUESTS; requestIndex++) {
+				futures.add(null);
+			}
+			IntStream.range(0, NUMBER_OF_REQUESTS).parallel().forEach(requestIndex -> futures.set(requestIndex,
+					service.submit(types[requestIndex], parameters[requestIndex])));
+			for (int requestIndex = 0; requestIndex < NUMBER_OF_REQUESTS; requestIndex++) {
+				Assert.assertEquals(expectedValues[requestIndex], futures.get(requestIndex).get(), 1E-10);
+			}
+
+			Assert.assertEquals(NUMBER_OF_REQUESTS, service.getNumberOfRequests());
+			System.out.println("Batches: " + service.getNumberOfBatches() + ", median latency "
+					+ service.getLatencyPercentile(50) / 1000 + " microseconds, 99th percentile "
+					+ service.getLatencyPercentile(99) / 1000 + " microseconds");
+			Assert.assertTrue(service.getNumberOfBatches() < NUMBER_OF_REQUESTS);
+			Assert.assertTrue(service.getLatencyPercentile(50) <= service.getLatencyPercentile(99));
+			Assert.assertTrue(service.getThroughput() > 0);
+
+			try {
+				service.submit(PricingRequestType.QUANTO_CAPLET, 0.03, 0.2);
+				Assert.fail("A request with the wrong number of parameters must be refused");
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testClosedService() {
+		final MicroBatchingPricingService service = new MicroBatchingPricingService(200, TimeUnit.MICROSECONDS, 1024);
+		service.close();
+		Assert.assertTrue(service.submit(types[0], parameters[0]).isCompletedExceptionally());
+	}
+
+	@Test
+	public void testThroughSocket() throws Exception {
+		try (MicroBatchingPricingService service = new MicroBatchingPricingService(200, TimeUnit.MICROSECONDS,
+				1024);
+				PricingServiceSocketServer server = new PricingServiceSocketServer(service, 0);
+				PricingServiceSocketClient client = new PricingServiceSocketClient(server.getPort())) {
+			final List<CompletableFuture<Double>> futures = new ArrayList<CompletableFuture<Double>>();
+			for (int requestIndex = 0; requestIndex < NUMBER_OF_REQUESTS; requestIndex++) {
+				futures.add(client.submit(types[requestIndex], parameters[requestIndex]));
+			}
+			for (int requestIndex = 0; requestIndex < NUMBER_OF_REQUESTS; requestIndex++) {
+				Assert.assertEquals(expectedValues[requestIndex], futures.get(requestIndex).get(10, TimeUnit.SECONDS),
+						1E-10);
+			}
+			Assert.assertEquals(0, client.getNumberOfPendingRequests());
+			Assert.assertEquals(NUMBER_OF_REQUESTS, service.getNumberOfRequests());
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.andreamazzon.handout7;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout5.SwaptionCubePricer;
+
+/**
+ * This is a test class for ProductRegistry and PricingPlan: a mixed book of
+ * caplets, caplets in arrears, quanto caplets and swaptions on two curves is
+ * compiled and valued, and the values are compared with the ones of the static
+ * methods of InterestRatesProductsInArrears and of SwaptionCubePricer. We also
+ * check that every item of market data is looked up once per valuation.
+ *
+ * @author Andrea Mazzon
+ */
+public class ProductRegistryTest {
+
+	private static final double YEAR_FRACTION = 0.5;
+	private static final int CURVE_LENGTH = 21;
+
+	private static double[] getCurve(double rate) {
+		final double[] zeroBondCurve = new double[CURVE_LENGTH];
+		for (int bondIndex = 0; bondIndex < CURVE_LENGTH; bondIndex++) {
+			final double maturity = YEAR_FRACTION * (bondIndex + 1);
+			zeroBondCurve[bondIndex] = Math.exp(-(rate + 0.002 * maturity) * maturity);
+		}
+		return zeroBondCurve;
+	}
+
+	@Test
+	public void testMixedBook() {
+		final double[] euroCurve = getCurve(0.01);
+		final double[] dollarCurve = getCurve(0.02);
+		final MarketDataSet marketData = new MarketDataSet();
+		marketData.putCurve("EUR", YEAR_FRACTION, euroCurve);
+		marketData.putCurve("USD", YEAR_FRACTION, dollarCurve);
+		marketData.putParameter("EUR caplet volatility", 0.3);
+		marketData.putParameter("USD caplet volatility", 0.25);
+		marketData.putParameter("EUR swaption volatility", 0.2);
+		marketData.putParameter("EURUSD volatility", 0.1);
+		marketData.putParameter("EURUSD correlation", -0.4);
+
+		final int numberOfProducts = 2000;
+		final List<ProductDescriptor> book = new ArrayList<ProductDescriptor>();
+		final Random random = new Random(1897);
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final int fixingIndex = random.nextInt(CURVE_LENGTH - 1);
+			final double strike = 0.01 + 0.04 * random.nextDouble();
+			switch (productIndex % 5) {
+			case 0:
+				book.add(new CapletDescriptor("EUR", "EUR caplet volatility", fixingIndex, strike, 10000));
+				break;
+			case 1:
+				book.add(new CapletDescriptor("USD", "USD caplet volatility", fixingIndex, strike, 10000));
+				break;
+			case 2:
+				book.add(new CapletInArrearsDescriptor("EUR", "EUR caplet volatility", fixingIndex, strike, 10000));
+				break;
+			case 3:
+				book.add(new QuantoCapletDescriptor("USD", "EUR", "USD caplet volatility", "EURUSD volatility",
+						"EURUSD correlation", fixingIndex, strike, 10000, 0.9));
+				break;
+			default:
+				book.add(new SwaptionDescriptor("EUR", "EUR swaption volatility", fixingIndex,
+						1 + random.nextInt(CURVE_LENGTH - 1 - fixingIndex), strike, 10000));
+			}
+		}
+
+		final PricingPlan plan = ProductRegistry.withAnalyticPricers().compile(book);
+		Assert.assertEquals(5, plan.getNumberOfGroups());
+		Assert.assertEquals(2, plan.getCurveNames().length);
+		Assert.assertEquals(5, plan.getParameterNames().length);
+
+		final double[] values = plan.getValues(marketData);
+		// two curves and five parameters, however many products
+		Assert.assertEquals(7, marketData.getNumberOfLookups());
+
+		final SwaptionCubePricer swaptionPricer = new SwaptionCubePricer(YEAR_FRACTION, euroCurve);
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final ProductDescriptor product = book.get(productIndex);
+			final double expectedValue;
+			if (product instanceof SwaptionDescriptor) {
+				final SwaptionDescriptor swaption = (SwaptionDescriptor) product;
+				expectedValue = swaptionPricer.getBlackCube(new int[] { swaption.getExpiryIndex() },
+						new int[] { swaption.getTenorLength() }, new double[] { swaption.getStrike() },
+						new double[] { 0.2 }, swaption.getNotional())[0];
+			} else if (product instanceof QuantoCapletDescriptor) {
+				final QuantoCapletDescriptor caplet = (QuantoCapletDescriptor) product;
+				final int fixingIndex = caplet.getFixingIndex();
+				expectedValue = InterestRatesProductsInArrears.calculateQuantoCapletValue(
+						getLibor(dollarCurve, fixingIndex), 0.25, 0.1, -0.4, YEAR_FRACTION * (fixingIndex + 1),
+						YEAR_FRACTION * (fixingIndex + 2), caplet.getStrike(), euroCurve[fixingIndex + 1],
+						caplet.getNotionalInForeignCurrency(), caplet.getQuantoRate());
+			} else {
+				final CapletDescriptor caplet = (CapletDescriptor) product;
+				final int fixingIndex = caplet.getFixingIndex();
+				final double[] curve = caplet.getCurveNames()[0].equals("EUR") ? euroCurve : dollarCurve;
+				final double volatility = curve == euroCurve ? 0.3 : 0.25;
+				final double fixingDate = YEAR_FRACTION * (fixingIndex + 1);
+				if (product instanceof CapletInArrearsDescriptor) {
+					expectedValue = InterestRatesProductsInArrears.calculateCapletInArrearsBlack(
+							getLibor(curve, fixingIndex), volatility, caplet.getStrike(), fixingDate,
+							fixingDate + YEAR_FRACTION, curve[fixingIndex + 1], caplet.getNotional());
+				} else {
+					expectedValue = InterestRatesProductsInArrears.calculateCapletValueBlackModel(
+							getLibor(curve, fixingIndex), volatility, caplet.getStrike(), fixingDate,
+							fixingDate + YEAR_FRACTION, curve[fixingIndex + 1], caplet.getNotional());
+				}
+			}
+			Assert.assertEquals(expectedValue, values[productIndex], 1E-9);
+		}
+
+		// the same plan with other market data
+		marketData.putParameter("EUR swaption volatility", 0.3);
+		final double[] stressedValues = plan.getValues(marketData);
+		Assert.assertEquals(14, marketData.getNumberOfLookups());
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			if (book.get(productIndex) instanceof SwaptionDescriptor) {
+				Assert.assertTrue(stressedValues[productIndex] >= values[productIndex]);
+			} else {
+				Assert.assertEquals(values[productIndex], stressedValues[productIndex], 0.0);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnregisteredProduct() {
+		final List<ProductDescriptor> book = new ArrayList<ProductDescriptor>();
+		book.add(new CapletInArrearsDescriptor("EUR", "EUR caplet volatility", 0, 0.02, 10000));
+		final ProductRegistry registry = new ProductRegistry();
+		registry.register(CapletDescriptor.class, (products, curves, parameters) -> new double[products.size()]);
+		registry.compile(book);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testQuantoCurvesWithDifferentDates() {
+		final MarketDataSet marketData = new MarketDataSet();
+		marketData.putCurve("EUR", YEAR_FRACTION, getCurve(0.01));
+		// the same number of bonds, but annual dates
+		marketData.putCurve("USD", 2 * YEAR_FRACTION, getCurve(0.02));
+		marketData.putParameter("USD caplet volatility", 0.25);
+		marketData.putParameter("EURUSD volatility", 0.1);
+		marketData.putParameter("EURUSD correlation", -0.4);
+		final List<ProductDescriptor> book = new ArrayList<ProductDescriptor>();
+		book.add(new QuantoCapletDescriptor("USD", "EUR", "USD caplet volatility", "EURUSD volatility",
+				"EURUSD correlation", 3, 0.02, 10000, 0.9));
+		ProductRegistry.withAnalyticPricers().compile(book).getValues(marketData);
+	}
+
+	private static double getLibor(double[] zeroBondCurve, int fixingIndex) {
+		return (zeroBondCurve[fixingIndex] / zeroBondCurve[fixingIndex + 1] - 1) / YEAR_FRACTION;
+	}
+}
@@ -0,0 +1,91 @@
+package com.andreamazzon.handout8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This is a test class for EuropeanOptionInArrearsBook: a book of random
+ * caplets, digital caplets and floaters is valued, and the classical prices,
+ * the convexity adjustments and the prices in arrears are compared with the
+ * ones of CapletWithBlack, DigitalCapletWithBlack and FloaterWithBlack.
+ *
+ * @author Andrea Mazzon
+ */
+public class EuropeanOptionInArrearsBookTest {
+
+	@Test
+	public void testBook() {
+		final int numberOfProducts = 20000;
+		// a small capacity, so that the arrays have to grow
+		final EuropeanOptionInArrearsBook book = new EuropeanOptionInArrearsBook(16);
+		final List<EuropeanOptionPossiblyInArrears> products = new ArrayList<EuropeanOptionPossiblyInArrears>();
+
+		final Random random = new Random(1897);
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final double firstTime = 0.5 + 5 * random.nextDouble();
+			final double secondTime = firstTime + 0.5 + 0.5 * random.nextDouble();
+			final double secondBond = Math.exp(-0.02 * secondTime);
+			final double liborVolatility = 0.1 + 0.4 * random.nextDouble();
+			final double notional = 10000;
+			final double strike = 0.01 + 0.05 * random.nextDouble();
+			// half of the products get the LIBOR, the other half the first bond
+			final boolean giveLibor = random.nextBoolean();
+			final double firstBondOrInitialLibor = giveLibor ? 0.01 + 0.05 * random.nextDouble()
+					: secondBond * (1 + 0.01 + 0.05 * random.nextDouble());
+			final int index;
+			switch (random.nextInt(3)) {
+			case 0:
+				index = book.addCaplet(firstTime, secondTime, firstBondOrInitialLibor, secondBond, liborVolatility,
+						notional, giveLibor, strike);
+				products.add(new CapletWithBlack(firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+						liborVolatility, notional, giveLibor, strike));
+				Assert.assertEquals(EuropeanOptionInArrearsBook.ProductType.CAPLET, book.getProductType(index));
+				break;
+			case 1:
+				index = book.addDigitalCaplet(firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+						liborVolatility, notional, giveLibor, strike);
+				products.add(new DigitalCapletWithBlack(firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+						liborVolatility, notional, giveLibor, strike));
+				break;
+			default:
+				index = book.addFloater(firstTime, secondTime, firstBondOrInitialLibor, secondBond, liborVolatility,
+						notional, giveLibor);
+				products.add(new FloaterWithBlack(firstTime, secondTime, firstBondOrInitialLibor, secondBond,
+						liborVolatility, notional, giveLibor));
+			}
+			Assert.assertEquals(productIndex, index);
+		}
+		Assert.assertEquals(numberOfProducts, book.getNumberOfProducts());
+
+		final double[] valuesInClassicUnits = new double[numberOfProducts];
+		final double[] valuesInArrears = new double[numberOfProducts];
+		final double[] convexityAdjustments = new double[numberOfProducts];
+		book.calculateValues(valuesInClassicUnits, valuesInArrears, convexityAdjustments);
+
+		for (int productIndex = 0; productIndex < numberOfProducts; productIndex++) {
+			final EuropeanOptionPossiblyInArrears product = products.get(productIndex);
+			Assert.assertEquals(product.getInitialValueLibor(), book.getInitialValueLibor(productIndex), 1E-14);
+			Assert.assertEquals(product.getFirstBond(), book.getFirstBond(productIndex), 1E-14);
+			Assert.assertEquals(product.getValueInClassicUnits(product.getInitialValueLibor()),
+					valuesInClassicUnits[productIndex], 1E-9);
+			Assert.assertEquals(product.computeConvexityAdjustment(), convexityAdjustments[productIndex], 1E-9);
+			Assert.assertEquals(product.getValueInArrears(), valuesInArrears[productIndex], 1E-9);
+		}
+		Assert.assertArrayEquals(valuesInArrears, book.getValuesInArrears(), 0.0);
+		// the three getters share one valuation
+		Assert.assertArrayEquals(valuesInClassicUnits, book.getValuesInClassicUnits(), 0.0);
+		Assert.assertArrayEquals(convexityAdjustments, book.getConvexityAdjustments(), 0.0);
+
+		// a product added after a valuation is valued with the others
+		book.addFloater(1, 2, 0.95, 0.91, 0.3, 10000, false);
+		final double[] newValues = book.getValuesInArrears();
+		Assert.assertEquals(
+				new FloaterWithBlack(1, 2, 0.95, 0.91, 0.3, 10000, false).getValueInArrears(),
+				newValues[numberOfProducts], 1E-9);
+		Assert.assertEquals(valuesInArrears[0], newValues[0], 0.0);
+	}
+}
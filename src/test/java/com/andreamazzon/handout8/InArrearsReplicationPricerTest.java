@@ -0,0 +1,116 @@
+package com.andreamazzon.handout8;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.andreamazzon.handout7.InterestRatesProductsInArrears;
+
+/**
+ * This is a test class for InArrearsReplicationPricer. With a flat volatility
+ * surface, the prices by static replication must be the ones of the Black
+ * model, given by InterestRatesProductsInArrears and by the classes derived
+ * from EuropeanOptionPossiblyInArrears. With a smile, we check that the strips
+ * are computed once for every fixing, and that the prices are consistent with
+ * each other: the caplet with strike zero is the floater, and minus the
+ * derivative of the price of the caplet with respect to the strike is the price
+ * of the digital caplet.
+ *
+ * @author Andrea Mazzon
+ */
+public class InArrearsReplicationPricerTest {
+
+	final double firstTime = 1;
+	final double secondTime = 2;
+	final double firstBond = 0.95;
+	final double secondBond = 0.91;
+	final double notional = 10000;
+	final double liborVolatility = 0.3;
+
+	@Test
+	public void testFlatSurface() {
+		final VolatilitySurface flatSurface = (fixingDate, strike) -> liborVolatility;
+		final InArrearsReplicationPricer pricer = new InArrearsReplicationPricer();
+
+		final EuropeanOptionPossiblyInArrears floater = new FloaterWithBlack(firstTime, secondTime, firstBond,
+				secondBond, liborVolatility, notional, false);
+		final double initialForwardLibor = floater.getInitialValueLibor();
+		final double floaterValue = pricer.getFloaterInArrearsValue(initialForwardLibor, flatSurface, firstTime,
+				secondTime, secondBond, notional);
+		Assert.assertEquals(floater.getValueInArrears(), floaterValue, 1E-6);
+
+		for (final double strike : new double[] { 0.01, 0.03, 0.044, 0.06, 0.1 }) {
+			final double capletValue = pricer.getCapletInArrearsValue(initialForwardLibor, flatSurface, strike,
+					firstTime, secondTime, secondBond, notional);
+			Assert.assertEquals(InterestRatesProductsInArrears.calculateCapletInArrearsBlack(initialForwardLibor,
+					liborVolatility, strike, firstTime, secondTime, secondBond, notional), capletValue, 1E-6);
+
+			final EuropeanOptionPossiblyInArrears digitalCaplet = new DigitalCapletWithBlack(firstTime, secondTime,
+					firstBond, secondBond, liborVolatility, notional, false, strike);
+			final double digitalValue = pricer.getDigitalCapletInArrearsValue(initialForwardLibor, flatSurface,
+					strike, firstTime, secondTime, secondBond, notional);
+			Assert.assertEquals(digitalCaplet.getValueInArrears(), digitalValue, 1E-4);
+		}
+		// all the products are on the same fixing
+		Assert.assertEquals(1, pricer.getNumberOfStrips());
+	}
+
+	@Test
+	public void testSmile() {
+		// a skew, with higher volatilities for lower strikes, and a smile around 5%
+		final VolatilitySurface surface = (fixingDate, strike) -> {
+			final double logMoneyness = Math.log(strike / 0.05);
+			return 0.25 + 0.02 / (1 + fixingDate) - 0.05 * Math.tanh(logMoneyness)
+					+ 0.05 * (1 - Math.exp(-logMoneyness * logMoneyness));
+		};
+		final InArrearsReplicationPricer pricer = new InArrearsReplicationPricer();
+
+		final double[] fixingDates = { 1, 2, 3 };
+		final double[] initialForwardLibors = { 0.04, 0.045, 0.05 };
+		final double periodLength = 1;
+		for (int fixingIndex = 0; fixingIndex < fixingDates.length; fixingIndex++) {
+			final double fixingDate = fixingDates[fixingIndex];
+			final double paymentDate = fixingDate + periodLength;
+			final double discountFactor = Math.exp(-0.03 * paymentDate);
+			final double initialForwardLibor = initialForwardLibors[fixingIndex];
+
+			final double floaterValue = pricer.getFloaterInArrearsValue(initialForwardLibor, surface, fixingDate,
+					paymentDate, discountFactor, notional);
+			Assert.assertEquals(floaterValue, pricer.getCapletInArrearsValue(initialForwardLibor, surface, 0,
+					fixingDate, paymentDate, discountFactor, notional), 1E-8);
+			// the price in arrears is higher than the classic one
+			Assert.assertTrue(floaterValue > notional * discountFactor * periodLength * initialForwardLibor);
+
+			for (final double strike : new double[] { 0.02, 0.04, 0.05, 0.07 }) {
+				final double shift = 1E-5;
+				final double capletSlope = (pricer.getCapletInArrearsValue(initialForwardLibor, surface,
+						strike - shift, fixingDate, paymentDate, discountFactor, notional)
+						- pricer.getCapletInArrearsValue(initialForwardLibor, surface, strike + shift, fixingDate,
+								paymentDate, discountFactor, notional))
+						/ (2 * shift);
+				final double digitalValue = pricer.getDigitalCapletInArrearsValue(initialForwardLibor, surface,
+						strike, fixingDate, paymentDate, discountFactor, notional);
+				Assert.assertEquals(capletSlope, digitalValue, 1E-3 * digitalValue);
+			}
+		}
+		Assert.assertEquals(fixingDates.length, pricer.getNumberOfStrips());
+		pricer.clear();
+		Assert.assertEquals(0, pricer.getNumberOfStrips());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedStripsAreRemoved() {
+		final VolatilitySurface surface = (fixingDate, strike) -> 0.2;
+		final InArrearsReplicationPricer pricer = new InArrearsReplicationPricer(1E-8, 2);
+
+		final CallPriceStrip firstStrip = pricer.getStrip(0.04, surface, 1);
+		final CallPriceStrip secondStrip = pricer.getStrip(0.04, surface, 2);
+		// the first strip is used again, so the second one is the least recently used
+		Assert.assertSame(firstStrip, pricer.getStrip(0.04, surface, 1));
+		pricer.getStrip(0.04, surface, 3);
+		Assert.assertEquals(2, pricer.getNumberOfStrips());
+
+		Assert.assertSame(firstStrip, pricer.getStrip(0.04, surface, 1));
+		Assert.assertNotSame(secondStrip, pricer.getStrip(0.04, surface, 2));
+		Assert.assertEquals(2, pricer.getNumberOfStrips());
+	}
+}